@@ -141,9 +141,10 @@ public class CfmlParameterInfoHandler implements ParameterInfoHandler<PsiElement
       }
     }
     if (element instanceof CfmlReferenceExpression) {
+      final CfmlLangInfo langInfo = CfmlLangInfo.getInstance(element.getProject());
       String functionName = element.getText().toLowerCase();
-      if (ArrayUtil.find(CfmlLangInfo.getInstance(element.getProject()).getPredefinedFunctionsLowCase(), functionName) != -1) {
-        context.setItemsToShow(new Object[]{CfmlLangInfo.getInstance(element.getProject()).getFunctionParameters().get(functionName)});
+      if (langInfo.isPredefinedFunction(functionName)) {
+        context.setItemsToShow(new Object[]{langInfo.getFunctionParameters().get(functionName)});
         context.showHint(element, element.getTextRange().getStartOffset(), this);
       }
     }
@@ -238,8 +238,7 @@ public class CfmlUtil {
   }
 
   public static boolean isPredefinedFunction(String functionName, Project project) {
-    return ArrayUtil.find(CfmlLangInfo.getInstance(anyProject(project)).getPredefinedFunctionsInLowCase(), functionName.toLowerCase()) !=
-           -1;
+    return CfmlLangInfo.getInstance(anyProject(project)).isPredefinedFunction(functionName);
   }
 
   public static boolean isPredefinedTagVariables(CfmlReferenceExpression cfmlRef, Project project) {
@@ -60,6 +60,10 @@ public class CfmlAttributeDescription implements Comparable<CfmlAttributeDescrip
     return myNamePattern.matcher(myNamePattern.pattern()).matches() ? myNamePattern.pattern() : myCompletionExample;
   }
 
+  String getNamePattern() {
+    return myNamePattern.pattern();
+  }
+
   public String getDescription() {
     return myDescription;
   }
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion.model.info;
+
+import com.intellij.coldFusion.model.CfmlLanguage;
+import com.intellij.util.text.LineReader;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compiles tag and function descriptions of a language level (<code>tags.xml</code>, <code>cf10_tags.xml</code>, ...) together with
+ * <code>scopes.txt</code> into the binary form read by {@link CfmlLangInfo.CfmlLangDictionary}.
+ * <p/>
+ * Run {@link #main(String[])} at build time to put the compiled dictionaries next to the XML files; without them the dictionary is
+ * compiled on first use and cached in the system directory.
+ * <p/>
+ * Format (big-endian):
+ * <pre>
+ * header:    int MAGIC, int VERSION, long source stamp
+ * strings:   int count, int[count] lengths, int total length, char[total length]
+ * scopes:    int count (-1 for null), int[count] string ids
+ * variables: int count, {int name id, int type}[count]
+ * tags:      int count, {int name id, int flags, int description id, int attribute count,
+ *                        {int name id, int type, int required, int description id, int value count (-1 for null), int[value count] value ids}[]}[]
+ * functions: int count, {int name id, int return type id, int description id, int parameter count,
+ *                        {int name id, int type id, int required, int description id}[]}[]
+ * </pre>
+ * Every string is stored once and referenced by id, -1 stands for <code>null</code>.
+ */
+public class CfmlLangDictionaryCompiler {
+  static final int MAGIC = 0x43464D44;
+  static final int VERSION = 1;
+
+  static final int SINGLE_FLAG = 1;
+  static final int END_TAG_REQUIRED_FLAG = 2;
+
+  static final String SCOPES_FILE_NAME = "scopes.txt";
+  static final String[] LANGUAGE_LEVELS = {CfmlLanguage.CF8, CfmlLanguage.CF9, CfmlLanguage.CF10, CfmlLanguage.CF11, CfmlLanguage.RAILO};
+
+  private final TObjectIntHashMap<String> myStringIds = new TObjectIntHashMap<>();
+  private final List<String> myStrings = new ArrayList<>();
+
+  private CfmlLangDictionaryCompiler() {
+  }
+
+  /**
+   * Writes compiled dictionaries of all language levels to the given directory.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("Usage: CfmlLangDictionaryCompiler <output directory>");
+      System.exit(1);
+    }
+    final File outputDir = new File(args[0]);
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Cannot create " + outputDir);
+    }
+    for (String languageLevel : LANGUAGE_LEVELS) {
+      final File file = new File(outputDir, getCompiledFileName(languageLevel));
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+        compile(languageLevel, 0, out);
+      }
+      System.out.println(languageLevel + " -> " + file + " (" + file.length() / 1024 + " KB)");
+    }
+  }
+
+  @NotNull
+  public static String getCompiledFileName(@NotNull String tagsFileName) {
+    final int dot = tagsFileName.lastIndexOf('.');
+    return (dot == -1 ? tagsFileName : tagsFileName.substring(0, dot)) + ".dict";
+  }
+
+  /**
+   * @param stamp stored in the header, lets a cached dictionary be checked against its sources
+   */
+  public static void compile(@NotNull String tagsFileName, long stamp, @NotNull OutputStream out) throws IOException, SAXException {
+    final CfmlTagsDescriptionsParser parser = new CfmlTagsDescriptionsParser();
+    try (InputStream tags = CfmlLangInfo.class.getResourceAsStream(tagsFileName)) {
+      if (tags == null) {
+        throw new FileNotFoundException(tagsFileName);
+      }
+      final XMLReader xr = XMLReaderFactory.createXMLReader();
+      xr.setContentHandler(parser);
+      xr.parse(new InputSource(tags));
+    }
+    new CfmlLangDictionaryCompiler().write(parser, readScopes(), stamp, new DataOutputStream(out));
+  }
+
+  @Nullable
+  private static String[] readScopes() throws IOException {
+    try (InputStream scopes = CfmlLangInfo.class.getResourceAsStream(SCOPES_FILE_NAME)) {
+      if (scopes == null) {
+        return null;
+      }
+      //noinspection unchecked
+      final List<byte[]> lines = new LineReader(scopes).readLines();
+      final String[] result = new String[lines.size()];
+      for (int i = 0; i < lines.size(); i++) {
+        result[i] = new String(lines.get(i));
+      }
+      return result;
+    }
+  }
+
+  private void write(CfmlTagsDescriptionsParser parser, @Nullable String[] scopes, long stamp, DataOutputStream out)
+    throws IOException {
+    // the body refers to strings by id, so it is written first and the string table is put in front of it
+    final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+    final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+    if (scopes == null) {
+      body.writeInt(-1);
+    }
+    else {
+      body.writeInt(scopes.length);
+      for (String scope : scopes) {
+        body.writeInt(id(scope));
+      }
+    }
+
+    final Map<String, Integer> variables = parser.getPredefinedVariables();
+    body.writeInt(variables.size());
+    for (Map.Entry<String, Integer> entry : variables.entrySet()) {
+      body.writeInt(id(entry.getKey()));
+      body.writeInt(entry.getValue());
+    }
+
+    final List<CfmlTagDescription> tags = new ArrayList<>(parser.getTags().values());
+    tags.sort(Comparator.comparing(CfmlTagDescription::getName));
+    body.writeInt(tags.size());
+    for (CfmlTagDescription tag : tags) {
+      body.writeInt(id(tag.getName()));
+      body.writeInt((tag.isSingle() ? SINGLE_FLAG : 0) | (tag.isEndTagRequired() ? END_TAG_REQUIRED_FLAG : 0));
+      body.writeInt(id(tag.getDescription()));
+      body.writeInt(tag.getAttributes().size());
+      for (CfmlAttributeDescription attribute : tag.getAttributes()) {
+        body.writeInt(id(attribute.getNamePattern()));
+        body.writeInt(attribute.getType());
+        body.writeInt(attribute.isRequired() ? 1 : 0);
+        body.writeInt(id(attribute.getDescription()));
+        final String[] values = attribute.getValues();
+        body.writeInt(values == null ? -1 : values.length);
+        if (values != null) {
+          for (String value : values) {
+            body.writeInt(id(value));
+          }
+        }
+      }
+    }
+
+    // in the document order: the function list keeps it, and the last of same named functions wins in the lookup table
+    final String[] functionNames = parser.getFunctionsList();
+    final Map<String, CfmlFunctionDescription> functions = parser.getFunctions();
+    body.writeInt(functionNames.length);
+    for (String name : functionNames) {
+      final CfmlFunctionDescription function = functions.get(name.toLowerCase());
+      body.writeInt(id(name));
+      body.writeInt(id(function.getReturnType()));
+      body.writeInt(id(function.getDescription()));
+      body.writeInt(function.getParameters().size());
+      for (CfmlFunctionDescription.CfmlParameterDescription parameter : function.getParameters()) {
+        body.writeInt(id(parameter.getName()));
+        body.writeInt(id(parameter.getType()));
+        body.writeInt(parameter.isRequired() ? 1 : 0);
+        body.writeInt(id(parameter.getDescription()));
+      }
+    }
+    body.flush();
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(stamp);
+    out.writeInt(myStrings.size());
+    int totalLength = 0;
+    for (String s : myStrings) {
+      out.writeInt(s.length());
+      totalLength += s.length();
+    }
+    out.writeInt(totalLength);
+    for (String s : myStrings) {
+      out.writeChars(s);
+    }
+    bodyBytes.writeTo(out);
+    out.flush();
+  }
+
+  private int id(@Nullable String s) {
+    if (s == null) {
+      return -1;
+    }
+    if (myStringIds.containsKey(s)) {
+      return myStringIds.get(s);
+    }
+    final int id = myStrings.size();
+    myStrings.add(s);
+    myStringIds.put(s, id);
+    return id;
+  }
+}
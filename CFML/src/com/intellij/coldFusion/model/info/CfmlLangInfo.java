@@ -17,30 +17,57 @@ package com.intellij.coldFusion.model.info;
 
 import com.intellij.coldFusion.UI.config.CfmlProjectConfiguration;
 import com.intellij.coldFusion.model.CfmlLanguage;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.reference.SoftReference;
-import com.intellij.util.text.LineReader;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.URLUtil;
+import com.intellij.util.text.CaseInsensitiveStringHashingStrategy;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.xml.sax.InputSource;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
+import org.jetbrains.annotations.TestOnly;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.Reference;
-import java.util.List;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import static com.intellij.coldFusion.model.info.CfmlLangDictionaryCompiler.*;
 
 /**
+ * Tag and function descriptions of the project language level.
+ * <p/>
+ * Dictionaries are read from the binary form made by {@link CfmlLangDictionaryCompiler}: the one compiled at build time if it is
+ * bundled, otherwise the one compiled on first use and cached in the system directory. The compiled data is memory-mapped when it
+ * is a file and stays loaded, the decoded dictionary is softly reachable and shared by all projects with the same language level.
+ *
  * @author vnikolaenko
  */
 public class CfmlLangInfo {
+  private static final Logger LOG = Logger.getInstance(CfmlLangInfo.class.getName());
+
+  private static final ConcurrentMap<String, ByteBuffer> ourCompiledDictionaries = ContainerUtil.newConcurrentMap();
+  private static final ConcurrentMap<String, CfmlLangDictionary> ourDictionaries = ContainerUtil.createConcurrentSoftValueMap();
+  private static final CfmlLangDictionary EMPTY_DICTIONARY = new CfmlLangDictionary();
+
   private final Project myProject;
-  private Reference<CfmlLangDictionary> myCFDictionary;
-  private String myCFDictionaryLevel;
 
   public static CfmlLangInfo getInstance(Project project) {
     return ServiceManager.getService(project, CfmlLangInfo.class);
@@ -51,26 +78,77 @@ public class CfmlLangInfo {
   }
 
   public static class CfmlLangDictionary {
-    public CfmlLangDictionary(String scopesFileName, String tagsFileName) {
-      if (StringUtil.isEmpty(scopesFileName) || StringUtil.isEmpty(tagsFileName)) {
-        return;
-      }
-      myVariableScopes = readStringsFromFile(scopesFileName);
+    private CfmlLangDictionary() {
+    }
 
-      final CfmlTagsDescriptionsParser cfmlTagsParser = new CfmlTagsDescriptionsParser();
+    CfmlLangDictionary(@NotNull ByteBuffer data) throws IOException {
+      if (!isCompatible(data)) {
+        throw new IOException("Unsupported dictionary format");
+      }
+      final ByteBuffer buffer = data.duplicate();
+      buffer.position(16);
       try {
-        XMLReader xr = XMLReaderFactory.createXMLReader();
-        xr.setContentHandler(cfmlTagsParser);
-        xr.parse(new InputSource(CfmlLangInfo.class.getResourceAsStream(tagsFileName)));
+        final String[] strings = readStrings(buffer);
+
+        final int scopeCount = buffer.getInt();
+        if (scopeCount >= 0) {
+          myVariableScopes = new String[scopeCount];
+          for (int i = 0; i < scopeCount; i++) {
+            myVariableScopes[i] = string(strings, buffer.getInt());
+          }
+        }
+
+        final int variableCount = buffer.getInt();
+        myPredefinedVariables = new THashMap<>(variableCount, CaseInsensitiveStringHashingStrategy.INSTANCE);
+        for (int i = 0; i < variableCount; i++) {
+          myPredefinedVariables.put(string(strings, buffer.getInt()), buffer.getInt());
+        }
+
+        final int tagCount = buffer.getInt();
+        myTagAttributes = new HashMap<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+          final String name = string(strings, buffer.getInt());
+          final int flags = buffer.getInt();
+          final CfmlTagDescription tag =
+            new CfmlTagDescription(name, (flags & SINGLE_FLAG) != 0, (flags & END_TAG_REQUIRED_FLAG) != 0);
+          tag.setDescription(string(strings, buffer.getInt()));
+          final int attributeCount = buffer.getInt();
+          for (int j = 0; j < attributeCount; j++) {
+            final CfmlAttributeDescription attribute =
+              new CfmlAttributeDescription(string(strings, buffer.getInt()), buffer.getInt(), buffer.getInt() != 0,
+                                           string(strings, buffer.getInt()));
+            final int valueCount = buffer.getInt();
+            for (int k = 0; k < valueCount; k++) {
+              attribute.addValue(string(strings, buffer.getInt()));
+            }
+            tag.addAttribute(attribute);
+          }
+          myTagAttributes.put(name, tag);
+        }
+
+        final int functionCount = buffer.getInt();
+        myPredefinedFunctions = new String[functionCount];
+        myFunctionParameters = new THashMap<>(functionCount, CaseInsensitiveStringHashingStrategy.INSTANCE);
+        for (int i = 0; i < functionCount; i++) {
+          final String name = string(strings, buffer.getInt());
+          final CfmlFunctionDescription function = new CfmlFunctionDescription(name, string(strings, buffer.getInt()));
+          function.setDescription(string(strings, buffer.getInt()));
+          final int parameterCount = buffer.getInt();
+          for (int j = 0; j < parameterCount; j++) {
+            final CfmlFunctionDescription.CfmlParameterDescription parameter =
+              new CfmlFunctionDescription.CfmlParameterDescription(string(strings, buffer.getInt()), string(strings, buffer.getInt()),
+                                                                   buffer.getInt() != 0);
+            parameter.setDescription(string(strings, buffer.getInt()));
+            function.addParameter(parameter);
+          }
+          myPredefinedFunctions[i] = name;
+          myFunctionParameters.put(name.toLowerCase(), function);
+        }
+        myPredefinedFunctionsInLowCase = ArrayUtil.toStringArray(myFunctionParameters.keySet());
       }
-      catch (Exception e) {
-        LOG.error(e);
+      catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+        throw new IOException("Corrupted dictionary", e);
       }
-      myTagAttributes = cfmlTagsParser.getTags();
-      myFunctionParameters = cfmlTagsParser.getFunctions();
-      myPredefinedFunctions = cfmlTagsParser.getFunctionsList();
-      myPredefinedFunctionsInLowCase = cfmlTagsParser.getFunctionsListLowerCased();
-      myPredefinedVariables = cfmlTagsParser.getPredefinedVariables();
     }
 
     public String[] myPredefinedFunctions;
@@ -79,27 +157,179 @@ public class CfmlLangInfo {
     public String[] myVariableScopes;
     public Map<String, CfmlTagDescription> myTagAttributes;
     public Map<String, CfmlFunctionDescription> myFunctionParameters;
+
+    static boolean isCompatible(@NotNull ByteBuffer data) {
+      return data.limit() >= 16 && data.getInt(0) == MAGIC && data.getInt(4) == VERSION;
+    }
+
+    static long getSourceStamp(@NotNull ByteBuffer data) {
+      return data.getLong(8);
+    }
+
+    /**
+     * Strings are made once per dictionary, so equal names and descriptions share the same instance.
+     */
+    private static String[] readStrings(ByteBuffer buffer) {
+      final int[] lengths = new int[buffer.getInt()];
+      for (int i = 0; i < lengths.length; i++) {
+        lengths[i] = buffer.getInt();
+      }
+      final char[] chars = new char[buffer.getInt()];
+      buffer.asCharBuffer().get(chars);
+      buffer.position(buffer.position() + chars.length * 2);
+
+      final String[] strings = new String[lengths.length];
+      int offset = 0;
+      for (int i = 0; i < lengths.length; i++) {
+        strings[i] = new String(chars, offset, lengths[i]);
+        offset += lengths[i];
+      }
+      return strings;
+    }
+
+    @Nullable
+    private static String string(String[] strings, int id) {
+      return id == -1 ? null : strings[id];
+    }
   }
 
   private CfmlLangDictionary getProjectDictionary() {
-    String languageLevel = getLanguageLevel();
-    CfmlLangDictionary dictionary;
+    final String languageLevel = getLanguageLevel();
+    if (StringUtil.isEmpty(languageLevel)) {
+      return EMPTY_DICTIONARY;
+    }
+
+    final CfmlLangDictionary dictionary = ourDictionaries.get(languageLevel);
+    if (dictionary != null) {
+      return dictionary;
+    }
+    // no lock: decoding is cheap, a dictionary decoded concurrently by another thread is just dropped
+    return ConcurrencyUtil.cacheOrGet(ourDictionaries, languageLevel, loadDictionary(languageLevel));
+  }
+
+  @NotNull
+  private static CfmlLangDictionary loadDictionary(@NotNull String languageLevel) {
+    ByteBuffer data = ourCompiledDictionaries.get(languageLevel);
+    if (data == null) {
+      data = readCompiledDictionary(languageLevel);
+      if (data == null) {
+        return EMPTY_DICTIONARY;
+      }
+      data = ConcurrencyUtil.cacheOrGet(ourCompiledDictionaries, languageLevel, data);
+    }
+    try {
+      return new CfmlLangDictionary(data);
+    }
+    catch (IOException e) {
+      LOG.error("Cannot read CFML dictionary " + languageLevel, e);
+      return EMPTY_DICTIONARY;
+    }
+  }
+
+  @Nullable
+  private static ByteBuffer readCompiledDictionary(@NotNull String languageLevel) {
+    final String compiledFileName = getCompiledFileName(languageLevel);
+
+    final URL bundled = CfmlLangInfo.class.getResource(compiledFileName);
+    if (bundled != null) {
+      try {
+        final ByteBuffer data = URLUtil.FILE_PROTOCOL.equals(bundled.getProtocol())
+                                ? map(new File(URLUtil.unescapePercentSequences(bundled.getPath())))
+                                : ByteBuffer.wrap(loadBytes(bundled));
+        if (CfmlLangDictionary.isCompatible(data)) {
+          return data;
+        }
+        LOG.warn("Bundled CFML dictionary " + compiledFileName + " has unsupported format");
+      }
+      catch (IOException e) {
+        LOG.warn("Cannot read bundled CFML dictionary " + compiledFileName, e);
+      }
+    }
 
-    if (Comparing.equal(myCFDictionaryLevel, languageLevel)) {
-      dictionary = SoftReference.dereference(myCFDictionary);
-      if (dictionary != null) return dictionary;
+    final long stamp;
+    try {
+      stamp = computeSourceStamp(languageLevel);
+    }
+    catch (IOException e) {
+      LOG.error("Cannot read CFML dictionary " + languageLevel, e);
+      return null;
     }
 
-    synchronized (CfmlLangInfo.class) {
-      dictionary = SoftReference.dereference(myCFDictionary);
-      if (dictionary == null || !Comparing.equal(myCFDictionaryLevel, languageLevel)) {
-        dictionary = new CfmlLangDictionary("scopes.txt", languageLevel);
-        myCFDictionary = new SoftReference<>(dictionary);
-        myCFDictionaryLevel = languageLevel;
+    final File cached = new File(PathManager.getSystemPath(), "cfml/" + compiledFileName);
+    if (cached.isFile()) {
+      try {
+        final ByteBuffer data = map(cached);
+        if (CfmlLangDictionary.isCompatible(data) && CfmlLangDictionary.getSourceStamp(data) == stamp) {
+          return data;
+        }
+      }
+      catch (IOException e) {
+        LOG.info("Cannot read cached CFML dictionary " + cached, e);
       }
     }
 
-    return dictionary;
+    LOG.info("Compiling CFML dictionary " + languageLevel);
+    final BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream(1024 * 1024);
+    try {
+      compile(languageLevel, stamp, out);
+    }
+    catch (Exception e) {
+      LOG.error("Cannot compile CFML dictionary " + languageLevel, e);
+      return null;
+    }
+    // written aside and moved, a cache file that is already mapped is never changed in place
+    File temp = null;
+    try {
+      FileUtil.createParentDirs(cached);
+      temp = FileUtil.createTempFile(cached.getParentFile(), compiledFileName, ".tmp", true);
+      FileUtil.writeToFile(temp, out.getInternalBuffer(), 0, out.size());
+      Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      LOG.info("Cannot cache CFML dictionary " + cached, e);
+      if (temp != null) {
+        FileUtil.delete(temp);
+      }
+    }
+    return ByteBuffer.wrap(out.getInternalBuffer(), 0, out.size()).slice();
+  }
+
+  private static ByteBuffer map(@NotNull File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static byte[] loadBytes(@NotNull URL url) throws IOException {
+    try (InputStream in = URLUtil.openStream(url)) {
+      return FileUtil.loadBytes(in);
+    }
+  }
+
+  /**
+   * Checksum of the XML description and scopes, a cached dictionary compiled from different sources is recompiled.
+   */
+  private static long computeSourceStamp(@NotNull String languageLevel) throws IOException {
+    final CRC32 crc = new CRC32();
+    final byte[] buffer = new byte[64 * 1024];
+    for (String fileName : new String[]{languageLevel, SCOPES_FILE_NAME}) {
+      try (InputStream in = CfmlLangInfo.class.getResourceAsStream(fileName)) {
+        if (in == null) {
+          continue;
+        }
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          crc.update(buffer, 0, read);
+        }
+      }
+    }
+    return (long)VERSION << 32 | crc.getValue();
+  }
+
+  @TestOnly
+  public static void dropCachedDictionaries() {
+    ourDictionaries.clear();
+    ourCompiledDictionaries.clear();
   }
 
   public String getLanguageLevel() {
@@ -135,29 +365,8 @@ public class CfmlLangInfo {
     return getProjectDictionary().myFunctionParameters;
   }
 
-  private static final Logger LOG = Logger.getInstance(CfmlLangInfo.class.getName());
-
-  @Nullable
-  private static String[] readStringsFromFile(String fileName) {
-    String[] result = null;
-    try {
-      InputStream predefined = CfmlLangInfo.class.getResourceAsStream(fileName);
-      if (predefined != null) {
-        LineReader lineReader = new LineReader(predefined);
-
-        //noinspection unchecked
-        List<byte[]> list = lineReader.readLines();
-        result = new String[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-          byte[] bytes = list.get(i);
-          final String s = new String(bytes);
-          result[i] = s;
-        }
-      }
-    }
-    catch (Exception e) {
-      LOG.error(e);
-    }
-    return result;
+  public boolean isPredefinedFunction(@NotNull String functionName) {
+    final Map<String, CfmlFunctionDescription> functions = getProjectDictionary().myFunctionParameters;
+    return functions != null && functions.containsKey(functionName);
   }
 }
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion.model.psi;
+
+import com.intellij.coldFusion.model.CfmlUtil;
+import com.intellij.coldFusion.model.files.CfmlFile;
+import com.intellij.coldFusion.model.psi.impl.CfmlAttributeImpl;
+import com.intellij.coldFusion.model.psi.stubs.CfmlIndex;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Transitive supertypes and inheritors of components.
+ * <p/>
+ * Supertypes of a component are resolved once, together with the set of them for constant-time {@link #isInheritor} checks. They are kept
+ * until the qualified names resolve differently (see {@link CfmlComponentPathIndex#getModificationCount()}) or a file changes in a way
+ * that affects this hierarchy: the <code>extends</code> attribute or the imports of a component on the way change, or a component
+ * appears or disappears in a file named like one of the super names on the way. Only the component header and the import statements
+ * of a file are looked at, so changes of anything else, e.g. of function bodies, cost nothing.
+ * <p/>
+ * Inheritors are found through {@link CfmlIndex#getInheritorsByName} and kept until the inheritance of any file changes.
+ */
+public class CfmlComponentHierarchy {
+  private final Project myProject;
+  // incremented on any change of inheritance, inheritors may come from any file
+  private final SimpleModificationTracker myInheritanceTracker = new SimpleModificationTracker();
+  // inheritance of the files being changed, as it was before the change
+  private final Map<PsiFile, FileState> myInheritanceBeforeChange = ContainerUtil.createConcurrentWeakMap();
+  private final Map<CfmlComponent, Hierarchy> myHierarchies = ContainerUtil.createConcurrentWeakMap();
+  private final Map<CfmlComponent, Inheritors> myInheritors = ContainerUtil.createConcurrentWeakMap();
+
+  private static class Hierarchy {
+    private final long myModificationCount;
+    // nearest first, without the component itself
+    private final List<CfmlComponent> mySupers;
+    private final Set<CfmlComponent> myAncestors;
+    // short names of the super names resolved on the way, in lower case, including a name that didn't resolve
+    private final Set<String> mySuperNames;
+
+    private Hierarchy(long modificationCount, @NotNull List<CfmlComponent> supers, @NotNull Set<String> superNames) {
+      myModificationCount = modificationCount;
+      mySupers = Collections.unmodifiableList(supers);
+      myAncestors = new THashSet<>(supers);
+      mySuperNames = superNames;
+    }
+
+    private boolean isUpToDate(long modificationCount) {
+      return myModificationCount == modificationCount && areValid(mySupers);
+    }
+
+    private boolean isAffectedBy(@NotNull CfmlComponent component, @NotNull CfmlComponent changed) {
+      return component == changed || myAncestors.contains(changed);
+    }
+  }
+
+  private static class Inheritors {
+    private final long myModificationCount;
+    private final List<CfmlComponent> myInheritors;
+
+    private Inheritors(long modificationCount, @NotNull List<CfmlComponent> inheritors) {
+      myModificationCount = modificationCount;
+      myInheritors = Collections.unmodifiableList(inheritors);
+    }
+
+    private boolean isUpToDate(long modificationCount) {
+      return myModificationCount == modificationCount && areValid(myInheritors);
+    }
+  }
+
+  private static class FileState {
+    @Nullable private final CfmlComponent myComponent;
+    // kind and name of the component, empty if the file has none
+    private final String myDefinition;
+    // extends and implements of the component and the imports of the file
+    private final String myInheritance;
+
+    private FileState(@Nullable CfmlComponent component, @NotNull String definition, @NotNull String inheritance) {
+      myComponent = component;
+      myDefinition = definition;
+      myInheritance = inheritance;
+    }
+  }
+
+  public static CfmlComponentHierarchy getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, CfmlComponentHierarchy.class);
+  }
+
+  public CfmlComponentHierarchy(@NotNull Project project) {
+    myProject = project;
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void beforeChildAddition(@NotNull PsiTreeChangeEvent event) {
+        beforeFileChange(event);
+      }
+
+      @Override
+      public void beforeChildRemoval(@NotNull PsiTreeChangeEvent event) {
+        beforeFileChange(event);
+      }
+
+      @Override
+      public void beforeChildReplacement(@NotNull PsiTreeChangeEvent event) {
+        beforeFileChange(event);
+      }
+
+      @Override
+      public void beforeChildMovement(@NotNull PsiTreeChangeEvent event) {
+        beforeFileChange(event);
+      }
+
+      @Override
+      public void beforeChildrenChange(@NotNull PsiTreeChangeEvent event) {
+        beforeFileChange(event);
+      }
+
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile());
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile());
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile());
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile());
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile());
+      }
+    }, project);
+  }
+
+  /**
+   * @return the super component, its super component and so on; a component that is already there ends the list, so cyclic
+   * hierarchies are finite
+   */
+  @NotNull
+  public List<CfmlComponent> getSupers(@NotNull CfmlComponent component) {
+    return getHierarchy(component).mySupers;
+  }
+
+  @Nullable
+  public CfmlComponent getSuper(@NotNull CfmlComponent component) {
+    final List<CfmlComponent> supers = getSupers(component);
+    return supers.isEmpty() ? null : supers.get(0);
+  }
+
+  /**
+   * @return whether <code>base</code> is a super component of <code>component</code>, directly or not
+   */
+  public boolean isInheritor(@NotNull CfmlComponent component, @NotNull CfmlComponent base) {
+    return getHierarchy(component).myAncestors.contains(base);
+  }
+
+  /**
+   * @return the components extending <code>component</code>, directly or not, nearest first
+   */
+  @NotNull
+  public List<CfmlComponent> getInheritors(@NotNull CfmlComponent component) {
+    final long modificationCount = myInheritanceTracker.getModificationCount() + getModificationCount();
+    final Inheritors cached = myInheritors.get(component);
+    if (cached != null && cached.isUpToDate(modificationCount)) {
+      return cached.myInheritors;
+    }
+
+    final Inheritors inheritors = new Inheritors(modificationCount, findInheritors(component));
+    myInheritors.put(component, inheritors);
+    return inheritors.myInheritors;
+  }
+
+  @NotNull
+  private List<CfmlComponent> findInheritors(@NotNull CfmlComponent component) {
+    final CfmlIndex index = CfmlIndex.getInstance(myProject);
+    final List<CfmlComponent> result = new ArrayList<>();
+    final Set<CfmlComponent> visited = new THashSet<>();
+    visited.add(component);
+    // breadth first, candidates are the components extending anything of the same short name
+    for (int i = -1; i < result.size(); i++) {
+      final CfmlComponent current = i == -1 ? component : result.get(i);
+      final String name = current.getName();
+      if (name == null) continue;
+      for (CfmlComponent candidate : index.getInheritorsByName(name)) {
+        if (!visited.contains(candidate) && getSuper(candidate) == current) {
+          visited.add(candidate);
+          result.add(candidate);
+        }
+      }
+    }
+    return result;
+  }
+
+  private long getModificationCount() {
+    return CfmlComponentPathIndex.getInstance(myProject).getModificationCount();
+  }
+
+  @NotNull
+  private Hierarchy getHierarchy(@NotNull CfmlComponent component) {
+    final long modificationCount = getModificationCount();
+    final Hierarchy cached = myHierarchies.get(component);
+    if (cached != null && cached.isUpToDate(modificationCount)) {
+      return cached;
+    }
+
+    final List<CfmlComponent> supers = new ArrayList<>();
+    final Set<String> superNames = new THashSet<>();
+    final Set<CfmlComponent> visited = new THashSet<>();
+    visited.add(component);
+    CfmlComponent current = component;
+    while (true) {
+      final String superName = current.getSuperName();
+      if (!StringUtil.isEmpty(superName)) {
+        superNames.add(getShortName(superName));
+      }
+      final CfmlComponent superComponent = CfmlPsiUtil.getSuperComponent(current);
+      if (superComponent == null || !visited.add(superComponent)) {
+        break;
+      }
+      supers.add(superComponent);
+
+      // the rest of the way is known when the super component has been asked for already
+      final Hierarchy superHierarchy = myHierarchies.get(superComponent);
+      if (superHierarchy != null && superHierarchy.isUpToDate(modificationCount)) {
+        for (CfmlComponent ancestor : superHierarchy.mySupers) {
+          if (!visited.add(ancestor)) break;
+          supers.add(ancestor);
+        }
+        superNames.addAll(superHierarchy.mySuperNames);
+        break;
+      }
+      current = superComponent;
+    }
+
+    final Hierarchy hierarchy = new Hierarchy(modificationCount, supers, superNames);
+    myHierarchies.put(component, hierarchy);
+    return hierarchy;
+  }
+
+  private void beforeFileChange(@NotNull PsiTreeChangeEvent event) {
+    final PsiFile file = event.getFile();
+    if (file instanceof CfmlFile && file.isPhysical() && !myInheritanceBeforeChange.containsKey(file) && affectsInheritance(event)) {
+      myInheritanceBeforeChange.put(file, getFileState((CfmlFile)file));
+    }
+  }
+
+  private void fileChanged(@Nullable PsiFile file) {
+    if (!(file instanceof CfmlFile)) return;
+    // nothing recorded when the change has been compared already, e.g. childrenChanged after childReplaced, or can't affect inheritance
+    final FileState previous = myInheritanceBeforeChange.remove(file);
+    if (previous == null) return;
+
+    final FileState current = getFileState((CfmlFile)file);
+    final boolean sameDefinition = previous.myComponent == current.myComponent && previous.myDefinition.equals(current.myDefinition);
+    if (sameDefinition && previous.myInheritance.equals(current.myInheritance)) return;
+
+    myInheritanceTracker.incModificationCount();
+    // a component that appears or disappears changes what its name resolves to
+    final String name = sameDefinition ? null : getShortName(CfmlUtil.getFileName(file));
+    final List<CfmlComponent> affected = new ArrayList<>();
+    for (Map.Entry<CfmlComponent, Hierarchy> entry : myHierarchies.entrySet()) {
+      final Hierarchy hierarchy = entry.getValue();
+      if (previous.myComponent != null && hierarchy.isAffectedBy(entry.getKey(), previous.myComponent) ||
+          name != null && hierarchy.mySuperNames.contains(name)) {
+        affected.add(entry.getKey());
+      }
+    }
+    for (CfmlComponent component : affected) {
+      myHierarchies.remove(component);
+    }
+  }
+
+  /**
+   * Whether the change may be inside the component header or an import statement, the only parts of a file {@link #getFileState}
+   * depends on. Changes inside functions, properties and other statements of the component body are not.
+   */
+  private static boolean affectsInheritance(@NotNull PsiTreeChangeEvent event) {
+    final PsiElement parent = event.getParent();
+    if (parent == null || parent instanceof PsiFile) return true;
+
+    PsiElement child = null;
+    for (PsiElement element = parent; element != null && !(element instanceof PsiFile); element = element.getParent()) {
+      if (element instanceof CfmlImport) return true;
+      if (element instanceof CfmlComponent) {
+        if (child != null) return child instanceof CfmlAttributeImpl;
+        // a child of the component itself: an attribute, the keyword, or a member that doesn't matter
+        return affectsComponentHeader(event.getChild()) || affectsComponentHeader(event.getOldChild()) ||
+               affectsComponentHeader(event.getNewChild()) ||
+               event.getChild() == null && event.getOldChild() == null && event.getNewChild() == null;
+      }
+      child = element;
+    }
+    // not in a component, e.g. a statement of a .cfm file
+    return false;
+  }
+
+  private static boolean affectsComponentHeader(@Nullable PsiElement child) {
+    if (child == null) return false;
+    return !(child instanceof CfmlFunction || child instanceof CfmlProperty || child instanceof PsiWhiteSpace ||
+             child instanceof PsiComment);
+  }
+
+  @NotNull
+  private static FileState getFileState(@NotNull CfmlFile file) {
+    final CfmlComponent component = file.getComponentDefinition();
+    final StringBuilder definition = new StringBuilder();
+    final StringBuilder inheritance = new StringBuilder();
+    if (component != null) {
+      definition.append(component.isInterface() ? "interface " : "component ").append(StringUtil.notNullize(component.getName()));
+      inheritance.append(StringUtil.notNullize(component.getSuperName()));
+      for (String interfaceName : component.getInterfaceNames()) {
+        inheritance.append(',').append(interfaceName);
+      }
+    }
+    // imports take part in resolving of the names
+    final List<String> imports = new ArrayList<>(file.getImportStrings());
+    Collections.sort(imports);
+    for (String importString : imports) {
+      inheritance.append(';').append(importString);
+    }
+    return new FileState(component, definition.toString(), inheritance.toString());
+  }
+
+  @NotNull
+  private static String getShortName(@NotNull String name) {
+    return StringUtil.getShortName(name).toLowerCase(Locale.US);
+  }
+
+  private static boolean areValid(@NotNull List<CfmlComponent> components) {
+    // a reparsed file has a new component with the same inheritance
+    for (CfmlComponent component : components) {
+      if (!component.isValid()) return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion.model.psi;
+
+import com.intellij.coldFusion.UI.config.CfmlMappingsConfig;
+import com.intellij.coldFusion.UI.config.CfmlProjectConfiguration;
+import com.intellij.coldFusion.model.files.CfmlFileType;
+import com.intellij.coldFusion.model.psi.stubs.CfmlIndex;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Component files of the project by their qualified names through the server mappings, e.g. <code>com.foo.Bar</code> for
+ * <code>/src/foo/Bar.cfc</code> with the <code>/com</code> mapping to <code>/src</code>. A name has a component for every mapping
+ * the component file is under.
+ * <p/>
+ * Built on the first lookup, updated on creation, deletion, renaming and moving of component files and of directories with component
+ * files, and rebuilt after any change of mappings or project roots. Files outside of {@link CfmlIndex#getSearchScope()} are not indexed,
+ * so changes there are ignored.
+ * <p/>
+ * {@link #getModificationCount()} tells when a qualified name may resolve to other components than before.
+ */
+public class CfmlComponentPathIndex implements ModificationTracker {
+  private static final String COMPONENT_EXTENSION = "cfc";
+
+  private final Project myProject;
+  private final Object myLock = new Object();
+
+  // mappings and project roots the index was built for; the roots define the indexed files and the mappings when none are configured
+  private Map<String, String> myConfiguredMappings;
+  private long myRootsModificationCount;
+  private List<Mapping> myMappings;
+  // "directory.path.componentname" -> component files, the directory path is case sensitive, the name is in lower case
+  private Map<String, List<VirtualFile>> myFiles;
+  private long myModificationCount;
+
+  private static class Mapping {
+    private final List<String> myLogicalPath;
+    private final String myDirectory;
+
+    private Mapping(String logicalPath, String directory) {
+      myLogicalPath = ContainerUtil.newArrayList(StringUtil.tokenize(logicalPath, "\\/"));
+      myDirectory = StringUtil.trimEnd(FileUtil.toSystemIndependentName(directory), "/");
+    }
+  }
+
+  public static CfmlComponentPathIndex getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, CfmlComponentPathIndex.class);
+  }
+
+  public CfmlComponentPathIndex(@NotNull Project project) {
+    myProject = project;
+    project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+        synchronized (myLock) {
+          for (VFileEvent event : events) {
+            if (event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent || isRename(event)) {
+              filesRemoved(event.getFile());
+            }
+          }
+        }
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        synchronized (myLock) {
+          for (VFileEvent event : events) {
+            if (event instanceof VFileCreateEvent || event instanceof VFileCopyEvent) {
+              filesAdded(event instanceof VFileCopyEvent ? ((VFileCopyEvent)event).findCreatedFile() : event.getFile());
+            }
+            else if (event instanceof VFileMoveEvent || isRename(event)) {
+              filesAdded(event.getFile());
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * @param directoryName dot separated directory path, e.g. <code>com.foo</code>
+   */
+  @NotNull
+  public Collection<CfmlComponent> findComponents(@NotNull String directoryName, @NotNull String componentName) {
+    if (componentName.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<VirtualFile> files;
+    synchronized (myLock) {
+      ensureUpToDate();
+      final List<VirtualFile> found = myFiles.get(getKey(StringUtil.split(directoryName, "."), componentName));
+      if (found == null) {
+        return Collections.emptyList();
+      }
+      files = new ArrayList<>(found);
+    }
+
+    final CfmlIndex index = CfmlIndex.getInstance(myProject);
+    final List<CfmlComponent> result = new ArrayList<>(files.size());
+    for (VirtualFile file : files) {
+      final GlobalSearchScope fileScope = GlobalSearchScope.fileScope(myProject, file);
+      result.addAll(index.getComponentsByNameInScope(componentName, fileScope));
+      result.addAll(index.getInterfacesByNameInScope(componentName, fileScope));
+    }
+    return result;
+  }
+
+  /**
+   * Changes when component files are added, removed, renamed or moved, and on any change of mappings or project roots.
+   */
+  @Override
+  public long getModificationCount() {
+    synchronized (myLock) {
+      ensureUpToDate();
+      return myModificationCount;
+    }
+  }
+
+  private void ensureUpToDate() {
+    final CfmlProjectConfiguration.State state = CfmlProjectConfiguration.getInstance(myProject).getState();
+    final CfmlMappingsConfig configured = state != null && state.getMapps() != null ? state.getMapps() : new CfmlMappingsConfig();
+    final long rootsModificationCount = ProjectRootManager.getInstance(myProject).getModificationCount();
+    // the indexed files come from the project scope, so roots matter even when mappings are configured
+    if (myFiles != null &&
+        configured.getServerMappings().equals(myConfiguredMappings) &&
+        rootsModificationCount == myRootsModificationCount) {
+      return;
+    }
+
+    myModificationCount++;
+    myConfiguredMappings = new HashMap<>(configured.getServerMappings());
+    myRootsModificationCount = rootsModificationCount;
+
+    final CfmlMappingsConfig mappings = configured.clone();
+    CfmlComponentReference.adjustMappingsIfEmpty(mappings, myProject);
+    myMappings = new ArrayList<>();
+    for (Map.Entry<String, String> entry : mappings.getServerMappings().entrySet()) {
+      myMappings.add(new Mapping(entry.getKey(), entry.getValue()));
+    }
+
+    myFiles = new THashMap<>();
+    for (VirtualFile file : FileTypeIndex.getFiles(CfmlFileType.INSTANCE, CfmlIndex.getInstance(myProject).getSearchScope())) {
+      if (isComponentFile(file)) {
+        for (String key : getKeys(file)) {
+          myFiles.computeIfAbsent(key, k -> new SmartList<>()).add(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the component file or the component files under the directory, its content is not reported separately.
+   */
+  private void filesAdded(@Nullable VirtualFile file) {
+    // not built yet, nothing to update
+    if (myFiles == null || file == null) return;
+
+    boolean changed = false;
+    for (VirtualFile componentFile : collectComponentFiles(file)) {
+      for (String key : getKeys(componentFile)) {
+        final List<VirtualFile> files = myFiles.computeIfAbsent(key, k -> new SmartList<>());
+        if (!files.contains(componentFile)) {
+          files.add(componentFile);
+          changed = true;
+        }
+      }
+    }
+    if (changed) {
+      myModificationCount++;
+    }
+  }
+
+  private void filesRemoved(@NotNull VirtualFile file) {
+    if (myFiles == null) return;
+
+    boolean changed = false;
+    for (VirtualFile componentFile : collectComponentFiles(file)) {
+      for (String key : getKeys(componentFile)) {
+        final List<VirtualFile> files = myFiles.get(key);
+        if (files != null && files.remove(componentFile)) {
+          changed = true;
+          if (files.isEmpty()) {
+            myFiles.remove(key);
+          }
+        }
+      }
+    }
+    if (changed) {
+      myModificationCount++;
+    }
+  }
+
+  /**
+   * @return the file if it's a component file, or the component files under the directory; only files in the search scope
+   */
+  @NotNull
+  private List<VirtualFile> collectComponentFiles(@NotNull VirtualFile file) {
+    final GlobalSearchScope scope = CfmlIndex.getInstance(myProject).getSearchScope();
+    if (!file.isDirectory()) {
+      return isComponentFile(file) && scope.contains(file) ? Collections.singletonList(file) : Collections.emptyList();
+    }
+    // directories above the content are not moved or deleted without a roots change, that rebuilds the index anyway
+    if (!scope.contains(file)) {
+      return Collections.emptyList();
+    }
+
+    final List<VirtualFile> result = new SmartList<>();
+    VfsUtilCore.visitChildrenRecursively(file, new VirtualFileVisitor() {
+      @Override
+      public boolean visitFile(@NotNull VirtualFile child) {
+        if (child.isDirectory()) {
+          // e.g. excluded folders
+          return scope.contains(child);
+        }
+        if (isComponentFile(child) && scope.contains(child)) {
+          result.add(child);
+        }
+        return true;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * The same names as {@link CfmlMappingsConfig#mapVirtualToReal(String)} maps to the directory of the file.
+   */
+  @NotNull
+  private List<String> getKeys(@NotNull VirtualFile file) {
+    final VirtualFile parent = file.getParent();
+    if (parent == null) {
+      return Collections.emptyList();
+    }
+    final String directory = parent.getPath();
+    final List<String> keys = new SmartList<>();
+    for (Mapping mapping : myMappings) {
+      final String relativePath;
+      if (directory.equals(mapping.myDirectory)) {
+        relativePath = "";
+      }
+      else if (directory.startsWith(mapping.myDirectory) && directory.charAt(mapping.myDirectory.length()) == '/') {
+        relativePath = directory.substring(mapping.myDirectory.length() + 1);
+      }
+      else {
+        continue;
+      }
+      // a dot in a directory name can't be told from a package separator
+      if (relativePath.indexOf('.') != -1) {
+        continue;
+      }
+
+      final List<String> path = new ArrayList<>(mapping.myLogicalPath);
+      path.addAll(StringUtil.split(relativePath, "/"));
+      final String key = getKey(path, getComponentName(file));
+      if (!keys.contains(key)) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  private static String getKey(@NotNull List<String> directoryPath, @NotNull String componentName) {
+    final String name = componentName.toLowerCase(Locale.US);
+    return directoryPath.isEmpty() ? name : StringUtil.join(directoryPath, ".") + "." + name;
+  }
+
+  /**
+   * Components are named after their files, see {@link com.intellij.coldFusion.model.CfmlUtil#getFileName}.
+   */
+  private static String getComponentName(@NotNull VirtualFile file) {
+    final String name = file.getName();
+    final int dot = name.indexOf('.');
+    return dot == -1 ? name : name.substring(0, dot);
+  }
+
+  private static boolean isComponentFile(@NotNull VirtualFile file) {
+    return !file.isDirectory() && COMPONENT_EXTENSION.equalsIgnoreCase(file.getExtension());
+  }
+
+  private static boolean isRename(@NotNull VFileEvent event) {
+    return event instanceof VFilePropertyChangeEvent &&
+           VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent)event).getPropertyName());
+  }
+}
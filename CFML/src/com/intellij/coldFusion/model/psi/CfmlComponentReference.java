@@ -30,7 +30,6 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Couple;
 import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -172,53 +171,7 @@ public class CfmlComponentReference extends CfmlCompositeElement implements Cfml
         directoryName = componentQualifiedName.substring(0, i);
       }
 
-      CfmlProjectConfiguration.State state = CfmlProjectConfiguration.getInstance(project).getState();
-      CfmlMappingsConfig mappings = state != null ? state.getMapps().clone() : new CfmlMappingsConfig();
-      adjustMappingsIfEmpty(mappings, originalFile.getProject());
-      // addFakeMappingsForResolution(mappings);
-      List<String> realPossiblePaths = mappings.mapVirtualToReal(directoryName);
-      // Collections.sort(realPossiblePaths);
-
-      final Collection<CfmlComponent> components = CfmlIndex.getInstance(project).getComponentsByName(
-        componentName);
-      components.addAll(CfmlIndex.getInstance(project).getInterfacesByName(
-        componentName));
-
-      for (CfmlComponent component : components) {
-        PsiDirectory parent = component.getContainingFile().getParent();
-        if (parent == null) {
-          continue;
-        }
-        VirtualFile virtualFile = parent.getVirtualFile();
-        for (String realPath : realPossiblePaths) {
-          if (FileUtil.toSystemIndependentName(realPath).equals(FileUtil.toSystemIndependentName(virtualFile.getPresentableUrl()))) {
-            result.add(component);
-            break;
-          }
-        }
-      }
-
-      for (String realPath : realPossiblePaths) {
-        VirtualFile fileByUrl = LocalFileSystem.getInstance().findFileByPath(realPath);
-        if (fileByUrl != null) {
-          PsiFile file = PsiManager.getInstance(project).findFile(fileByUrl);
-          if (file != null) {
-            PsiDirectory directory = file.getParent();
-            if (directory != null) {
-              GlobalSearchScope searchScope = GlobalSearchScopes.directoryScope(directory, false);
-
-              final Collection<CfmlComponent> componentsFromGlobalScope = CfmlIndex.getInstance(project).getComponentsByNameInScope(
-                componentName, searchScope);
-              componentsFromGlobalScope.addAll(CfmlIndex.getInstance(project).getInterfacesByNameInScope(
-                componentName, searchScope));
-
-              for (CfmlComponent component : componentsFromGlobalScope) {
-                result.add(component);
-              }
-            }
-          }
-        }
-      }
+      result.addAll(CfmlComponentPathIndex.getInstance(project).findComponents(directoryName, componentName));
     }
 
     if (result.isEmpty()) {
@@ -433,7 +386,7 @@ public class CfmlComponentReference extends CfmlCompositeElement implements Cfml
     });
   }
 
-  private static void adjustMappingsIfEmpty(CfmlMappingsConfig mappings, Project project) {
+  static void adjustMappingsIfEmpty(CfmlMappingsConfig mappings, Project project) {
     if (mappings.getServerMappings().size() != 0) {
       return;
     }
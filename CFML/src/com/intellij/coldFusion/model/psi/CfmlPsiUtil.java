@@ -34,6 +34,7 @@ import com.intellij.util.containers.HashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -321,28 +322,31 @@ public class CfmlPsiUtil {
   private static <Result extends PsiNamedElement> Result[] componentHierarchyGatherer(CfmlComponent component,
                                                                                       Getter<Result[], CfmlComponent> gatherer,
                                                                                       Result[] EMPTY_ARRAY, boolean isSuperPriority) {
-    CfmlComponent currentComponent = isSuperPriority ? component.getSuper() : component;
     Set<String> names = new HashSet<>();
-    List<Result> result = new LinkedList<>();
-    while (currentComponent != null) {
-      for (Result candidate : gatherer.get(currentComponent)) {
-        if (names.add(candidate.getName())) {
-          result.add(candidate);
-        }
-      }
-      currentComponent = currentComponent.getSuper();
+    List<Result> result = new ArrayList<>();
+    if (!isSuperPriority) {
+      gatherUnique(component, gatherer, names, result);
+    }
+    for (CfmlComponent superComponent : CfmlComponentHierarchy.getInstance(component.getProject()).getSupers(component)) {
+      gatherUnique(superComponent, gatherer, names, result);
     }
     if (isSuperPriority) {
-      currentComponent = component;
-      for (Result candidate : gatherer.get(currentComponent)) {
-        if (names.add(candidate.getName())) {
-          result.add(candidate);
-        }
-      }
+      gatherUnique(component, gatherer, names, result);
     }
     return result.toArray(EMPTY_ARRAY);
   }
 
+  private static <Result extends PsiNamedElement> void gatherUnique(CfmlComponent component,
+                                                                    Getter<Result[], CfmlComponent> gatherer,
+                                                                    Set<String> names,
+                                                                    List<Result> result) {
+    for (Result candidate : gatherer.get(component)) {
+      if (names.add(candidate.getName())) {
+        result.add(candidate);
+      }
+    }
+  }
+
   @NotNull
   public static CfmlFunction[] getFunctionsWithSupers(CfmlComponent component, boolean isSuperPriority) {
     return componentHierarchyGatherer(component, new Getter<CfmlFunction[], CfmlComponent>() {
@@ -133,7 +133,7 @@ public class CfmlComponentImpl extends CfmlCompositeElement implements CfmlCompo
   }
 
   public CfmlComponent getSuper() {
-    return CfmlPsiUtil.getSuperComponent(this);
+    return CfmlComponentHierarchy.getInstance(getProject()).getSuper(this);
   }
 
   @Override
@@ -143,7 +143,7 @@ public CfmlTagComponentImpl(ASTNode astNode) {
 
   @Nullable
   public CfmlComponent getSuper() {
-    return CfmlPsiUtil.getSuperComponent(this);
+    return CfmlComponentHierarchy.getInstance(getProject()).getSuper(this);
   }
 
   @Override
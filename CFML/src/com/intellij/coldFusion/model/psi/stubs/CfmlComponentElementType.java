@@ -80,10 +80,20 @@ public abstract class CfmlComponentElementType extends CfmlStubElementType<CfmlC
       }
     }
     if (stub.getSuperclass() != null) {
-      sink.occurrence(CfmlInheritanceIndex.KEY, stub.getSuperclass().toLowerCase());
+      indexSuperName(stub.getSuperclass(), sink);
     }
     for (String superName : stub.getInterfaces()) {
-      sink.occurrence(CfmlInheritanceIndex.KEY, superName.toLowerCase());
+      indexSuperName(superName, sink);
+    }
+  }
+
+  private static void indexSuperName(@NotNull String superName, @NotNull IndexSink sink) {
+    final String name = superName.toLowerCase();
+    sink.occurrence(CfmlInheritanceIndex.KEY, name);
+    // qualified names are looked up by the short name as well
+    final int dot = name.lastIndexOf('.');
+    if (dot != -1 && dot < name.length() - 1) {
+      sink.occurrence(CfmlInheritanceIndex.KEY, name.substring(dot + 1));
     }
   }
 }
@@ -98,6 +98,18 @@ public abstract class CfmlIndex implements Disposable {
     return workaroundIndexBug(cfmlComponents, CfmlComponent.class, CfmlInterfaceIndex.KEY);
   }
 
+  /**
+   * @param name short name of a super component
+   * @return components extending or implementing a component of that name, qualified or not
+   */
+  @NotNull
+  public Collection<CfmlComponent> getInheritorsByName(@Nullable final String name) {
+    if (name == null) return Collections.emptyList();
+    Collection<CfmlComponent> cfmlComponents = StubIndex.getElements(CfmlInheritanceIndex.KEY, name.toLowerCase(), project,
+                                                                     getSearchScope(), CfmlComponent.class);
+    return workaroundIndexBug(cfmlComponents, CfmlComponent.class, CfmlInheritanceIndex.KEY);
+  }
+
   @NotNull
   public Collection<String> getAllComponentsNames() {
     return StubIndex.getInstance().getAllKeys(CfmlComponentIndex.KEY, project);
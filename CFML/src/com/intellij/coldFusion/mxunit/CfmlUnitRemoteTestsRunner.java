@@ -17,6 +17,8 @@ package com.intellij.coldFusion.mxunit;
 
 import com.intellij.coldFusion.UI.editorActions.CfmlScriptNodeSuppressor;
 import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.application.ApplicationManager;
@@ -29,15 +31,23 @@ import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.util.Consumer;
 import com.intellij.util.ResourceUtil;
 import com.intellij.util.SystemProperties;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CfmlUnitRemoteTestsRunner {
   private static final Logger LOG = Logger.getInstance(CfmlUnitRemoteTestsRunner.class.getName());
@@ -125,8 +135,6 @@ public class CfmlUnitRemoteTestsRunner {
                                    final String methodName,
                                    final ProcessHandler processHandler*/,
                                    final Project project) throws ExecutionException {
-    final Ref<ExecutionException> ref = new Ref<>();
-
     ApplicationManager.getApplication().assertIsDispatchThread();
 
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
@@ -154,73 +162,194 @@ public class CfmlUnitRemoteTestsRunner {
         }
         String agentPath = webPath.substring(0, webPath.lastIndexOf('/')) + "/" + launcherFileName;
         LOG.debug("Retrieving data from coldfusion server by " + agentPath + " URL");
-        BufferedReader reader = null;
-        String agentUrl;
-        if (params.getScope() == CfmlUnitRunnerParameters.Scope.Directory) {
-          agentUrl = agentPath + "?method=executeDirectory&directoryName=" + componentFile.getName();
+        if (params.getScope() == CfmlUnitRunnerParameters.Scope.Directory && params.getParallelism() > 1) {
+          executeTestCases(agentPath, getTestComponentNames(componentFile), params.getParallelism(), processHandler);
         }
         else {
-          agentUrl = agentPath + "?method=executeTestCase&componentName=" + componentFile.getNameWithoutExtension();
-          if (params.getScope() == CfmlUnitRunnerParameters.Scope.Method) {
-            agentUrl += "&methodName=" + params.getMethod();
+          final String agentUrl;
+          if (params.getScope() == CfmlUnitRunnerParameters.Scope.Directory) {
+            agentUrl = agentPath + "?method=executeDirectory&directoryName=" + componentFile.getName();
           }
-        }
-        HttpMethod method = null;
-        try {
-          LOG.debug("Retrieving test results from: " + agentUrl);
-          /*
-          final FileObject httpFile = getManager().resolveFile(agentUrl);
-
-          reader = new BufferedReader(new InputStreamReader(httpFile.getContent().getInputStream()));
-          */
-          HttpClient client = new HttpClient();
-          method = new GetMethod(agentUrl);
-          int statusCode = client.executeMethod(method);
-          if (statusCode != HttpStatus.SC_OK) {
-            LOG.debug("Http request failed: " + method.getStatusLine());
-            processHandler.notifyTextAvailable("Http request failed: " + method.getStatusLine(), ProcessOutputTypes.SYSTEM);
+          else {
+            agentUrl = getTestCaseUrl(agentPath, componentFile.getNameWithoutExtension(),
+                                      params.getScope() == CfmlUnitRunnerParameters.Scope.Method ? params.getMethod() : "");
           }
-          final InputStream responseStream = method.getResponseBodyAsStream();
-          reader = new BufferedReader(new InputStreamReader(responseStream));
-          String line;
-          while (!processHandler.isProcessTerminating() && !processHandler.isProcessTerminated() && (line = reader.readLine()) != null) {
-            if (!StringUtil.isEmptyOrSpaces(line)) {
-              LOG.debug("MXUnit: " + line);
-              processHandler.notifyTextAvailable(line + "\n", ProcessOutputTypes.SYSTEM);
+          streamResults(agentUrl, processHandler, text -> processHandler.notifyTextAvailable(text, ProcessOutputTypes.SYSTEM));
+        }
+        LOG.debug("Cleaning temporary files");
+        deleteFile(project, directory.findChild(launcherFileName));
+        deleteFile(project, directory.findChild(resultsFileName));
+      }
+      catch (ExecutionException e) {
+        processHandler.notifyTextAvailable(e.getMessage() + "\n", ProcessOutputTypes.STDERR);
+      }
+      if (!processHandler.isProcessTerminated() && !processHandler.isProcessTerminating()) {
+        processHandler.destroyProcess();
+      }
+    });
+  }
+
+  @NotNull
+  private static String getTestCaseUrl(@NotNull String agentPath, @NotNull String componentName, @NotNull String methodName) {
+    String agentUrl = agentPath + "?method=executeTestCase&componentName=" + componentName;
+    if (!methodName.isEmpty()) {
+      agentUrl += "&methodName=" + methodName;
+    }
+    return agentUrl;
+  }
+
+  /**
+   * Components of the directory and its subdirectories the agent takes for tests, by names relative to the parent of the directory,
+   * e.g. <code>tests.model.UserTest</code>.
+   */
+  @NotNull
+  public static List<String> getTestComponentNames(@NotNull final VirtualFile directory) {
+    final VirtualFile root = directory.getParent();
+    final List<String> result = new ArrayList<>();
+    VfsUtilCore.visitChildrenRecursively(directory, new VirtualFileVisitor() {
+      @Override
+      public boolean visitFile(@NotNull VirtualFile file) {
+        if (!file.isDirectory() && "cfc".equalsIgnoreCase(file.getExtension()) && root != null) {
+          // the same names mxunit-launcher.cfc accepts
+          final String name = file.getNameWithoutExtension();
+          if (StringUtil.startsWithIgnoreCase(name, "test") || StringUtil.endsWithIgnoreCase(name, "test")) {
+            final String path = VfsUtilCore.getRelativePath(file, root, '.');
+            if (path != null) {
+              result.add(StringUtil.trimEnd(path, "." + file.getExtension()));
             }
           }
         }
-        catch (IOException e) {
-          LOG.warn(e);
-          processHandler
-            .notifyTextAvailable("Failed to retrieve test results from the server at " + agentUrl + "\n", ProcessOutputTypes.SYSTEM);
-        }
-        finally {
-          if (method != null) {
-            method.releaseConnection();
+        return true;
+      }
+    });
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Runs test components with up to <code>parallelism</code> requests to the agent at once. The test tree is built from the order of
+   * the events, so they are passed on one component after another, see {@link SuiteOutputSequencer}.
+   */
+  public static void executeTestCases(@NotNull final String agentPath,
+                                      @NotNull final List<String> componentNames,
+                                      int parallelism,
+                                      @NotNull final ProcessHandler processHandler) {
+    final SuiteOutputSequencer sequencer =
+      new SuiteOutputSequencer(componentNames.size(), text -> processHandler.notifyTextAvailable(text, ProcessOutputTypes.SYSTEM));
+    final AtomicInteger nextSuite = new AtomicInteger();
+    final List<Future<?>> workers = new ArrayList<>();
+    for (int i = 0; i < Math.min(parallelism, componentNames.size()); i++) {
+      workers.add(ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        int suite;
+        while ((suite = nextSuite.getAndIncrement()) < componentNames.size()) {
+          if (!processHandler.isProcessTerminating() && !processHandler.isProcessTerminated()) {
+            final int currentSuite = suite;
+            streamResults(getTestCaseUrl(agentPath, componentNames.get(suite), ""), processHandler,
+                          text -> sequencer.print(currentSuite, text));
           }
-          if (reader != null) {
-            try {
-              reader.close();
-            }
-            catch (IOException e) {
-              // ignore
-            }
+          sequencer.finish(suite);
+        }
+      }));
+    }
+    for (Future<?> worker : workers) {
+      try {
+        worker.get();
+      }
+      catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+        LOG.warn(e);
+      }
+    }
+  }
+
+  /**
+   * Passes the response of the agent on line by line as it arrives. The agent flushes after every service message, so the test tree
+   * is updated while the tests are running and the response is never kept as a whole.
+   */
+  public static void streamResults(@NotNull String agentUrl, @NotNull final ProcessHandler processHandler, @NotNull Consumer<String> output) {
+    final GetMethod method = new GetMethod(agentUrl);
+    // stops waiting for the next line as soon as the run is stopped
+    final ProcessAdapter terminationListener = new ProcessAdapter() {
+      @Override
+      public void processWillTerminate(ProcessEvent event, boolean willBeDestroyed) {
+        method.abort();
+      }
+    };
+    processHandler.addProcessListener(terminationListener);
+    try {
+      LOG.debug("Retrieving test results from: " + agentUrl);
+      HttpClient client = new HttpClient();
+      int statusCode = client.executeMethod(method);
+      if (statusCode != HttpStatus.SC_OK) {
+        LOG.debug("Http request failed: " + method.getStatusLine());
+        output.consume("Http request failed: " + method.getStatusLine() + "\n");
+      }
+      final InputStream responseStream = method.getResponseBodyAsStream();
+      if (responseStream == null) {
+        return;
+      }
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(responseStream, method.getResponseCharSet()))) {
+        String line;
+        while (!processHandler.isProcessTerminating() && !processHandler.isProcessTerminated() && (line = reader.readLine()) != null) {
+          if (!StringUtil.isEmptyOrSpaces(line)) {
+            LOG.debug("MXUnit: " + line);
+            output.consume(line + "\n");
           }
         }
-        LOG.debug("Cleaning temporary files");
-        deleteFile(project, directory.findChild(launcherFileName));
-        deleteFile(project, directory.findChild(resultsFileName));
-        if (!processHandler.isProcessTerminated() && !processHandler.isProcessTerminating()) {
-          processHandler.destroyProcess();
+      }
+    }
+    catch (IOException e) {
+      if (!method.isAborted()) {
+        LOG.warn(e);
+        output.consume("Failed to retrieve test results from the server at " + agentUrl + "\n");
+      }
+    }
+    finally {
+      processHandler.removeProcessListener(terminationListener);
+      method.releaseConnection();
+    }
+  }
+
+  /**
+   * Output of test components run at the same time. It is passed on one component after another in the order of the components, so
+   * the events of a component come together. The output of the first unfinished component goes through as it arrives, the output of
+   * the later ones is held until their turn.
+   */
+  static class SuiteOutputSequencer {
+    private final Consumer<String> myOutput;
+    private final List<String>[] myPending;
+    private final boolean[] myFinished;
+    private int myCurrent;
+
+    @SuppressWarnings("unchecked")
+    SuiteOutputSequencer(int suiteCount, @NotNull Consumer<String> output) {
+      myOutput = output;
+      myPending = new List[suiteCount];
+      myFinished = new boolean[suiteCount];
+    }
+
+    synchronized void print(int suite, @NotNull String text) {
+      if (suite == myCurrent) {
+        myOutput.consume(text);
+      }
+      else {
+        if (myPending[suite] == null) {
+          myPending[suite] = new ArrayList<>();
         }
+        myPending[suite].add(text);
       }
-      catch (ExecutionException e) {
-        ref.set(e);
+    }
+
+    synchronized void finish(int suite) {
+      myFinished[suite] = true;
+      while (myCurrent < myFinished.length && myFinished[myCurrent]) {
+        myCurrent++;
+        if (myCurrent < myPending.length && myPending[myCurrent] != null) {
+          for (String text : myPending[myCurrent]) {
+            myOutput.consume(text);
+          }
+          myPending[myCurrent] = null;
+        }
       }
-    });
-    if (!ref.isNull()) {
-      throw ref.get();
     }
   }
 }
@@ -41,6 +41,9 @@ public class CfmlUnitRunConfigurationForm extends SettingsEditor<CfmlUnitRunConf
   private JLabel myMethodLabel;
   private JTextField myWebPathTextField;
   private JPanel myPanel;
+  private JPanel myParallelismPanel;
+  private JLabel myParallelismLabel;
+  private JSpinner myParallelismSpinner;
   private ChangeListener myScopeChangeListener = new ChangeListener() {
     public void stateChanged(ChangeEvent e) {
       updateOnScopeChange();
@@ -56,6 +59,8 @@ public class CfmlUnitRunConfigurationForm extends SettingsEditor<CfmlUnitRunConf
     myProject = project;
 
     myMethodPanel.setVisible(false);
+    myParallelismPanel.setVisible(false);
+    myParallelismSpinner.setModel(new SpinnerNumberModel(1, 1, 64, 1));
 
     myFileChooser = new ComponentWithBrowseButton.BrowseFolderActionListener<>(null, null, myDirectoryOrFileField, project,
                                                                                FileChooserDescriptorFactory
@@ -78,6 +83,7 @@ public class CfmlUnitRunConfigurationForm extends SettingsEditor<CfmlUnitRunConf
 
   protected void updateOnScopeChange() {
     removeActionListeners();
+    myParallelismPanel.setVisible(myDirectoryRadioButton.isSelected());
     if (myDirectoryRadioButton.isSelected()) {
       myMethodPanel.setVisible(false);
       myDirectoryOrFileField.addActionListener(myDirectoryChooser);
@@ -107,6 +113,7 @@ public class CfmlUnitRunConfigurationForm extends SettingsEditor<CfmlUnitRunConf
     myDirectoryOrFileField.setText(parameters.getPath());
     myWebPathTextField.setText(parameters.getWebPath());
     myMethodField.setText(parameters.getMethod());
+    myParallelismSpinner.setValue(parameters.getParallelism());
   }
 
   @Override
@@ -125,6 +132,7 @@ public class CfmlUnitRunConfigurationForm extends SettingsEditor<CfmlUnitRunConf
     parameters.setWebPath(myWebPathTextField.getText());
     parameters.setMethod(myMethodField.getText());
     parameters.setPath(myDirectoryOrFileField.getText());
+    parameters.setParallelism(((Number)myParallelismSpinner.getValue()).intValue());
   }
 
   @NotNull
@@ -31,6 +31,8 @@ public class CfmlUnitRunnerParameters implements Cloneable {
 
   private static final Scope DEFAULT_SCOPE = Scope.Component;
   private @NotNull Scope myScope = DEFAULT_SCOPE;
+  // test components of a directory run at the same time, 1 runs the whole directory in one request
+  private int myParallelism = 1;
 
   @Attribute("webpath")
   public String getWebPath() {
@@ -71,6 +73,15 @@ public class CfmlUnitRunnerParameters implements Cloneable {
     myScope = scope != null ? scope : DEFAULT_SCOPE;
   }
 
+  @Attribute("parallelism")
+  public int getParallelism() {
+    return myParallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    myParallelism = Math.max(parallelism, 1);
+  }
+
   @Override
   public CfmlUnitRunnerParameters clone() {
     try {
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion;
+
+import com.intellij.coldFusion.model.files.CfmlFile;
+import com.intellij.coldFusion.model.psi.CfmlComponent;
+import com.intellij.coldFusion.model.psi.CfmlComponentHierarchy;
+import com.intellij.coldFusion.model.psi.CfmlFunction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+
+public class CfmlComponentHierarchyTest extends JavaCodeInsightFixtureTestCase {
+  private static final int DEPTH = 50;
+  private static final int FUNCTIONS_PER_COMPONENT = 20;
+
+  public void testDeepHierarchy() {
+    final CfmlComponent[] chain = addChain(DEPTH, 2);
+    final CfmlComponent leaf = chain[DEPTH - 1];
+    final CfmlComponentHierarchy hierarchy = CfmlComponentHierarchy.getInstance(getProject());
+
+    final List<CfmlComponent> supers = hierarchy.getSupers(leaf);
+    assertEquals(DEPTH - 1, supers.size());
+    for (int i = 0; i < supers.size(); i++) {
+      assertEquals(chain[DEPTH - 2 - i], supers.get(i));
+    }
+    assertEquals(chain[DEPTH - 2], leaf.getSuper());
+    assertNull(chain[0].getSuper());
+    assertEmpty(hierarchy.getSupers(chain[0]));
+
+    assertTrue(hierarchy.isInheritor(leaf, chain[0]));
+    assertTrue(hierarchy.isInheritor(leaf, chain[DEPTH / 2]));
+    assertFalse(hierarchy.isInheritor(chain[0], leaf));
+    assertFalse(hierarchy.isInheritor(leaf, leaf));
+
+    assertOrderedEquals(hierarchy.getInheritors(chain[DEPTH - 3]), chain[DEPTH - 2], chain[DEPTH - 1]);
+    assertEmpty(hierarchy.getInheritors(leaf));
+
+    // every component overrides "shared", the nearest one wins
+    final CfmlFunction[] functions = leaf.getFunctionsWithSupers(false);
+    assertEquals(DEPTH * 2 + 1, functions.length);
+    assertEquals(leaf.getContainingFile(), findFunction(functions, "shared").getContainingFile());
+    assertEquals(chain[0].getContainingFile(), findFunction(leaf.getFunctionsWithSupers(true), "shared").getContainingFile());
+  }
+
+  public void testCyclicHierarchy() {
+    final CfmlComponent a = addComponent("cycle/A.cfc", "component extends=\"cycle.B\" {\n  function a() {}\n}");
+    final CfmlComponent b = addComponent("cycle/B.cfc", "component extends=\"cycle.A\" {\n  function b() {}\n}");
+    final CfmlComponentHierarchy hierarchy = CfmlComponentHierarchy.getInstance(getProject());
+
+    assertOrderedEquals(hierarchy.getSupers(a), b);
+    assertOrderedEquals(hierarchy.getSupers(b), a);
+    assertTrue(hierarchy.isInheritor(a, b));
+    assertTrue(hierarchy.isInheritor(b, a));
+    assertEquals(2, a.getFunctionsWithSupers(false).length);
+    assertOrderedEquals(hierarchy.getInheritors(a), b);
+  }
+
+  public void testExtendsChange() {
+    final CfmlComponent first = addComponent("change/First.cfc", "component {\n  function first() {}\n}");
+    final CfmlComponent second = addComponent("change/Second.cfc", "component {\n  function second() {}\n}");
+    final PsiFile childFile = myFixture.addFileToProject("change/Child.cfc", "component extends=\"change.First\" {\n}");
+    final CfmlComponentHierarchy hierarchy = CfmlComponentHierarchy.getInstance(getProject());
+
+    assertOrderedEquals(hierarchy.getSupers(getComponent(childFile)), first);
+    assertOrderedEquals(hierarchy.getInheritors(first), getComponent(childFile));
+
+    replaceText(childFile, "First", "Second");
+
+    final CfmlComponent child = getComponent(childFile);
+    assertOrderedEquals(hierarchy.getSupers(child), second);
+    assertEmpty(hierarchy.getInheritors(first));
+    assertOrderedEquals(hierarchy.getInheritors(second), child);
+    assertNotNull(findFunction(child.getFunctionsWithSupers(false), "second"));
+  }
+
+  public void testSuperDefinedLater() {
+    final PsiFile superFile = myFixture.addFileToProject("later/Super.cfc", "<cfset x = 1>");
+    final CfmlComponent child = addComponent("later/Child.cfc", "component extends=\"later.Super\" {\n}");
+    final CfmlComponentHierarchy hierarchy = CfmlComponentHierarchy.getInstance(getProject());
+
+    assertEmpty(hierarchy.getSupers(child));
+
+    // the file is not among the files of any cached hierarchy, its new component must be found anyway
+    replaceText(superFile, "<cfset x = 1>", "component {\n  function inherited() {}\n}");
+
+    assertOrderedEquals(hierarchy.getSupers(child), getComponent(superFile));
+    assertNotNull(findFunction(child.getFunctionsWithSupers(false), "inherited"));
+  }
+
+  public void testOnlyAffectedHierarchiesRecomputed() {
+    final CfmlComponent[] chain = addChain(3, 1);
+    addComponent("other/Base.cfc", "component {\n}");
+    addComponent("other/Other.cfc", "component {\n}");
+    final PsiFile unrelatedFile = myFixture.addFileToProject("other/Unrelated.cfc", "component extends=\"other.Base\" {\n}");
+    final CfmlComponentHierarchy hierarchy = CfmlComponentHierarchy.getInstance(getProject());
+
+    final PsiFile middleFile = chain[1].getContainingFile();
+    final PsiFile leafFile = chain[2].getContainingFile();
+    final List<CfmlComponent> leafSupers = hierarchy.getSupers(chain[2]);
+    final List<CfmlComponent> unrelatedSupers = hierarchy.getSupers(getComponent(unrelatedFile));
+
+    // function bodies don't take part in inheritance
+    replaceText(middleFile, "function shared() {}", "function shared() { var x = 1; }");
+    assertSame(leafSupers, hierarchy.getSupers(getComponent(leafFile)));
+    assertSame(unrelatedSupers, hierarchy.getSupers(getComponent(unrelatedFile)));
+
+    // the chain doesn't go through the changed component
+    replaceText(unrelatedFile, "other.Base", "other.Other");
+    assertSame(leafSupers, hierarchy.getSupers(getComponent(leafFile)));
+    assertEquals("Other", getComponent(unrelatedFile).getSuper().getName());
+
+    replaceText(middleFile, "extends=\"chain.Component0\"", "");
+    final CfmlComponent leaf = getComponent(leafFile);
+    assertOrderedEquals(hierarchy.getSupers(leaf), getComponent(middleFile));
+    assertFalse(hierarchy.isInheritor(leaf, chain[0]));
+  }
+
+  public void testCompletionPerformance() {
+    addChain(DEPTH, FUNCTIONS_PER_COMPONENT);
+    myFixture.configureByText("Leaf.cfc", "component extends=\"chain.Component" + (DEPTH - 1) + "\" {\n" +
+                                          "  function f() {\n" +
+                                          "    this.func<caret>\n" +
+                                          "  }\n" +
+                                          "}");
+
+    PlatformTestUtil.startPerformanceTest("Completion of members inherited through " + DEPTH + " components", 1500, () -> {
+      for (int i = 0; i < 10; i++) {
+        myFixture.completeBasic();
+        final List<String> variants = myFixture.getLookupElementStrings();
+        assertNotNull(variants);
+        assertContainsElements(variants, "func0_0", "func" + (DEPTH - 1) + "_" + (FUNCTIONS_PER_COMPONENT - 1));
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  /**
+   * <code>chain.Component0</code> to <code>chain.Component(depth-1)</code>, every one extending the previous one.
+   */
+  private CfmlComponent[] addChain(int depth, int functionsPerComponent) {
+    final CfmlComponent[] chain = new CfmlComponent[depth];
+    for (int i = 0; i < depth; i++) {
+      final StringBuilder text = new StringBuilder("component");
+      if (i > 0) {
+        text.append(" extends=\"chain.Component").append(i - 1).append("\"");
+      }
+      text.append(" {\n  function shared() {}\n");
+      for (int j = 0; j < functionsPerComponent; j++) {
+        text.append("  function func").append(i).append('_').append(j).append("() {}\n");
+      }
+      text.append("}");
+      chain[i] = addComponent("chain/Component" + i + ".cfc", text.toString());
+    }
+    return chain;
+  }
+
+  private void replaceText(PsiFile file, String oldText, String newText) {
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      final int start = document.getText().indexOf(oldText);
+      document.replaceString(start, start + oldText.length(), newText);
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+  }
+
+  private CfmlComponent addComponent(String path, String text) {
+    return getComponent(myFixture.addFileToProject(path, text));
+  }
+
+  private static CfmlComponent getComponent(PsiFile file) {
+    final CfmlComponent component = ((CfmlFile)file).getComponentDefinition();
+    assertNotNull(file.getName(), component);
+    return component;
+  }
+
+  private static CfmlFunction findFunction(CfmlFunction[] functions, String name) {
+    for (CfmlFunction function : functions) {
+      if (name.equals(function.getName())) {
+        return function;
+      }
+    }
+    fail(name + " not found");
+    return null;
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion;
+
+import com.intellij.coldFusion.UI.config.CfmlMappingsConfig;
+import com.intellij.coldFusion.UI.config.CfmlProjectConfiguration;
+import com.intellij.coldFusion.model.files.CfmlFile;
+import com.intellij.coldFusion.model.psi.CfmlComponent;
+import com.intellij.coldFusion.model.psi.CfmlComponentPathIndex;
+import com.intellij.coldFusion.model.psi.CfmlComponentReference;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.util.ThrowableRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CfmlComponentPathIndexTest extends JavaCodeInsightFixtureTestCase {
+  private static final int MAPPINGS = 25;
+  private static final int PACKAGES_PER_MAPPING = 4;
+  private static final int COMPONENTS_PER_PACKAGE = 50;
+
+  private CfmlFile myFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFile = (CfmlFile)myFixture.addFileToProject("index.cfm", "");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      CfmlProjectConfiguration.getInstance(getProject()).loadState(new CfmlProjectConfiguration.State());
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testIncrementalUpdates() throws Exception {
+    final PsiFile bar = myFixture.addFileToProject("lib/foo/Bar.cfc", "<cfcomponent></cfcomponent>");
+    setMappings("/com", "lib");
+
+    assertResolvesTo("com.foo.Bar", bar);
+    assertResolvesTo("com.foo.bar", bar);
+    assertResolvesTo("com.foo.Baz", null);
+    assertResolvesTo("com.Bar", null);
+
+    final PsiFile baz = myFixture.addFileToProject("lib/foo/Baz.cfc", "component {}");
+    assertResolvesTo("com.foo.Baz", baz);
+
+    final VirtualFile bazFile = baz.getVirtualFile();
+    runWriteAction(() -> bazFile.rename(this, "Qux.cfc"));
+    assertResolvesTo("com.foo.Baz", null);
+    assertResolvesTo("com.foo.Qux", getPsiManager().findFile(bazFile));
+
+    runWriteAction(() -> bazFile.move(this, bazFile.getParent().getParent()));
+    assertResolvesTo("com.foo.Qux", null);
+    assertResolvesTo("com.Qux", getPsiManager().findFile(bazFile));
+
+    runWriteAction(() -> bazFile.delete(this));
+    assertResolvesTo("com.Qux", null);
+
+    setMappings("/org/acme", "lib");
+    assertResolvesTo("com.foo.Bar", null);
+    assertResolvesTo("org.acme.foo.Bar", bar);
+
+    // without mappings components are resolved from the project root
+    CfmlProjectConfiguration.getInstance(getProject()).loadState(new CfmlProjectConfiguration.State());
+    assertResolvesTo("lib.foo.Bar", bar);
+  }
+
+  public void testDirectoryChanges() throws Exception {
+    final PsiFile bar = myFixture.addFileToProject("lib/foo/Bar.cfc", "<cfcomponent></cfcomponent>");
+    setMappings("/com", "lib");
+    assertResolvesTo("com.foo.Bar", bar);
+
+    final CfmlComponentPathIndex index = CfmlComponentPathIndex.getInstance(getProject());
+    final long modificationCount = index.getModificationCount();
+    final VirtualFile lib = bar.getVirtualFile().getParent().getParent();
+    runWriteAction(() -> lib.createChildDirectory(this, "empty").createChildDirectory(this, "nested"));
+    runWriteAction(() -> lib.findChild("empty").rename(this, "stillEmpty"));
+    runWriteAction(() -> lib.findChild("stillEmpty").delete(this));
+    assertEquals(modificationCount, index.getModificationCount());
+
+    final VirtualFile outside = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(FileUtil.createTempDirectory("cfml", null, true));
+    assertNotNull(outside);
+    runWriteAction(() -> outside.createChildData(this, "Outside.cfc"));
+    assertEquals(modificationCount, index.getModificationCount());
+
+    final VirtualFile foo = bar.getVirtualFile().getParent();
+    runWriteAction(() -> foo.rename(this, "baz"));
+    assertResolvesTo("com.foo.Bar", null);
+    assertResolvesTo("com.baz.Bar", getPsiManager().findFile(foo.findChild("Bar.cfc")));
+    assertTrue(modificationCount != index.getModificationCount());
+
+    runWriteAction(() -> foo.delete(this));
+    assertResolvesTo("com.baz.Bar", null);
+  }
+
+  public void testResolvePerformance() throws Exception {
+    final String root = myFixture.getTempDirPath();
+    final Map<String, String> mappings = new HashMap<>();
+    final String[] names = new String[MAPPINGS * PACKAGES_PER_MAPPING * COMPONENTS_PER_PACKAGE];
+    int count = 0;
+    for (int m = 0; m < MAPPINGS; m++) {
+      final String mappingDirectory = root + "/app/mapping" + m;
+      mappings.put("/m" + m, mappingDirectory);
+      for (int p = 0; p < PACKAGES_PER_MAPPING; p++) {
+        for (int c = 0; c < COMPONENTS_PER_PACKAGE; c++) {
+          final String name = "Component" + c;
+          FileUtil.writeToFile(new File(mappingDirectory + "/package" + p + "/" + name + ".cfc"),
+                               "component {\n  function run" + c + "() {}\n}");
+          names[count++] = "m" + m + ".package" + p + "." + name;
+        }
+      }
+    }
+    final VirtualFile app = LocalFileSystem.getInstance().refreshAndFindFileByPath(root + "/app");
+    assertNotNull(app);
+    VfsUtil.markDirtyAndRefresh(false, true, true, app);
+    CfmlProjectConfiguration.getInstance(getProject()).loadState(new CfmlProjectConfiguration.State(new CfmlMappingsConfig(mappings)));
+
+    // builds the index
+    assertEquals(1, CfmlComponentReference.resolveFromQualifiedName(names[0], myFile).size());
+
+    PlatformTestUtil.startPerformanceTest("Resolving " + names.length + " components through " + MAPPINGS + " mappings", 2000, () -> {
+      for (String name : names) {
+        assertEquals(name, 1, CfmlComponentReference.resolveFromQualifiedName(name, myFile).size());
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static void runWriteAction(ThrowableRunnable<IOException> action) throws IOException {
+    ApplicationManager.getApplication().runWriteAction((ThrowableComputable<Object, IOException>)() -> {
+      action.run();
+      return null;
+    });
+  }
+
+  private void setMappings(String logicalPath, String relativeDirectory) {
+    final Map<String, String> mappings = new HashMap<>();
+    mappings.put(logicalPath, myFixture.getTempDirPath() + "/" + relativeDirectory);
+    CfmlProjectConfiguration.getInstance(getProject()).loadState(new CfmlProjectConfiguration.State(new CfmlMappingsConfig(mappings)));
+  }
+
+  private void assertResolvesTo(String qualifiedName, PsiFile expected) {
+    final Collection<CfmlComponent> components = CfmlComponentReference.resolveFromQualifiedName(qualifiedName, myFile);
+    if (expected == null) {
+      assertEmpty(qualifiedName, components);
+    }
+    else {
+      assertEquals(qualifiedName, 1, components.size());
+      assertEquals(expected, components.iterator().next().getContainingFile());
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion;
+
+import com.intellij.coldFusion.model.CfmlLanguage;
+import com.intellij.coldFusion.model.info.*;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.util.*;
+
+public class CfmlLangDictionaryTest extends CfmlCodeInsightFixtureTestCase {
+  private static final String[] LANGUAGE_LEVELS = {CfmlLanguage.CF8, CfmlLanguage.CF9, CfmlLanguage.CF10, CfmlLanguage.CF11, CfmlLanguage.RAILO};
+
+  public void testDictionariesMatchDescriptions() throws Exception {
+    for (String languageLevel : LANGUAGE_LEVELS) {
+      final CfmlTagsDescriptionsParser expected = parseDescriptions(languageLevel);
+      Util.runTestWithLanguageLevel(() -> {
+        CfmlLangInfo.dropCachedDictionaries();
+        final CfmlLangInfo info = CfmlLangInfo.getInstance(getProject());
+
+        assertOrderedEquals(info.getPredefinedFunctions(), expected.getFunctionsList());
+        assertSameElements(info.getPredefinedFunctionsInLowCase(), expected.getFunctionsListLowerCased());
+        assertEquals(expected.getPredefinedVariables(), new HashMap<>(info.getPredefinedVariables()));
+        assertOrderedEquals(info.getVariableScopes(), "application", "arguments", "attributes", "caller", "cgi", "client", "cookie",
+                            "flash", "form", "local", "request", "server", "session", "this", "thistag", "thread", "url", "variables");
+
+        assertEquals(expected.getTags().keySet(), info.getTagAttributes().keySet());
+        for (CfmlTagDescription tag : expected.getTags().values()) {
+          assertEquals(describe(tag), describe(info.getTagAttributes().get(tag.getName())));
+        }
+
+        assertEquals(expected.getFunctions().keySet(), new HashSet<>(info.getFunctionParameters().keySet()));
+        for (CfmlFunctionDescription function : expected.getFunctions().values()) {
+          final CfmlFunctionDescription actual = info.getFunctionParameters().get(function.getName());
+          assertEquals(function.getPresentableText(), actual.getPresentableText());
+          assertEquals(function.getDescription(), actual.getDescription());
+          assertTrue(info.isPredefinedFunction(function.getName().toUpperCase()));
+        }
+        return null;
+      }, languageLevel, getProject());
+    }
+  }
+
+  public void testLoadingPerformance() throws Exception {
+    Util.runTestWithLanguageLevel(() -> {
+      final CfmlLangInfo info = CfmlLangInfo.getInstance(getProject());
+      // compiles and caches the dictionary unless it is bundled
+      info.getTagAttributes();
+
+      PlatformTestUtil.startPerformanceTest("Loading compiled CFML dictionary", 300, () -> {
+        CfmlLangInfo.dropCachedDictionaries();
+        assertNotNull(info.getTagAttributes().get("cfquery"));
+        assertTrue(info.isPredefinedFunction("arrayLen"));
+      }).cpuBound().assertTiming();
+      return null;
+    }, CfmlLanguage.CF11, getProject());
+  }
+
+  public void testFirstCompletionPerformance() throws Exception {
+    CfmlLangInfo.getInstance(getProject()).getTagAttributes();
+
+    PlatformTestUtil.startPerformanceTest("First completion of CFML tags", 1000, () -> {
+      myFixture.completeBasic();
+      assertContainsElements(myFixture.getLookupElementStrings(), "cfquery", "cfqueryparam");
+    }).setup(() -> {
+      CfmlLangInfo.dropCachedDictionaries();
+      myFixture.configureByText("a.cfml", "<cfque<caret>");
+    }).cpuBound().assertTiming();
+  }
+
+  private static CfmlTagsDescriptionsParser parseDescriptions(String languageLevel) throws Exception {
+    final CfmlTagsDescriptionsParser parser = new CfmlTagsDescriptionsParser();
+    final XMLReader xr = XMLReaderFactory.createXMLReader();
+    xr.setContentHandler(parser);
+    xr.parse(new InputSource(CfmlLangInfo.class.getResourceAsStream(languageLevel)));
+    return parser;
+  }
+
+  private static String describe(CfmlTagDescription tag) {
+    final StringBuilder result = new StringBuilder();
+    result.append(tag.getName()).append(' ').append(tag.isSingle()).append(' ').append(tag.isEndTagRequired()).append('\n');
+    result.append(tag.getDescription()).append('\n');
+    for (CfmlAttributeDescription attribute : tag.getAttributes()) {
+      result.append(attribute).append(' ').append(attribute.getName()).append(' ').append(Arrays.toString(attribute.getValues()));
+      result.append('\n');
+    }
+    return result.toString();
+  }
+}
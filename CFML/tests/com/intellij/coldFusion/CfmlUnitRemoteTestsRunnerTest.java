@@ -0,0 +1,251 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.coldFusion;
+
+import com.intellij.coldFusion.mxunit.CfmlUnitRemoteTestsRunner;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tests against a local HTTP server answering the way mxunit-launcher.cfc does.
+ */
+public class CfmlUnitRemoteTestsRunnerTest extends LightPlatformTestCase {
+  private static final int TESTS_PER_COMPONENT = 5;
+
+  private HttpServer myServer;
+  private final AtomicInteger myRunningRequests = new AtomicInteger();
+  private final AtomicInteger myMaxRunningRequests = new AtomicInteger();
+  // released by the test to let the server go on after the first test of a component
+  private volatile CountDownLatch myResumeLatch;
+  // counted down by every request, requests wait for it before answering
+  private volatile CountDownLatch myOpenRequestsLatch;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    myServer.setExecutor(Executors.newCachedThreadPool());
+    myServer.createContext("/", this::handle);
+    myServer.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myServer.stop(0);
+      ((ExecutorService)myServer.getExecutor()).shutdownNow();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testEventsArriveBeforeTheResponseEnds() throws Exception {
+    myResumeLatch = new CountDownLatch(1);
+    final TestProcessHandler processHandler = new TestProcessHandler();
+    final Future<?> run = ApplicationManager.getApplication().executeOnPooledThread(
+      () -> CfmlUnitRemoteTestsRunner.streamResults(getAgentPath() + "?method=executeTestCase&componentName=SlowTest", processHandler,
+                                                    text -> processHandler.notifyTextAvailable(text, ProcessOutputTypes.SYSTEM)));
+
+    // the server holds the rest of the response until the first test is seen
+    processHandler.waitForText("##teamcity[testFinished name='test0']", 10000);
+    assertFalse(run.isDone());
+    myResumeLatch.countDown();
+    run.get(10, TimeUnit.SECONDS);
+    assertEquals(getExpectedOutput("SlowTest"), processHandler.getText());
+  }
+
+  public void testConcurrentComponents() throws Exception {
+    final List<String> components = new ArrayList<>();
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 12; i++) {
+      components.add("tests.Component" + i + "Test");
+      expected.append(getExpectedOutput("tests.Component" + i + "Test"));
+    }
+    final TestProcessHandler processHandler = new TestProcessHandler();
+    // the first requests are answered only when all 4 are open at the same time
+    myOpenRequestsLatch = new CountDownLatch(4);
+
+    CfmlUnitRemoteTestsRunner.executeTestCases(getAgentPath(), components, 4, processHandler);
+
+    // events of every component come together and in the order of the components whichever request completes first
+    assertEquals(expected.toString(), processHandler.getText());
+    assertEquals(4, myMaxRunningRequests.get());
+  }
+
+  public void testFailedRequest() throws Exception {
+    final TestProcessHandler processHandler = new TestProcessHandler();
+
+    CfmlUnitRemoteTestsRunner.executeTestCases(getAgentPath(), Arrays.asList("tests.FirstTest", "tests.MissingTest", "tests.LastTest"),
+                                               2, processHandler);
+
+    final String text = processHandler.getText();
+    assertTrue(text, text.startsWith(getExpectedOutput("tests.FirstTest") + "Http request failed: HTTP/1.1 500"));
+    assertTrue(text, text.endsWith(getExpectedOutput("tests.LastTest")));
+  }
+
+  private String getAgentPath() {
+    return "http://127.0.0.1:" + myServer.getAddress().getPort() + "/tests/mxunit-launcher.cfc";
+  }
+
+  private static String getExpectedOutput(String componentName) {
+    final StringBuilder result = new StringBuilder();
+    result.append("##teamcity[testSuiteStarted name='").append(componentName).append("']\n");
+    for (int i = 0; i < TESTS_PER_COMPONENT; i++) {
+      result.append("##teamcity[testStarted name='test").append(i).append("']\n");
+      result.append("##teamcity[testFinished name='test").append(i).append("']\n");
+    }
+    result.append("##teamcity[testSuiteFinished name='").append(componentName).append("']\n");
+    return result.toString();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    final int running = myRunningRequests.incrementAndGet();
+    myMaxRunningRequests.accumulateAndGet(running, Math::max);
+    try {
+      final String query = exchange.getRequestURI().getQuery();
+      final String componentName = query.substring(query.indexOf("componentName=") + "componentName=".length());
+      if (componentName.contains("Missing")) {
+        exchange.sendResponseHeaders(500, -1);
+        return;
+      }
+      awaitOpenRequests();
+
+      exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+      // chunked, the way ColdFusion answers with <cfflush>
+      exchange.sendResponseHeaders(200, 0);
+      final OutputStream body = exchange.getResponseBody();
+      final Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+      writer.write("<html>\n");
+      writer.write("##teamcity[testSuiteStarted name='" + componentName + "']\n");
+      for (int i = 0; i < TESTS_PER_COMPONENT; i++) {
+        writer.write("##teamcity[testStarted name='test" + i + "']\n");
+        writer.write("##teamcity[testFinished name='test" + i + "']\n");
+        writer.flush();
+        pause(i);
+      }
+      writer.write("##teamcity[testSuiteFinished name='" + componentName + "']\n");
+      writer.write("</html>");
+      writer.close();
+    }
+    finally {
+      myRunningRequests.decrementAndGet();
+      exchange.close();
+    }
+  }
+
+  private void awaitOpenRequests() throws IOException {
+    final CountDownLatch openRequestsLatch = myOpenRequestsLatch;
+    if (openRequestsLatch == null) return;
+    openRequestsLatch.countDown();
+    try {
+      if (!openRequestsLatch.await(10, TimeUnit.SECONDS)) {
+        throw new IOException("Requests are not concurrent");
+      }
+    }
+    catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void pause(int test) throws IOException {
+    try {
+      final CountDownLatch resumeLatch = myResumeLatch;
+      if (resumeLatch != null && test == 0) {
+        if (!resumeLatch.await(10, TimeUnit.SECONDS)) {
+          throw new IOException("Not resumed");
+        }
+      }
+      else {
+        // later requests finish first now and then
+        Thread.sleep(5 + new Random().nextInt(20));
+      }
+    }
+    catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static class TestProcessHandler extends ProcessHandler {
+    private final StringBuffer myText = new StringBuffer();
+
+    private TestProcessHandler() {
+      addProcessListener(new ProcessAdapter() {
+        @Override
+        public void onTextAvailable(ProcessEvent event, Key outputType) {
+          synchronized (myText) {
+            myText.append(event.getText());
+            myText.notifyAll();
+          }
+        }
+      });
+      startNotify();
+    }
+
+    private String getText() {
+      // the launcher wraps the output in <html>
+      return myText.toString().replace("<html>\n", "").replace("</html>\n", "");
+    }
+
+    private void waitForText(String text, long timeout) throws InterruptedException {
+      final long end = System.currentTimeMillis() + timeout;
+      synchronized (myText) {
+        while (myText.indexOf(text) == -1) {
+          final long remaining = end - System.currentTimeMillis();
+          assertTrue("No " + text + " in " + myText, remaining > 0);
+          myText.wait(remaining);
+        }
+      }
+    }
+
+    @Override
+    protected void destroyProcessImpl() {
+      notifyProcessTerminated(0);
+    }
+
+    @Override
+    protected void detachProcessImpl() {
+      notifyProcessDetached();
+    }
+
+    @Override
+    public boolean detachIsDefault() {
+      return false;
+    }
+
+    @Override
+    public OutputStream getProcessInput() {
+      return null;
+    }
+  }
+}
@@ -113,6 +113,8 @@ public class DartAnalysisServerService {
   private final DartServerRootsHandler myRootsHandler = new DartServerRootsHandler();
   private final FileOffsetsManager myOffsetsManager = new FileOffsetsManager();
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = new THashMap<>();
+  // document changes made since the overlay was sent, guarded by myLock
+  private final Map<String, DartOverlayEdits> myFilePathToOverlayEdits = new THashMap<>();
   private final List<String> myVisibleFiles = new ArrayList<>();
   private final Set<Document> myChangedDocuments = new THashSet<>();
   private final Alarm myUpdateFilesAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, ApplicationManager.getApplication());
@@ -200,6 +202,22 @@ public class DartAnalysisServerService {
       }
     }
 
+    @Override
+    public void requestError(RequestError requestError) {
+      if (RequestErrorCode.INVALID_OVERLAY_CHANGE.equals(requestError.getCode())) {
+        // the server doesn't know which overlay failed, so resend full content of all overlaid files
+        LOG.info(requestError.getMessage());
+        synchronized (myLock) {
+          for (String path : new ArrayList<>(myFilePathWithOverlaidContentToTimestamp.keySet())) {
+            myFilePathWithOverlaidContentToTimestamp.put(path, -1L);
+          }
+          myFilePathToOverlayEdits.clear();
+        }
+        myUpdateFilesAlarm.cancelAllRequests();
+        myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, 0);
+      }
+    }
+
     @Override
     public void serverConnected(@Nullable String version) {
       myServerVersion = version != null ? version : "";
@@ -268,6 +286,10 @@ public class DartAnalysisServerService {
 
       final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
       if (isLocalAnalyzableFile(file)) {
+        synchronized (myLock) {
+          recordOverlayEdit(file.getPath(), e);
+        }
+
         for (Project project : myRootsHandler.getTrackedProjects()) {
           for (VirtualFile fileInEditor : FileEditorManager.getInstance(project).getSelectedFiles()) {
             if (fileInEditor.equals(file)) {
@@ -285,6 +307,24 @@ public class DartAnalysisServerService {
     }
   };
 
+  /**
+   * Remembers the change so that only the delta is sent to the server on the next {@link #updateFilesContent()}.
+   */
+  private void recordOverlayEdit(@NotNull final String filePath, @NotNull final DocumentEvent e) {
+    // edits are useful only if the server already has an overlay with the current document text
+    final Long overlayStamp = myFilePathWithOverlaidContentToTimestamp.get(filePath);
+    if (overlayStamp == null) return;
+
+    DartOverlayEdits edits = myFilePathToOverlayEdits.get(filePath);
+    if (edits == null || edits.getBaseStamp() != overlayStamp) {
+      if (e.getDocument().getModificationStamp() != overlayStamp) return;
+      edits = new DartOverlayEdits(overlayStamp);
+      myFilePathToOverlayEdits.put(filePath, edits);
+    }
+
+    edits.addEdit(e.getOffset(), e.getOldLength(), e.getNewFragment(), e.getDocument().getTextLength());
+  }
+
   /**
    * Must use it each time right after reading any offset or length from any class from org.dartlang.analysis.server.protocol package
    */
@@ -306,19 +346,25 @@ public class DartAnalysisServerService {
            : myOffsetsManager.getOriginalOffset(file, convertedOffset);
   }
 
-  public int[] getConvertedOffsets(@NotNull final VirtualFile file, final int[] _offsets) {
-    final int[] offsets = new int[_offsets.length];
-    for (int i = 0; i < _offsets.length; i++) {
-      offsets[i] = getConvertedOffset(file, _offsets[i]);
-    }
-    return offsets;
+  /**
+   * Batch version of {@link #getConvertedOffset(VirtualFile, int)}: converts all offsets of a notification at once.
+   * Works faster if offsets are sorted.
+   */
+  public int[] getConvertedOffsets(@Nullable final VirtualFile file, final int[] _offsets) {
+    if (file == null || myFilePathWithOverlaidContentToTimestamp.containsKey(file.getPath())) return _offsets.clone();
+    return myOffsetsManager.getConvertedOffsets(file, _offsets);
   }
 
   public int[] getConvertedLengths(@NotNull final VirtualFile file, final int[] _offsets, final int[] _lengths) {
-    final int[] offsets = getConvertedOffsets(file, _offsets);
+    final int[] bounds = new int[_offsets.length * 2];
+    for (int i = 0; i < _offsets.length; i++) {
+      bounds[i * 2] = _offsets[i];
+      bounds[i * 2 + 1] = _offsets[i] + _lengths[i];
+    }
+    final int[] convertedBounds = getConvertedOffsets(file, bounds);
     final int[] lengths = new int[_lengths.length];
     for (int i = 0; i < _lengths.length; i++) {
-      lengths[i] = getConvertedOffset(file, _offsets[i] + _lengths[i]) - offsets[i];
+      lengths[i] = convertedBounds[i * 2 + 1] - convertedBounds[i * 2];
     }
     return lengths;
   }
@@ -592,8 +638,6 @@ public class DartAnalysisServerService {
   }
 
   private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
-
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -621,7 +665,12 @@ public class DartAnalysisServerService {
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
           if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+            final DartOverlayEdits edits = myFilePathToOverlayEdits.remove(file.getPath());
+            final List<SourceEdit> sourceEdits = oldTimestamp != null && edits != null && edits.getBaseStamp() == oldTimestamp
+                                                 ? edits.getSourceEdits()
+                                                 : null;
+            final Object overlay = sourceEdits != null ? new ChangeContentOverlay(sourceEdits) : new AddContentOverlay(document.getText());
+            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), overlay);
             myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
           }
         }
@@ -631,6 +680,7 @@ public class DartAnalysisServerService {
       for (String oldPath : oldTrackedFiles) {
         final Long removed = myFilePathWithOverlaidContentToTimestamp.remove(oldPath);
         LOG.assertTrue(removed != null, oldPath);
+        myFilePathToOverlayEdits.remove(oldPath);
         filesToUpdate.put(FileUtil.toSystemDependentName(oldPath), new RemoveContentOverlay());
       }
 
@@ -735,7 +785,7 @@ public class DartAnalysisServerService {
   }
 
   private void clearAllErrors(@NotNull final Collection<Project> projects) {
-    synchronized (myFolderPathsWithErrors) {
+    synchronized (myFilePathsWithErrors) {
       myFilePathsWithErrors.clear();
       myFolderPathsWithErrors.clear();
     }
@@ -796,14 +846,7 @@ public class DartAnalysisServerService {
     server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
       @Override
       public void computedNavigation(final List<NavigationRegion> regions) {
-        final List<DartServerData.DartNavigationRegion> dartRegions = new ArrayList<>(regions.size());
-        for (NavigationRegion region : regions) {
-          if (region.getLength() > 0) {
-            dartRegions.add(DartServerData.createDartNavigationRegion(file, region));
-          }
-        }
-
-        resultRef.set(dartRegions);
+        resultRef.set(DartServerData.createDartNavigationRegions(file, regions));
         latch.countDown();
       }
 
@@ -1282,6 +1325,51 @@ public class DartAnalysisServerService {
     return resultRef.get();
   }
 
+  /**
+   * Same as {@link #execution_mapUri(String, String, String)} for many URIs at once: all requests are sent without waiting for responses,
+   * the {@link #EXECUTION_MAP_URI_TIMEOUT} applies to the time since the last received response.
+   *
+   * @return system-independent file paths of the URIs that the server managed to map
+   */
+  @NotNull
+  public Map<String, String> execution_mapUris(@NotNull final String _id, @NotNull final Collection<String> _uris) {
+    final Map<String, String> result = Collections.synchronizedMap(new THashMap<>());
+
+    final AnalysisServer server = myServer;
+    if (server == null || _uris.isEmpty()) return result;
+
+    final CountDownLatch latch = new CountDownLatch(_uris.size());
+    for (final String _uri : _uris) {
+      server.execution_mapUri(_id, null, _uri, new MapUriConsumer() {
+        @Override
+        public void computedFileOrUri(final String file, final String uri) {
+          if (file != null) {
+            result.put(_uri, FileUtil.toSystemIndependentName(file));
+          }
+          latch.countDown();
+        }
+
+        @Override
+        public void onError(final RequestError error) {
+          LOG.warn("execution_mapUri(" + _id + ", null, " + _uri + ") returned error " + error.getCode() + ": " + error.getMessage());
+          latch.countDown();
+        }
+      });
+    }
+
+    long pending = latch.getCount();
+    while (!awaitForLatchCheckingCanceled(server, latch, EXECUTION_MAP_URI_TIMEOUT)) {
+      final long stillPending = latch.getCount();
+      if (stillPending == pending) {
+        LOG.info("execution_mapUri() took too long for contextID " + _id + ", " + stillPending + " of " + _uris.size() + " URIs not mapped");
+        break;
+      }
+      pending = stillPending;
+    }
+
+    return result;
+  }
+
   private void startServer(@NotNull final DartSdk sdk) {
     synchronized (myLock) {
       mySdkHome = sdk.getHomePath();
@@ -1416,6 +1504,7 @@ public class DartAnalysisServerService {
       myServer = null;
       mySdkHome = null;
       myFilePathWithOverlaidContentToTimestamp.clear();
+      myFilePathToOverlayEdits.clear();
       myVisibleFiles.clear();
       myChangedDocuments.clear();
       myServerData.clearData();
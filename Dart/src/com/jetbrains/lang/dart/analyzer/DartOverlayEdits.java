@@ -0,0 +1,104 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import org.dartlang.analysis.server.protocol.SourceEdit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Document changes made since the overlay content of a file was last sent to the Analysis Server. The edits are applied by the server
+ * one after another, so each edit is relative to the text produced by the previous ones. An edit that touches the range produced by the
+ * previous edit (continuous typing, backspace) is merged into it.
+ */
+class DartOverlayEdits {
+
+  // more edits than this is hardly cheaper than the full text
+  private static final int MAX_EDITS = 500;
+
+  private final long myBaseStamp;
+  private final List<Edit> myEdits = new ArrayList<>();
+  private int myReplacementLength;
+  private boolean myOverflow;
+
+  private static class Edit {
+    private final int myOffset;
+    private final int myLength;
+    private final String myReplacement;
+
+    private Edit(final int offset, final int length, @NotNull final String replacement) {
+      myOffset = offset;
+      myLength = length;
+      myReplacement = replacement;
+    }
+  }
+
+  /**
+   * @param baseStamp modification stamp of the document when its content was last sent to the server
+   */
+  DartOverlayEdits(final long baseStamp) {
+    myBaseStamp = baseStamp;
+  }
+
+  long getBaseStamp() {
+    return myBaseStamp;
+  }
+
+  void addEdit(final int offset, final int oldLength, @NotNull final CharSequence newText, final int documentLength) {
+    if (myOverflow) return;
+
+    final String replacement = newText.toString();
+    final Edit last = myEdits.isEmpty() ? null : myEdits.get(myEdits.size() - 1);
+    final Edit merged = last == null ? null : merge(last, offset, oldLength, replacement);
+
+    if (merged != null) {
+      myReplacementLength += merged.myReplacement.length() - last.myReplacement.length();
+      myEdits.set(myEdits.size() - 1, merged);
+    }
+    else {
+      myReplacementLength += replacement.length();
+      myEdits.add(new Edit(offset, oldLength, replacement));
+    }
+
+    if (myEdits.size() > MAX_EDITS || myReplacementLength > documentLength) {
+      // sending the whole text is cheaper, no need to keep the edits
+      myOverflow = true;
+      myEdits.clear();
+    }
+  }
+
+  /**
+   * Returns edits to send instead of the full text or <code>null</code> if the full text is cheaper.
+   */
+  @Nullable
+  List<SourceEdit> getSourceEdits() {
+    if (myOverflow) return null;
+
+    final List<SourceEdit> result = new ArrayList<>(myEdits.size());
+    for (Edit edit : myEdits) {
+      result.add(new SourceEdit(edit.myOffset, edit.myLength, edit.myReplacement, null));
+    }
+    return result;
+  }
+
+  /**
+   * The range <code>[offset, offset + length)</code> is in the coordinates of the text after the <code>last</code> edit. If it touches
+   * or overlaps the text inserted by <code>last</code>, returns a single edit that is equivalent to both.
+   */
+  @Nullable
+  private static Edit merge(@NotNull final Edit last, final int offset, final int length, @NotNull final String replacement) {
+    final int lastStart = last.myOffset;
+    final int lastEnd = lastStart + last.myReplacement.length(); // in the coordinates of the text after the last edit
+    if (offset > lastEnd || offset + length < lastStart) return null;
+
+    final int start = Math.min(lastStart, offset);
+    final int end = Math.max(lastEnd, offset + length);
+    // text outside of [lastStart, lastEnd) is the original text, shifted after lastEnd
+    final int originalLength = end - start - last.myReplacement.length() + last.myLength;
+
+    final String prefix = offset > lastStart ? last.myReplacement.substring(0, offset - lastStart) : "";
+    final String suffix = offset + length < lastEnd ? last.myReplacement.substring(offset + length - lastStart) : "";
+    return new Edit(start, originalLength, prefix + replacement + suffix);
+  }
+}
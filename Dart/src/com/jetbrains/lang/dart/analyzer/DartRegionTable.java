@@ -0,0 +1,417 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.IntArrayList;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartHighlightRegion;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationRegion;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationTarget;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartOverrideMember;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartRegion;
+import gnu.trove.TObjectIntHashMap;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+import org.dartlang.analysis.server.protocol.OverrideMember;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable column-oriented storage of the regions that the Analysis Server reported for one file. Offsets, lengths and kinds are kept
+ * in parallel <code>int[]</code> arrays; highlight types, target kinds and target file paths are shared through the {@link #STRINGS} table.
+ * Navigation targets are stored once per notification and referenced from regions by index, the same way the server sends them.
+ * Override regions keep the overridden members of the server notification as is, they are only needed when a marker is shown.
+ * <p/>
+ * Document changes produce a new table, so readers never need a lock. The only mutable part is the cache of converted target offsets.
+ */
+class DartRegionTable {
+
+  static final StringTable STRINGS = new StringTable();
+
+  static final DartRegionTable EMPTY = new DartRegionTable(ArrayUtil.EMPTY_INT_ARRAY, ArrayUtil.EMPTY_INT_ARRAY, null, null, null, null,
+                                                           null, null, null, null);
+
+  private final int[] myOffsets;
+  private final int[] myLengths;
+  @Nullable private final String[] myTypes;
+  @Nullable private final OverrideMember[] myOverrides;
+
+  // navigation regions only: targets of the region i are myTargetIndices[myTargetStarts[i] .. myTargetStarts[i + 1])
+  @Nullable private final int[] myTargetStarts;
+  @Nullable private final int[] myTargetIndices;
+  @Nullable private final String[] myTargetFiles;
+  @Nullable private final String[] myTargetKinds;
+  @Nullable private final int[] myTargetOriginalOffsets;
+  @Nullable private final int[] myTargetConvertedOffsets; // -1 if not computed yet
+
+  private DartRegionTable(@NotNull final int[] offsets,
+                          @NotNull final int[] lengths,
+                          @Nullable final String[] types,
+                          @Nullable final OverrideMember[] overrides,
+                          @Nullable final int[] targetStarts,
+                          @Nullable final int[] targetIndices,
+                          @Nullable final String[] targetFiles,
+                          @Nullable final String[] targetKinds,
+                          @Nullable final int[] targetOriginalOffsets,
+                          @Nullable final int[] targetConvertedOffsets) {
+    myOffsets = offsets;
+    myLengths = lengths;
+    myTypes = types;
+    myOverrides = overrides;
+    myTargetStarts = targetStarts;
+    myTargetIndices = targetIndices;
+    myTargetFiles = targetFiles;
+    myTargetKinds = targetKinds;
+    myTargetOriginalOffsets = targetOriginalOffsets;
+    myTargetConvertedOffsets = targetConvertedOffsets;
+  }
+
+  int size() {
+    return myOffsets.length;
+  }
+
+  int getOffset(final int index) {
+    return myOffsets[index];
+  }
+
+  int getLength(final int index) {
+    return myLengths[index];
+  }
+
+  boolean hasSameRanges(@NotNull final DartRegionTable other) {
+    return Arrays.equals(myOffsets, other.myOffsets) && Arrays.equals(myLengths, other.myLengths);
+  }
+
+  @NotNull
+  String getType(final int index) {
+    assert myTypes != null;
+    return myTypes[index];
+  }
+
+  @NotNull
+  String getTargetFile(final int target) {
+    assert myTargetFiles != null;
+    return myTargetFiles[target];
+  }
+
+  @NotNull
+  String getTargetKind(final int target) {
+    assert myTargetKinds != null;
+    return myTargetKinds[target];
+  }
+
+  int getTargetOffset(final int target, @Nullable final VirtualFile file) {
+    assert myTargetConvertedOffsets != null && myTargetOriginalOffsets != null;
+    int offset = myTargetConvertedOffsets[target];
+    if (offset == -1) {
+      // a racy but benign write: all threads compute the same value
+      offset = DartAnalysisServerService.getInstance().getConvertedOffset(file, myTargetOriginalOffsets[target]);
+      myTargetConvertedOffsets[target] = offset;
+    }
+    return offset;
+  }
+
+  @NotNull
+  DartRegion region(final int index) {
+    return new DartRegion(myOffsets[index], myLengths[index]);
+  }
+
+  @NotNull
+  DartHighlightRegion highlightRegion(final int index) {
+    return new DartHighlightRegion(myOffsets[index], myLengths[index], getType(index));
+  }
+
+  @NotNull
+  DartOverrideMember overrideMember(final int index) {
+    assert myOverrides != null;
+    final OverrideMember override = myOverrides[index];
+    return new DartOverrideMember(myOffsets[index], myLengths[index], override.getSuperclassMember(), override.getInterfaceMembers());
+  }
+
+  @NotNull
+  DartNavigationRegion navigationRegion(final int index) {
+    return new DartNavigationRegion(myOffsets[index], myLengths[index], targets(index));
+  }
+
+  /**
+   * Returns a list view of this table; the regions are created on demand.
+   */
+  @NotNull
+  List<DartNavigationRegion> navigationRegions() {
+    return new AbstractList<DartNavigationRegion>() {
+      @Override
+      public DartNavigationRegion get(final int index) {
+        return navigationRegion(index);
+      }
+
+      @Override
+      public int size() {
+        return myOffsets.length;
+      }
+    };
+  }
+
+  @NotNull
+  private List<DartNavigationTarget> targets(final int region) {
+    assert myTargetStarts != null && myTargetIndices != null;
+    final int start = myTargetStarts[region];
+    final int end = myTargetStarts[region + 1];
+    return new AbstractList<DartNavigationTarget>() {
+      @Override
+      public DartNavigationTarget get(final int index) {
+        if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return new DartNavigationTarget(DartRegionTable.this, myTargetIndices[start + index]);
+      }
+
+      @Override
+      public int size() {
+        return end - start;
+      }
+    };
+  }
+
+  /**
+   * Returns a table with the regions shifted according to the document change. If <code>deleteTouched</code> is <code>true</code> then
+   * regions touched by the change are removed, otherwise their length is updated (unless the region is deleted completely).
+   * Converted offsets of the navigation targets in the changed file are shifted as well.
+   */
+  @NotNull
+  DartRegionTable afterDocumentChange(@NotNull final String filePath,
+                                      final int eventOffset,
+                                      final int oldLength,
+                                      final int newLength,
+                                      final boolean deleteTouched) {
+    final int deltaLength = newLength - oldLength;
+    if (deltaLength == 0) return this;
+
+    final int size = myOffsets.length;
+    final int[] offsets = new int[size];
+    final int[] lengths = new int[size];
+    final int[] kept = new int[size];
+    int count = 0;
+
+    for (int i = 0; i < size; i++) {
+      int offset = myOffsets[i];
+      int length = myLengths[i];
+
+      if (deltaLength > 0) {
+        // Something was typed. Shift untouched regions, delete or update touched.
+        if (eventOffset <= offset) {
+          offset += deltaLength;
+        }
+        else if (offset < eventOffset && eventOffset < offset + length) {
+          if (deleteTouched) continue;
+          length += deltaLength;
+        }
+      }
+      else {
+        // Some text was deleted. Shift untouched regions, delete or update touched.
+        final int eventRightOffset = eventOffset - deltaLength;
+        final int regionRightOffset = offset + length;
+
+        if (eventRightOffset <= offset) {
+          offset += deltaLength;
+        }
+        else if (!deleteTouched && offset <= eventOffset && eventRightOffset <= regionRightOffset && length != -deltaLength) {
+          length += deltaLength;
+        }
+        else if (eventOffset < regionRightOffset) {
+          continue;
+        }
+      }
+
+      offsets[count] = offset;
+      lengths[count] = length;
+      kept[count] = i;
+      count++;
+    }
+
+    final String[] types = myTypes == null ? null : new String[count];
+    if (types != null) {
+      for (int i = 0; i < count; i++) {
+        types[i] = myTypes[kept[i]];
+      }
+    }
+
+    final OverrideMember[] overrides = myOverrides == null ? null : new OverrideMember[count];
+    if (overrides != null) {
+      for (int i = 0; i < count; i++) {
+        overrides[i] = myOverrides[kept[i]];
+      }
+    }
+
+    int[] targetStarts = null;
+    int[] targetIndices = null;
+    int[] targetConvertedOffsets = null;
+    if (myTargetStarts != null && myTargetIndices != null && myTargetConvertedOffsets != null && myTargetFiles != null) {
+      targetStarts = new int[count + 1];
+      final IntArrayList indices = new IntArrayList(myTargetIndices.length);
+      for (int i = 0; i < count; i++) {
+        targetStarts[i] = indices.size();
+        for (int j = myTargetStarts[kept[i]]; j < myTargetStarts[kept[i] + 1]; j++) {
+          indices.add(myTargetIndices[j]);
+        }
+      }
+      targetStarts[count] = indices.size();
+      targetIndices = indices.toArray();
+
+      // may be we'd better delete target touched by editing?
+      targetConvertedOffsets = myTargetConvertedOffsets.clone();
+      // all target paths are taken from the table, so the path of this file is either there or not a target
+      final String file = STRINGS.find(filePath);
+      for (int i = 0; i < targetConvertedOffsets.length; i++) {
+        if (file != null && myTargetFiles[i] == file && targetConvertedOffsets[i] >= eventOffset) {
+          targetConvertedOffsets[i] += deltaLength;
+        }
+      }
+    }
+
+    return new DartRegionTable(count == size ? offsets : Arrays.copyOf(offsets, count),
+                               count == size ? lengths : Arrays.copyOf(lengths, count),
+                               types, overrides, targetStarts, targetIndices, myTargetFiles, myTargetKinds, myTargetOriginalOffsets,
+                               targetConvertedOffsets);
+  }
+
+  /**
+   * Accumulates regions in the order they are added. Offsets and lengths must already be converted.
+   */
+  static class Builder {
+    private final IntArrayList myOffsets;
+    private final IntArrayList myLengths;
+    @Nullable private final List<String> myTypes;
+    @Nullable private final List<OverrideMember> myOverrides;
+
+    @Nullable private final IntArrayList myTargetStarts;
+    @Nullable private final IntArrayList myTargetIndices;
+    @Nullable private final List<String> myTargetFiles;
+    @Nullable private final List<String> myTargetKinds;
+    @Nullable private final IntArrayList myTargetOriginalOffsets;
+    @Nullable private final TObjectIntHashMap<NavigationTarget> myTargetToIndex;
+
+    private Builder(final int expectedSize, final boolean withTypes, final boolean withOverrides, final boolean withTargets) {
+      myOffsets = new IntArrayList(expectedSize);
+      myLengths = new IntArrayList(expectedSize);
+      myTypes = withTypes ? new ArrayList<>(expectedSize) : null;
+      myOverrides = withOverrides ? new ArrayList<>(expectedSize) : null;
+      myTargetStarts = withTargets ? new IntArrayList(expectedSize + 1) : null;
+      myTargetIndices = withTargets ? new IntArrayList(expectedSize) : null;
+      myTargetFiles = withTargets ? new ArrayList<>() : null;
+      myTargetKinds = withTargets ? new ArrayList<>() : null;
+      myTargetOriginalOffsets = withTargets ? new IntArrayList() : null;
+      myTargetToIndex = withTargets ? new TObjectIntHashMap<>(ContainerUtil.<NavigationTarget>identityStrategy()) : null;
+    }
+
+    @NotNull
+    static Builder forRegions(final int expectedSize) {
+      return new Builder(expectedSize, false, false, false);
+    }
+
+    @NotNull
+    static Builder forHighlightRegions(final int expectedSize) {
+      return new Builder(expectedSize, true, false, false);
+    }
+
+    @NotNull
+    static Builder forOverrideMembers(final int expectedSize) {
+      return new Builder(expectedSize, false, true, false);
+    }
+
+    @NotNull
+    static Builder forNavigationRegions(final int expectedSize) {
+      return new Builder(expectedSize, false, false, true);
+    }
+
+    void addRegion(final int offset, final int length) {
+      myOffsets.add(offset);
+      myLengths.add(length);
+    }
+
+    void addHighlightRegion(final int offset, final int length, @NotNull final String type) {
+      assert myTypes != null;
+      addRegion(offset, length);
+      myTypes.add(STRINGS.intern(type));
+    }
+
+    void addOverrideMember(final int offset, final int length, @NotNull final OverrideMember override) {
+      assert myOverrides != null;
+      addRegion(offset, length);
+      myOverrides.add(override);
+    }
+
+    void addNavigationRegion(final int offset, final int length, @NotNull final List<NavigationTarget> targets) {
+      assert myTargetStarts != null && myTargetIndices != null && myTargetToIndex != null &&
+             myTargetFiles != null && myTargetKinds != null && myTargetOriginalOffsets != null;
+      addRegion(offset, length);
+      myTargetStarts.add(myTargetIndices.size());
+      for (NavigationTarget target : targets) {
+        // the server sends each target once and references it from several regions; keep the same sharing here
+        int index = myTargetToIndex.get(target);
+        if (!myTargetToIndex.containsKey(target)) {
+          index = myTargetFiles.size();
+          myTargetToIndex.put(target, index);
+          myTargetFiles.add(STRINGS.intern(FileUtil.toSystemIndependentName(target.getFile())));
+          myTargetKinds.add(STRINGS.intern(target.getKind()));
+          myTargetOriginalOffsets.add(target.getOffset());
+        }
+        myTargetIndices.add(index);
+      }
+    }
+
+    @NotNull
+    DartRegionTable build() {
+      if (myOffsets.isEmpty() && myTargetStarts == null) return EMPTY;
+
+      int[] targetStarts = null;
+      int[] targetConvertedOffsets = null;
+      if (myTargetStarts != null && myTargetIndices != null && myTargetFiles != null) {
+        myTargetStarts.add(myTargetIndices.size());
+        targetStarts = myTargetStarts.toArray();
+        targetConvertedOffsets = new int[myTargetFiles.size()];
+        Arrays.fill(targetConvertedOffsets, -1);
+      }
+
+      return new DartRegionTable(myOffsets.toArray(),
+                                 myLengths.toArray(),
+                                 myTypes == null ? null : ArrayUtil.toStringArray(myTypes),
+                                 myOverrides == null ? null : myOverrides.toArray(new OverrideMember[myOverrides.size()]),
+                                 targetStarts,
+                                 myTargetIndices == null ? null : myTargetIndices.toArray(),
+                                 myTargetFiles == null ? null : ArrayUtil.toStringArray(myTargetFiles),
+                                 myTargetKinds == null ? null : ArrayUtil.toStringArray(myTargetKinds),
+                                 myTargetOriginalOffsets == null ? null : myTargetOriginalOffsets.toArray(),
+                                 targetConvertedOffsets);
+    }
+  }
+
+  /**
+   * Strings shared by all region tables, so that each highlight type, target kind and target file path is kept once however many regions
+   * and files refer to it. The table holds its strings weakly, so it doesn't grow with the paths of files closed or deleted long ago.
+   */
+  static class StringTable {
+    private final ConcurrentMap<String, String> myStrings = ContainerUtil.createConcurrentWeakKeyWeakValueMap();
+
+    @NotNull
+    String intern(@NotNull final String string) {
+      final String existing = myStrings.putIfAbsent(string, string);
+      return existing != null ? existing : string;
+    }
+
+    /**
+     * @return the shared instance or <code>null</code> if no table refers to the string
+     */
+    @Nullable
+    String find(@NotNull final String string) {
+      return myStrings.get(string);
+    }
+
+    int size() {
+      return myStrings.size();
+    }
+  }
+}
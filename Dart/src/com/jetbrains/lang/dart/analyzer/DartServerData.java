@@ -5,17 +5,17 @@ import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.impl.source.resolve.ResolveCache;
-import com.intellij.util.SmartList;
 import gnu.trove.THashMap;
 import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
 
 public class DartServerData {
 
@@ -23,16 +23,11 @@ public class DartServerData {
 
   private final Map<String, List<DartError>> myErrorData =
     Collections.synchronizedMap(new THashMap<String, List<DartError>>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData =
-    Collections.synchronizedMap(new THashMap<String, List<DartHighlightRegion>>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData =
-    Collections.synchronizedMap(new THashMap<String, List<DartNavigationRegion>>());
-  private final Map<String, List<DartOverrideMember>> myOverrideData =
-    Collections.synchronizedMap(new THashMap<String, List<DartOverrideMember>>());
-  private final Map<String, List<DartRegion>> myImplementedClassData =
-    Collections.synchronizedMap(new THashMap<String, List<DartRegion>>());
-  private final Map<String, List<DartRegion>> myImplementedMemberData =
-    Collections.synchronizedMap(new THashMap<String, List<DartRegion>>());
+  private final Map<String, RegionsSlot> myHighlightData = new ConcurrentHashMap<>();
+  private final Map<String, RegionsSlot> myNavigationData = new ConcurrentHashMap<>();
+  private final Map<String, RegionsSlot> myOverrideData = new ConcurrentHashMap<>();
+  private final Map<String, RegionsSlot> myImplementedClassData = new ConcurrentHashMap<>();
+  private final Map<String, RegionsSlot> myImplementedMemberData = new ConcurrentHashMap<>();
 
   private final Set<String> myFilePathsWithUnsentChanges = Sets.newConcurrentHashSet();
 
@@ -44,13 +39,11 @@ public class DartServerData {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
     final List<DartError> newErrors = new ArrayList<>(errors.size());
-    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (AnalysisError error : errors) {
-      final int offset = service.getConvertedOffset(file, error.getLocation().getOffset());
-      final int length = service.getConvertedOffset(file, error.getLocation().getOffset() + error.getLocation().getLength()) - offset;
-      newErrors.add(new DartError(error, offset, length));
+    final int[] converted = convertRegions(file, errors, e -> e.getLocation().getOffset(), e -> e.getLocation().getLength());
+    for (int i = 0; i < errors.size(); i++) {
+      newErrors.add(new DartError(errors.get(i), converted[i * 2], converted[i * 2 + 1]));
     }
 
     myErrorData.put(filePath, newErrors);
@@ -63,69 +56,65 @@ public class DartServerData {
   void computedHighlights(@NotNull final String filePath, @NotNull final List<HighlightRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartHighlightRegion> newRegions = new ArrayList<>(regions.size());
-    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
+    final DartRegionTable.Builder newRegions = DartRegionTable.Builder.forHighlightRegions(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (HighlightRegion region : regions) {
+    final int[] converted = convertRegions(file, regions, HighlightRegion::getOffset, HighlightRegion::getLength);
+    for (int i = 0; i < regions.size(); i++) {
+      final HighlightRegion region = regions.get(i);
       if (region.getLength() > 0) {
-        final int offset = service.getConvertedOffset(file, region.getOffset());
-        final int length = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-        newRegions.add(new DartHighlightRegion(offset, length, region.getType()));
+        newRegions.addHighlightRegion(converted[i * 2], converted[i * 2 + 1], region.getType());
       }
     }
 
-    myHighlightData.put(filePath, newRegions);
+    myHighlightData.put(filePath, new RegionsSlot(newRegions.build()));
     forceFileAnnotation(file, false);
   }
 
   void computedNavigation(@NotNull final String filePath, @NotNull final List<NavigationRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartNavigationRegion> newRegions = new ArrayList<>(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (NavigationRegion region : regions) {
-      if (region.getLength() > 0) {
-        final DartNavigationRegion dartNavigationRegion = createDartNavigationRegion(file, region);
-        newRegions.add(dartNavigationRegion);
-      }
-    }
-
-    myNavigationData.put(filePath, newRegions);
+    myNavigationData.put(filePath, new RegionsSlot(createNavigationTable(file, regions)));
     forceFileAnnotation(file, true);
   }
 
   @NotNull
-  static DartNavigationRegion createDartNavigationRegion(@Nullable final VirtualFile file,
-                                                         @NotNull final NavigationRegion region) {
-    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
+  static List<DartNavigationRegion> createDartNavigationRegions(@Nullable final VirtualFile file,
+                                                                @NotNull final List<NavigationRegion> regions) {
+    return createNavigationTable(file, regions).navigationRegions();
+  }
 
-    final int offset = service.getConvertedOffset(file, region.getOffset());
-    final int length = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-    final SmartList<DartNavigationTarget> targets = new SmartList<>();
-    for (NavigationTarget target : region.getTargetObjects()) {
-      targets.add(new DartNavigationTarget(target));
+  @NotNull
+  private static DartRegionTable createNavigationTable(@Nullable final VirtualFile file, @NotNull final List<NavigationRegion> regions) {
+    final DartRegionTable.Builder newRegions = DartRegionTable.Builder.forNavigationRegions(regions.size());
+    final int[] converted = convertRegions(file, regions, NavigationRegion::getOffset, NavigationRegion::getLength);
+    for (int i = 0; i < regions.size(); i++) {
+      final NavigationRegion region = regions.get(i);
+      if (region.getLength() > 0) {
+        newRegions.addNavigationRegion(converted[i * 2], converted[i * 2 + 1], region.getTargetObjects());
+      }
     }
-    return new DartNavigationRegion(offset, length, targets);
+
+    return newRegions.build();
   }
 
   void computedOverrides(@NotNull final String filePath, @NotNull final List<OverrideMember> overrides) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartOverrideMember> newOverrides = new ArrayList<>(overrides.size());
-    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
+    final DartRegionTable.Builder newOverrides = DartRegionTable.Builder.forOverrideMembers(overrides.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    for (OverrideMember override : overrides) {
+    final int[] converted = convertRegions(file, overrides, OverrideMember::getOffset, OverrideMember::getLength);
+    for (int i = 0; i < overrides.size(); i++) {
+      final OverrideMember override = overrides.get(i);
       if (override.getLength() > 0) {
-        final int offset = service.getConvertedOffset(file, override.getOffset());
-        final int length = service.getConvertedOffset(file, override.getOffset() + override.getLength()) - offset;
-        newOverrides.add(new DartOverrideMember(offset, length, override.getSuperclassMember(), override.getInterfaceMembers()));
+        newOverrides.addOverrideMember(converted[i * 2], converted[i * 2 + 1], override);
       }
     }
 
-    myOverrideData.put(filePath, newOverrides);
+    myOverrideData.put(filePath, new RegionsSlot(newOverrides.build()));
     forceFileAnnotation(file, false);
   }
 
@@ -134,34 +123,33 @@ public class DartServerData {
                            @NotNull final List<ImplementedMember> implementedMembers) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
-    final List<DartRegion> newImplementedClasses = new ArrayList<>(implementedClasses.size());
-    for (ImplementedClass implementedClass : implementedClasses) {
-      final int offset = service.getConvertedOffset(file, implementedClass.getOffset());
-      final int length = service.getConvertedOffset(file, implementedClass.getOffset() + implementedClass.getLength()) - offset;
-      newImplementedClasses.add(new DartRegion(offset, length));
+    final DartRegionTable.Builder classesBuilder = DartRegionTable.Builder.forRegions(implementedClasses.size());
+    final int[] convertedClasses = convertRegions(file, implementedClasses, ImplementedClass::getOffset, ImplementedClass::getLength);
+    for (int i = 0; i < implementedClasses.size(); i++) {
+      classesBuilder.addRegion(convertedClasses[i * 2], convertedClasses[i * 2 + 1]);
     }
 
-    final List<DartRegion> newImplementedMembers = new ArrayList<>(implementedMembers.size());
-    for (ImplementedMember implementedMember : implementedMembers) {
-      final int offset = service.getConvertedOffset(file, implementedMember.getOffset());
-      final int length = service.getConvertedOffset(file, implementedMember.getOffset() + implementedMember.getLength()) - offset;
-      newImplementedMembers.add(new DartRegion(offset, length));
+    final DartRegionTable.Builder membersBuilder = DartRegionTable.Builder.forRegions(implementedMembers.size());
+    final int[] convertedMembers = convertRegions(file, implementedMembers, ImplementedMember::getOffset, ImplementedMember::getLength);
+    for (int i = 0; i < implementedMembers.size(); i++) {
+      membersBuilder.addRegion(convertedMembers[i * 2], convertedMembers[i * 2 + 1]);
     }
 
     boolean hasChanges = false;
-    final List<DartRegion> oldClasses = myImplementedClassData.get(filePath);
-    if (oldClasses == null || !oldClasses.equals(newImplementedClasses)) {
+    final DartRegionTable newImplementedClasses = classesBuilder.build();
+    final RegionsSlot oldClasses = myImplementedClassData.get(filePath);
+    if (oldClasses == null || !oldClasses.myTable.hasSameRanges(newImplementedClasses)) {
       hasChanges = true;
-      myImplementedClassData.put(filePath, newImplementedClasses);
+      myImplementedClassData.put(filePath, new RegionsSlot(newImplementedClasses));
     }
 
-    final List<DartRegion> oldMembers = myImplementedMemberData.get(filePath);
-    if (oldMembers == null || !oldMembers.equals(newImplementedMembers)) {
+    final DartRegionTable newImplementedMembers = membersBuilder.build();
+    final RegionsSlot oldMembers = myImplementedMemberData.get(filePath);
+    if (oldMembers == null || !oldMembers.myTable.hasSameRanges(newImplementedMembers)) {
       hasChanges = true;
-      myImplementedMemberData.put(filePath, newImplementedMembers);
+      myImplementedMemberData.put(filePath, new RegionsSlot(newImplementedMembers));
     }
 
     if (hasChanges) {
@@ -169,6 +157,31 @@ public class DartServerData {
     }
   }
 
+  /**
+   * Converts offsets of all regions of a notification at once, with a single pass over the line table of the file.
+   *
+   * @return converted offset and length pairs: [offset0, length0, offset1, length1, ...]
+   */
+  @NotNull
+  private static <T> int[] convertRegions(@Nullable final VirtualFile file,
+                                          @NotNull final List<T> regions,
+                                          @NotNull final ToIntFunction<T> getOffset,
+                                          @NotNull final ToIntFunction<T> getLength) {
+    final int[] bounds = new int[regions.size() * 2];
+    for (int i = 0; i < regions.size(); i++) {
+      final T region = regions.get(i);
+      final int offset = getOffset.applyAsInt(region);
+      bounds[i * 2] = offset;
+      bounds[i * 2 + 1] = offset + getLength.applyAsInt(region);
+    }
+
+    final int[] converted = DartAnalysisServerService.getInstance().getConvertedOffsets(file, bounds);
+    for (int i = 0; i < regions.size(); i++) {
+      converted[i * 2 + 1] -= converted[i * 2];
+    }
+    return converted;
+  }
+
   @NotNull
   List<DartError> getErrors(@NotNull final VirtualFile file) {
     final List<DartError> errors = myErrorData.get(file.getPath());
@@ -177,32 +190,32 @@ public class DartServerData {
 
   @NotNull
   List<DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
-    final List<DartHighlightRegion> regions = myHighlightData.get(file.getPath());
-    return regions != null ? regions : Collections.<DartHighlightRegion>emptyList();
+    final RegionsSlot slot = myHighlightData.get(file.getPath());
+    return slot != null ? slot.highlightRegions() : Collections.<DartHighlightRegion>emptyList();
   }
 
   @NotNull
   List<DartNavigationRegion> getNavigation(@NotNull final VirtualFile file) {
-    final List<DartNavigationRegion> regions = myNavigationData.get(file.getPath());
-    return regions != null ? regions : Collections.<DartNavigationRegion>emptyList();
+    final RegionsSlot slot = myNavigationData.get(file.getPath());
+    return slot != null ? slot.navigationRegions() : Collections.<DartNavigationRegion>emptyList();
   }
 
   @NotNull
   List<DartOverrideMember> getOverrideMembers(@NotNull final VirtualFile file) {
-    final List<DartOverrideMember> regions = myOverrideData.get(file.getPath());
-    return regions != null ? regions : Collections.<DartOverrideMember>emptyList();
+    final RegionsSlot slot = myOverrideData.get(file.getPath());
+    return slot != null ? slot.overrideMembers() : Collections.<DartOverrideMember>emptyList();
   }
 
   @NotNull
   List<DartRegion> getImplementedClasses(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedClassData.get(file.getPath());
-    return classes != null ? classes : Collections.<DartRegion>emptyList();
+    final RegionsSlot slot = myImplementedClassData.get(file.getPath());
+    return slot != null ? slot.regions() : Collections.<DartRegion>emptyList();
   }
 
   @NotNull
   List<DartRegion> getImplementedMembers(@NotNull final VirtualFile file) {
-    final List<DartRegion> classes = myImplementedMemberData.get(file.getPath());
-    return classes != null ? classes : Collections.<DartRegion>emptyList();
+    final RegionsSlot slot = myImplementedMemberData.get(file.getPath());
+    return slot != null ? slot.regions() : Collections.<DartRegion>emptyList();
   }
 
   private void forceFileAnnotation(@Nullable final VirtualFile file, final boolean clearCache) {
@@ -281,16 +294,24 @@ public class DartServerData {
     final String filePath = file.getPath();
     myFilePathsWithUnsentChanges.add(filePath);
 
-    updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+    updateRegionsDeletingTouched(myErrorData.get(filePath), e);
+    updateRegions(filePath, myHighlightData.get(filePath), e, false);
+    updateRegions(filePath, myNavigationData.get(filePath), e, true);
+    updateRegions(filePath, myOverrideData.get(filePath), e, true);
+    updateRegions(filePath, myImplementedClassData.get(filePath), e, true);
+    updateRegions(filePath, myImplementedMemberData.get(filePath), e, true);
+  }
+
+  private static void updateRegions(@NotNull final String filePath,
+                                    @Nullable final RegionsSlot slot,
+                                    @NotNull final DocumentEvent e,
+                                    final boolean deleteTouched) {
+    if (slot == null) return;
+
+    slot.myTable = slot.myTable.afterDocumentChange(filePath, e.getOffset(), e.getOldLength(), e.getNewLength(), deleteTouched);
   }
 
-  private static void updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                   @Nullable final List<? extends DartRegion> regions,
+  private static void updateRegionsDeletingTouched(@Nullable final List<? extends DartRegion> regions,
                                                    @NotNull final DocumentEvent e) {
     if (regions == null) return;
 
@@ -302,15 +323,6 @@ public class DartServerData {
     while (iterator.hasNext()) {
       final DartRegion region = iterator.next();
 
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
-        }
-      }
-
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, delete touched.
         if (eventOffset <= region.myOffset) {
@@ -334,45 +346,72 @@ public class DartServerData {
     }
   }
 
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
+  /**
+   * Holds the current regions of a file. A new slot is created for each Analysis Server notification; document changes replace the table
+   * in the existing slot. Lists returned by {@link #getNavigation(VirtualFile)} and friends are views of the table current at the time
+   * they are created, so a concurrent document change can't mix old and new regions in one list.
+   */
+  private static class RegionsSlot {
+    private volatile DartRegionTable myTable;
 
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
-
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
+    private RegionsSlot(@NotNull final DartRegionTable table) {
+      myTable = table;
+    }
 
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+    @NotNull
+    private List<DartRegion> regions() {
+      return new SlotList<DartRegion>(myTable) {
+        @Override
+        public DartRegion get(final int index) {
+          return myTableSnapshot.region(index);
         }
-        else if (region.myOffset < eventOffset && eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
-        }
-      }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete or update touched.
-        final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
+      };
+    }
 
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
+    @NotNull
+    private List<DartHighlightRegion> highlightRegions() {
+      return new SlotList<DartHighlightRegion>(myTable) {
+        @Override
+        public DartHighlightRegion get(final int index) {
+          return myTableSnapshot.highlightRegion(index);
         }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
+      };
+    }
+
+    @NotNull
+    private List<DartOverrideMember> overrideMembers() {
+      return new SlotList<DartOverrideMember>(myTable) {
+        @Override
+        public DartOverrideMember get(final int index) {
+          return myTableSnapshot.overrideMember(index);
         }
-        else if (eventOffset < regionRightOffset) {
-          iterator.remove();
+      };
+    }
+
+    @NotNull
+    private List<DartNavigationRegion> navigationRegions() {
+      return new SlotList<DartNavigationRegion>(myTable) {
+        @Override
+        public DartNavigationRegion get(final int index) {
+          return myTableSnapshot.navigationRegion(index);
         }
+      };
+    }
+
+    private static abstract class SlotList<T> extends AbstractList<T> {
+      protected final DartRegionTable myTableSnapshot;
+
+      private SlotList(@NotNull final DartRegionTable table) {
+        myTableSnapshot = table;
+      }
+
+      @Override
+      public int size() {
+        return myTableSnapshot.size();
       }
     }
   }
 
-
   public static class DartRegion {
     protected int myOffset;
     protected int myLength;
@@ -404,9 +443,9 @@ public class DartServerData {
   public static class DartHighlightRegion extends DartRegion {
     private final String type;
 
-    private DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
+    DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
       super(offset, length);
-      this.type = type.intern();
+      this.type = type;
     }
 
     public String getType() {
@@ -471,31 +510,24 @@ public class DartServerData {
   }
 
   public static class DartNavigationTarget {
-    private final String myFile;
-    private final int myOriginalOffset;
-    private final String myKind;
-
-    private int myConvertedOffset = -1;
+    private final DartRegionTable myTable;
+    private final int myIndex;
 
-    private DartNavigationTarget(@NotNull final NavigationTarget target) {
-      myFile = FileUtil.toSystemIndependentName(target.getFile()).intern();
-      myOriginalOffset = target.getOffset();
-      myKind = target.getKind().intern();
+    DartNavigationTarget(@NotNull final DartRegionTable table, final int index) {
+      myTable = table;
+      myIndex = index;
     }
 
     public String getFile() {
-      return myFile;
+      return myTable.getTargetFile(myIndex);
     }
 
     public int getOffset(@Nullable final VirtualFile file) {
-      if (myConvertedOffset == -1) {
-        myConvertedOffset = DartAnalysisServerService.getInstance().getConvertedOffset(file, myOriginalOffset);
-      }
-      return myConvertedOffset;
+      return myTable.getTargetOffset(myIndex, file);
     }
 
     public String getKind() {
-      return myKind;
+      return myTable.getTargetKind(myIndex);
     }
   }
 
@@ -503,10 +535,10 @@ public class DartServerData {
     @Nullable private final OverriddenMember mySuperclassMember;
     @Nullable private final List<OverriddenMember> myInterfaceMembers;
 
-    private DartOverrideMember(final int offset,
-                               final int length,
-                               @Nullable final OverriddenMember superclassMember,
-                               @Nullable final List<OverriddenMember> interfaceMembers) {
+    DartOverrideMember(final int offset,
+                       final int length,
+                       @Nullable final OverriddenMember superclassMember,
+                       @Nullable final List<OverriddenMember> interfaceMembers) {
       super(offset, length);
       mySuperclassMember = superclassMember;
       myInterfaceMembers = interfaceMembers;
@@ -4,8 +4,8 @@ import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.IntArrayList;
+import com.intellij.util.containers.SLRUMap;
 import com.intellij.util.text.CharArrayUtil;
-import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -13,11 +13,15 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.Map;
 
 public class FileOffsetsManager {
 
-  private final Map<VirtualFile, LineOffsets> myLineOffsetsMap = new THashMap<>();
+  // bounded, so that line tables of files that were analyzed once don't stay in memory forever
+  private static final int CACHE_PROTECTED_SIZE = 64;
+  private static final int CACHE_PROBATIONAL_SIZE = 64;
+
+  // guarded by itself; line tables are loaded outside of the lock
+  private final SLRUMap<VirtualFile, LineOffsets> myLineOffsetsMap = new SLRUMap<>(CACHE_PROTECTED_SIZE, CACHE_PROBATIONAL_SIZE);
 
   private static class LineOffsets {
     private final long myFileModificationStamp; // todo stamp outside of this class
@@ -51,6 +55,48 @@ public class FileOffsetsManager {
     return getCorrespondingOffset(offsets.myConvertedLineOffsets, offsets.myOriginalLineOffsets, convertedOffset);
   }
 
+  /**
+   * Converts all given offsets with a single modification stamp check. Offsets are expected to be (mostly) sorted, for example region
+   * start and end offsets of an Analysis Server notification: the line table is walked once, and only offsets that go backwards fall
+   * back to a binary search.
+   */
+  @NotNull
+  public int[] getConvertedOffsets(@NotNull final VirtualFile file, @NotNull final int[] originalOffsets) {
+    final LineOffsets offsets = getLineOffsets(file);
+    if (offsets.myLineOffsetsAreTheSame) return originalOffsets.clone();
+
+    return getCorrespondingOffsets(offsets.myOriginalLineOffsets, offsets.myConvertedLineOffsets, originalOffsets);
+  }
+
+  @NotNull
+  private static int[] getCorrespondingOffsets(@NotNull final int[] offsets1, @NotNull final int[] offsets2, @NotNull final int[] input) {
+    final int[] result = new int[input.length];
+    int line = 0;
+
+    for (int i = 0; i < input.length; i++) {
+      final int offset1 = input[i];
+      if (offset1 <= 0) {
+        result[i] = offset1;
+        continue;
+      }
+
+      if (offset1 < offsets1[line]) {
+        // out of order, start again from the right line
+        line = Arrays.binarySearch(offsets1, offset1);
+        if (line < 0) line = -line - 2;
+      }
+      else {
+        while (line + 1 < offsets1.length && offsets1[line + 1] <= offset1) {
+          line++;
+        }
+      }
+
+      result[i] = offsets2[line] + offset1 - offsets1[line];
+    }
+
+    return result;
+  }
+
   private static int getCorrespondingOffset(int[] offsets1, int[] offsets2, int offset1) {
     int line = Arrays.binarySearch(offsets1, offset1);
     if (line < 0) line = -line - 2;
@@ -64,13 +110,18 @@ public class FileOffsetsManager {
 
   @NotNull
   private LineOffsets getLineOffsets(@NotNull final VirtualFile file) {
-    LineOffsets offsets = myLineOffsetsMap.get(file);
+    LineOffsets offsets;
+    synchronized (myLineOffsetsMap) {
+      offsets = myLineOffsetsMap.get(file);
+    }
     if (offsets != null && file.getModificationStamp() == offsets.myFileModificationStamp) {
       return offsets;
     }
 
     offsets = loadLineOffsets(file);
-    myLineOffsetsMap.put(file, offsets);
+    synchronized (myLineOffsetsMap) {
+      myLineOffsetsMap.put(file, offsets);
+    }
     return offsets;
   }
 
@@ -15,82 +15,154 @@
  */
 package com.jetbrains.lang.dart.coverage;
 
-import com.intellij.util.containers.hash.HashMap;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Set;
 
+/**
+ * Line hits from a coverage JSON file (<code>{"coverage": [{"source": uri, "hits": [line, count, line, count, ...]}, ...]}</code>),
+ * merged per script URI. The file is read with a streaming parser, hits go straight to <code>int</code> arrays.
+ */
 public class DartCoverageData {
-  @Nullable private List<DartFileCoverageData> coverage;
+  private final Map<String, LineHits> myLineHits = new THashMap<>();
 
-  @Nullable
-  public List<DartFileCoverageData> getCoverage() {
-    return coverage;
-  }
+  // hits of the script entry being read, the 'source' field may come after them
+  private int[] myEntryHits = new int[256];
+  private int myEntryHitsSize;
+
+  private static class LineHits {
+    // index is a line number, -1 for lines without code
+    private int[] myHits = new int[0];
+
+    private void add(final int line, final int hitCount) {
+      if (line < 0) return;
+      if (line >= myHits.length) {
+        final int oldLength = myHits.length;
+        myHits = Arrays.copyOf(myHits, Math.max(line + 1, oldLength * 3 / 2));
+        Arrays.fill(myHits, oldLength, myHits.length, -1);
+      }
+      myHits[line] = Math.max(myHits[line], 0) + hitCount;
+    }
 
-  public void setCoverage(@Nullable List<DartFileCoverageData> coverage) {
-    this.coverage = coverage;
+    @NotNull
+    private int[] toArray() {
+      int length = myHits.length;
+      while (length > 0 && myHits[length - 1] < 0) {
+        length--;
+      }
+      return length == myHits.length ? myHits : Arrays.copyOf(myHits, length);
+    }
   }
 
   @NotNull
-  public Map<String, SortedMap<Integer, Integer>> getMergedDartFileCoverageData() {
-    Map<String, SortedMap<Integer, Integer>> mergedCoverageData = new HashMap<>();
-    List<DartFileCoverageData> coverageData = getCoverage();
-    if (coverageData != null) {
-      for (DartFileCoverageData item : coverageData) {
-        String source = item.getSource();
-        if (source == null) {
-          continue;
+  public static DartCoverageData read(@NotNull final Reader reader) throws IOException {
+    final DartCoverageData data = new DartCoverageData();
+    final JsonReader jsonReader = new JsonReader(reader);
+    try {
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        if ("coverage".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+          jsonReader.beginArray();
+          while (jsonReader.hasNext()) {
+            data.readEntry(jsonReader);
+          }
+          jsonReader.endArray();
         }
-        if (!mergedCoverageData.containsKey(source)) {
-          mergedCoverageData.put(source, new TreeMap<>());
+        else {
+          jsonReader.skipValue();
         }
+      }
+      jsonReader.endObject();
+    }
+    catch (IllegalStateException | NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+    return data;
+  }
 
-        SortedMap<Integer, Integer> fileData = mergedCoverageData.get(source);
-        List<Integer> hits = item.getHits();
-        if (hits == null) {
-          continue;
-        }
-        for (int i = 0; i < hits.size(); i += 2) {
-          Integer lineNumber = hits.get(i);
-          Integer hitCount = hits.get(i + 1);
-          if (!fileData.containsKey(lineNumber)) {
-            fileData.put(lineNumber, 0);
-          }
+  private void readEntry(@NotNull final JsonReader jsonReader) throws IOException {
+    String source = null;
+    boolean hasHits = false;
+    myEntryHitsSize = 0;
 
-          fileData.put(lineNumber, fileData.get(lineNumber) + hitCount);
-        }
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      final String name = jsonReader.nextName();
+      if ("source".equals(name) && jsonReader.peek() == JsonToken.STRING) {
+        source = jsonReader.nextString();
+      }
+      else if ("hits".equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        hasHits = true;
+        readHits(jsonReader);
+      }
+      else {
+        jsonReader.skipValue();
       }
     }
+    jsonReader.endObject();
 
-    return mergedCoverageData;
-  }
-}
+    if (source == null) return;
 
+    LineHits lineHits = myLineHits.get(source);
+    if (lineHits == null) {
+      lineHits = new LineHits();
+      myLineHits.put(source, lineHits);
+    }
+    if (!hasHits) return;
 
-class DartFileCoverageData {
-  @Nullable private String source;
-  @Nullable private List<Integer> hits;
+    for (int i = 0; i + 1 < myEntryHitsSize; i += 2) {
+      lineHits.add(myEntryHits[i], myEntryHits[i + 1]);
+    }
+  }
 
-  @Nullable
-  public String getSource() {
-    return source;
+  private void readHits(@NotNull final JsonReader jsonReader) throws IOException {
+    jsonReader.beginArray();
+    while (jsonReader.hasNext()) {
+      if (jsonReader.peek() == JsonToken.STRING) {
+        // "first-last" line range with a single hit count that follows
+        final String range = jsonReader.nextString();
+        final int dash = range.indexOf('-');
+        final int first = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+        final int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1));
+        final int hitCount = jsonReader.nextInt();
+        for (int line = first; line <= last; line++) {
+          addEntryHit(line);
+          addEntryHit(hitCount);
+        }
+      }
+      else {
+        addEntryHit(jsonReader.nextInt());
+      }
+    }
+    jsonReader.endArray();
   }
 
-  public void setSource(@Nullable String source) {
-    this.source = source;
+  private void addEntryHit(final int value) {
+    if (myEntryHitsSize == myEntryHits.length) {
+      myEntryHits = Arrays.copyOf(myEntryHits, myEntryHitsSize * 2);
+    }
+    myEntryHits[myEntryHitsSize++] = value;
   }
 
-  @Nullable
-  public List<Integer> getHits() {
-    return hits;
+  @NotNull
+  public Set<String> getSources() {
+    return myLineHits.keySet();
   }
 
-  public void setHits(@Nullable List<Integer> hits) {
-    this.hits = hits;
+  /**
+   * @return hit counts merged over all entries of the script, index is a line number, -1 for lines without code
+   */
+  @NotNull
+  public int[] getLineHits(@NotNull final String source) {
+    final LineHits lineHits = myLineHits.get(source);
+    return lineHits == null ? new int[0] : lineHits.toArray();
   }
-}
\ No newline at end of file
+}
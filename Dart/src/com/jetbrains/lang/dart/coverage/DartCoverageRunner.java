@@ -15,7 +15,6 @@
  */
 package com.jetbrains.lang.dart.coverage;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
@@ -24,20 +23,24 @@ import com.intellij.execution.process.ProcessHandler;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.rt.coverage.data.ClassData;
 import com.intellij.rt.coverage.data.LineData;
 import com.intellij.rt.coverage.data.ProjectData;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.util.DartUrlResolver;
+import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 
 public class DartCoverageRunner extends CoverageRunner {
   private static final String ID = "DartCoverageRunner";
@@ -88,61 +91,89 @@ public class DartCoverageRunner extends CoverageRunner {
       return null;
     }
 
-    final String contextId = DartAnalysisServerService.getInstance().execution_createContext(contextFilePath);
-    if (contextId == null) {
+    final DartCoverageData data;
+    try (Reader reader = new BufferedReader(new FileReader(sessionDataFile))) {
+      data = DartCoverageData.read(reader);
+    }
+    catch (IOException | JsonSyntaxException e) {
+      LOG.warn("Coverage file does not contain valid data.", e);
       return null;
     }
 
     final ProjectData projectData = new ProjectData();
+    final Map<String, String> uriToPath = mapUris(coverageSuite.getProject(), contextFilePath, data.getSources());
 
-    try {
-      DartCoverageData data = new Gson().fromJson(new BufferedReader(new FileReader(sessionDataFile)), DartCoverageData.class);
-      if (data == null) {
-        LOG.warn("Coverage file does not contain valid data.");
-        return null;
+    for (Map.Entry<String, String> entry : uriToPath.entrySet()) {
+      ProgressManager.checkCanceled();
+
+      final int[] lineHits = data.getLineHits(entry.getKey());
+      final ClassData classData = projectData.getOrCreateClassData(entry.getValue());
+      if (lineHits.length == 0) {
+        classData.setLines(new LineData[1]);
+        continue;
+      }
+      final LineData[] lines = new LineData[lineHits.length];
+      for (int line = 0; line < lineHits.length; line++) {
+        if (lineHits[line] < 0) continue;
+        final LineData lineData = new LineData(line, null);
+        lineData.setHits(lineHits[line]);
+        lines[line] = lineData;
       }
+      classData.setLines(lines);
+    }
 
-      for (Map.Entry<String, SortedMap<Integer, Integer>> entry : data.getMergedDartFileCoverageData().entrySet()) {
-        ProgressManager.checkCanceled();
+    return projectData;
+  }
 
-        String filePath = getFileForUri(contextId, entry.getKey());
-        if (filePath == null) {
-          // File is not found.
+  /**
+   * Most URIs are resolved locally, only the rest is mapped by the Analysis Server, in a single batch.
+   *
+   * @return file paths of the found files
+   */
+  @NotNull
+  private static Map<String, String> mapUris(@NotNull final Project project,
+                                             @NotNull final String contextFilePath,
+                                             @NotNull final Collection<String> uris) {
+    final Map<String, String> result = new THashMap<>();
+    final List<String> unresolvedUris = new ArrayList<>();
+
+    ApplicationManager.getApplication().runReadAction(() -> {
+      final VirtualFile contextFile = LocalFileSystem.getInstance().findFileByPath(contextFilePath);
+      final DartUrlResolver resolver = contextFile == null ? null : DartUrlResolver.getInstance(project, contextFile);
+      for (String uri : uris) {
+        if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
+          // dart:_builtin or dart:core-patch/core_patch.dart
           continue;
         }
-        SortedMap<Integer, Integer> lineHits = entry.getValue();
-        ClassData classData = projectData.getOrCreateClassData(filePath);
-        if (lineHits.size() == 0) {
-          classData.setLines(new LineData[1]);
-          continue;
+
+        final VirtualFile file = resolver == null ? null : resolver.findFileByDartUrl(uri);
+        if (file != null && !file.isDirectory()) {
+          result.put(uri, file.getPath());
         }
-        LineData[] lines = new LineData[lineHits.lastKey() + 1];
-        for (Map.Entry<Integer, Integer> hit : lineHits.entrySet()) {
-          LineData lineData = new LineData(hit.getKey(), null);
-          lineData.setHits(hit.getValue());
-          lines[hit.getKey()] = lineData;
+        else {
+          unresolvedUris.add(uri);
         }
-        classData.setLines(lines);
       }
-    }
-    catch (FileNotFoundException | JsonSyntaxException e) {
-      LOG.warn(e);
-    }
-    finally {
-      DartAnalysisServerService.getInstance().execution_deleteContext(contextId);
+    });
+
+    if (unresolvedUris.isEmpty()) {
+      return result;
     }
 
-    return projectData;
-  }
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance();
+    final String contextId = service.execution_createContext(contextFilePath);
+    if (contextId == null) {
+      return result;
+    }
 
-  @Nullable
-  private static String getFileForUri(@NotNull final String contextId, @NotNull final String uri) {
-    if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
-      // dart:_builtin or dart:core-patch/core_patch.dart
-      return null;
+    try {
+      result.putAll(service.execution_mapUris(contextId, unresolvedUris));
+    }
+    finally {
+      service.execution_deleteContext(contextId);
     }
 
-    return DartAnalysisServerService.getInstance().execution_mapUri(contextId, null, uri);
+    return result;
   }
 
   @NotNull
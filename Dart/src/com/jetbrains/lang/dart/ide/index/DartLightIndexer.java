@@ -0,0 +1,624 @@
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.jetbrains.lang.dart.DartComponentType;
+import com.jetbrains.lang.dart.lexer.DartLexer;
+import com.jetbrains.lang.dart.util.DartPsiImplUtil;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static com.jetbrains.lang.dart.DartTokenTypes.*;
+import static com.jetbrains.lang.dart.DartTokenTypesSets.*;
+import static com.jetbrains.lang.dart.ide.index.DartImportOrExportInfo.Kind;
+
+/**
+ * Collects the same {@link DartFileIndexData} as {@link DartIndexUtil#indexFileRoots} but works with the token stream of a Dart file
+ * instead of PSI. Directives and declaration headers are recognized, everything else (function bodies, initializers) is skipped by
+ * matching brackets. If the code is anything but a straightforward sequence of well-formed declarations the scanner gives up and
+ * returns <code>null</code>, PSI-based indexing must be used in this case.
+ */
+class DartLightIndexer {
+
+  private static final TokenSet SKIPPED_TOKENS = TokenSet.orSet(WHITE_SPACES, COMMENTS);
+  private static final TokenSet OPEN_BRACKETS = TokenSet.create(LPAREN, LBRACKET, LBRACE);
+  private static final TokenSet CLOSE_BRACKETS = TokenSet.create(RPAREN, RBRACKET, RBRACE);
+  private static final TokenSet MODIFIERS = TokenSet.create(EXTERNAL, STATIC, CONST, FINAL, VAR, FACTORY);
+  private static final TokenSet VARIABLE_END = TokenSet.create(COMMA, SEMICOLON);
+  private static final TokenSet ARROW_BODY_END = TokenSet.create(SEMICOLON);
+  private static final TokenSet HEAD_TERMINATORS = TokenSet.create(LPAREN, EQ, COMMA, SEMICOLON, LBRACE, EXPRESSION_BODY_DEF);
+  private static final TokenSet FUNCTION_BODY_PREFIX = TokenSet.create(ASYNC, SYNC, MUL, NATIVE,
+                                                                       RAW_SINGLE_QUOTED_STRING, RAW_TRIPLE_QUOTED_STRING,
+                                                                       OPEN_QUOTE, REGULAR_STRING_PART, CLOSING_QUOTE);
+  private static final TokenSet CLASS_HEADER_TOKENS = TokenSet.create(DOT, LT, GT, COMMA, EXTENDS, WITH, IMPLEMENTS, NATIVE,
+                                                                      RAW_SINGLE_QUOTED_STRING, RAW_TRIPLE_QUOTED_STRING,
+                                                                      OPEN_QUOTE, REGULAR_STRING_PART, CLOSING_QUOTE);
+  private static final TokenSet USER_DEFINABLE_OPERATORS = TokenSet.create(PLUS, MINUS, MUL, DIV, REM, INT_DIV, EQ_EQ, LT, GT, LT_EQ,
+                                                                           LT_LT, EQ, LBRACKET, RBRACKET, BIN_NOT, OR, XOR, AND);
+
+  private static class Declaration {
+    @NotNull private final String myName;
+    @NotNull private final DartComponentType myType;
+    @Nullable private final List<String> myMemberNames; // classes and enums only
+
+    private Declaration(@NotNull final String name, @NotNull final DartComponentType type, @Nullable final List<String> memberNames) {
+      myName = name;
+      myType = type;
+      myMemberNames = memberNames;
+    }
+  }
+
+  private final CharSequence myText;
+  private IElementType[] myTypes = new IElementType[256];
+  private int[] myStarts = new int[256];
+  private int[] myEnds = new int[256];
+  private int myCount;
+  private int myPos;
+
+  private String myLibraryName;
+  private String myPartOfLibraryName;
+  private final List<Declaration> myDeclarations = new ArrayList<>();
+  private final List<DartImportOrExportInfo> myImportAndExportInfos = new ArrayList<>();
+  private final List<String> myPartUris = new ArrayList<>();
+
+  private DartLightIndexer(@NotNull final CharSequence text) {
+    myText = text;
+  }
+
+  /**
+   * @return index data equal to the one built from PSI, or <code>null</code> if the scanner can't guarantee that
+   */
+  @Nullable
+  static DartFileIndexData indexFile(@NotNull final CharSequence text, @NotNull final String fileName) {
+    final DartLightIndexer indexer = new DartLightIndexer(text);
+    if (!indexer.tokenize() || !indexer.parseUnit()) return null;
+    return indexer.buildIndexData(fileName);
+  }
+
+  private boolean tokenize() {
+    final DartLexer lexer = new DartLexer();
+    lexer.start(myText);
+    IElementType type;
+    while ((type = lexer.getTokenType()) != null) {
+      if (type == BAD_CHARACTER) return false;
+
+      if (!SKIPPED_TOKENS.contains(type)) {
+        if (myCount == myTypes.length) {
+          myTypes = Arrays.copyOf(myTypes, myCount * 2);
+          myStarts = Arrays.copyOf(myStarts, myCount * 2);
+          myEnds = Arrays.copyOf(myEnds, myCount * 2);
+        }
+        myTypes[myCount] = type;
+        myStarts[myCount] = lexer.getTokenStart();
+        myEnds[myCount] = lexer.getTokenEnd();
+        myCount++;
+      }
+      lexer.advance();
+    }
+    return true;
+  }
+
+  @NotNull
+  private DartFileIndexData buildIndexData(@NotNull final String fileName) {
+    final DartFileIndexData result = new DartFileIndexData();
+    result.setLibraryName(myLibraryName != null ? myLibraryName : myPartOfLibraryName != null ? myPartOfLibraryName : fileName);
+    result.setIsPart(myPartOfLibraryName != null);
+
+    for (Declaration declaration : myDeclarations) {
+      result.addSymbol(declaration.myName);
+      result.addComponentInfo(declaration.myName, new DartComponentInfo(declaration.myType, result.getLibraryName()));
+      if (declaration.myMemberNames != null) {
+        result.addClassName(declaration.myName);
+        for (String memberName : declaration.myMemberNames) {
+          result.addSymbol(memberName);
+        }
+      }
+    }
+
+    for (DartImportOrExportInfo info : myImportAndExportInfos) {
+      result.addImportInfo(info);
+      result.addComponentInfo(info.getImportPrefix(), new DartComponentInfo(DartComponentType.LABEL, null));
+    }
+
+    for (String partUri : myPartUris) {
+      result.addPartUri(partUri);
+    }
+
+    return result;
+  }
+
+  private IElementType at(final int index) {
+    return index < myCount ? myTypes[index] : null;
+  }
+
+  private boolean isId(final int index) {
+    final IElementType type = at(index);
+    return type == IDENTIFIER || BUILT_IN_IDENTIFIERS.contains(type);
+  }
+
+  @NotNull
+  private String text(final int firstToken, final int lastToken) {
+    return myText.subSequence(myStarts[firstToken], myEnds[lastToken]).toString();
+  }
+
+  private boolean parseUnit() {
+    while (myPos < myCount) {
+      if (!skipMetadata() || myPos == myCount) return false;
+
+      final IElementType type = at(myPos);
+      final IElementType next = at(myPos + 1);
+      final boolean ok;
+      if (type == LIBRARY && isId(myPos + 1)) {
+        ok = parseLibraryStatement();
+      }
+      else if (type == PART && next == OF) {
+        ok = parsePartOfStatement();
+      }
+      else if (type == PART && isStringStart(myPos + 1)) {
+        ok = parsePartStatement();
+      }
+      else if ((type == IMPORT || type == EXPORT) && isStringStart(myPos + 1)) {
+        ok = parseImportOrExportStatement();
+      }
+      else if (type == CLASS || type == ABSTRACT && next == CLASS) {
+        ok = parseClass();
+      }
+      else if (type == ENUM) {
+        ok = parseEnum();
+      }
+      else if (type == TYPEDEF) {
+        ok = parseTypedef();
+      }
+      else {
+        ok = parseDeclaration(null);
+      }
+
+      if (!ok) return false;
+    }
+    return true;
+  }
+
+  private boolean skipMetadata() {
+    while (at(myPos) == AT) {
+      myPos++;
+      if (!isId(myPos)) return false;
+      myPos++;
+      while (at(myPos) == DOT && isId(myPos + 1)) {
+        myPos += 2;
+      }
+      if (at(myPos) == LPAREN && !skipBrackets()) return false;
+    }
+    return true;
+  }
+
+  private boolean parseLibraryStatement() {
+    myPos++; // 'library'
+    final StringBuilder name = new StringBuilder(text(myPos, myPos));
+    myPos++;
+    while (at(myPos) == DOT && isId(myPos + 1)) {
+      name.append('.').append(text(myPos + 1, myPos + 1));
+      myPos += 2;
+    }
+    if (at(myPos) != SEMICOLON) return false;
+    myPos++;
+
+    if (myLibraryName == null) {
+      myLibraryName = name.toString();
+    }
+    return true;
+  }
+
+  private boolean parsePartOfStatement() {
+    myPos += 2; // 'part' 'of'
+    if (!isId(myPos)) return false;
+    final int first = myPos++;
+    while (at(myPos) == DOT && isId(myPos + 1)) {
+      myPos += 2;
+    }
+    if (at(myPos) != SEMICOLON) return false;
+
+    if (myPartOfLibraryName == null) {
+      myPartOfLibraryName = text(first, myPos - 1);
+    }
+    myPos++;
+    return true;
+  }
+
+  private boolean parsePartStatement() {
+    myPos++; // 'part'
+    final String uri = parseUri();
+    if (uri == null || at(myPos) != SEMICOLON) return false;
+    myPos++;
+
+    myPartUris.add(uri);
+    return true;
+  }
+
+  private boolean parseImportOrExportStatement() {
+    final Kind kind = at(myPos) == IMPORT ? Kind.Import : Kind.Export;
+    myPos++;
+    final String uri = parseUri();
+    if (uri == null) return false;
+
+    String importPrefix = null;
+    if (kind == Kind.Import && (at(myPos) == AS || at(myPos) == DEFERRED && at(myPos + 1) == AS)) {
+      myPos += at(myPos) == AS ? 1 : 2;
+      if (!isId(myPos)) return false;
+      importPrefix = text(myPos, myPos);
+      myPos++;
+    }
+
+    final Set<String> showComponentNames = new THashSet<>();
+    final Set<String> hideComponentNames = new THashSet<>();
+    while (at(myPos) == SHOW || at(myPos) == HIDE) {
+      final Set<String> names = at(myPos) == SHOW ? showComponentNames : hideComponentNames;
+      myPos++;
+      if (!isId(myPos)) return false;
+      names.add(text(myPos, myPos));
+      myPos++;
+      while (at(myPos) == COMMA && isId(myPos + 1)) {
+        names.add(text(myPos + 1, myPos + 1));
+        myPos += 2;
+      }
+    }
+
+    if (at(myPos) != SEMICOLON) return false;
+    myPos++;
+
+    myImportAndExportInfos.add(new DartImportOrExportInfo(kind, uri, importPrefix, showComponentNames, hideComponentNames));
+    return true;
+  }
+
+  private boolean isStringStart(final int index) {
+    final IElementType type = at(index);
+    return type == OPEN_QUOTE || type == RAW_SINGLE_QUOTED_STRING || type == RAW_TRIPLE_QUOTED_STRING;
+  }
+
+  /**
+   * Accepts a single string literal without interpolation, as {@link DartPsiImplUtil#getUriString} would see it.
+   */
+  @Nullable
+  private String parseUri() {
+    final int first = myPos;
+    if (at(myPos) == OPEN_QUOTE) {
+      myPos++;
+      while (at(myPos) == REGULAR_STRING_PART) {
+        myPos++;
+      }
+      if (at(myPos) != CLOSING_QUOTE) return null;
+    }
+    else if (!isStringStart(myPos)) {
+      return null;
+    }
+
+    final int last = myPos++;
+    if (isStringStart(myPos)) return null; // adjacent string literals
+
+    return DartPsiImplUtil.getUnquotedDartStringAndItsRange(text(first, last)).first;
+  }
+
+  private boolean parseClass() {
+    if (at(myPos) == ABSTRACT) {
+      myPos++;
+    }
+    myPos++; // 'class'
+    if (!isId(myPos)) return false;
+    final String name = text(myPos, myPos);
+    myPos++;
+
+    if (at(myPos) == LT && !skipTypeParameters()) return false;
+
+    final List<String> memberNames = new ArrayList<>();
+    if (at(myPos) == EQ) {
+      // mixin application, no body
+      while (at(myPos) != SEMICOLON) {
+        if (myPos == myCount || OPEN_BRACKETS.contains(at(myPos)) || CLOSE_BRACKETS.contains(at(myPos))) return false;
+        myPos++;
+      }
+      myPos++;
+    }
+    else {
+      while (at(myPos) != LBRACE) {
+        if (!isId(myPos) && !CLASS_HEADER_TOKENS.contains(at(myPos))) return false;
+        myPos++;
+      }
+      myPos++;
+
+      while (at(myPos) != RBRACE) {
+        if (!skipMetadata() || myPos == myCount || !parseDeclaration(memberNames)) return false;
+      }
+      myPos++;
+    }
+
+    myDeclarations.add(new Declaration(name, DartComponentType.CLASS, memberNames));
+    return true;
+  }
+
+  private boolean parseEnum() {
+    myPos++; // 'enum'
+    if (!isId(myPos) || at(myPos + 1) != LBRACE) return false;
+    final String name = text(myPos, myPos);
+    myPos += 2;
+
+    final List<String> constantNames = new ArrayList<>();
+    while (at(myPos) != RBRACE) {
+      if (!isId(myPos)) return false;
+      constantNames.add(text(myPos, myPos));
+      myPos++;
+      if (at(myPos) == COMMA) {
+        myPos++;
+      }
+      else if (at(myPos) != RBRACE) {
+        return false;
+      }
+    }
+    if (constantNames.isEmpty()) return false;
+    myPos++;
+
+    myDeclarations.add(new Declaration(name, DartComponentType.CLASS, constantNames));
+    return true;
+  }
+
+  private boolean parseTypedef() {
+    myPos++; // 'typedef'
+    // either 'returnType name' or a name, possibly followed by type parameters
+    final int typeEnd = parseType(myPos);
+    final int nameIndex = typeEnd > 0 && isId(typeEnd) ? typeEnd : myPos;
+    if (!isId(nameIndex)) return false;
+    myPos = nameIndex + 1;
+
+    if (at(myPos) == LT && !skipTypeParameters()) return false;
+    if (at(myPos) != LPAREN || !skipBrackets() || at(myPos) != SEMICOLON) return false;
+    myPos++;
+
+    myDeclarations.add(new Declaration(text(nameIndex, nameIndex), DartComponentType.TYPEDEF, null));
+    return true;
+  }
+
+  /**
+   * Parses a function, getter, setter or variable list at the top level (<code>memberNames</code> is <code>null</code>)
+   * or a class member.
+   */
+  private boolean parseDeclaration(@Nullable final List<String> memberNames) {
+    final boolean inClass = memberNames != null;
+
+    boolean varOrFinal = false;
+    boolean constModifier = false;
+    boolean staticModifier = false;
+    boolean factory = false;
+    while (MODIFIERS.contains(at(myPos))) {
+      final IElementType modifier = at(myPos);
+      varOrFinal |= modifier == VAR || modifier == FINAL;
+      constModifier |= modifier == CONST;
+      staticModifier |= modifier == STATIC;
+      factory |= modifier == FACTORY;
+      myPos++;
+    }
+    if ((staticModifier || factory) && !inClass) return false;
+
+    final int headStart = myPos;
+    int angleDepth = 0;
+    while (angleDepth > 0 || !HEAD_TERMINATORS.contains(at(myPos))) {
+      final IElementType type = at(myPos);
+      if (type == NATIVE && myPos > headStart && (isStringStart(myPos + 1) || at(myPos + 1) == SEMICOLON)) {
+        break; // native getter
+      }
+      if (type == OPERATOR && inClass && USER_DEFINABLE_OPERATORS.contains(at(myPos + 1)) && angleDepth == 0) {
+        return parseOperator(headStart, memberNames);
+      }
+      if (type == LT) {
+        angleDepth++;
+      }
+      else if (type == GT) {
+        angleDepth--;
+        if (angleDepth < 0) return false;
+      }
+      else if (type != VOID && type != DOT && !(type == COMMA && angleDepth > 0) && !isId(myPos)) {
+        return false;
+      }
+      myPos++;
+    }
+
+    final int nameIndex = myPos - 1;
+    if (nameIndex < headStart || !isId(nameIndex)) return false;
+
+    final int prefixEnd = nameIndex;
+    final IElementType lastPrefixToken = prefixEnd > headStart ? at(prefixEnd - 1) : null;
+    final boolean getter = lastPrefixToken == GET && (prefixEnd - 1 == headStart || parseType(headStart) == prefixEnd - 1);
+    final boolean setter = lastPrefixToken == SET && (prefixEnd - 1 == headStart || parseType(headStart) == prefixEnd - 1);
+    final boolean typed = prefixEnd > headStart && parseType(headStart) == prefixEnd;
+    final boolean constructorLike = prefixEnd - headStart == 2 && isId(headStart) && at(headStart + 1) == DOT;
+
+    final String name = text(nameIndex, nameIndex);
+    final IElementType terminator = at(myPos);
+
+    if (factory) {
+      // 'factory A()' has no name, 'factory A.b()' is named 'b'
+      if (terminator != LPAREN || varOrFinal || !(prefixEnd == headStart || constructorLike)) return false;
+      if (!skipBrackets() || !skipFunctionBody()) return false;
+      if (constructorLike) {
+        memberNames.add(name);
+      }
+      return true;
+    }
+
+    if (terminator == LPAREN) {
+      if (varOrFinal || constModifier && (!inClass || getter || setter)) return false;
+      if (!(prefixEnd == headStart || getter || setter || typed || inClass && constructorLike)) return false;
+      if (!skipBrackets() || !skipFunctionBody()) return false;
+      addDeclaration(name, DartComponentType.FUNCTION, memberNames);
+      return true;
+    }
+
+    if (terminator == LBRACE || terminator == EXPRESSION_BODY_DEF || terminator == NATIVE || terminator == SEMICOLON && getter) {
+      // getter without parameters
+      if (!getter || varOrFinal || constModifier || !skipFunctionBody()) return false;
+      addDeclaration(name, DartComponentType.FUNCTION, memberNames);
+      return true;
+    }
+
+    // variables
+    if (getter || setter || !(typed || (varOrFinal || constModifier) && prefixEnd == headStart)) return false;
+    addDeclaration(name, DartComponentType.VARIABLE, memberNames);
+    while (true) {
+      if (at(myPos) == EQ) {
+        myPos++;
+        if (!skipTo(VARIABLE_END)) return false;
+      }
+      if (at(myPos) == SEMICOLON) {
+        myPos++;
+        return true;
+      }
+      if (at(myPos) != COMMA || !isId(myPos + 1)) return false;
+      addDeclaration(text(myPos + 1, myPos + 1), DartComponentType.VARIABLE, memberNames);
+      myPos += 2;
+    }
+  }
+
+  private boolean parseOperator(final int headStart, @NotNull final List<String> memberNames) {
+    if (myPos > headStart && parseType(headStart) != myPos) return false;
+
+    final int first = ++myPos;
+    while (at(myPos) != LPAREN) {
+      if (!USER_DEFINABLE_OPERATORS.contains(at(myPos))) return false;
+      myPos++;
+    }
+
+    memberNames.add(text(first, myPos - 1));
+    return skipBrackets() && skipFunctionBody();
+  }
+
+  private void addDeclaration(@NotNull final String name, @NotNull final DartComponentType type, @Nullable final List<String> memberNames) {
+    if (memberNames != null) {
+      memberNames.add(name);
+    }
+    else {
+      myDeclarations.add(new Declaration(name, type, null));
+    }
+  }
+
+  /**
+   * Skips everything after the parameter list: async modifiers, native clause, initializers or redirection, and the body itself.
+   */
+  private boolean skipFunctionBody() {
+    boolean initializersOrRedirection = false;
+    while (true) {
+      final IElementType type = at(myPos);
+      if (type == null) return false;
+      if (type == SEMICOLON) {
+        myPos++;
+        return true;
+      }
+      if (type == LBRACE) {
+        return skipBrackets();
+      }
+      if (type == EXPRESSION_BODY_DEF) {
+        myPos++;
+        if (!skipTo(ARROW_BODY_END)) return false;
+        myPos++;
+        return true;
+      }
+
+      if (type == COLON || type == EQ) {
+        initializersOrRedirection = true;
+      }
+      else if (!initializersOrRedirection && !FUNCTION_BODY_PREFIX.contains(type)) {
+        return false;
+      }
+
+      if (OPEN_BRACKETS.contains(type)) {
+        if (!skipBrackets()) return false;
+      }
+      else if (CLOSE_BRACKETS.contains(type)) {
+        return false;
+      }
+      else {
+        myPos++;
+      }
+    }
+  }
+
+  /**
+   * Moves to the first of the given tokens that is not nested in brackets.
+   */
+  private boolean skipTo(@NotNull final TokenSet terminators) {
+    while (true) {
+      final IElementType type = at(myPos);
+      if (type == null || CLOSE_BRACKETS.contains(type)) return false;
+      if (terminators.contains(type)) return true;
+
+      if (OPEN_BRACKETS.contains(type)) {
+        if (!skipBrackets()) return false;
+      }
+      else {
+        myPos++;
+      }
+    }
+  }
+
+  /**
+   * Moves past the bracket that matches the one at the current position.
+   */
+  private boolean skipBrackets() {
+    int depth = 0;
+    do {
+      final IElementType type = at(myPos);
+      if (type == null) return false;
+      if (OPEN_BRACKETS.contains(type)) {
+        depth++;
+      }
+      else if (CLOSE_BRACKETS.contains(type)) {
+        depth--;
+      }
+      myPos++;
+    }
+    while (depth > 0);
+    return true;
+  }
+
+  private boolean skipTypeParameters() {
+    myPos++; // '<'
+    while (true) {
+      if (!skipMetadata() || !isId(myPos)) return false;
+      myPos++;
+      if (at(myPos) == EXTENDS) {
+        myPos = parseType(myPos + 1);
+        if (myPos < 0) return false;
+      }
+      if (at(myPos) == GT) {
+        myPos++;
+        return true;
+      }
+      if (at(myPos) != COMMA) return false;
+      myPos++;
+    }
+  }
+
+  /**
+   * @return index of the first token after the type that starts at <code>index</code>, or -1
+   */
+  private int parseType(int index) {
+    if (at(index) == VOID) return index + 1;
+    if (!isId(index)) return -1;
+    index++;
+    if (at(index) == DOT && isId(index + 1)) {
+      index += 2;
+    }
+    if (at(index) != LT) return index;
+
+    index++;
+    while (true) {
+      index = parseType(index);
+      if (index < 0) return -1;
+      if (at(index) == GT) return index + 1;
+      if (at(index) != COMMA) return -1;
+      index++;
+    }
+  }
+}
@@ -6,6 +6,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Ref;
 import com.intellij.util.Alarm;
 import com.intellij.util.concurrency.Semaphore;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.breakpoints.XBreakpointProperties;
 import com.intellij.xdebugger.breakpoints.XLineBreakpoint;
@@ -27,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VmServiceWrapper implements Disposable {
@@ -44,6 +46,11 @@ public class VmServiceWrapper implements Disposable {
 
   @Nullable private StepOption myLatestStep;
 
+  // Object ids and collection contents are valid only while the isolate is paused. Counters are incremented on each resume or step,
+  // so that requests made before it are dropped, and collection pages fetched during the previous pause are forgotten.
+  private final ConcurrentMap<String, AtomicInteger> myIsolateResumeCounters = ContainerUtil.newConcurrentMap();
+  private final ConcurrentMap<String, Obj> myCollectionPages = ContainerUtil.newConcurrentMap();
+
   public VmServiceWrapper(@NotNull final DartVmServiceDebugProcess debugProcess,
                           @NotNull final VmService vmService,
                           @NotNull final IsolatesInfo isolatesInfo,
@@ -236,6 +243,8 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void resumeIsolate(@NotNull final String isolateId, @Nullable final StepOption stepOption) {
+    isolateResumed(isolateId);
+
     addRequest(() -> {
       myLatestStep = stepOption;
       myVmService.resume(isolateId, stepOption, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
@@ -305,15 +314,112 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void getObject(@NotNull final String isolateId, @NotNull final String objectId, @NotNull final GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    final int resumeCount = getResumeCounter(isolateId).get();
+    addRequest(() -> {
+      if (isStale(isolateId, resumeCount)) return;
+      myVmService.getObject(isolateId, objectId, new PauseAwareGetObjectConsumer(isolateId, objectId, resumeCount, null, consumer));
+    });
   }
 
+  /**
+   * Collection pages are cached until the isolate is resumed, so collapsing and expanding a node or scrolling back to an already
+   * shown range of a large list doesn't go to the VM again.
+   */
   public void getCollectionObject(@NotNull final String isolateId,
                                   @NotNull final String objectId,
                                   final int offset,
                                   final int count,
                                   @NotNull final GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    final String pageKey = isolateId + "/" + objectId + "/" + offset + "/" + count;
+    final Obj cachedPage = myCollectionPages.get(pageKey);
+    if (cachedPage != null) {
+      consumer.received(cachedPage);
+      return;
+    }
+
+    final int resumeCount = getResumeCounter(isolateId).get();
+    addRequest(() -> {
+      if (isStale(isolateId, resumeCount)) return;
+      myVmService.getObject(isolateId, objectId, offset, count,
+                            new PauseAwareGetObjectConsumer(isolateId, objectId + " [" + offset + ", " + count + "]", resumeCount, pageKey,
+                                                            consumer));
+    });
+  }
+
+  /**
+   * Called when the isolate is resumed or stepped either from the IDE or by somebody else, and when the isolate exits.
+   */
+  public void isolateResumed(@NotNull final String isolateId) {
+    getResumeCounter(isolateId).incrementAndGet();
+    final String pageKeyPrefix = isolateId + "/";
+    myCollectionPages.keySet().removeIf(key -> key.startsWith(pageKeyPrefix));
+  }
+
+  @NotNull
+  private AtomicInteger getResumeCounter(@NotNull final String isolateId) {
+    return myIsolateResumeCounters.computeIfAbsent(isolateId, id -> new AtomicInteger());
+  }
+
+  private boolean isStale(@NotNull final String isolateId, final int resumeCount) {
+    return getResumeCounter(isolateId).get() != resumeCount;
+  }
+
+  /**
+   * Drops responses that come after the isolate has been resumed or stepped: the variables tree they were requested for is already gone.
+   * Also logs getObject() round trip time at debug level.
+   */
+  private class PauseAwareGetObjectConsumer implements GetObjectConsumer {
+    @NotNull private final String myIsolateId;
+    @NotNull private final String myRequestDescription;
+    private final int myResumeCount;
+    @Nullable private final String myPageKey;
+    @NotNull private final GetObjectConsumer myConsumer;
+    private final long myStartTime = System.nanoTime();
+
+    private PauseAwareGetObjectConsumer(@NotNull final String isolateId,
+                                        @NotNull final String requestDescription,
+                                        final int resumeCount,
+                                        @Nullable final String pageKey,
+                                        @NotNull final GetObjectConsumer consumer) {
+      myIsolateId = isolateId;
+      myRequestDescription = requestDescription;
+      myResumeCount = resumeCount;
+      myPageKey = pageKey;
+      myConsumer = consumer;
+    }
+
+    @Override
+    public void received(final Obj response) {
+      if (responseReceived("object")) {
+        if (myPageKey != null) {
+          myCollectionPages.put(myPageKey, response);
+        }
+        myConsumer.received(response);
+      }
+    }
+
+    @Override
+    public void received(final Sentinel response) {
+      if (responseReceived("sentinel")) {
+        myConsumer.received(response);
+      }
+    }
+
+    @Override
+    public void onError(final RPCError error) {
+      if (responseReceived("error")) {
+        myConsumer.onError(error);
+      }
+    }
+
+    private boolean responseReceived(@NotNull final String responseKind) {
+      final boolean stale = isStale(myIsolateId, myResumeCount);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("getObject " + myRequestDescription + ": " + responseKind + " received in " +
+                  (System.nanoTime() - myStartTime) / 1000000 + " ms" + (stale ? ", dropped because isolate was resumed" : ""));
+      }
+      return !stale;
+    }
   }
 
   public void evaluateInFrame(@NotNull final String isolateId,
@@ -25,6 +25,9 @@ public class DartVmServiceValue extends XNamedValue {
   private static final LayeredIcon STATIC_FIELD_ICON = new LayeredIcon(AllIcons.Nodes.Field, AllIcons.Nodes.StaticMark);
   private static final LayeredIcon STATIC_FINAL_FIELD_ICON =
     new LayeredIcon(AllIcons.Nodes.Field, AllIcons.Nodes.StaticMark, AllIcons.Nodes.FinalMark);
+  // larger collections are shown as [0..99], [100..199], ... ranges (10 times larger ranges while there would be more than
+  // MAX_CHILDREN_TO_SHOW of them), each range requests its elements only when expanded
+  private static final int MAX_COLLECTION_SIZE_WITHOUT_RANGES = XCompositeNode.MAX_CHILDREN_TO_SHOW * 10;
 
   @NotNull private final DartVmServiceDebugProcess myDebugProcess;
   @NotNull private String myIsolateId;
@@ -324,26 +327,38 @@ public class DartVmServiceValue extends XNamedValue {
   }
 
   private void computeCollectionChildren(@NotNull final XCompositeNode node) {
-    final int offset = myCollectionChildrenAlreadyShown.get();
-    final int count = Math.min(myInstanceRef.getLength() - offset, XCompositeNode.MAX_CHILDREN_TO_SHOW);
+    computeCollectionChildren(node, 0, myInstanceRef.getLength(), myCollectionChildrenAlreadyShown);
+  }
+
+  private void computeCollectionChildren(@NotNull final XCompositeNode node,
+                                         final int rangeStart,
+                                         final int rangeEnd,
+                                         @NotNull final Ref<Integer> childrenAlreadyShown) {
+    if (childrenAlreadyShown.get() == 0 && rangeEnd - rangeStart > MAX_COLLECTION_SIZE_WITHOUT_RANGES) {
+      addCollectionRanges(node, rangeStart, rangeEnd);
+      return;
+    }
+
+    final int offset = rangeStart + childrenAlreadyShown.get();
+    final int count = Math.min(rangeEnd - offset, XCompositeNode.MAX_CHILDREN_TO_SHOW);
 
     myDebugProcess.getVmServiceWrapper().getCollectionObject(myIsolateId, myInstanceRef.getId(), offset, count, new GetObjectConsumer() {
       @Override
       public void received(Obj instance) {
         if (isListKind(myInstanceRef.getKind())) {
-          addListChildren(node, ((Instance)instance).getElements());
+          addListChildren(node, ((Instance)instance).getElements(), offset);
         }
         else if (myInstanceRef.getKind() == InstanceKind.Map) {
-          addMapChildren(node, ((Instance)instance).getAssociations());
+          addMapChildren(node, ((Instance)instance).getAssociations(), offset);
         }
         else {
           assert false : myInstanceRef.getKind();
         }
 
-        myCollectionChildrenAlreadyShown.set(myCollectionChildrenAlreadyShown.get() + count);
+        childrenAlreadyShown.set(childrenAlreadyShown.get() + count);
 
-        if (offset + count < myInstanceRef.getLength()) {
-          node.tooManyChildren(myInstanceRef.getLength() - offset - count);
+        if (offset + count < rangeEnd) {
+          node.tooManyChildren(rangeEnd - offset - count);
         }
       }
 
@@ -359,18 +374,52 @@ public class DartVmServiceValue extends XNamedValue {
     });
   }
 
-  private void addListChildren(@NotNull final XCompositeNode node, @NotNull final ElementList<InstanceRef> listElements) {
+  private void addCollectionRanges(@NotNull final XCompositeNode node, final int rangeStart, final int rangeEnd) {
+    int subRangeSize = XCompositeNode.MAX_CHILDREN_TO_SHOW;
+    while ((rangeEnd - rangeStart + subRangeSize - 1) / subRangeSize > XCompositeNode.MAX_CHILDREN_TO_SHOW) {
+      subRangeSize *= 10;
+    }
+
+    final XValueChildrenList childrenList = new XValueChildrenList();
+    for (int subRangeStart = rangeStart; subRangeStart < rangeEnd; subRangeStart += subRangeSize) {
+      childrenList.addBottomGroup(new CollectionRange(subRangeStart, Math.min(subRangeStart + subRangeSize, rangeEnd)));
+    }
+    node.addChildren(childrenList, true);
+  }
+
+  private class CollectionRange extends XValueGroup {
+    private final int myRangeStart;
+    private final int myRangeEnd;
+    private final Ref<Integer> myChildrenAlreadyShown = new Ref<>(0);
+
+    private CollectionRange(final int rangeStart, final int rangeEnd) {
+      super("[" + rangeStart + ".." + (rangeEnd - 1) + "]");
+      myRangeStart = rangeStart;
+      myRangeEnd = rangeEnd;
+    }
+
+    @Override
+    public void computeChildren(@NotNull final XCompositeNode node) {
+      computeCollectionChildren(node, myRangeStart, myRangeEnd, myChildrenAlreadyShown);
+    }
+  }
+
+  private void addListChildren(@NotNull final XCompositeNode node,
+                               @NotNull final ElementList<InstanceRef> listElements,
+                               final int firstIndex) {
     final XValueChildrenList childrenList = new XValueChildrenList(listElements.size());
-    int index = myCollectionChildrenAlreadyShown.get();
+    int index = firstIndex;
     for (InstanceRef listElement : listElements) {
       childrenList.add(new DartVmServiceValue(myDebugProcess, myIsolateId, String.valueOf(index++), listElement, null, false));
     }
     node.addChildren(childrenList, true);
   }
 
-  private void addMapChildren(@NotNull final XCompositeNode node, @NotNull final ElementList<MapAssociation> mapAssociations) {
+  private void addMapChildren(@NotNull final XCompositeNode node,
+                              @NotNull final ElementList<MapAssociation> mapAssociations,
+                              final int firstIndex) {
     final XValueChildrenList childrenList = new XValueChildrenList(mapAssociations.size());
-    int index = myCollectionChildrenAlreadyShown.get();
+    int index = firstIndex;
     for (MapAssociation mapAssociation : mapAssociations) {
       final InstanceRef keyInstanceRef = mapAssociation.getKey();
       final InstanceRef valueInstanceRef = mapAssociation.getValue();
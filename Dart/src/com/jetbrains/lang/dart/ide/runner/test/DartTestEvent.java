@@ -0,0 +1,272 @@
+package com.jetbrains.lang.dart.ide.runner.test;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * One line of the <code>pub run test --reporter json</code> output, decoded with a streaming reader without building a JSON tree.
+ * Only the fields used by {@link DartTestEventsConverter} are kept. Missing or <code>null</code> values are <code>null</code> for
+ * strings and -1 for numbers, same as they were treated when the line was parsed into a tree.
+ */
+class DartTestEvent {
+  static final long NO_TIME = Long.MIN_VALUE;
+
+  @Nullable String type;
+  long time = NO_TIME;
+  int testId = -1;
+  @Nullable String result;
+  @Nullable String message;
+  @Nullable String error;
+  @Nullable String stackTrace;
+  @Nullable Boolean isFailure;
+  int count = -1;
+
+  @Nullable ItemData test;
+  @Nullable ItemData group;
+  @Nullable ItemData suite;
+
+  /**
+   * The <code>test</code>, <code>group</code> or <code>suite</code> object of the event.
+   */
+  static class ItemData {
+    int id = -1;
+    @Nullable String name;
+    int suiteId = -1;
+    int parentId = -1;
+    @NotNull int[] groupIds = ArrayUtil.EMPTY_INT_ARRAY;
+    int testCount = -1;
+    int line = -1;
+    int column = -1;
+    @Nullable String url;
+    @Nullable String path;
+    @Nullable String platform;
+    boolean skip;
+    @Nullable String skipReason;
+  }
+
+  /**
+   * @return <code>null</code> if the text is valid JSON but not an object, like an empty line
+   * @throws JsonSyntaxException if the text is not JSON, e.g. a service message or a plain output line
+   */
+  @Nullable
+  static DartTestEvent parse(@NotNull final String text) throws JsonSyntaxException {
+    final JsonReader reader = new JsonReader(new StringReader(text));
+    reader.setLenient(true);
+    try {
+      final JsonToken token;
+      try {
+        token = reader.peek();
+      }
+      catch (EOFException e) {
+        return null; // empty or whitespace-only text
+      }
+
+      DartTestEvent event = null;
+      if (token == JsonToken.BEGIN_OBJECT) {
+        event = new DartTestEvent();
+        event.read(reader);
+      }
+      else {
+        reader.skipValue();
+      }
+
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("Did not consume the entire document.");
+      }
+      return event;
+    }
+    catch (IOException | IllegalStateException | NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  private void read(@NotNull final JsonReader reader) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      switch (name) {
+        case "type":
+          type = readString(reader);
+          break;
+        case "time":
+          time = readLong(reader);
+          break;
+        case "testID":
+          testId = readInt(reader);
+          break;
+        case "result":
+          result = readString(reader);
+          break;
+        case "message":
+          message = readString(reader);
+          break;
+        case "error":
+          error = readString(reader);
+          break;
+        case "stackTrace":
+          stackTrace = readString(reader);
+          break;
+        case "isFailure":
+          final String isFailureValue = readString(reader);
+          isFailure = isFailureValue == null ? null : Boolean.valueOf(isFailureValue);
+          break;
+        case "count":
+          count = readInt(reader);
+          break;
+        case "test":
+          test = readItem(reader);
+          break;
+        case "group":
+          group = readItem(reader);
+          break;
+        case "suite":
+          suite = readItem(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  @Nullable
+  private static ItemData readItem(@NotNull final JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return null;
+    }
+
+    final ItemData item = new ItemData();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      switch (name) {
+        case "id":
+          item.id = readInt(reader);
+          break;
+        case "name":
+          item.name = readString(reader);
+          break;
+        case "suiteID":
+          item.suiteId = readInt(reader);
+          break;
+        case "parentID":
+          item.parentId = readInt(reader);
+          break;
+        case "groupIDs":
+          item.groupIds = readIntArray(reader);
+          break;
+        case "testCount":
+          item.testCount = readInt(reader);
+          break;
+        case "line":
+          item.line = readInt(reader);
+          break;
+        case "column":
+          item.column = readInt(reader);
+          break;
+        case "url":
+          item.url = readString(reader);
+          break;
+        case "path":
+          item.path = readString(reader);
+          break;
+        case "platform":
+          item.platform = readString(reader);
+          break;
+        case "metadata":
+          readMetadata(reader, item);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return item;
+  }
+
+  private static void readMetadata(@NotNull final JsonReader reader, @NotNull final ItemData item) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if ("skip".equals(name) && reader.peek() == JsonToken.BOOLEAN) {
+        item.skip = reader.nextBoolean();
+      }
+      else if ("skipReason".equals(name)) {
+        item.skipReason = readString(reader);
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * @return string form of a primitive value, <code>null</code> for <code>null</code>, objects and arrays
+   */
+  @Nullable
+  private static String readString(@NotNull final JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case STRING:
+      case NUMBER:
+        return reader.nextString();
+      case BOOLEAN:
+        return String.valueOf(reader.nextBoolean());
+      default:
+        reader.skipValue();
+        return null;
+    }
+  }
+
+  private static int readInt(@NotNull final JsonReader reader) throws IOException {
+    final JsonToken token = reader.peek();
+    if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+      return reader.nextInt();
+    }
+    reader.skipValue();
+    return -1;
+  }
+
+  private static long readLong(@NotNull final JsonReader reader) throws IOException {
+    final JsonToken token = reader.peek();
+    if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+      return reader.nextLong();
+    }
+    reader.skipValue();
+    return NO_TIME;
+  }
+
+  @NotNull
+  private static int[] readIntArray(@NotNull final JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      reader.skipValue();
+      return ArrayUtil.EMPTY_INT_ARRAY;
+    }
+
+    int[] result = ArrayUtil.EMPTY_INT_ARRAY;
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == result.length) {
+        result = ArrayUtil.realloc(result, Math.max(4, size * 2));
+      }
+      result[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    return size == result.length ? result : ArrayUtil.realloc(result, size);
+  }
+}
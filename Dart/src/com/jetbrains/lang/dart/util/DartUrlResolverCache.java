@@ -0,0 +1,189 @@
+package com.jetbrains.lang.dart.util;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.*;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.lang.dart.DartProjectComponent;
+import com.jetbrains.lang.dart.sdk.DartSdk;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.jetbrains.lang.dart.util.PubspecYamlUtil.PUBSPEC_YAML;
+
+/**
+ * Keeps {@link DartUrlResolverImpl} instances per module and pubspec.yaml file, so that .packages file and pubspec.yaml path dependencies
+ * are not read on each {@link DartUrlResolver#getInstance(Project, VirtualFile)} call. Everything is dropped on project roots change
+ * (that includes Dart SDK and Dart Packages library changes), when .packages or pubspec.yaml files are added, deleted, changed or moved,
+ * and when folders next to pubspec.yaml files or folders used by cached resolvers (or their parents) are added, deleted or moved.
+ * Unsaved pubspec.yaml changes are detected by the document modification stamp.
+ */
+public class DartUrlResolverCache {
+  @NotNull private final Project myProject;
+  private final ConcurrentMap<Pair<Module, VirtualFile>, CachedResolver> myResolvers = ContainerUtil.newConcurrentMap();
+  private volatile long myRootsModificationCount = -1;
+  // incremented on each clear() so that a resolver created before the change is not cached after it
+  private final SimpleModificationTracker myClearTracker = new SimpleModificationTracker();
+
+  private static class CachedResolver {
+    @NotNull private final DartUrlResolverImpl myResolver;
+    @Nullable private final DartSdk myDartSdk;
+    private final long myPubspecStamp;
+    // folders whose deletion, creation or move changes the resolver
+    @NotNull private final List<String> myDirPaths = new SmartList<>();
+
+    private CachedResolver(@NotNull final DartUrlResolverImpl resolver, @Nullable final DartSdk dartSdk, final long pubspecStamp) {
+      myResolver = resolver;
+      myDartSdk = dartSdk;
+      myPubspecStamp = pubspecStamp;
+
+      final VirtualFile pubspecYamlFile = resolver.getPubspecYamlFile();
+      final VirtualFile pubspecDir = pubspecYamlFile == null ? null : pubspecYamlFile.getParent();
+      if (pubspecDir != null) myDirPaths.add(pubspecDir.getPath());
+      final VirtualFile packageRoot = resolver.getPackageRoot();
+      if (packageRoot != null) myDirPaths.add(packageRoot.getPath());
+      resolver.processLivePackages((packageName, packageDir) -> myDirPaths.add(packageDir.getPath()));
+    }
+  }
+
+  public static DartUrlResolverCache getInstance(@NotNull final Project project) {
+    return ServiceManager.getService(project, DartUrlResolverCache.class);
+  }
+
+  public DartUrlResolverCache(@NotNull final Project project) {
+    myProject = project;
+
+    if (!project.isDefault()) {
+      VirtualFileManager.getInstance().addVirtualFileListener(new VirtualFileAdapter() {
+        @Override
+        public void propertyChanged(@NotNull final VirtualFilePropertyEvent event) {
+          if (!VirtualFile.PROP_NAME.equals(event.getPropertyName())) return;
+
+          if (isWatchedName(event.getOldValue()) || isWatchedName(event.getNewValue())) {
+            clear();
+          }
+          else if (event.getFile().isDirectory() && event.getParent() != null) {
+            final String parentPath = event.getParent().getPath();
+            dirChanged(parentPath + "/" + event.getOldValue(), event.getParent());
+            dirChanged(parentPath + "/" + event.getNewValue(), event.getParent());
+          }
+        }
+
+        @Override
+        public void contentsChanged(@NotNull final VirtualFileEvent event) {
+          fileChanged(event.getFile(), event.getParent());
+        }
+
+        @Override
+        public void fileCreated(@NotNull final VirtualFileEvent event) {
+          fileChanged(event.getFile(), event.getParent());
+        }
+
+        @Override
+        public void fileDeleted(@NotNull final VirtualFileEvent event) {
+          fileChanged(event.getFile(), event.getParent());
+        }
+
+        @Override
+        public void fileMoved(@NotNull final VirtualFileMoveEvent event) {
+          final VirtualFile file = event.getFile();
+          if (file.isDirectory()) {
+            dirChanged(event.getOldParent().getPath() + "/" + file.getName(), event.getOldParent());
+          }
+          fileChanged(file, event.getNewParent());
+        }
+
+        @Override
+        public void fileCopied(@NotNull final VirtualFileCopyEvent event) {
+          fileChanged(event.getFile(), event.getParent());
+        }
+      }, project);
+    }
+  }
+
+  private static boolean isWatchedName(@Nullable final Object fileName) {
+    return PUBSPEC_YAML.equals(fileName) || DotPackagesFileUtil.DOT_PACKAGES.equals(fileName);
+  }
+
+  private void fileChanged(@NotNull final VirtualFile file, @Nullable final VirtualFile parent) {
+    if (isWatchedName(file.getName())) {
+      clear();
+    }
+    else if (file.isDirectory()) {
+      dirChanged(file.getPath(), parent);
+    }
+  }
+
+  private void dirChanged(@NotNull final String dirPath, @Nullable final VirtualFile parent) {
+    if (isWatchedDir(dirPath, parent)) {
+      clear();
+    }
+  }
+
+  private boolean isWatchedDir(@NotNull final String dirPath, @Nullable final VirtualFile parent) {
+    // 'lib' and 'packages' folders may appear or disappear next to pubspec.yaml
+    if (parent != null && parent.findChild(PUBSPEC_YAML) != null) return true;
+
+    // pubspec.yaml folder, package root or package folder of a cached resolver, or any folder above them
+    for (CachedResolver cached : myResolvers.values()) {
+      for (String path : cached.myDirPaths) {
+        if (FileUtil.isAncestor(dirPath, path, false)) return true;
+      }
+    }
+    return false;
+  }
+
+  private void clear() {
+    myClearTracker.incModificationCount();
+    myResolvers.clear();
+  }
+
+  @NotNull
+  DartUrlResolver getResolver(@NotNull final VirtualFile contextFile) {
+    final Module module = ModuleUtilCore.findModuleForFile(contextFile, myProject);
+    if (module == null) {
+      // resolver depends on the order entries of the file, not worth caching
+      return new DartUrlResolverImpl(myProject, contextFile);
+    }
+
+    final long rootsModificationCount = DartProjectComponent.getProjectRootsModificationTracker(myProject).getModificationCount();
+    if (rootsModificationCount != myRootsModificationCount) {
+      clear();
+      myRootsModificationCount = rootsModificationCount;
+    }
+
+    final VirtualFile pubspecYamlFile = PubspecYamlUtil.findPubspecYamlFile(myProject, contextFile);
+    final Pair<Module, VirtualFile> key = Pair.create(module, pubspecYamlFile);
+    final DartSdk dartSdk = DartSdk.getDartSdk(myProject);
+    final long pubspecStamp = pubspecYamlFile == null ? -1 : getModificationStamp(pubspecYamlFile);
+
+    final CachedResolver cached = myResolvers.get(key);
+    if (cached != null && cached.myDartSdk == dartSdk && cached.myPubspecStamp == pubspecStamp && !module.isDisposed()) {
+      return cached.myResolver;
+    }
+
+    final long clearCount = myClearTracker.getModificationCount();
+    final DartUrlResolverImpl resolver = new DartUrlResolverImpl(myProject, contextFile);
+    if (clearCount == myClearTracker.getModificationCount()) {
+      myResolvers.put(key, new CachedResolver(resolver, dartSdk, pubspecStamp));
+    }
+    return resolver;
+  }
+
+  private static long getModificationStamp(@NotNull final VirtualFile file) {
+    // same as in PubspecYamlUtil.getPubspecYamlInfo()
+    final Document cachedDocument = FileDocumentManager.getInstance().getCachedDocument(file);
+    return cachedDocument != null ? cachedDocument.getModificationStamp() : file.getModificationCount();
+  }
+}
@@ -44,6 +44,9 @@ public class DartUrlResolverImpl extends DartUrlResolver {
   @NotNull private final Map<String, VirtualFile> myLivePackageNameToDirMap = new THashMap<>();
   // myPackagesMapFromLib is not empty only if pubspec.yaml file is null
   @NotNull private final Map<String, List<String>> myPackagesMapFromLib = new THashMap<>();
+  // reverse indices of the two maps above for getDartUrlForFile()
+  @NotNull private final Map<VirtualFile, String> myLivePackageDirToNameMap = new THashMap<>();
+  @NotNull private final Map<String, String> myPackagesLibDirPathToNameMap = new THashMap<>();
 
   public DartUrlResolverImpl(final @NotNull Project project, final @NotNull VirtualFile contextFile) {
     myProject = project;
@@ -56,6 +59,20 @@ public class DartUrlResolverImpl extends DartUrlResolver {
     if (myPubspecYamlFile == null) {
       initPackagesMapFromLib(contextFile);
     }
+
+    for (Map.Entry<String, VirtualFile> entry : myLivePackageNameToDirMap.entrySet()) {
+      if (!myLivePackageDirToNameMap.containsKey(entry.getValue())) {
+        myLivePackageDirToNameMap.put(entry.getValue(), entry.getKey());
+      }
+    }
+
+    for (Map.Entry<String, List<String>> entry : myPackagesMapFromLib.entrySet()) {
+      for (String dirPath : entry.getValue()) {
+        if (!myPackagesLibDirPathToNameMap.containsKey(dirPath)) {
+          myPackagesLibDirPathToNameMap.put(dirPath, entry.getKey());
+        }
+      }
+    }
   }
 
   @Nullable
@@ -168,13 +185,13 @@ public class DartUrlResolverImpl extends DartUrlResolver {
     if (myDartSdk != null) result = getUrlIfFileFromSdkLib(myProject, file, myDartSdk);
     if (result != null) return result;
 
-    result = getUrlIfFileFromLivePackage(file, myLivePackageNameToDirMap);
+    result = getUrlIfFileFromLivePackage(file, myLivePackageDirToNameMap);
     if (result != null) return result;
 
     result = getUrlIfFileFromPackageRoot(file, myPackageRoot);
     if (result != null) return result;
 
-    result = getUrlIfFileFromDartPackagesLib(file, myPackagesMapFromLib);
+    result = getUrlIfFileFromDartPackagesLib(file, myPackagesLibDirPathToNameMap);
     if (result != null) return result;
 
     // see com.google.dart.tools.debug.core.server.ServerBreakpointManager#getAbsoluteUrlForResource()
@@ -199,13 +216,14 @@ public class DartUrlResolverImpl extends DartUrlResolver {
 
   @Nullable
   private static String getUrlIfFileFromLivePackage(final @NotNull VirtualFile file,
-                                                    final @NotNull Map<String, VirtualFile> livePackageNameToDirMap) {
-    for (Map.Entry<String, VirtualFile> entry : livePackageNameToDirMap.entrySet()) {
-      final String packageName = entry.getKey();
-      final VirtualFile packageDir = entry.getValue();
-      final String relPath = VfsUtilCore.getRelativePath(file, packageDir, '/');
-      if (relPath != null) {
-        return PACKAGE_PREFIX + packageName + "/" + relPath;
+                                                    final @NotNull Map<VirtualFile, String> livePackageDirToNameMap) {
+    if (livePackageDirToNameMap.isEmpty()) return null;
+
+    // the closest package folder up the tree
+    for (VirtualFile packageDir = file; packageDir != null; packageDir = packageDir.getParent()) {
+      final String packageName = livePackageDirToNameMap.get(packageDir);
+      if (packageName != null) {
+        return PACKAGE_PREFIX + packageName + "/" + VfsUtilCore.getRelativePath(file, packageDir, '/');
       }
     }
     return null;
@@ -224,14 +242,16 @@ public class DartUrlResolverImpl extends DartUrlResolver {
 
   @Nullable
   private static String getUrlIfFileFromDartPackagesLib(final @NotNull VirtualFile file,
-                                                        final @NotNull Map<String, List<String>> pubListPackageDirsMap) {
-    for (Map.Entry<String, List<String>> mapEntry : pubListPackageDirsMap.entrySet()) {
-      for (String dirPath : mapEntry.getValue()) {
-        if (file.getPath().startsWith(dirPath + "/")) {
-          final String packageName = mapEntry.getKey();
-          return PACKAGE_PREFIX + packageName + file.getPath().substring(dirPath.length());
-        }
+                                                        final @NotNull Map<String, String> packageDirPathToNameMap) {
+    if (packageDirPathToNameMap.isEmpty()) return null;
+
+    final String path = file.getPath();
+    for (int slashIndex = path.lastIndexOf('/'); slashIndex >= 0; slashIndex = path.lastIndexOf('/', slashIndex - 1)) {
+      final String packageName = packageDirPathToNameMap.get(path.substring(0, slashIndex));
+      if (packageName != null) {
+        return PACKAGE_PREFIX + packageName + path.substring(slashIndex);
       }
+      if (slashIndex == 0) break;
     }
     return null;
   }
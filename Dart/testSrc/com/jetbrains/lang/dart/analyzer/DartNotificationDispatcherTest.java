@@ -0,0 +1,68 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.dart.server.internal.remote.NotificationDispatcher;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DartNotificationDispatcherTest extends TestCase {
+
+  public void testCoalescing() throws Exception {
+    final NotificationDispatcher dispatcher = new NotificationDispatcher();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+    dispatcher.dispatch("/a.dart", "analysis.highlights", () -> {
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ignore) {
+      }
+      processed.add("highlights 1");
+    });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    // the first notification is running, the next ones are pending and coalesced
+    dispatcher.dispatch("/a.dart", "analysis.highlights", () -> processed.add("highlights 2"));
+    dispatcher.dispatch("/a.dart", "analysis.errors", () -> processed.add("errors 1"));
+    dispatcher.dispatch("/a.dart", "analysis.highlights", () -> processed.add("highlights 3"));
+    assertEquals(2, dispatcher.getQueueDepth());
+    assertEquals(1, dispatcher.getDroppedCount());
+
+    release.countDown();
+    dispatcher.awaitIdle();
+
+    assertEquals(Arrays.asList("highlights 1", "errors 1", "highlights 3"), processed);
+    assertEquals(0, dispatcher.getQueueDepth());
+    assertEquals(3, dispatcher.getProcessedCount());
+  }
+
+  public void testDiscard() throws Exception {
+    final NotificationDispatcher dispatcher = new NotificationDispatcher();
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+    dispatcher.dispatch("/a.dart", "analysis.navigation", () -> {
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ignore) {
+      }
+    });
+    dispatcher.dispatch("/a.dart", "analysis.errors", () -> processed.add("errors"));
+    dispatcher.discard("/a.dart", "analysis.errors", "analysis.highlights");
+    dispatcher.dispatch("/a.dart", "analysis.flushResults", () -> processed.add("flush"));
+
+    release.countDown();
+    dispatcher.awaitIdle();
+
+    assertEquals(Collections.singletonList("flush"), processed);
+  }
+}
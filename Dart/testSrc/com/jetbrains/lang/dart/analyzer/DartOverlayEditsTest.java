@@ -0,0 +1,101 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+import org.dartlang.analysis.server.protocol.SourceEdit;
+
+import java.util.List;
+import java.util.Random;
+
+public class DartOverlayEditsTest extends TestCase {
+
+  private static String apply(final String text, final List<SourceEdit> edits) {
+    final StringBuilder b = new StringBuilder(text);
+    for (SourceEdit edit : edits) {
+      b.replace(edit.getOffset(), edit.getOffset() + edit.getLength(), edit.getReplacement());
+    }
+    return b.toString();
+  }
+
+  private static String largeText() {
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      b.append("  final int variable").append(i).append(" = ").append(i).append(";\n");
+    }
+    return b.toString();
+  }
+
+  public void testTypingIsCoalesced() {
+    final String base = "main() {\n}\n";
+    final StringBuilder document = new StringBuilder(base);
+    final DartOverlayEdits edits = new DartOverlayEdits(1);
+
+    int caret = 9;
+    for (char c : "print('hello');".toCharArray()) {
+      edits.addEdit(caret, 0, String.valueOf(c), document.length() + 1);
+      document.insert(caret++, c);
+    }
+    // backspace twice and retype
+    for (int i = 0; i < 2; i++) {
+      edits.addEdit(--caret, 1, "", document.length() - 1);
+      document.deleteCharAt(caret);
+    }
+    edits.addEdit(caret, 0, ");", document.length() + 2);
+    document.insert(caret, ");");
+
+    final List<SourceEdit> sourceEdits = edits.getSourceEdits();
+    assertNotNull(sourceEdits);
+    assertEquals(1, sourceEdits.size());
+    assertEquals(document.toString(), apply(base, sourceEdits));
+  }
+
+  public void testRandomEdits() {
+    final Random random = new Random(42);
+    for (int iteration = 0; iteration < 200; iteration++) {
+      final String base = "abcdefghijklmnopqrstuvwxyz0123456789";
+      final StringBuilder document = new StringBuilder(base);
+      final DartOverlayEdits edits = new DartOverlayEdits(1);
+
+      for (int i = 0; i < 10; i++) {
+        final int offset = random.nextInt(document.length() + 1);
+        final int length = random.nextInt(Math.min(4, document.length() - offset) + 1);
+        final String replacement = "XYZ".substring(0, random.nextInt(4));
+        document.replace(offset, offset + length, replacement);
+        edits.addEdit(offset, length, replacement, document.length());
+      }
+
+      final List<SourceEdit> sourceEdits = edits.getSourceEdits();
+      if (sourceEdits != null) {
+        assertEquals(document.toString(), apply(base, sourceEdits));
+      }
+    }
+  }
+
+  public void testFallbackToFullText() {
+    final DartOverlayEdits edits = new DartOverlayEdits(1);
+    edits.addEdit(0, 3, "a much longer replacement", 26);
+    assertNull(edits.getSourceEdits());
+  }
+
+  public void testContinuousTypingThroughput() {
+    final String text = largeText();
+    PlatformTestUtil.startPerformanceTest("Continuous typing in a 10k-line file", 2000, () -> {
+      int sentChars = 0;
+      int length = text.length();
+      int caret = text.length() / 2;
+      // a debounce period every 10 keystrokes
+      for (int flush = 0; flush < 10000; flush++) {
+        final DartOverlayEdits edits = new DartOverlayEdits(flush);
+        for (int i = 0; i < 10; i++) {
+          edits.addEdit(caret++, 0, "x", ++length);
+        }
+        final List<SourceEdit> sourceEdits = edits.getSourceEdits();
+        assertNotNull(sourceEdits);
+        assertEquals(1, sourceEdits.size());
+        sentChars += sourceEdits.get(0).getReplacement().length();
+      }
+      // full overlays would have sent ~ 10000 * text.length() chars
+      assertEquals(100000, sentChars);
+    }).cpuBound().assertTiming();
+  }
+}
@@ -0,0 +1,256 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.util.SmartList;
+import junit.framework.TestCase;
+import org.dartlang.analysis.server.protocol.*;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+public class DartRegionTableTest extends TestCase {
+
+  private static DartRegionTable highlights(final int... offsetsAndLengths) {
+    final DartRegionTable.Builder builder = DartRegionTable.Builder.forHighlightRegions(offsetsAndLengths.length / 2);
+    for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+      builder.addHighlightRegion(offsetsAndLengths[i], offsetsAndLengths[i + 1], "KEYWORD");
+    }
+    return builder.build();
+  }
+
+  private static void checkRegions(final DartRegionTable table, final int... offsetsAndLengths) {
+    final int[] actual = new int[table.size() * 2];
+    for (int i = 0; i < table.size(); i++) {
+      actual[i * 2] = table.getOffset(i);
+      actual[i * 2 + 1] = table.getLength(i);
+    }
+    assertEquals(Arrays.toString(offsetsAndLengths), Arrays.toString(actual));
+  }
+
+  public void testTyping() {
+    final DartRegionTable table = highlights(0, 5, 10, 5, 20, 5);
+    checkRegions(table.afterDocumentChange("/a.dart", 12, 0, 3, false), 0, 5, 10, 8, 23, 5);
+    checkRegions(table.afterDocumentChange("/a.dart", 12, 0, 3, true), 0, 5, 23, 5);
+    checkRegions(table.afterDocumentChange("/a.dart", 10, 0, 3, true), 0, 5, 13, 5, 23, 5);
+  }
+
+  public void testDeletion() {
+    final DartRegionTable table = highlights(0, 5, 10, 5, 20, 5);
+    checkRegions(table.afterDocumentChange("/a.dart", 11, 2, 0, false), 0, 5, 10, 3, 18, 5);
+    checkRegions(table.afterDocumentChange("/a.dart", 11, 2, 0, true), 0, 5, 18, 5);
+    checkRegions(table.afterDocumentChange("/a.dart", 10, 5, 0, false), 0, 5, 15, 5);
+  }
+
+  public void testSharedTargets() {
+    final NavigationTarget target = new NavigationTarget("CLASS", 0, 42, 3, 1, 1);
+    target.lookupFile(new String[]{"/lib/b.dart"});
+
+    final DartRegionTable.Builder builder = DartRegionTable.Builder.forNavigationRegions(2);
+    builder.addNavigationRegion(0, 3, Arrays.asList(target));
+    builder.addNavigationRegion(10, 3, Arrays.asList(target));
+    final DartRegionTable table = builder.build();
+
+    assertEquals(2, table.size());
+    assertEquals("/lib/b.dart", table.navigationRegion(0).getTargets().get(0).getFile());
+    assertEquals("CLASS", table.navigationRegion(1).getTargets().get(0).getKind());
+
+    final DartRegionTable changed = table.afterDocumentChange("/a.dart", 1, 0, 1, true);
+    assertEquals(1, changed.size());
+    assertEquals(11, changed.getOffset(0));
+    assertEquals("/lib/b.dart", changed.navigationRegion(0).getTargets().get(0).getFile());
+  }
+
+  public void testOverrideMembers() {
+    final OverriddenMember superclassMember = new OverriddenMember(new Element("METHOD", "foo", null, 0, null, null, null), "A");
+    final DartRegionTable.Builder builder = DartRegionTable.Builder.forOverrideMembers(2);
+    builder.addOverrideMember(0, 3, new OverrideMember(0, 3, superclassMember, null));
+    builder.addOverrideMember(10, 3, new OverrideMember(10, 3, null, Arrays.asList(superclassMember)));
+    final DartRegionTable table = builder.build();
+
+    assertSame(superclassMember, table.overrideMember(0).getSuperclassMember());
+    assertNull(table.overrideMember(0).getInterfaceMembers());
+
+    final DartRegionTable changed = table.afterDocumentChange("/a.dart", 1, 0, 1, true);
+    assertEquals(1, changed.size());
+    assertEquals(11, changed.overrideMember(0).getOffset());
+    assertNull(changed.overrideMember(0).getSuperclassMember());
+    assertSame(superclassMember, changed.overrideMember(0).getInterfaceMembers().get(0));
+  }
+
+  public void testMemoryComparedToRegionObjects() throws Exception {
+    final int files = 20;
+    final int regionsPerFile = 1000;
+    final List<List<HighlightRegion>> highlights = new ArrayList<>();
+    final List<List<NavigationRegion>> navigation = new ArrayList<>();
+    for (int i = 0; i < files; i++) {
+      highlights.add(recordedHighlights(regionsPerFile));
+      navigation.add(recordedNavigation(regionsPerFile));
+    }
+
+    final List<Object> oldStore = new ArrayList<>();
+    for (int i = 0; i < files; i++) {
+      oldStore.add(toRegionObjects(highlights.get(i), navigation.get(i)));
+    }
+    final long oldSize = estimateSize(oldStore);
+
+    final List<DartRegionTable> newStore = new ArrayList<>();
+    for (int i = 0; i < files; i++) {
+      final DartRegionTable.Builder highlightsBuilder = DartRegionTable.Builder.forHighlightRegions(regionsPerFile);
+      for (HighlightRegion region : highlights.get(i)) {
+        highlightsBuilder.addHighlightRegion(region.getOffset(), region.getLength(), region.getType());
+      }
+      newStore.add(highlightsBuilder.build());
+      final DartRegionTable.Builder navigationBuilder = DartRegionTable.Builder.forNavigationRegions(regionsPerFile);
+      for (NavigationRegion region : navigation.get(i)) {
+        navigationBuilder.addNavigationRegion(region.getOffset(), region.getLength(), region.getTargetObjects());
+      }
+      newStore.add(navigationBuilder.build());
+    }
+    final long newSize = estimateSize(newStore);
+
+    assertEquals(files, oldStore.size());
+    assertEquals(files * 2, newStore.size());
+    assertTrue("region objects: " + oldSize / 1024 + " KB, region tables: " + newSize / 1024 + " KB", newSize * 3 < oldSize);
+  }
+
+  private static List<HighlightRegion> recordedHighlights(final int regions) {
+    final List<HighlightRegion> result = new ArrayList<>(regions);
+    for (int i = 0; i < regions; i++) {
+      result.add(new HighlightRegion(i % 2 == 0 ? "KEYWORD" : "IDENTIFIER_DEFAULT", i * 10, 5));
+    }
+    return result;
+  }
+
+  /**
+   * Regions referring to 100 targets in 10 files, the way the server sends them.
+   */
+  private static List<NavigationRegion> recordedNavigation(final int regions) {
+    final String[] targetFiles = new String[10];
+    for (int i = 0; i < targetFiles.length; i++) {
+      targetFiles[i] = "/project/lib/src/file" + i + ".dart";
+    }
+    final List<NavigationTarget> targets = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final NavigationTarget target = new NavigationTarget("CLASS", i % targetFiles.length, i * 7, 3, 1, 1);
+      target.lookupFile(targetFiles);
+      targets.add(target);
+    }
+    final List<NavigationRegion> result = new ArrayList<>(regions);
+    for (int i = 0; i < regions; i++) {
+      final NavigationRegion region = new NavigationRegion(i * 10, 5, new int[]{i % targets.size()});
+      region.lookupTargets(targets);
+      result.add(region);
+    }
+    return result;
+  }
+
+  /**
+   * The store as it was before the tables: an object per region and per target of each navigation region.
+   */
+  private static Object toRegionObjects(final List<HighlightRegion> highlights, final List<NavigationRegion> navigation) {
+    final List<DartServerData.DartHighlightRegion> highlightRegions = new ArrayList<>(highlights.size());
+    for (HighlightRegion region : highlights) {
+      highlightRegions.add(new DartServerData.DartHighlightRegion(region.getOffset(), region.getLength(), region.getType()));
+    }
+    final List<OldNavigationRegion> navigationRegions = new ArrayList<>(navigation.size());
+    for (NavigationRegion region : navigation) {
+      final SmartList<OldNavigationTarget> targets = new SmartList<>();
+      for (NavigationTarget target : region.getTargetObjects()) {
+        targets.add(new OldNavigationTarget(target.getFile().intern(), target.getOffset(), target.getKind().intern()));
+      }
+      navigationRegions.add(new OldNavigationRegion(region.getOffset(), region.getLength(), targets));
+    }
+    return Arrays.asList(highlightRegions, navigationRegions);
+  }
+
+  /**
+   * Deterministic estimate of the memory retained by the object graph, assuming compressed references: 12 bytes per object header,
+   * 16 per array header, 4 per reference, sizes aligned to 8 bytes. Objects reachable several times are counted once, static fields are
+   * not followed. JDK collections are counted as array-backed lists, strings as UTF-16 char arrays.
+   */
+  private static long estimateSize(final Object root) throws IllegalAccessException {
+    final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    final Deque<Object> queue = new ArrayDeque<>();
+    queue.add(root);
+    long size = 0;
+    while (!queue.isEmpty()) {
+      final Object object = queue.poll();
+      if (!visited.add(object)) continue;
+
+      final Class<?> aClass = object.getClass();
+      if (aClass.isArray()) {
+        final Class<?> componentType = aClass.getComponentType();
+        final int length = Array.getLength(object);
+        size += align(16 + (long)length * (componentType.isPrimitive() ? primitiveSize(componentType) : 4));
+        if (!componentType.isPrimitive()) {
+          for (int i = 0; i < length; i++) {
+            final Object element = Array.get(object, i);
+            if (element != null) queue.add(element);
+          }
+        }
+      }
+      else if (object instanceof String) {
+        size += align(12 + 4 + 4) + align(16 + 2 * ((String)object).length());
+      }
+      else if (object instanceof Collection && aClass.getName().startsWith("java.")) {
+        final Collection<?> collection = (Collection<?>)object;
+        size += align(12 + 4 + 4) + align(16 + 4 * collection.size());
+        for (Object element : collection) {
+          if (element != null) queue.add(element);
+        }
+      }
+      else {
+        long objectSize = 12;
+        for (Class<?> c = aClass; c != null && !c.getName().startsWith("java."); c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) continue;
+            if (field.getType().isPrimitive()) {
+              objectSize += primitiveSize(field.getType());
+              continue;
+            }
+            objectSize += 4;
+            field.setAccessible(true);
+            final Object value = field.get(object);
+            if (value != null) queue.add(value);
+          }
+        }
+        size += align(objectSize);
+      }
+    }
+    return size;
+  }
+
+  private static long align(final long size) {
+    return (size + 7) / 8 * 8;
+  }
+
+  private static int primitiveSize(final Class<?> type) {
+    if (type == long.class || type == double.class) return 8;
+    if (type == int.class || type == float.class) return 4;
+    if (type == short.class || type == char.class) return 2;
+    return 1;
+  }
+
+  private static class OldNavigationRegion extends DartServerData.DartRegion {
+    private final List<OldNavigationTarget> myTargets;
+
+    private OldNavigationRegion(final int offset, final int length, final List<OldNavigationTarget> targets) {
+      super(offset, length);
+      myTargets = targets;
+    }
+  }
+
+  private static class OldNavigationTarget {
+    private final String myFile;
+    private final int myOriginalOffset;
+    private final String myKind;
+    private int myConvertedOffset = -1;
+
+    private OldNavigationTarget(final String file, final int originalOffset, final String kind) {
+      myFile = file;
+      myOriginalOffset = originalOffset;
+      myKind = kind;
+    }
+  }
+}
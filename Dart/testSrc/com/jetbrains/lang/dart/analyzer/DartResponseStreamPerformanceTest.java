@@ -0,0 +1,84 @@
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.dart.server.internal.remote.ByteResponseStream;
+import com.google.dart.server.internal.remote.DecodedNotification;
+import com.google.gson.JsonObject;
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class DartResponseStreamPerformanceTest extends TestCase {
+
+  private static String highlightsLine(final String file, final int regions) {
+    final StringBuilder b = new StringBuilder();
+    b.append("{\"event\":\"analysis.highlights\",\"params\":{\"file\":\"").append(file).append("\",\"regions\":[");
+    for (int i = 0; i < regions; i++) {
+      if (i > 0) b.append(',');
+      b.append("{\"type\":\"KEYWORD\",\"offset\":").append(i * 10).append(",\"length\":5}");
+    }
+    return b.append("]}}\n").toString();
+  }
+
+  private static String navigationLine(final String file, final int regions) {
+    final StringBuilder b = new StringBuilder();
+    b.append("{\"event\":\"analysis.navigation\",\"params\":{\"file\":\"").append(file).append("\",\"regions\":[");
+    for (int i = 0; i < regions; i++) {
+      if (i > 0) b.append(',');
+      b.append("{\"offset\":").append(i * 10).append(",\"length\":5,\"targets\":[").append(i % 100).append("]}");
+    }
+    b.append("],\"targets\":[");
+    for (int i = 0; i < 100; i++) {
+      if (i > 0) b.append(',');
+      b.append("{\"kind\":\"CLASS\",\"fileIndex\":").append(i % 10)
+        .append(",\"offset\":1,\"length\":2,\"startLine\":3,\"startColumn\":4}");
+    }
+    b.append("],\"files\":[");
+    for (int i = 0; i < 10; i++) {
+      if (i > 0) b.append(',');
+      b.append("\"/lib/file").append(i).append(".dart\"");
+    }
+    return b.append("]}}\n").toString();
+  }
+
+  private static byte[] recordedTraffic(final int files, final int regionsPerFile) {
+    final StringBuilder b = new StringBuilder();
+    b.append("Observatory listening on http://127.0.0.1:8181\n");
+    for (int i = 0; i < files; i++) {
+      final String file = "/project/lib/src/file" + i + ".dart";
+      b.append(highlightsLine(file, regionsPerFile));
+      b.append(navigationLine(file, regionsPerFile));
+      b.append("{\"id\":\"").append(i).append("\",\"result\":{}}\n");
+    }
+    return b.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int drain(final byte[] traffic) throws Exception {
+    final ByteResponseStream stream = new ByteResponseStream(new ByteArrayInputStream(traffic), null);
+    int count = 0;
+    Object response;
+    while ((response = stream.take()) != null) {
+      assertTrue(response instanceof DecodedNotification || response instanceof JsonObject);
+      count++;
+    }
+    return count;
+  }
+
+  public void testDecodesNotificationsAndResponses() throws Exception {
+    final ByteResponseStream stream = new ByteResponseStream(new ByteArrayInputStream(recordedTraffic(1, 3)), null);
+    final DecodedNotification highlights = (DecodedNotification)stream.take();
+    assertEquals("analysis.highlights", highlights.getEvent());
+    assertEquals("/project/lib/src/file0.dart", highlights.getFile());
+    final DecodedNotification navigation = (DecodedNotification)stream.take();
+    assertEquals("analysis.navigation", navigation.getEvent());
+    assertEquals("0", ((JsonObject)stream.take()).get("id").getAsString());
+    assertNull(stream.take());
+  }
+
+  public void testReplayPerformance() throws Exception {
+    final byte[] traffic = recordedTraffic(200, 5000);
+    PlatformTestUtil.startPerformanceTest("Replay of analysis server traffic", 15000, () -> assertEquals(600, drain(traffic)))
+      .cpuBound().assertTiming();
+  }
+}
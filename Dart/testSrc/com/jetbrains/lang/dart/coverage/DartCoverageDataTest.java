@@ -0,0 +1,80 @@
+package com.jetbrains.lang.dart.coverage;
+
+import com.google.gson.JsonSyntaxException;
+import com.intellij.testFramework.PlatformTestUtil;
+import gnu.trove.THashSet;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+public class DartCoverageDataTest extends TestCase {
+
+  private static DartCoverageData read(final String json) throws IOException {
+    return DartCoverageData.read(new StringReader(json));
+  }
+
+  public void testMergedHits() throws IOException {
+    final DartCoverageData data = read("{\"type\": \"CodeCoverage\", \"coverage\": [\n" +
+                                       "  {\"type\": \"HitMap\", \"source\": \"package:a/a.dart\", \"hits\": [1, 0, 3, 2]},\n" +
+                                       "  {\"type\": \"HitMap\", \"source\": \"package:a/b.dart\", \"hits\": []},\n" +
+                                       "  {\"type\": \"HitMap\", \"source\": \"package:a/a.dart\", \"hits\": [3, 1, 5, 0]}\n" +
+                                       "]}");
+    assertEquals(new THashSet<>(Arrays.asList("package:a/a.dart", "package:a/b.dart")), data.getSources());
+    assertEquals("[-1, 0, -1, 3, -1, 0]", Arrays.toString(data.getLineHits("package:a/a.dart")));
+    assertEquals(0, data.getLineHits("package:a/b.dart").length);
+    assertEquals(0, data.getLineHits("package:a/unknown.dart").length);
+  }
+
+  public void testSourceAfterHits() throws IOException {
+    final DartCoverageData data = read("{\"coverage\": [{\"hits\": [2, 7], \"script\": {\"type\": \"@Script\", \"id\": 1}, " +
+                                       "\"source\": \"file:///a.dart\"}]}");
+    assertEquals("[-1, -1, 7]", Arrays.toString(data.getLineHits("file:///a.dart")));
+  }
+
+  public void testLineRanges() throws IOException {
+    final DartCoverageData data = read("{\"coverage\": [{\"source\": \"dart:core\", \"hits\": [\"2-4\", 1, 6, 3, \"7\", 0]}]}");
+    assertEquals("[-1, -1, 1, 1, 1, -1, 3, 0]", Arrays.toString(data.getLineHits("dart:core")));
+  }
+
+  public void testNegativeLines() throws IOException {
+    final DartCoverageData data = read("{\"coverage\": [{\"source\": \"dart:core\", \"hits\": [-1, 5, -7, 0, 1, 2]}]}");
+    assertEquals("[-1, 2]", Arrays.toString(data.getLineHits("dart:core")));
+  }
+
+  public void testInvalidData() throws IOException {
+    try {
+      read("{\"coverage\": [{\"source\": \"dart:core\", \"hits\": [\"x\", 1]}]}");
+      fail();
+    }
+    catch (JsonSyntaxException ignored) {
+    }
+
+    assertTrue(read("{\"coverage\": {}}").getSources().isEmpty());
+  }
+
+  public void testReadingPerformance() {
+    final StringBuilder b = new StringBuilder("{\"type\": \"CodeCoverage\", \"coverage\": [");
+    for (int script = 0; script < 2000; script++) {
+      // every script is reported by two isolates
+      for (int isolate = 0; isolate < 2; isolate++) {
+        if (script > 0 || isolate > 0) b.append(",\n");
+        b.append("{\"type\": \"HitMap\", \"source\": \"package:foo/src/file").append(script).append(".dart\", \"script\": ")
+          .append("{\"type\": \"@Script\", \"id\": \"libraries/").append(script).append("\"}, \"hits\": [");
+        for (int line = 1; line <= 500; line++) {
+          if (line > 1) b.append(", ");
+          b.append(line).append(", ").append(line % 3);
+        }
+        b.append("]}");
+      }
+    }
+    final String json = b.append("]}").toString();
+
+    PlatformTestUtil.startPerformanceTest("Reading 4000 coverage entries", 2000, () -> {
+      final DartCoverageData data = read(json);
+      assertEquals(2000, data.getSources().size());
+      assertEquals(4, data.getLineHits("package:foo/src/file1999.dart")[500]);
+    }).cpuBound().assertTiming();
+  }
+}
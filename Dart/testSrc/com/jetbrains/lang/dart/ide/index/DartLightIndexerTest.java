@@ -0,0 +1,147 @@
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.DartFileType;
+import com.jetbrains.lang.dart.util.DartTestUtils;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DartLightIndexerTest extends DartCodeInsightFixtureTestCase {
+
+  private static List<File> getSdkFiles() {
+    final List<File> result = new ArrayList<>();
+    FileUtil.processFilesRecursively(new File(DartTestUtils.SDK_HOME_PATH, "lib"), file -> {
+      if (file.getName().endsWith(".dart")) {
+        result.add(file);
+      }
+      return true;
+    });
+    assertFalse(result.isEmpty());
+    return result;
+  }
+
+  private static String loadText(@NotNull final File file) throws IOException {
+    return StringUtil.convertLineSeparators(FileUtil.loadFile(file, "UTF-8"));
+  }
+
+  private DartFileIndexData indexWithPsi(@NotNull final String fileName, @NotNull final String text) {
+    final PsiFile psiFile = PsiFileFactory.getInstance(getProject()).createFileFromText(fileName, DartFileType.INSTANCE, text);
+    return DartIndexUtil.indexFileRoots(psiFile);
+  }
+
+  private static void assertSameData(@NotNull final String fileName, @NotNull final DartFileIndexData expected,
+                                     @NotNull final DartFileIndexData actual) {
+    assertEquals(fileName, expected.getLibraryName(), actual.getLibraryName());
+    assertEquals(fileName, expected.isPart(), actual.isPart());
+    assertEquals(fileName, new THashSet<>(expected.getClassNames()), new THashSet<>(actual.getClassNames()));
+    assertEquals(fileName, new THashSet<>(expected.getSymbols()), new THashSet<>(actual.getSymbols()));
+    assertEquals(fileName, expected.getComponentInfoMap(), actual.getComponentInfoMap());
+    assertEquals(fileName, expected.getImportAndExportInfos(), actual.getImportAndExportInfos());
+    assertEquals(fileName, expected.getPartUris(), actual.getPartUris());
+  }
+
+  private void doTest(@NotNull final String text) {
+    final DartFileIndexData lightData = DartLightIndexer.indexFile(text, "test.dart");
+    assertNotNull("light indexer gave up", lightData);
+    assertSameData("test.dart", indexWithPsi("test.dart", text), lightData);
+  }
+
+  public void testDirectives() {
+    doTest("library foo.bar;\n" +
+           "import 'dart:async';\n" +
+           "import \"package:a/a.dart\" deferred as a show A, B hide C;\n" +
+           "import r'b.dart' as b;\n" +
+           "export 'c.dart' show C;\n" +
+           "part 'd.dart';\n" +
+           "part '''e.dart''';\n");
+  }
+
+  public void testPartOf() {
+    doTest("part of foo . bar;\n" +
+           "class A {}\n");
+  }
+
+  public void testTopLevelDeclarations() {
+    doTest("@deprecated\n" +
+           "typedef void Callback<T>(T value);\n" +
+           "typedef Map<String, List<int>> Factory();\n" +
+           "const int a = 1, b = 2;\n" +
+           "final c = const [1, 2];\n" +
+           "var d = () { return 1; }, e;\n" +
+           "Map<String, int> f;\n" +
+           "int get g => 1;\n" +
+           "void set g(int value) {}\n" +
+           "get h native \"h\";\n" +
+           "external foo(a, [b = const {'x': 1}]);\n" +
+           "Future<int> bar() async => 42;\n" +
+           "baz() sync* { yield 1; }\n" +
+           "enum Color { RED, GREEN, }\n" +
+           "abstract class A<T extends Comparable<T>> extends B<T> with C implements D, E {}\n" +
+           "class M = Object with C;\n");
+  }
+
+  public void testClassMembers() {
+    doTest("class A {\n" +
+           "  static const int X = 1, Y = 2;\n" +
+           "  final _x;\n" +
+           "  A(this._x) : super();\n" +
+           "  const A.named() : this(1);\n" +
+           "  factory A.other() = B;\n" +
+           "  factory A() => new A.named();\n" +
+           "  int get length;\n" +
+           "  set length(int value) {}\n" +
+           "  bool operator ==(other) => true;\n" +
+           "  operator [](int index) => null;\n" +
+           "  void operator []=(int index, value) {}\n" +
+           "  A operator -() => this;\n" +
+           "  int operator >>(int shift) => 0;\n" +
+           "  @override String toString() => '${_x}';\n" +
+           "  static get(key) {}\n" +
+           "  Map<String, List<int>> map() native 'map';\n" +
+           "}\n");
+  }
+
+  public void testGivesUp() {
+    assertNull(DartLightIndexer.indexFile("class A { A() : x = {} {} }", "test.dart"));
+    assertNull(DartLightIndexer.indexFile("class A {", "test.dart"));
+    assertNull(DartLightIndexer.indexFile("foo(", "test.dart"));
+    assertNull(DartLightIndexer.indexFile("enum E {}", "test.dart"));
+    assertNull(DartLightIndexer.indexFile("import 'a$b.dart';", "test.dart"));
+  }
+
+  public void testSdk() throws IOException {
+    for (File file : getSdkFiles()) {
+      final String text = loadText(file);
+      final DartFileIndexData lightData = DartLightIndexer.indexFile(text, file.getName());
+      if (lightData != null) {
+        assertSameData(file.getPath(), indexWithPsi(file.getName(), text), lightData);
+      }
+    }
+  }
+
+  public void testSdkIndexingPerformance() throws IOException {
+    final List<File> files = getSdkFiles();
+    final List<String> texts = new ArrayList<>(files.size());
+    for (File file : files) {
+      texts.add(loadText(file));
+    }
+
+    PlatformTestUtil.startPerformanceTest("Indexing SDK sources without PSI", 1000, () -> {
+      for (int i = 0; i < 10; i++) {
+        for (int j = 0; j < texts.size(); j++) {
+          DartLightIndexer.indexFile(texts.get(j), files.get(j).getName());
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+}
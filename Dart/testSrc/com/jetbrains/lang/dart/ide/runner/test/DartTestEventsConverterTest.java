@@ -16,6 +16,7 @@ import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -341,6 +342,80 @@ public class DartTestEventsConverterTest extends BaseSMTRunnerTestCase {
     runTest(events, signals, new int[]{});
   }
 
+  public void testReplayPerformance() throws Exception {
+    final int suites = 20;
+    final int testsPerSuite = 1000;
+    final List<String> events = createLargeRunEvents(suites, testsPerSuite);
+
+    final DartTestEventsProcessor processor = new DartTestEventsProcessor(getProject(), DartTestRunningState.DART_FRAMEWORK_NAME) {
+      @Override
+      public void onTestStarted(@NotNull TestStartedEvent testStartedEvent) {
+        signals.add("start " + testStartedEvent.getName());
+      }
+
+      @Override
+      public void onSuiteStarted(@NotNull TestSuiteStartedEvent suiteStartedEvent) {
+        signals.add("suite started " + suiteStartedEvent.getName());
+      }
+    };
+    myEventsConverter.setProcessor(processor);
+
+    try {
+      final Key key = new Key("stdout");
+      PlatformTestUtil.startPerformanceTest("Replay of a 'pub run test --reporter json' log with 20000 tests", 5000, () -> {
+        processor.signals.clear();
+        for (String event : events) {
+          myEventsConverter.process(event, key);
+        }
+        int started = 0;
+        for (String signal : processor.signals) {
+          if (signal.startsWith("start ")) started++;
+        }
+        assertEquals(suites * testsPerSuite, started);
+      }).cpuBound().assertTiming();
+    }
+    finally {
+      Disposer.dispose(processor);
+    }
+  }
+
+  /**
+   * Events in the format of a captured log of a run with parameterized tests, each suite has a single group of passing tests.
+   */
+  private static List<String> createLargeRunEvents(final int suites, final int testsPerSuite) {
+    final List<String> events = new ArrayList<>();
+    events.add("{\"protocolVersion\":\"0.1.0\",\"runnerVersion\":\"0.12.13\",\"type\":\"start\",\"time\":0}\n");
+    int id = 0;
+    int time = 0;
+    for (int suite = 0; suite < suites; suite++) {
+      final String path = "/Users/user/src/foo/test/param_" + suite + "_test.dart";
+      final int suiteId = id++;
+      final int loadingId = id++;
+      final int rootGroupId = id++;
+      final int groupId = id++;
+      events.add("{\"suite\":{\"id\":" + suiteId + ",\"platform\":\"vm\",\"path\":\"" + path + "\"}," +
+                 "\"type\":\"suite\",\"time\":" + time + "}\n");
+      events.add("{\"test\":{\"id\":" + loadingId + ",\"name\":\"loading " + path + "\",\"suiteID\":" + suiteId +
+                 ",\"groupIDs\":[],\"metadata\":{\"skip\":false,\"skipReason\":null}},\"type\":\"testStart\",\"time\":" + time + "}\n");
+      events.add("{\"testID\":" + loadingId + ",\"result\":\"success\",\"hidden\":true,\"type\":\"testDone\",\"time\":" + time + "}\n");
+      events.add("{\"group\":{\"id\":" + rootGroupId + ",\"suiteID\":" + suiteId + ",\"parentID\":null,\"name\":null," +
+                 "\"metadata\":{\"skip\":false,\"skipReason\":null},\"testCount\":" + testsPerSuite + "}," +
+                 "\"type\":\"group\",\"time\":" + time + "}\n");
+      events.add("{\"group\":{\"id\":" + groupId + ",\"suiteID\":" + suiteId + ",\"parentID\":" + rootGroupId + ",\"name\":\"parser\"," +
+                 "\"metadata\":{\"skip\":false,\"skipReason\":null},\"testCount\":" + testsPerSuite + ",\"line\":10,\"column\":3," +
+                 "\"url\":\"file://" + path + "\"},\"type\":\"group\",\"time\":" + time + "}\n");
+      for (int test = 0; test < testsPerSuite; test++) {
+        final int testId = id++;
+        events.add("{\"test\":{\"id\":" + testId + ",\"name\":\"parser parses input " + test + "\",\"suiteID\":" + suiteId +
+                   ",\"groupIDs\":[" + rootGroupId + "," + groupId + "],\"metadata\":{\"skip\":false,\"skipReason\":null}," +
+                   "\"line\":12,\"column\":5,\"url\":\"file://" + path + "\"},\"type\":\"testStart\",\"time\":" + time++ + "}\n");
+        events.add("{\"testID\":" + testId + ",\"result\":\"success\",\"hidden\":false,\"type\":\"testDone\",\"time\":" + time++ + "}\n");
+      }
+    }
+    events.add("{\"success\":true,\"type\":\"done\",\"time\":" + time + "}\n");
+    return events;
+  }
+
   private void runTest(String[] jsonEvents, String[] signals, int[] parents) {
     DartTestEventsConverter parser = myEventsConverter;
     Key key = new Key("stdout");
@@ -85,6 +85,7 @@ public class DartTestUtils {
       ThreadTracker.longRunningThreadCreated(ApplicationManager.getApplication(),
                                              "ByteRequestSink.LinesWriterThread",
                                              "ByteResponseStream.LinesReaderThread",
+                                             "NotificationDispatcherThread",
                                              "RemoteAnalysisServerImpl watcher",
                                              "ServerErrorReaderThread",
                                              "ServerResponseReaderThread");
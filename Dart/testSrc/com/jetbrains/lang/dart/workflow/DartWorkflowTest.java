@@ -1,6 +1,9 @@
 package com.jetbrains.lang.dart.workflow;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.roots.*;
 import com.intellij.openapi.roots.libraries.Library;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -9,6 +12,8 @@ import com.jetbrains.lang.dart.DartProjectComponent;
 import com.jetbrains.lang.dart.util.DartTestUtils;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 
+import java.io.IOException;
+
 public class DartWorkflowTest extends DartCodeInsightFixtureTestCase {
 
   public void testPackagesFolderExclusion() throws Exception {
@@ -214,4 +219,48 @@ public class DartWorkflowTest extends DartCodeInsightFixtureTestCase {
       );
     }
   }
+
+  public void testDartUrlResolverCache() throws Exception {
+    final VirtualFile pubspec = myFixture.addFileToProject("pubspec.yaml", "name: ProjectName").getVirtualFile();
+    final VirtualFile mainFile = myFixture.addFileToProject("bin/main.dart", "").getVirtualFile();
+
+    final DartUrlResolver resolver = DartUrlResolver.getInstance(getProject(), mainFile);
+    assertSame(resolver, DartUrlResolver.getInstance(getProject(), pubspec));
+    assertNull(resolver.findFileByDartUrl("package:ProjectName/src/foo.dart"));
+
+    // 'lib' folder appears
+    final VirtualFile libFile = myFixture.addFileToProject("lib/src/foo.dart", "").getVirtualFile();
+    final DartUrlResolver resolver2 = DartUrlResolver.getInstance(getProject(), mainFile);
+    assertNotSame(resolver, resolver2);
+    assertEquals(libFile, resolver2.findFileByDartUrl("package:ProjectName/src/foo.dart"));
+    assertEquals("package:ProjectName/src/foo.dart", resolver2.getDartUrlForFile(libFile));
+    assertSame(resolver2, DartUrlResolver.getInstance(getProject(), libFile));
+
+    // folder that doesn't affect package resolution
+    myFixture.addFileToProject("bin/sub/helper.dart", "");
+    assertSame(resolver2, DartUrlResolver.getInstance(getProject(), mainFile));
+
+    // unsaved pubspec.yaml change
+    final Document document = FileDocumentManager.getInstance().getDocument(pubspec);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.setText("name: NewName"));
+    final DartUrlResolver resolver3 = DartUrlResolver.getInstance(getProject(), mainFile);
+    assertNotSame(resolver2, resolver3);
+    assertEquals(libFile, resolver3.findFileByDartUrl("package:NewName/src/foo.dart"));
+    assertEquals("package:NewName/src/foo.dart", resolver3.getDartUrlForFile(libFile));
+
+    // package folder removed
+    final VirtualFile libFolder = libFile.getParent().getParent();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      try {
+        libFolder.delete(this);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    final DartUrlResolver resolver4 = DartUrlResolver.getInstance(getProject(), mainFile);
+    assertNotSame(resolver3, resolver4);
+    assertNull(resolver4.findFileByDartUrl("package:NewName/src/foo.dart"));
+  }
 }
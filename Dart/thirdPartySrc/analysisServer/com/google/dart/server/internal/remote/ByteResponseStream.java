@@ -13,18 +13,20 @@
  */
 package com.google.dart.server.internal.remote;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * An {@link InputStream} based implementation of {@link ResponseStream}. Each line must contain
  * exactly one complete JSON object.
+ * <p>
+ * Lines are read as raw bytes into a reused buffer and decoded with a pull parser on the reader
+ * thread, so no intermediate {@link String} is created for a line. The queue of decoded responses
+ * is bounded, so a slow consumer makes the reader block instead of buffering without limit.
  * 
  * @coverage dart.server.remote
  */
@@ -37,38 +39,55 @@ public class ByteResponseStream implements ResponseStream {
 
     @Override
     public void run() {
-      while (true) {
-        String line;
-        try {
-          line = reader.readLine();
-        } catch (IOException e) {
-          line = null;
+      try {
+        while (true) {
+          int length;
+          try {
+            length = readLine();
+          } catch (IOException e) {
+            length = -1;
+          }
+          // check for EOF
+          if (length == -1) {
+            responseQueue.put(EOF_RESPONSE);
+            return;
+          }
+          // debug output
+          if (debugStream != null) {
+            debugStream.println(System.currentTimeMillis() + " <= " + new String(lineBytes, 0, length, StandardCharsets.UTF_8));
+          }
+          // ignore non-JSON (debug) lines
+          if (length == 0 || lineBytes[0] != '{') {
+            continue;
+          }
+          // add a decoded JSON line
+          Object response;
+          try {
+            response = StreamingNotificationDecoder.decode(lineBytes, length);
+          } catch (Exception e) {
+            // Include the line in the message so that we can better diagnose the problem
+            String line = new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+            response = new JsonSyntaxException("Parse server message failed: " + line, e);
+          }
+          responseQueue.put(response);
         }
-        // check for EOF
-        if (line == null) {
-          lineQueue.add(EOF_LINE);
-          return;
-        }
-        // debug output
-        if (debugStream != null) {
-          debugStream.println(System.currentTimeMillis() + " <= " + line);
-        }
-        // ignore non-JSON (debug) lines
-        if (!line.startsWith("{")) {
-          continue;
-        }
-        // add a JSON line
-        lineQueue.add(line);
+      } catch (InterruptedException e) {
+        //$FALL-THROUGH$
       }
     }
   }
 
-  private static String EOF_LINE = "EOF line";
+  private static final Object EOF_RESPONSE = new Object();
 
   /**
-   * The {@link BufferedReader} to read JSON strings from.
+   * The maximum number of decoded responses waiting to be taken.
    */
-  private final BufferedReader reader;
+  private static final int MAX_QUEUED_RESPONSES = 1024;
+
+  /**
+   * The {@link InputStream} to read JSON lines from.
+   */
+  private final InputStream stream;
 
   /**
    * The {@link DebugPrintStream} to print all lines to.
@@ -76,9 +95,22 @@ public class ByteResponseStream implements ResponseStream {
   private final DebugPrintStream debugStream;
 
   /**
-   * The queue of lines.
+   * The queue of decoded responses, either {@link DecodedNotification}s, JSON objects or
+   * {@link JsonSyntaxException}s for lines that cannot be parsed.
    */
-  private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<String>();
+  private final BlockingQueue<Object> responseQueue = new ArrayBlockingQueue<Object>(MAX_QUEUED_RESPONSES);
+
+  /**
+   * The buffer that bytes are read into from {@link #stream}.
+   */
+  private final byte[] readBuffer = new byte[64 * 1024];
+  private int readPosition;
+  private int readLimit;
+
+  /**
+   * The buffer with the bytes of the current line, reused for all lines.
+   */
+  private byte[] lineBytes = new byte[64 * 1024];
 
   /**
    * Initializes a newly created response stream.
@@ -87,7 +119,7 @@ public class ByteResponseStream implements ResponseStream {
    * @param debugStream the {@link PrintStream} to print all lines to, may be {@code null}
    */
   public ByteResponseStream(InputStream stream, DebugPrintStream debugStream) {
-    reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    this.stream = stream;
     this.debugStream = debugStream;
     new LinesReaderThread().start();
   }
@@ -97,17 +129,60 @@ public class ByteResponseStream implements ResponseStream {
   }
 
   @Override
-  public JsonObject take() throws Exception {
-    String line = lineQueue.take();
-    if (line == EOF_LINE) {
-      lineQueue.add(line);
+  public Object take() throws Exception {
+    Object response = responseQueue.take();
+    if (response == EOF_RESPONSE) {
+      responseQueue.put(response);
       return null;
     }
-    try {
-      return (JsonObject) new JsonParser().parse(line);
-    } catch (JsonSyntaxException e) {
-      // Include the line in the message so that we can better diagnose the problem
-      throw new JsonSyntaxException("Parse server message failed: " + line, e);
+    if (response instanceof JsonSyntaxException) {
+      throw (JsonSyntaxException) response;
+    }
+    return response;
+  }
+
+  /**
+   * Reads the next line into {@link #lineBytes}, without the line terminator.
+   * 
+   * @return the length of the line, or {@code -1} at the end of the stream
+   */
+  private int readLine() throws IOException {
+    int length = 0;
+    while (true) {
+      if (readPosition == readLimit) {
+        readLimit = stream.read(readBuffer);
+        readPosition = 0;
+        if (readLimit == -1) {
+          readLimit = 0;
+          return length == 0 ? -1 : length;
+        }
+      }
+      // copy bytes up to the end of the line or the end of the read buffer
+      int start = readPosition;
+      int end = start;
+      while (end < readLimit && readBuffer[end] != '\n') {
+        end++;
+      }
+      int count = end - start;
+      ensureLineCapacity(length + count);
+      System.arraycopy(readBuffer, start, lineBytes, length, count);
+      length += count;
+      if (end < readLimit) {
+        readPosition = end + 1;
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+          length--;
+        }
+        return length;
+      }
+      readPosition = readLimit;
+    }
+  }
+
+  private void ensureLineCapacity(int capacity) {
+    if (capacity > lineBytes.length) {
+      byte[] newBytes = new byte[Math.max(capacity, lineBytes.length * 2)];
+      System.arraycopy(lineBytes, 0, newBytes, 0, lineBytes.length);
+      lineBytes = newBytes;
     }
   }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2014, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.common.collect.Maps;
+import com.google.dart.server.utilities.logging.Logging;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes per-file notifications off the response reader thread. Pending notifications are
+ * coalesced by (file, kind): if a newer notification of the same kind arrives for a file before the
+ * older one was processed, the older one is dropped. Different files are processed in parallel,
+ * notifications for the same file are processed one at a time in arrival order.
+ *
+ * @coverage dart.server.remote
+ */
+public class NotificationDispatcher {
+  /**
+   * Pending notifications of one file, keyed by the notification kind.
+   */
+  private static class FileQueue {
+    private final LinkedHashMap<String, Runnable> pending = new LinkedHashMap<String, Runnable>();
+    private boolean scheduled;
+  }
+
+  private static final int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+  private final Object lock = new Object();
+
+  /**
+   * The files with pending or running notifications, guarded by {@link #lock}.
+   */
+  private final Map<String, FileQueue> fileQueues = Maps.newHashMap();
+
+  private final Executor executor;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong processedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  public NotificationDispatcher() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        MAX_THREADS,
+        MAX_THREADS,
+        10,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "NotificationDispatcherThread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
+  }
+
+  /**
+   * Schedules processing of a notification of the given kind for the given file. Replaces a pending
+   * notification of the same kind for the same file.
+   */
+  public void dispatch(String file, String kind, Runnable task) {
+    synchronized (lock) {
+      FileQueue queue = fileQueues.get(file);
+      if (queue == null) {
+        queue = new FileQueue();
+        fileQueues.put(file, queue);
+      }
+      // remove first, so that the newest notification is also the last one in the queue
+      if (queue.pending.remove(kind) != null) {
+        droppedCount.incrementAndGet();
+      } else {
+        updateMaxQueueDepth(queueDepth.incrementAndGet());
+      }
+      queue.pending.put(kind, task);
+      if (!queue.scheduled) {
+        queue.scheduled = true;
+        final String finalFile = file;
+        final FileQueue finalQueue = queue;
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            drain(finalFile, finalQueue);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Removes pending notifications of the given kinds for the given file, without processing them.
+   */
+  public void discard(String file, String... kinds) {
+    synchronized (lock) {
+      FileQueue queue = fileQueues.get(file);
+      if (queue == null) {
+        return;
+      }
+      for (String kind : kinds) {
+        if (queue.pending.remove(kind) != null) {
+          queueDepth.decrementAndGet();
+          droppedCount.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until all dispatched notifications are processed. Used to keep responses and notifications
+   * that are not about a single file, like "server.status", ordered after the per-file results that
+   * preceded them.
+   */
+  public void awaitIdle() throws InterruptedException {
+    synchronized (lock) {
+      while (!fileQueues.isEmpty()) {
+        lock.wait();
+      }
+    }
+  }
+
+  /**
+   * The number of notifications that wait to be processed.
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * The largest number of notifications that waited to be processed at the same time.
+   */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  /**
+   * The number of notifications that were processed.
+   */
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
+
+  /**
+   * The number of notifications that were dropped because a newer notification of the same kind for
+   * the same file arrived first.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  private void drain(String file, FileQueue queue) {
+    while (true) {
+      Runnable task;
+      synchronized (lock) {
+        Iterator<Runnable> iterator = queue.pending.values().iterator();
+        if (!iterator.hasNext()) {
+          queue.scheduled = false;
+          fileQueues.remove(file);
+          if (fileQueues.isEmpty()) {
+            lock.notifyAll();
+          }
+          return;
+        }
+        task = iterator.next();
+        iterator.remove();
+        queueDepth.decrementAndGet();
+      }
+      try {
+        task.run();
+      } catch (Throwable e) {
+        Logging.getLogger().logError(e.getMessage(), e);
+      }
+      processedCount.incrementAndGet();
+    }
+  }
+
+  private void updateMaxQueueDepth(int depth) {
+    while (true) {
+      int max = maxQueueDepth.get();
+      if (depth <= max || maxQueueDepth.compareAndSet(max, depth)) {
+        return;
+      }
+    }
+  }
+}
@@ -35,6 +35,8 @@ import org.osgi.framework.Version;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -67,9 +69,9 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
   private static final String ANALYSIS_NOTIFICATION_ANALYZED_FILES = "analysis.analyzedFiles";
   private static final String ANALYSIS_NOTIFICATION_ERRORS = "analysis.errors";
   private static final String ANALYSIS_NOTIFICATION_FLUSH_RESULTS = "analysis.flushResults";
-  private static final String ANALYSIS_NOTIFICATION_HIGHTLIGHTS = "analysis.highlights";
+  static final String ANALYSIS_NOTIFICATION_HIGHTLIGHTS = "analysis.highlights";
   private static final String ANALYSIS_NOTIFICATION_IMPLEMENTED = "analysis.implemented";
-  private static final String ANALYSIS_NOTIFICATION_NAVIGATION = "analysis.navigation";
+  static final String ANALYSIS_NOTIFICATION_NAVIGATION = "analysis.navigation";
   private static final String ANALYSIS_NOTIFICATION_OCCURRENCES = "analysis.occurrences";
   private static final String ANALYSIS_NOTIFICATION_OUTLINE = "analysis.outline";
   private static final String ANALYSIS_NOTIFICATION_OVERRIDES = "analysis.overrides";
@@ -82,6 +84,20 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
 
   // Execution domain
   private static final String LAUNCH_DATA_NOTIFICATION_RESULTS = "execution.launchData";
+
+  /**
+   * The notifications about a single file that can be processed off the reader thread. Only the
+   * newest pending notification of each kind is kept for a file.
+   */
+  private static final String[] FILE_NOTIFICATIONS = {
+      ANALYSIS_NOTIFICATION_ERRORS,
+      ANALYSIS_NOTIFICATION_HIGHTLIGHTS,
+      ANALYSIS_NOTIFICATION_IMPLEMENTED,
+      ANALYSIS_NOTIFICATION_NAVIGATION,
+      ANALYSIS_NOTIFICATION_OCCURRENCES,
+      ANALYSIS_NOTIFICATION_OUTLINE,
+      ANALYSIS_NOTIFICATION_OVERRIDES};
+
   private final AnalysisServerSocket socket;
   private final Object requestSinkLock = new Object();
   private RequestSink requestSink;
@@ -96,6 +112,11 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
 
   private final List<AnalysisServerStatusListener> statusListenerList = new ArrayList<AnalysisServerStatusListener>();
 
+  /**
+   * Coalesces and processes per-file notifications, see {@link #FILE_NOTIFICATIONS}.
+   */
+  private final NotificationDispatcher notificationDispatcher = new NotificationDispatcher();
+
   /**
    * A mapping between {@link String} ids' and the associated {@link Consumer} that was passed when
    * the request was made.
@@ -512,6 +533,52 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     return true;
   }
 
+  /**
+   * Passes a notification about a single file to the {@link #notificationDispatcher}.
+   * 
+   * @return {@code true} if the notification was dispatched, {@code false} if it should be processed
+   *         right away
+   */
+  private boolean dispatchFileNotification(final JsonObject response) {
+    JsonElement eventElement = response.get("event");
+    JsonElement paramsElement = response.get("params");
+    if (eventElement == null || !eventElement.isJsonPrimitive() || paramsElement == null
+        || !paramsElement.isJsonObject()) {
+      return false;
+    }
+    String event = eventElement.getAsString();
+    JsonObject paramsObject = paramsElement.getAsJsonObject();
+    if (event.equals(ANALYSIS_NOTIFICATION_FLUSH_RESULTS)) {
+      // flush each file in its own order, results that are still pending for it are obsolete
+      for (JsonElement fileElement : paramsObject.get("files").getAsJsonArray()) {
+        final String file = fileElement.getAsString();
+        notificationDispatcher.discard(file, FILE_NOTIFICATIONS);
+        notificationDispatcher.dispatch(file, event, new Runnable() {
+          @Override
+          public void run() {
+            listener.flushedResults(Collections.singletonList(file));
+          }
+        });
+      }
+      return true;
+    }
+    JsonElement fileElement = paramsObject.get("file");
+    if (fileElement == null || !Arrays.asList(FILE_NOTIFICATIONS).contains(event)) {
+      return false;
+    }
+    notificationDispatcher.dispatch(fileElement.getAsString(), event, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          processNotification(response);
+        } catch (Exception e) {
+          Logging.getLogger().logError(e.getMessage(), e);
+        }
+      }
+    });
+    return true;
+  }
+
   private void processResponse(JsonObject response) throws Exception {
     // handle notification
     if (processNotification(response)) {
@@ -637,6 +704,14 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     sendRequestToServer(id, request, new LocalConsumer(request));
   }
 
+  /**
+   * Returns the dispatcher of per-file notifications, e.g. to report its queue depth and the number
+   * of dropped notifications.
+   */
+  public NotificationDispatcher getNotificationDispatcher() {
+    return notificationDispatcher;
+  }
+
   /**
    * Sends the request and associates the request with the passed {@link Consumer}.
    *
@@ -859,13 +934,27 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     public void run() {
       while (true) {
         try {
-          JsonObject response = stream.take();
+          Object response = stream.take();
           if (response == null) {
             return;
           }
           lastResponseTime.set(System.currentTimeMillis());
           try {
-            processResponse(response);
+            if (response instanceof DecodedNotification) {
+              final DecodedNotification notification = (DecodedNotification)response;
+              notificationDispatcher.dispatch(notification.getFile(), notification.getEvent(), new Runnable() {
+                @Override
+                public void run() {
+                  notification.dispatch(listener);
+                }
+              });
+            }
+            else if (!dispatchFileNotification((JsonObject)response)) {
+              // responses and other notifications (e.g. updateContent results, server.status) must not
+              // overtake file notifications that are still queued
+              notificationDispatcher.awaitIdle();
+              processResponse((JsonObject)response);
+            }
           }
           finally {
             stream.lastRequestProcessed();
@@ -28,6 +28,9 @@ public interface ResponseStream {
 
   /**
    * Takes the the next response from the stream. Blocks if no response available.
+   * 
+   * @return a {@link JsonObject}, a {@link DecodedNotification} for a notification that was decoded
+   *         directly into protocol objects, or {@code null} at the end of the stream
    */
-  JsonObject take() throws Exception;
+  Object take() throws Exception;
 }
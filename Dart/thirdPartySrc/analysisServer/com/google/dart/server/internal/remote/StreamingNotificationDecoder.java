@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2014, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.dart.server.AnalysisServerListener;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes a single line of server output with a pull parser. The large "analysis.highlights" and
+ * "analysis.navigation" notifications are decoded straight into protocol objects, everything else
+ * is returned as a {@link JsonObject}.
+ *
+ * @coverage dart.server.remote
+ */
+public class StreamingNotificationDecoder {
+  private static final byte[] HIGHLIGHTS_PREFIX = prefix(RemoteAnalysisServerImpl.ANALYSIS_NOTIFICATION_HIGHTLIGHTS);
+  private static final byte[] NAVIGATION_PREFIX = prefix(RemoteAnalysisServerImpl.ANALYSIS_NOTIFICATION_NAVIGATION);
+
+  private static final int[] EMPTY_INT_ARRAY = new int[0];
+
+  /**
+   * Decodes the JSON object in the first {@code length} bytes of the given buffer. The buffer is
+   * not retained, so the caller may reuse it for the next line.
+   *
+   * @return a {@link DecodedNotification} or a {@link JsonObject}
+   */
+  public static Object decode(byte[] bytes, int length) throws IOException {
+    JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8));
+    try {
+      if (startsWith(bytes, length, HIGHLIGHTS_PREFIX)) {
+        return decodeHighlights(reader);
+      }
+      if (startsWith(bytes, length, NAVIGATION_PREFIX)) {
+        return decodeNavigation(reader);
+      }
+      return new JsonParser().parse(reader).getAsJsonObject();
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  private static DecodedNotification decodeHighlights(JsonReader reader) throws IOException {
+    String file = null;
+    List<HighlightRegion> regions = Collections.emptyList();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (!reader.nextName().equals("params")) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("file")) {
+          file = reader.nextString();
+        }
+        else if (name.equals("regions")) {
+          regions = new ArrayList<HighlightRegion>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            regions.add(readHighlightRegion(reader));
+          }
+          reader.endArray();
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+    final List<HighlightRegion> finalRegions = regions;
+    return new DecodedNotification(RemoteAnalysisServerImpl.ANALYSIS_NOTIFICATION_HIGHTLIGHTS, file) {
+      @Override
+      public void dispatch(AnalysisServerListener listener) {
+        listener.computedHighlights(getFile(), finalRegions);
+      }
+    };
+  }
+
+  private static DecodedNotification decodeNavigation(JsonReader reader) throws IOException {
+    String file = null;
+    List<String> files = new ArrayList<String>();
+    List<NavigationTarget> targets = new ArrayList<NavigationTarget>();
+    List<NavigationRegion> regions = new ArrayList<NavigationRegion>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (!reader.nextName().equals("params")) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("file")) {
+          file = reader.nextString();
+        }
+        else if (name.equals("files")) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            files.add(reader.nextString());
+          }
+          reader.endArray();
+        }
+        else if (name.equals("targets")) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            targets.add(readNavigationTarget(reader));
+          }
+          reader.endArray();
+        }
+        else if (name.equals("regions")) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            regions.add(readNavigationRegion(reader));
+          }
+          reader.endArray();
+        }
+        else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+    // "files", "targets" and "regions" may come in any order, so resolve indices at the end
+    String[] targetFiles = files.toArray(new String[files.size()]);
+    for (NavigationTarget target : targets) {
+      target.lookupFile(targetFiles);
+    }
+    for (NavigationRegion region : regions) {
+      region.lookupTargets(targets);
+    }
+    final List<NavigationRegion> finalRegions = regions;
+    return new DecodedNotification(RemoteAnalysisServerImpl.ANALYSIS_NOTIFICATION_NAVIGATION, file) {
+      @Override
+      public void dispatch(AnalysisServerListener listener) {
+        listener.computedNavigation(getFile(), finalRegions);
+      }
+    };
+  }
+
+  private static HighlightRegion readHighlightRegion(JsonReader reader) throws IOException {
+    String type = null;
+    int offset = 0;
+    int length = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("type")) {
+        type = reader.nextString();
+      }
+      else if (name.equals("offset")) {
+        offset = reader.nextInt();
+      }
+      else if (name.equals("length")) {
+        length = reader.nextInt();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new HighlightRegion(type, offset, length);
+  }
+
+  private static NavigationRegion readNavigationRegion(JsonReader reader) throws IOException {
+    int offset = 0;
+    int length = 0;
+    int[] targets = EMPTY_INT_ARRAY;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("offset")) {
+        offset = reader.nextInt();
+      }
+      else if (name.equals("length")) {
+        length = reader.nextInt();
+      }
+      else if (name.equals("targets")) {
+        targets = readIntArray(reader);
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new NavigationRegion(offset, length, targets);
+  }
+
+  private static NavigationTarget readNavigationTarget(JsonReader reader) throws IOException {
+    String kind = null;
+    int fileIndex = 0;
+    int offset = 0;
+    int length = 0;
+    int startLine = 0;
+    int startColumn = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("kind")) {
+        kind = reader.nextString();
+      }
+      else if (name.equals("fileIndex")) {
+        fileIndex = reader.nextInt();
+      }
+      else if (name.equals("offset")) {
+        offset = reader.nextInt();
+      }
+      else if (name.equals("length")) {
+        length = reader.nextInt();
+      }
+      else if (name.equals("startLine")) {
+        startLine = reader.nextInt();
+      }
+      else if (name.equals("startColumn")) {
+        startColumn = reader.nextInt();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new NavigationTarget(kind, fileIndex, offset, length, startLine, startColumn);
+  }
+
+  private static int[] readIntArray(JsonReader reader) throws IOException {
+    int[] result = new int[4];
+    int size = 0;
+    reader.beginArray();
+    while (reader.peek() != JsonToken.END_ARRAY) {
+      if (size == result.length) {
+        int[] newResult = new int[size * 2];
+        System.arraycopy(result, 0, newResult, 0, size);
+        result = newResult;
+      }
+      result[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    if (size == result.length) {
+      return result;
+    }
+    int[] trimmed = new int[size];
+    System.arraycopy(result, 0, trimmed, 0, size);
+    return trimmed;
+  }
+
+  /**
+   * The server always writes "event" as the first key of a notification, so the kind of a line can
+   * be recognized by its prefix without parsing it.
+   */
+  private static byte[] prefix(String event) {
+    return ("{\"event\":\"" + event + "\"").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+    if (length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
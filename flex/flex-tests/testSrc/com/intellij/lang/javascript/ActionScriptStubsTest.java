@@ -3,19 +3,27 @@ package com.intellij.lang.javascript;
 import com.intellij.codeInsight.daemon.quickFix.LightQuickFixTestCase;
 import com.intellij.codeInsight.intention.IntentionAction;
 import com.intellij.flex.FlexTestUtils;
+import com.intellij.javascript.flex.compiled.SwfStubCache;
 import com.intellij.javascript.flex.css.FlexStylesIndexableSetContributor;
 import com.intellij.lang.javascript.flex.FlexModuleType;
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileCachedData;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileStubImpl;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.module.ModuleType;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.impl.VfsRootAccess;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.DebugUtil;
 import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.stubs.PsiFileStub;
+import com.intellij.psi.stubs.PsiFileStubImpl;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.util.ThrowableRunnable;
 import com.intellij.util.containers.ContainerUtil;
@@ -27,6 +35,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static com.intellij.openapi.vfs.VfsUtilCore.convertFromUrl;
 import static com.intellij.openapi.vfs.VfsUtilCore.urlToPath;
@@ -138,6 +149,63 @@ public class ActionScriptStubsTest extends ActionScriptDaemonAnalyzerTestCase {
     }, getTestName(false) + ".as", getTestName(false) + "_2.as");
   }
 
+  public void testSwfStubCache() throws Exception {
+    final SwfStubCache cache = new SwfStubCache(createTempDirectory(), 10 * 1024 * 1024);
+    final byte[] content1 = loadLibrarySwf("PlayerGlobal10.swc");
+    final byte[] content2 = loadLibrarySwf("ds.swc");
+    final AtomicInteger builds = new AtomicInteger();
+
+    final String built = DebugUtil.stubTreeToString(cache.getOrBuild(content1, () -> buildSwfStub(content1, builds)));
+    final String cached = DebugUtil.stubTreeToString(cache.getOrBuild(content1, () -> buildSwfStub(content1, builds)));
+    assertEquals(built, cached);
+    assertEquals(1, builds.get());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    cache.getOrBuild(content2, () -> buildSwfStub(content2, builds));
+    cache.getOrBuild(content2, () -> buildSwfStub(content2, builds));
+    assertEquals(2, builds.get());
+    assertEquals(2, cache.getHits());
+
+    // a failed build is not cached
+    final byte[] broken = {1, 2, 3};
+    assertNull(cache.getOrBuild(broken, () -> null));
+    assertNull(cache.getOrBuild(broken, () -> null));
+    assertEquals(2, cache.getHits());
+    assertEquals(4, cache.getMisses());
+
+    final File smallCacheDir = createTempDirectory();
+    final File tempFile = new File(smallCacheDir, "entry.stub.tmp");
+    FileUtil.writeToFile(tempFile, new byte[2048]);
+    final SwfStubCache smallCache = new SwfStubCache(smallCacheDir, 1024);
+    smallCache.getOrBuild(content1, () -> buildSwfStub(content1, builds));
+    smallCache.getOrBuild(content1, () -> buildSwfStub(content1, builds));
+    assertEquals(4, builds.get());
+    assertEquals(0, smallCache.getHits());
+    assertEquals(2, smallCache.getEvictions());
+    // may be an entry being written by another IDE instance
+    assertTrue(tempFile.exists());
+  }
+
+  private static PsiFileStub buildSwfStub(final byte[] content, final AtomicInteger builds) {
+    builds.incrementAndGet();
+    final PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+    try {
+      FlexImporter.buildStubsInterface(content, stub);
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    return stub;
+  }
+
+  private static byte[] loadLibrarySwf(final String swcName) throws IOException {
+    try (ZipFile zipFile = new ZipFile(FlexTestUtils.getTestDataPath("flex_importer") + "/" + swcName)) {
+      final ZipEntry zipEntry = zipFile.getEntry("library.swf");
+      return FileUtil.loadBytes(zipFile.getInputStream(zipEntry), (int)zipEntry.getSize());
+    }
+  }
+
   private static void assertNotParsed(Collection<PsiFile> psiFiles) {
     for (PsiFile file : psiFiles) {
       if (file instanceof PsiFileImpl) {
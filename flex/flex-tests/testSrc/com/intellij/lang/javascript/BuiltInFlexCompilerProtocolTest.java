@@ -0,0 +1,260 @@
+package com.intellij.lang.javascript;
+
+import com.intellij.flex.FlexCommonUtils;
+import com.intellij.lang.javascript.flex.build.BuiltInFlexCompilerHandler;
+import com.intellij.lang.javascript.flex.build.BuiltInFlexCompilerProtocol;
+import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+
+/**
+ * Runs {@link BuiltInFlexCompilerHandler} against a compiler emulator that talks either the old line protocol or the framed protocol,
+ * the same way as flex/tools/BuiltInFlexCompiler does. Each emulated compilation reports a number of errors from a separate thread.
+ */
+public class BuiltInFlexCompilerProtocolTest extends LightPlatformTestCase {
+
+  private static final int COMPILATIONS = 8;
+  private static final int MESSAGES_PER_COMPILATION = 3000;
+
+  public void testLineProtocol() throws Exception {
+    runParallelCompilations(false, COMPILATIONS, 100);
+  }
+
+  public void testFramedProtocol() throws Exception {
+    runParallelCompilations(true, COMPILATIONS, 100);
+  }
+
+  public void testFramedProtocolCancel() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0);
+         Socket ideSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+         Socket compilerSocket = serverSocket.accept()) {
+      final BuiltInFlexCompilerHandler handler = new BuiltInFlexCompilerHandler(getProject());
+      handler.connect(ideSocket.getInputStream(), ideSocket.getOutputStream(), true);
+
+      final CountingListener listener = new CountingListener(0, new CountDownLatch(1), false);
+      handler.sendCompilationCommand("module:bc", "mxmlc Main.as", listener);
+      assertEquals(1, handler.getActiveCompilationsNumber());
+
+      final DataInputStream compilerInput = new DataInputStream(compilerSocket.getInputStream());
+      final BuiltInFlexCompilerProtocol.Frame compileFrame = BuiltInFlexCompilerProtocol.readFrame(compilerInput);
+      assertEquals(BuiltInFlexCompilerProtocol.COMPILE, compileFrame.type);
+      assertEquals("module:bc", BuiltInFlexCompilerProtocol.readString(compileFrame.payload));
+      assertEquals("mxmlc Main.as", BuiltInFlexCompilerProtocol.readString(compileFrame.payload));
+
+      handler.removeListener(listener);
+      assertEquals(0, handler.getActiveCompilationsNumber());
+
+      final BuiltInFlexCompilerProtocol.Frame cancelFrame = BuiltInFlexCompilerProtocol.readFrame(compilerInput);
+      assertEquals(BuiltInFlexCompilerProtocol.CANCEL, cancelFrame.type);
+      assertEquals(compileFrame.compilationId, cancelFrame.compilationId);
+
+      handler.stopCompilerProcess();
+    }
+  }
+
+  /**
+   * N parallel compilations on the old line protocol, the baseline for {@link #testFramedProtocolParallelCompilationsPerformance()}.
+   */
+  public void testLineProtocolParallelCompilationsPerformance() throws Exception {
+    doTestParallelCompilationsPerformance(false, "Parallel compilations with line protocol", 5000);
+  }
+
+  /**
+   * N parallel compilations on the framed protocol, compare with {@link #testLineProtocolParallelCompilationsPerformance()}.
+   */
+  public void testFramedProtocolParallelCompilationsPerformance() throws Exception {
+    doTestParallelCompilationsPerformance(true, "Parallel compilations with framed protocol", 3000);
+  }
+
+  private void doTestParallelCompilationsPerformance(final boolean framedProtocol, final String what, final int expectedMs)
+    throws Exception {
+    runParallelCompilations(framedProtocol, COMPILATIONS, MESSAGES_PER_COMPILATION); // warm up
+
+    PlatformTestUtil.startPerformanceTest(what + ", " + COMPILATIONS + " x " + MESSAGES_PER_COMPILATION + " messages", expectedMs,
+                                          () -> runParallelCompilations(framedProtocol, COMPILATIONS, MESSAGES_PER_COMPILATION))
+      .cpuBound().assertTiming();
+  }
+
+  private void runParallelCompilations(final boolean framedProtocol, final int compilations, final int messagesPerCompilation)
+    throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0);
+         Socket ideSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+         Socket compilerSocket = serverSocket.accept()) {
+      final Thread compiler = new Thread(new CompilerEmulator(compilerSocket, framedProtocol, messagesPerCompilation), "Compiler emulator");
+      compiler.start();
+
+      final BuiltInFlexCompilerHandler handler = new BuiltInFlexCompilerHandler(getProject());
+      handler.connect(ideSocket.getInputStream(), ideSocket.getOutputStream(), framedProtocol);
+
+      final CountDownLatch finished = new CountDownLatch(compilations);
+      final CountingListener[] listeners = new CountingListener[compilations];
+      for (int i = 0; i < compilations; i++) {
+        listeners[i] = new CountingListener(i, finished, framedProtocol);
+        handler.sendCompilationCommand("module:bc" + i, "mxmlc " + i, listeners[i]);
+      }
+
+      assertTrue("Compilations not finished", finished.await(1, TimeUnit.MINUTES));
+
+      handler.stopCompilerProcess();
+      compiler.join(10000);
+
+      for (CountingListener listener : listeners) {
+        assertNull(listener.myError, listener.myError);
+        assertEquals(messagesPerCompilation, listener.myMessages.get());
+        assertEquals(1, listener.myFinished.get());
+      }
+      assertEquals(0, handler.getActiveCompilationsNumber());
+    }
+  }
+
+  private static String getPath(final int compilation, final int message) {
+    return "/project/src/bc" + compilation + "/pkg/Class" + message + ".as";
+  }
+
+  private static class CountingListener implements BuiltInFlexCompilerHandler.Listener {
+    private final int myCompilation;
+    private final CountDownLatch myFinishedLatch;
+    private final boolean myFramedProtocol;
+    private final AtomicInteger myMessages = new AtomicInteger();
+    private final AtomicInteger myFinished = new AtomicInteger();
+    private volatile String myError;
+
+    private CountingListener(final int compilation, final CountDownLatch finishedLatch, final boolean framedProtocol) {
+      myCompilation = compilation;
+      myFinishedLatch = finishedLatch;
+      myFramedProtocol = framedProtocol;
+    }
+
+    @Override
+    public void textAvailable(final String text) {
+      // same parsing as in FlexCompilationUtils.handleCompilerOutput()
+      final Matcher matcher = FlexCommonUtils.ERROR_PATTERN.matcher(text);
+      if (myFramedProtocol || !matcher.matches()) {
+        myError = "Unexpected text: " + text;
+        return;
+      }
+
+      check(matcher.group(1), StringUtil.parseInt(matcher.group(3), -1), matcher.group(6));
+    }
+
+    @Override
+    public void messageAvailable(final CompilerMessageCategory category,
+                                 @Nullable final String path,
+                                 final int line,
+                                 final int column,
+                                 final String message) {
+      if (!myFramedProtocol || category != CompilerMessageCategory.ERROR) {
+        myError = "Unexpected message: " + message;
+        return;
+      }
+
+      check(path, line, message);
+    }
+
+    private void check(final String path, final int line, final String message) {
+      final int index = myMessages.getAndIncrement();
+      if (!getPath(myCompilation, index).equals(path) || line != index + 1 || !message.equals("Message " + index)) {
+        myError = "Unexpected message for compilation " + myCompilation + ": " + path + "(" + line + "): " + message;
+      }
+    }
+
+    @Override
+    public void compilationFinished() {
+      myFinished.incrementAndGet();
+      myFinishedLatch.countDown();
+    }
+  }
+
+  private static class CompilerEmulator implements Runnable {
+    private final Socket mySocket;
+    private final boolean myFramedProtocol;
+    private final int myMessagesPerCompilation;
+    private final DataOutputStream myOut;
+
+    private CompilerEmulator(final Socket socket, final boolean framedProtocol, final int messagesPerCompilation) throws IOException {
+      mySocket = socket;
+      myFramedProtocol = framedProtocol;
+      myMessagesPerCompilation = messagesPerCompilation;
+      myOut = new DataOutputStream(socket.getOutputStream());
+    }
+
+    @Override
+    public void run() {
+      try {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(mySocket.getInputStream()));
+        while (true) {
+          final int compilationId;
+          final int compilation;
+          if (myFramedProtocol) {
+            final BuiltInFlexCompilerProtocol.Frame frame = BuiltInFlexCompilerProtocol.readFrame(in);
+            if (frame.type != BuiltInFlexCompilerProtocol.COMPILE) continue;
+            BuiltInFlexCompilerProtocol.readString(frame.payload); // BC key
+            compilationId = frame.compilationId;
+            compilation = Integer.parseInt(StringUtil.trimStart(BuiltInFlexCompilerProtocol.readString(frame.payload), "mxmlc "));
+          }
+          else {
+            // the same as FlexCompiler.processCommands(), one command per writeUTF() call is enough here
+            final String command = StringUtil.trimEnd(in.readUTF(), "\n");
+            final int colonPos = command.indexOf(':');
+            compilationId = Integer.parseInt(command.substring(0, colonPos));
+            compilation = Integer.parseInt(StringUtil.trimStart(command.substring(colonPos + 1), "mxmlc "));
+          }
+
+          final Thread thread = new Thread(() -> compile(compilationId, compilation), "Compilation " + compilation);
+          thread.setDaemon(true);
+          thread.start();
+        }
+      }
+      catch (IOException ignored) {
+        // IDE closed the socket
+      }
+    }
+
+    private void compile(final int compilationId, final int compilation) {
+      try {
+        for (int i = 0; i < myMessagesPerCompilation; i++) {
+          if (myFramedProtocol) {
+            new BuiltInFlexCompilerProtocol.FrameBuilder(BuiltInFlexCompilerProtocol.DIAGNOSTIC, compilationId)
+              .writeByte(BuiltInFlexCompilerProtocol.LEVEL_ERROR)
+              .writeString(getPath(compilation, i))
+              .writeInt(i + 1)
+              .writeInt(5)
+              .writeString("Message " + i)
+              .sendTo(myOut);
+          }
+          else {
+            // the same as OutputLogger.log() and FlexCompiler.sendMessage()
+            sendLine(compilationId + ":" + getPath(compilation, i) + "(" + (i + 1) + "): col: 5 Error: Message " + i);
+          }
+        }
+
+        if (myFramedProtocol) {
+          new BuiltInFlexCompilerProtocol.FrameBuilder(BuiltInFlexCompilerProtocol.FINISHED, compilationId).sendTo(myOut);
+        }
+        else {
+          sendLine(compilationId + ":" + BuiltInFlexCompilerHandler.COMPILATION_FINISHED);
+        }
+      }
+      catch (IOException ignored) {
+        // IDE closed the socket
+      }
+    }
+
+    private void sendLine(final String line) throws IOException {
+      synchronized (myOut) {
+        myOut.writeUTF(line + "\n");
+      }
+    }
+  }
+}
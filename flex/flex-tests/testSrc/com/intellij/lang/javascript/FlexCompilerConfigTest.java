@@ -12,6 +12,7 @@ import com.intellij.javascript.flex.css.FlexStylesIndexableSetContributor;
 import com.intellij.lang.javascript.flex.FlexModuleType;
 import com.intellij.lang.javascript.flex.FlexUtils;
 import com.intellij.lang.javascript.flex.build.CompilerConfigGenerator;
+import com.intellij.lang.javascript.flex.build.FlexCompilerDependenciesCache;
 import com.intellij.lang.javascript.flex.flexunit.FlexUnitPrecompileTask;
 import com.intellij.lang.javascript.flex.projectStructure.model.*;
 import com.intellij.lang.javascript.flex.projectStructure.model.impl.Factory;
@@ -44,6 +45,9 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -514,4 +518,77 @@ public class FlexCompilerConfigTest extends PlatformTestCase {
   public void testAirSdk() throws Exception {
     doTest("AIR SDK 3.6.0.5990", createBuildConfiguration(TargetPlatform.Web, true, OutputType.Application, "11.6"));
   }
+
+  public void testParseLinkReport() {
+    final String linkReport = "<report>\n" +
+                              "  <scripts>\n" +
+                              "    <script name=\"/project/src/Main.mxml\" mod=\"1400000000000\" size=\"1200\">\n" +
+                              "      <def id=\"Main\" />\n" +
+                              "      <pre id=\"spark.components:Application\" />\n" +
+                              "    </script>\n" +
+                              "    <script name=\"/project/src/foo/Bar.as\" mod=\"1400000000000\" size=\"300\">\n" +
+                              "      <def id=\"foo:Bar\" />\n" +
+                              "    </script>\n" +
+                              "    <script name=\"/sdk/frameworks/libs/spark.swc(spark.components:Application)\" mod=\"1\" size=\"9000\">\n" +
+                              "      <def id=\"spark.components:Application\" />\n" +
+                              "    </script>\n" +
+                              "    <script name=\"/sdk/frameworks/libs/spark.swc(spark.components:Button)\" mod=\"1\" size=\"4000\">\n" +
+                              "      <def id=\"spark.components:Button\" />\n" +
+                              "    </script>\n" +
+                              "  </scripts>\n" +
+                              "  <external-defs>\n" +
+                              "    <ext id=\"flash.display:Sprite\" />\n" +
+                              "  </external-defs>\n" +
+                              "</report>";
+
+    assertEquals(Arrays.asList("/project/src/Main.mxml", "/project/src/foo/Bar.as", "/sdk/frameworks/libs/spark.swc"),
+                 new ArrayList<>(FlexCompilerDependenciesCache.parseLinkReport(linkReport)));
+  }
+
+  private FlexBuildConfiguration createCompiledBC() throws IOException {
+    final File outputDir = createTempDirectory();
+    FlexTestUtils.modifyConfigs(myProject, editor -> {
+      final ModifiableFlexBuildConfiguration bc = editor.getConfigurations(myModule)[0];
+      bc.setOutputFolder(FileUtil.toSystemIndependentName(outputDir.getPath()));
+      bc.setOutputFileName("Main.swf");
+    });
+    FileUtil.writeToFile(new File(outputDir, "Main.swf"), "swf");
+
+    return FlexBuildConfigurationManager.getInstance(myModule).getActiveConfiguration();
+  }
+
+  public void testDependenciesCacheSaveLoad() throws Exception {
+    final FlexBuildConfiguration bc = createCompiledBC();
+    final File storageFile = new File(createTempDirectory(), "dependencies.dat");
+
+    final FlexCompilerDependenciesCache cache = new FlexCompilerDependenciesCache(myProject, storageFile);
+    cache.cacheBC(myModule, bc, Collections.emptyList());
+    assertTrue(cache.isNothingChangedSincePreviousCompilation(myModule, bc));
+    cache.save();
+
+    final FlexCompilerDependenciesCache restored = new FlexCompilerDependenciesCache(myProject, storageFile);
+    assertTrue(restored.isNothingChangedSincePreviousCompilation(myModule, bc));
+    assertTrue(restored.isNothingChangedSincePreviousCompilation(myModule, bc));
+  }
+
+  public void testDependenciesCacheStaleSourceRoots() throws Exception {
+    final FlexBuildConfiguration bc = createCompiledBC();
+    final File storageFile = new File(createTempDirectory(), "dependencies.dat");
+
+    final FlexCompilerDependenciesCache cache = new FlexCompilerDependenciesCache(myProject, storageFile);
+    cache.cacheBC(myModule, bc, Collections.emptyList());
+    cache.save();
+
+    // a class added while the project is closed
+    final File srcDir = new File(myModule.getModuleFile().getParent().getPath(), "src");
+    FileUtil.writeToFile(new File(srcDir, "Foo.as"), "package { public class Foo {} }");
+
+    final FlexCompilerDependenciesCache restored = new FlexCompilerDependenciesCache(myProject, storageFile);
+    assertFalse(restored.isNothingChangedSincePreviousCompilation(myModule, bc));
+    // the stale entry is discarded, not verified again
+    assertFalse(restored.isNothingChangedSincePreviousCompilation(myModule, bc));
+
+    restored.cacheBC(myModule, bc, Collections.emptyList());
+    assertTrue(restored.isNothingChangedSincePreviousCompilation(myModule, bc));
+  }
 }
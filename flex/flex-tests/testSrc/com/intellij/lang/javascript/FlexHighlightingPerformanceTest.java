@@ -1,11 +1,20 @@
 package com.intellij.lang.javascript;
 
 import com.intellij.flex.FlexTestUtils;
+import com.intellij.javascript.flex.mxml.schema.CodeContext;
+import com.intellij.javascript.flex.mxml.schema.CodeContextHolder;
 import com.intellij.lang.javascript.flex.FlexModuleType;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.ModuleType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.util.ProfilingUtil;
 import com.intellij.util.ThrowableRunnable;
+import com.intellij.xml.XmlElementDescriptor;
+
+import java.util.*;
+import java.util.concurrent.Future;
 
 public class FlexHighlightingPerformanceTest extends ActionScriptDaemonAnalyzerTestCase {
   @Override
@@ -41,6 +50,54 @@ public class FlexHighlightingPerformanceTest extends ActionScriptDaemonAnalyzerT
     }
   }
 
+  @JSTestOptions({JSTestOption.WithLoadingAndSavingCaches, JSTestOption.WithFlexFacet, JSTestOption.WithJsSupportLoader})
+  public void testConcurrentCodeContexts() throws Exception {
+    doTestFor(true, "Performance.mxml", "UsingSwcStubs2.swc");
+
+    final List<XmlTag> tags = new ArrayList<>(PsiTreeUtil.findChildrenOfType(getFile(), XmlTag.class));
+    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(getProject());
+    final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    PlatformTestUtil.startPerformanceTest("MXML code contexts should be built concurrently", 3000, () -> {
+      contextHolder.clearAll();
+
+      final List<Future<Map<String, CodeContext>>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        final int firstTag = i * tags.size() / threads;
+        futures.add(ApplicationManager.getApplication().executeOnPooledThread(
+          () -> ApplicationManager.getApplication().runReadAction(() -> resolveTagDescriptors(tags, firstTag))));
+      }
+
+      final Map<String, CodeContext> expected = futures.get(0).get();
+      for (Future<Map<String, CodeContext>> future : futures) {
+        final Map<String, CodeContext> contexts = future.get();
+        for (Map.Entry<String, CodeContext> entry : contexts.entrySet()) {
+          if (entry.getValue().getAllDescriptorsSize() > 0) {
+            assertSame(entry.getKey(), expected.get(entry.getKey()), entry.getValue());
+          }
+        }
+      }
+    }).cpuBound().usesAllCPUCores().useLegacyScaling().assertTiming();
+
+    assertTrue(contextHolder.getStatistics(), contextHolder.getBuildCount() > 0);
+  }
+
+  private Map<String, CodeContext> resolveTagDescriptors(final List<XmlTag> tags, final int firstTag) {
+    // all threads request the same namespaces, but each one starts at its own tag
+    final Map<String, CodeContext> contexts = new HashMap<>();
+    for (int i = 0; i < tags.size(); i++) {
+      final XmlTag tag = tags.get((firstTag + i) % tags.size());
+      final CodeContext context = CodeContext.getContext(tag.getNamespace(), myModule);
+      contexts.put(tag.getNamespace(), context);
+
+      final XmlElementDescriptor descriptor = context.getElementDescriptor(tag.getLocalName(), tag);
+      if (descriptor != null) {
+        descriptor.getAttributesDescriptors(tag);
+      }
+    }
+    return contexts;
+  }
+
   @Override
   protected ModuleType getModuleType() {
     return FlexModuleType.getInstance();
@@ -5,6 +5,7 @@ import com.intellij.lang.javascript.flex.importer.FlexImporter;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.testFramework.PlatformTestUtil;
 import junit.framework.TestCase;
 
 import java.io.ByteArrayInputStream;
@@ -72,7 +73,29 @@ public class FlexImporterTest extends TestCase {
     doTestFor("hotbook.swf");
   }
 
-  private void doTestFor(final String fileName) throws IOException {
+  public final void testMappedFile() throws Exception {
+    final File file = new File(getTestDataPath() + "hotbook.swf");
+    assertEquals(FlexImporter.dumpContentsFromStream(new ByteArrayInputStream(FileUtil.loadFileBytes(file)), false),
+                 FlexImporter.dumpContentsFromFile(file, false));
+  }
+
+  public final void testDecodingPerformance() throws Exception {
+    final String[] fileNames = {"PlayerGlobal10.swc", "airglobal_1_5.swc", "ds.swc", "Alchemy.swc", "employeedirectory.swf", "hotbook.swf"};
+    final byte[][] contents = new byte[fileNames.length][];
+    for (int i = 0; i < fileNames.length; i++) {
+      contents[i] = loadContents(fileNames[i]);
+    }
+
+    PlatformTestUtil.startPerformanceTest("Decoding SWC and SWF files", 3000, () -> {
+      for (int i = 0; i < 5; i++) {
+        for (byte[] content : contents) {
+          assertFalse(FlexImporter.buildInterface(content).startsWith("/*"));
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static byte[] loadContents(final String fileName) throws IOException {
     final File file = new File(getTestDataPath() + fileName);
     final byte[] contents;
 
@@ -86,6 +109,11 @@ public class FlexImporterTest extends TestCase {
     } else {
        contents = FileUtil.loadFileBytes(file);
     }
+    return contents;
+  }
+
+  private void doTestFor(final String fileName) throws IOException {
+    final byte[] contents = loadContents(fileName);
 
     String result = FlexImporter.buildInterfaceFromStream(new ByteArrayInputStream(contents));
     String resultFileName = getTestDataPath() + fileName + ".txt";
@@ -7,6 +7,7 @@ import com.intellij.lang.javascript.psi.stubs.impl.JSFileCachedData;
 import com.intellij.lang.javascript.psi.stubs.impl.JSFileStubImpl;
 import com.intellij.lang.javascript.types.JSFileElementType;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.stubs.BinaryFileStubBuilder;
@@ -15,8 +16,7 @@ import com.intellij.psi.stubs.PsiFileStubImpl;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.indexing.FileContent;
 import org.jetbrains.annotations.NotNull;
-
-import java.io.ByteArrayInputStream;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Maxim.Mossienko
@@ -36,22 +36,33 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
   }
 
   static PsiFileStub buildFileStub(VirtualFile file, byte[] content) {
+    // a stub tree that failed to build is still used, but not cached: the failure may be fixed in the importer without a version bump
+    final Ref<PsiFileStub> partialStub = Ref.create();
+    final PsiFileStub stub = SwfStubCache.getInstance().getOrBuild(content, () -> doBuildFileStub(file, content, partialStub));
+    return stub != null ? stub : partialStub.get();
+  }
+
+  @Nullable
+  private static PsiFileStub doBuildFileStub(VirtualFile file, byte[] content, Ref<PsiFileStub> partialStub) {
     PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
     try {
 
-      FlexImporter.buildStubsInterfaceFromStream(
-        new ByteArrayInputStream(content),
-        stub
-      );
+      FlexImporter.buildStubsInterface(content, stub);
 
     } catch (Exception ex) {
       Logger.getInstance(SwfFileStubBuilder.class.getName()).warn(file.getPath(), ex);
+      partialStub.set(stub);
+      return null;
     }
 
     return stub;
   }
 
   public int getStubVersion() {
+    return getVersion();
+  }
+
+  static int getVersion() {
     return JSFileElementType.getVersion() + VERSION;
   }
 }
\ No newline at end of file
@@ -0,0 +1,243 @@
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.stubs.PsiFileStub;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.Stub;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-wide on-disk cache of SWF stub trees. The same Flex and AIR SDK SWCs are used by all projects, so the stub tree
+ * of a <code>library.swf</code> is decoded once and then read from the cache whenever the index is rebuilt in any project.
+ * Entries are keyed by the SHA-1 of the SWF content and live under the index root in a directory named after the stub version, the IDE
+ * build and the serializer name storage, so a change in the importer, in the stub serializers or in their ids makes old entries
+ * unreachable (they are deleted on startup).
+ * When the total size exceeds the limit, least recently used entries are deleted.
+ */
+public class SwfStubCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(SwfStubCache.class.getName());
+
+  private static final long DEFAULT_MAX_SIZE = 200 * 1024 * 1024;
+  private static final String ENTRY_EXTENSION = ".stub";
+  // see SerializationManagerImpl
+  private static final String NAME_STORAGE_FILE_NAME = "rep.names";
+
+  @NotNull private final File myCacheDir;
+  private final long myMaxSize;
+  private final AtomicLong myTotalSize = new AtomicLong();
+
+  private final AtomicInteger myHits = new AtomicInteger();
+  private final AtomicInteger myMisses = new AtomicInteger();
+  private final AtomicInteger myEvictions = new AtomicInteger();
+
+  public static SwfStubCache getInstance() {
+    return ServiceManager.getService(SwfStubCache.class);
+  }
+
+  @SuppressWarnings("unused") // instantiated as application service
+  public SwfStubCache() {
+    this(getDefaultCacheDir(), DEFAULT_MAX_SIZE);
+  }
+
+  public SwfStubCache(@NotNull final File cacheDir, final long maxSize) {
+    myCacheDir = cacheDir;
+    myMaxSize = maxSize;
+
+    FileUtil.createDirectory(cacheDir);
+    final File[] entries = listEntries();
+    if (entries != null) {
+      for (File entry : entries) {
+        myTotalSize.addAndGet(entry.length());
+      }
+    }
+  }
+
+  @NotNull
+  private static File getDefaultCacheDir() {
+    // entries refer to stub serializers by ids from the name storage in the index root: the cache is deleted together with
+    // the indices (e.g. on Invalidate Caches) and is dropped when the name storage is created anew
+    final File root = new File(PathManager.getIndexRoot(), "swf-stubs");
+    final String version = SwfFileStubBuilder.getVersion() + "-" + ApplicationInfo.getInstance().getBuild().asString() + "-" +
+                           getNameStorageStamp();
+
+    final File[] outdated = root.listFiles(file -> !file.getName().equals(version));
+    if (outdated != null) {
+      for (File file : outdated) {
+        FileUtil.delete(file);
+      }
+    }
+
+    return new File(root, version);
+  }
+
+  @NotNull
+  private static String getNameStorageStamp() {
+    final File nameStorage = new File(PathManager.getIndexRoot(), NAME_STORAGE_FILE_NAME);
+    try {
+      return Long.toHexString(Files.readAttributes(nameStorage.toPath(), BasicFileAttributes.class).creationTime().toMillis());
+    }
+    catch (IOException e) {
+      // not created yet, the next start will get another stamp
+      return "0";
+    }
+  }
+
+  @Override
+  public void dispose() {
+    if (myHits.get() + myMisses.get() > 0) {
+      LOG.info("SWF stub cache: " + getStatistics());
+    }
+  }
+
+  /**
+   * @param builder called if there's no stub tree for this content in the cache, result is saved to the cache;
+   *                returns <code>null</code> if the content couldn't be decoded, nothing is cached then
+   */
+  @Nullable
+  public PsiFileStub getOrBuild(@NotNull final byte[] swfContent, @NotNull final Computable<PsiFileStub> builder) {
+    final String key = computeKey(swfContent);
+    if (key == null) return builder.compute();
+
+    final File entry = new File(myCacheDir, key + ENTRY_EXTENSION);
+    final PsiFileStub cachedStub = read(entry);
+    if (cachedStub != null) {
+      myHits.incrementAndGet();
+      return cachedStub;
+    }
+
+    myMisses.incrementAndGet();
+    final PsiFileStub stub = builder.compute();
+    if (stub != null) {
+      write(entry, stub);
+    }
+    return stub;
+  }
+
+  public int getHits() {
+    return myHits.get();
+  }
+
+  public int getMisses() {
+    return myMisses.get();
+  }
+
+  public int getEvictions() {
+    return myEvictions.get();
+  }
+
+  @NotNull
+  public String getStatistics() {
+    return myHits.get() + " hits, " + myMisses.get() + " misses, " + myEvictions.get() + " evictions, " +
+           StringUtil.formatFileSize(myTotalSize.get()) + " on disk";
+  }
+
+  @Nullable
+  private static String computeKey(@NotNull final byte[] content) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(content));
+    }
+    catch (NoSuchAlgorithmException e) {
+      LOG.error(e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private PsiFileStub read(@NotNull final File entry) {
+    if (!entry.isFile()) return null;
+
+    try (InputStream in = new BufferedInputStream(new FileInputStream(entry))) {
+      final Stub stub = SerializationManagerEx.getInstanceEx().deserialize(in);
+      if (stub instanceof PsiFileStub) {
+        //noinspection ResultOfMethodCallIgnored
+        entry.setLastModified(System.currentTimeMillis()); // least recently used entries are evicted first
+        return (PsiFileStub)stub;
+      }
+    }
+    catch (Exception e) {
+      // entry written by another IDE instance at the same time, disk problems or a serializer that has been changed without version bump
+      LOG.debug("Failed to read " + entry.getPath(), e);
+    }
+
+    delete(entry);
+    return null;
+  }
+
+  private void write(@NotNull final File entry, @NotNull final PsiFileStub stub) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      SerializationManagerEx.getInstanceEx().serialize(stub, bytes);
+
+      // other threads and other IDE instances must not see a partially written entry
+      final File tempFile = FileUtil.createTempFile(myCacheDir, entry.getName(), ".tmp", true, false);
+      try (OutputStream out = new FileOutputStream(tempFile)) {
+        bytes.writeTo(out);
+      }
+      FileUtil.rename(tempFile, entry);
+    }
+    catch (Exception e) {
+      LOG.debug("Failed to write " + entry.getPath(), e);
+      return;
+    }
+
+    if (myTotalSize.addAndGet(bytes.size()) > myMaxSize) {
+      evict();
+    }
+  }
+
+  private synchronized void evict() {
+    if (myTotalSize.get() <= myMaxSize) return;
+
+    // temp files are being written by other threads or IDE instances
+    final File[] entries = listEntries();
+    if (entries == null) return;
+
+    Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+    long totalSize = 0;
+    for (File entry : entries) {
+      totalSize += entry.length();
+    }
+
+    // free some more space than needed, so that eviction doesn't happen on each write
+    final long targetSize = myMaxSize * 3 / 4;
+    for (File entry : entries) {
+      if (totalSize <= targetSize) break;
+      final long length = entry.length();
+      if (FileUtil.delete(entry)) {
+        totalSize -= length;
+        myEvictions.incrementAndGet();
+      }
+    }
+    myTotalSize.set(totalSize);
+  }
+
+  @Nullable
+  private File[] listEntries() {
+    return myCacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+  }
+
+  private void delete(@NotNull final File entry) {
+    final long length = entry.length();
+    if (FileUtil.delete(entry)) {
+      myTotalSize.addAndGet(-length);
+    }
+  }
+}
@@ -74,9 +74,13 @@ public class ClassBackedElementDescriptor extends IconProvider implements XmlEle
   protected final CodeContext context;
   private final boolean predefined;
 
-  private Map<String, AnnotationBackedDescriptor> myDescriptors; // can be both XML attributes and elements
-  private Map<String, Map<String, AnnotationBackedDescriptor>> myPackageToInternalDescriptors; // These descriptors are resolved only if MXML file is in the same package as descriptor originating element. Can be both XML attributes and elements.
-  private Map<String, AnnotationBackedDescriptor> myPredefinedDescriptors; // can be XML attributes, but not elements
+  // The maps are immutable snapshots that are replaced, not modified. myPackageToInternalDescriptors is assigned before myDescriptors,
+  // so a thread that sees non-null myDescriptors sees non-null myPackageToInternalDescriptors as well.
+  private volatile Map<String, AnnotationBackedDescriptor> myDescriptors; // can be both XML attributes and elements
+  private volatile Map<String, Map<String, AnnotationBackedDescriptor>> myPackageToInternalDescriptors; // These descriptors are resolved only if MXML file is in the same package as descriptor originating element. Can be both XML attributes and elements.
+  private volatile Map<String, AnnotationBackedDescriptor> myPredefinedDescriptors; // can be XML attributes, but not elements
+  // guards replacing the maps, so that a descriptor added by one thread is not lost by another one replacing the same map
+  private final Object myDescriptorsLock = new Object();
 
   @NonNls private static final String ARRAY_TYPE_ANNOTATION_PARAMETER = "arrayType";
 
@@ -434,8 +438,7 @@ public class ClassBackedElementDescriptor extends IconProvider implements XmlEle
     if (myDescriptors == null || myPackageToInternalDescriptors == null) {
       PsiElement element = getDeclaration();
       if (element == null) {
-        myDescriptors = Collections.emptyMap();
-        myPackageToInternalDescriptors = Collections.emptyMap();
+        initDescriptorsMaps(Collections.emptyMap(), Collections.emptyMap());
       }
       else {
         ensureDescriptorsMapsInitialized(element, null);
@@ -480,83 +483,104 @@ public class ClassBackedElementDescriptor extends IconProvider implements XmlEle
   }
 
   public void addPredefinedMemberDescriptor(@NotNull AnnotationBackedDescriptor descriptor) {
-    if (predefined) {
+    synchronized (myDescriptorsLock) {
+      if (predefined) {
+        if (myPackageToInternalDescriptors == null) {
+          myPackageToInternalDescriptors = Collections.emptyMap();
+        }
+        myDescriptors = withDescriptor(myDescriptors, descriptor);
+      } else {
+        myPredefinedDescriptors = withDescriptor(myPredefinedDescriptors, descriptor);
+      }
+    }
+  }
+
+  /**
+   * Sets the maps unless another thread has already done it, maps set first may already contain predefined descriptors.
+   */
+  private void initDescriptorsMaps(@NotNull final Map<String, AnnotationBackedDescriptor> descriptors,
+                                   @NotNull final Map<String, Map<String, AnnotationBackedDescriptor>> packageToInternalDescriptors) {
+    synchronized (myDescriptorsLock) {
+      if (myPackageToInternalDescriptors == null) {
+        myPackageToInternalDescriptors = packageToInternalDescriptors;
+      }
       if (myDescriptors == null) {
-        myDescriptors = new THashMap<>();
-        myPackageToInternalDescriptors = Collections.emptyMap();
+        myDescriptors = descriptors;
       }
-      myDescriptors.put(descriptor.getName(), descriptor);
-    } else {
-      if (myPredefinedDescriptors == null) myPredefinedDescriptors = new THashMap<>();
-      myPredefinedDescriptors.put(descriptor.getName(), descriptor);
     }
   }
 
+  @NotNull
+  private static Map<String, AnnotationBackedDescriptor> withDescriptor(@Nullable final Map<String, AnnotationBackedDescriptor> map,
+                                                                        @NotNull final AnnotationBackedDescriptor descriptor) {
+    final Map<String, AnnotationBackedDescriptor> result = map == null ? new THashMap<>() : new THashMap<>(map);
+    result.put(descriptor.getName(), descriptor);
+    return Collections.unmodifiableMap(result);
+  }
+
   private void ensureDescriptorsMapsInitialized(PsiElement element, @Nullable Set<JSClass> visited) {
     Map<String, AnnotationBackedDescriptor> map;
     Map<String, Map<String, AnnotationBackedDescriptor>> packageToInternalDescriptors;
 
-    synchronized (CodeContext.class) {
-      map = myDescriptors;
-      packageToInternalDescriptors = myPackageToInternalDescriptors;
-      if (map != null && packageToInternalDescriptors != null) return;
+    // computed without the lock: threads that come here at the same time compute equal maps and the first one wins
+    map = myDescriptors;
+    packageToInternalDescriptors = myPackageToInternalDescriptors;
+    if (map != null && packageToInternalDescriptors != null) return;
 
-      map = new THashMap<>();
-      packageToInternalDescriptors = new THashMap<>();
-      Set<PsiElement> processedElements = null;
+    map = new THashMap<>();
+    packageToInternalDescriptors = new THashMap<>();
+    Set<PsiElement> processedElements = null;
 
-      if (element instanceof XmlBackedJSClassImpl) {
-        element = element.getParent().getContainingFile(); // TODO: make this code and following loop better
-      }
+    if (element instanceof XmlBackedJSClassImpl) {
+      element = element.getParent().getContainingFile(); // TODO: make this code and following loop better
+    }
 
-      if (element instanceof XmlFile && MxmlJSClass.isFxgFile((PsiFile)element)) {
-        element = XmlBackedJSClassFactory.getXmlBackedClass((XmlFile)element);
-      }
+    if (element instanceof XmlFile && MxmlJSClass.isFxgFile((PsiFile)element)) {
+      element = XmlBackedJSClassFactory.getXmlBackedClass((XmlFile)element);
+    }
 
-      while (element instanceof XmlFile) {
-        final XmlDocument document = ((XmlFile)element).getDocument();
-        final XmlTag rootTag = document != null ? document.getRootTag():null;
-        final XmlElementDescriptor descriptor = rootTag != null ? rootTag.getDescriptor():null;
-        if (processedElements == null) processedElements = new THashSet<>();
-        processedElements.add(element);
+    while (element instanceof XmlFile) {
+      final XmlDocument document = ((XmlFile)element).getDocument();
+      final XmlTag rootTag = document != null ? document.getRootTag():null;
+      final XmlElementDescriptor descriptor = rootTag != null ? rootTag.getDescriptor():null;
+      if (processedElements == null) processedElements = new THashSet<>();
+      processedElements.add(element);
 
-        element = descriptor != null ? descriptor.getDeclaration():null;
-        if (processedElements.contains(element)) break;
-        collectMxmlAttributes(map, packageToInternalDescriptors, rootTag);
-      }
+      element = descriptor != null ? descriptor.getDeclaration():null;
+      if (processedElements.contains(element)) break;
+      collectMxmlAttributes(map, packageToInternalDescriptors, rootTag);
+    }
 
-      if (element instanceof JSNamedElement) {
-        JSNamedElement jsClass = (JSNamedElement)element;
-        jsClass = (JSNamedElement)JSResolveUtil.unwrapProxy(jsClass);
-
-        if (visited == null || !visited.contains(jsClass)) {
-          if (!MxmlJSClass.XML_TAG_NAME.equals(jsClass.getName()) && !MxmlJSClass.XMLLIST_TAG_NAME.equals(jsClass.getName())) {
-            JSReferenceList extendsList = jsClass instanceof JSClass ? ((JSClass)jsClass).getExtendsList():null;
-            if (extendsList != null) {
-              final JSClass clazz = (JSClass)jsClass;
-              if (visited == null) {
-                visited = new THashSet<>();
-              }
-              visited.add(clazz);
+    if (element instanceof JSNamedElement) {
+      JSNamedElement jsClass = (JSNamedElement)element;
+      jsClass = (JSNamedElement)JSResolveUtil.unwrapProxy(jsClass);
 
-              for(JSClass superClazz: clazz.getSuperClasses()) {
-                appendSuperClassDescriptors(map, packageToInternalDescriptors, superClazz, visited);
-              }
-            } else if (!OBJECT_CLASS_NAME.equals(jsClass.getName()) && CodeContext.isStdNamespace(context.namespace)) {
-              appendSuperClassDescriptors(
-                  map,
-                  packageToInternalDescriptors,
-                  JSResolveUtil.unwrapProxy(ActionScriptClassResolver.findClassByQNameStatic(OBJECT_CLASS_NAME, jsClass)),
-                  visited);
+      if (visited == null || !visited.contains(jsClass)) {
+        if (!MxmlJSClass.XML_TAG_NAME.equals(jsClass.getName()) && !MxmlJSClass.XMLLIST_TAG_NAME.equals(jsClass.getName())) {
+          JSReferenceList extendsList = jsClass instanceof JSClass ? ((JSClass)jsClass).getExtendsList():null;
+          if (extendsList != null) {
+            final JSClass clazz = (JSClass)jsClass;
+            if (visited == null) {
+              visited = new THashSet<>();
             }
-          }
+            visited.add(clazz);
 
-          collectMyAttributes(jsClass, map, packageToInternalDescriptors);
+            for(JSClass superClazz: clazz.getSuperClasses()) {
+              appendSuperClassDescriptors(map, packageToInternalDescriptors, superClazz, visited);
+            }
+          } else if (!OBJECT_CLASS_NAME.equals(jsClass.getName()) && CodeContext.isStdNamespace(context.namespace)) {
+            appendSuperClassDescriptors(
+                map,
+                packageToInternalDescriptors,
+                JSResolveUtil.unwrapProxy(ActionScriptClassResolver.findClassByQNameStatic(OBJECT_CLASS_NAME, jsClass)),
+                visited);
+          }
         }
+
+        collectMyAttributes(jsClass, map, packageToInternalDescriptors);
       }
-      myDescriptors = map;
-      myPackageToInternalDescriptors = packageToInternalDescriptors;
     }
+    initDescriptorsMaps(Collections.unmodifiableMap(map), Collections.unmodifiableMap(packageToInternalDescriptors));
   }
 
   private void collectMxmlAttributes(final Map<String, AnnotationBackedDescriptor> map,
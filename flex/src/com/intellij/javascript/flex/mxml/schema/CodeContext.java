@@ -47,6 +47,7 @@ import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.Consumer;
 import com.intellij.util.PairConsumer;
 import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.xml.XmlElementDescriptor;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
@@ -73,18 +74,20 @@ public class CodeContext {
   static final String TWO_WAY_ATTR_NAME = "twoWay";
   private static final String XML_CLASS = "XML";
   private static final String XMLNODE_CLASS = "flash.xml.XMLNode";
+  private static final String STANDARD_CONTEXTS_KEY = "<standard namespaces>";
 
   final static String[] GUMBO_ATTRIBUTES = {FlexStateElementNames.INCLUDE_IN, FlexStateElementNames.EXCLUDE_FROM,
     FlexStateElementNames.ITEM_CREATION_POLICY, FlexStateElementNames.ITEM_DESTRUCTION_POLICY};
 
-  // Component name to descriptor
+  // Component name to descriptor. Concurrent because libraries of a module may contribute to standard contexts
+  // while these contexts are already in use.
   private final Map<String, ClassBackedElementDescriptor> myNameToDescriptorsMap;
   public final String namespace;
   public final Module module;
-  private final Set<Object> dependencies = new THashSet<>();
+  private final Set<Object> dependencies = ContainerUtil.newConcurrentSet();
 
   CodeContext(String _namespace, Module _module) {
-    myNameToDescriptorsMap = new THashMap<>(100);
+    myNameToDescriptorsMap = ContainerUtil.newConcurrentMap(100);
     namespace = _namespace;
     module = _module;
     if (JavaScriptSupportLoader.isLanguageNamespace(namespace)) {
@@ -145,26 +148,27 @@ public class CodeContext {
     final FlexBuildConfiguration bc = FlexBuildConfigurationManager.getInstance(module).getActiveConfiguration();
     if (bc == null) return CodeContextHolder.EMPTY;
 
-    CodeContext codeContext;
+    if (isStdNamespace(namespace)) {
+      return getStdCodeContext(namespace, module, bc);
+    }
 
-    synchronized (CodeContext.class) {
-      if (isStdNamespace(namespace)) {
-        return getStdCodeContext(namespace, module, bc);
-      }
+    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
+    final CodeContext cachedContext = contextHolder.getCodeContext(namespace, module);
+    if (cachedContext != null) return cachedContext;
 
-      final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-      codeContext = contextHolder.getCodeContext(namespace, module);
+    final CodeContext codeContext = contextHolder.buildOnce(namespace, module, () -> {
+      final CodeContext builtContext = contextHolder.getCodeContext(namespace, module);
+      if (builtContext != null) return builtContext; // built by a thread that has finished before this build started
 
-      if (codeContext == null) {
-        codeContext = createCodeContext(namespace, module, bc);
-        if (codeContext.getAllDescriptorsSize() > 0) {
-          // avoid adding of incorrect namespaces that appear during completion like "http://www.adobe.IntellijIdeaRulezzz com/2006/mxml"
-          contextHolder.putCodeContext(namespace, module, codeContext);
-        }
+      final CodeContext newContext = createCodeContext(namespace, module, bc);
+      if (newContext.getAllDescriptorsSize() > 0) {
+        // avoid adding of incorrect namespaces that appear during completion like "http://www.adobe.IntellijIdeaRulezzz com/2006/mxml"
+        contextHolder.putCodeContext(namespace, module, newContext);
       }
-    }
+      return newContext;
+    });
 
-    return codeContext;
+    return codeContext != null ? codeContext : CodeContextHolder.EMPTY;
   }
 
   public static boolean isStdNamespace(final String namespace) {
@@ -338,12 +342,7 @@ public class CodeContext {
   private static CodeContext identifyCodeContext(Module module, Map<String, CodeContext> contextsOfModule, String uri) {
     CodeContext codeContext;
     if (isStdNamespace(uri)) {
-      final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-      codeContext = contextHolder.getStandardContext(uri, module);
-      if (codeContext == null) {
-        codeContext = new CodeContext(uri, module);
-        contextHolder.putStandardContext(uri, module, codeContext);
-      }
+      codeContext = CodeContextHolder.getInstance(module.getProject()).getOrCreateStandardContext(uri, module);
     }
     else {
       codeContext = contextsOfModule.get(uri);
@@ -391,10 +390,16 @@ public class CodeContext {
     final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
 
     if (!contextHolder.areSdkComponentsHandledForModule(module)) { // handleAllStandardManifests only once per module
-      handleAllStandardManifests(module, bc);
-      handleSwcFromSdk(module, bc); //swc files attached to Flex SDK may contribute to standard context
-      createCodeContextFromLibraries(namespace, module, bc); // other libraries may contribute to standard context
-      contextHolder.setSdkComponentsHandledForModule(module);
+      // all standard namespaces of the module are built together
+      contextHolder.buildOnce(STANDARD_CONTEXTS_KEY, module, () -> {
+        if (!contextHolder.areSdkComponentsHandledForModule(module)) {
+          handleAllStandardManifests(module, bc);
+          handleSwcFromSdk(module, bc); //swc files attached to Flex SDK may contribute to standard context
+          createCodeContextFromLibraries(namespace, module, bc); // other libraries may contribute to standard context
+          contextHolder.setSdkComponentsHandledForModule(module);
+        }
+        return null;
+      });
     }
 
     final CodeContext context = contextHolder.getStandardContext(namespace, module);
@@ -476,14 +481,7 @@ public class CodeContext {
                                              final String namespace,
                                              final VirtualFile manifestFile,
                                              final VirtualFile flexSdkRoot) {
-    final CodeContextHolder contextHolder = CodeContextHolder.getInstance(module.getProject());
-    CodeContext _context = contextHolder.getStandardContext(namespace, module);
-    if (_context == null) {
-      _context = new CodeContext(namespace, module);
-      contextHolder.putStandardContext(namespace, module, _context);
-    }
-
-    final CodeContext context = _context;
+    final CodeContext context = CodeContextHolder.getInstance(module.getProject()).getOrCreateStandardContext(namespace, module);
     context.addDependency(flexSdkRoot);
 
     processManifestFile(manifestFile, context);
@@ -2,40 +2,69 @@ package com.intellij.javascript.flex.mxml.schema;
 
 import com.intellij.ProjectTopics;
 import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Pair;
+import com.intellij.util.containers.ContainerUtil;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Maxim.Mossienko
 */
 public class CodeContextHolder extends AbstractProjectComponent {
+  private static final Logger LOG = Logger.getInstance(CodeContextHolder.class.getName());
+
   private final Set<Module> myModulesWithSdkComponentsHandled = new HashSet<>();
   private final Map<String, Map<Module, CodeContext>> myStandardContexts = new HashMap<>();
   private final Map<String, Map<Module, CodeContext>> myNSToCodeContextMap = new THashMap<>();
   static final CodeContext EMPTY = new CodeContext(null, null);
 
+  // (namespace, module) -> context that is being built by some thread, other threads wait for it instead of building the same context
+  private final ConcurrentMap<Pair<Object, Module>, ContextBuild> myBuildsInProgress = ContainerUtil.newConcurrentMap();
+  // thread -> build it waits for, to find out if waiting would close a cycle of builds waiting for each other
+  private final ConcurrentMap<Thread, ContextBuild> myWaitingThreads = ContainerUtil.newConcurrentMap();
+
+  private final AtomicInteger myBuildCount = new AtomicInteger();
+  private final AtomicInteger myWaitCount = new AtomicInteger();
+  private final AtomicLong myWaitTimeNanos = new AtomicLong();
+
+  private static class ContextBuild {
+    private final Thread myThread = Thread.currentThread();
+    private final CompletableFuture<CodeContext> myResult = new CompletableFuture<>();
+  }
+
   public CodeContextHolder(Project project) {
     super(project);
     project.getMessageBus().connect().subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
       @Override
       public void rootsChanged(final ModuleRootEvent event) {
-        synchronized (CodeContextHolder.this) {
-          myNSToCodeContextMap.clear();
-          myStandardContexts.clear();
-          myModulesWithSdkComponentsHandled.clear();
-        }
+        clearAll();
       }
     });
   }
 
+  @Override
+  public void projectClosed() {
+    if (myWaitCount.get() > 0) {
+      LOG.debug("MXML code contexts: " + getStatistics());
+    }
+  }
+
   @Override
   @NonNls
   @NotNull
@@ -66,6 +95,114 @@ public class CodeContextHolder extends AbstractProjectComponent {
     }
   }
 
+  /**
+   * Drops all contexts, they are built again when requested.
+   */
+  public synchronized void clearAll() {
+    myNSToCodeContextMap.clear();
+    myStandardContexts.clear();
+    myModulesWithSdkComponentsHandled.clear();
+  }
+
+  /**
+   * Calls <code>builder</code> unless another thread is already building a context for the same <code>key</code> and
+   * <code>module</code>, in which case waits for that thread and returns its result. Builds for different keys run in parallel.
+   * The builder is responsible for storing its result in this holder.
+   */
+  @Nullable
+  CodeContext buildOnce(@NotNull final Object key, @NotNull final Module module, @NotNull final Computable<CodeContext> builder) {
+    final Pair<Object, Module> buildKey = Pair.create(key, module);
+
+    while (true) {
+      final ContextBuild build = new ContextBuild();
+      final ContextBuild otherBuild = myBuildsInProgress.putIfAbsent(buildKey, build);
+
+      if (otherBuild == null) {
+        try {
+          myBuildCount.incrementAndGet();
+          final CodeContext result = builder.compute();
+          build.myResult.complete(result);
+          return result;
+        }
+        catch (Throwable e) {
+          build.myResult.completeExceptionally(e);
+          throw e;
+        }
+        finally {
+          myBuildsInProgress.remove(buildKey, build);
+        }
+      }
+
+      final Thread currentThread = Thread.currentThread();
+      // registered before the check, so that of two threads about to wait for each other at least one sees the cycle
+      myWaitingThreads.put(currentThread, otherBuild);
+      if (isWaitedFor(currentThread, otherBuild)) {
+        // reentrant call or the other build (indirectly) waits for a build of this thread: build one more copy rather than deadlock
+        myWaitingThreads.remove(currentThread);
+        return builder.compute();
+      }
+
+      final long start = System.nanoTime();
+      try {
+        return otherBuild.myResult.get();
+      }
+      catch (ExecutionException e) {
+        // e.g. the other thread has been canceled, try to build the context in this thread
+        if (!(e.getCause() instanceof ProcessCanceledException)) {
+          LOG.debug(e.getCause());
+        }
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      finally {
+        myWaitingThreads.remove(currentThread);
+        final long waitTime = System.nanoTime() - start;
+        myWaitCount.incrementAndGet();
+        myWaitTimeNanos.addAndGet(waitTime);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Waited " + waitTime / 1000000 + " ms for code context " + key + " of module " + module.getName());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the thread building <code>build</code>, or a thread it waits for and so on, is <code>thread</code>
+   */
+  private boolean isWaitedFor(@NotNull final Thread thread, @NotNull ContextBuild build) {
+    // the bound guards against a chain that changes while it is followed
+    for (int i = 0; i <= myWaitingThreads.size(); i++) {
+      if (build.myThread == thread) return true;
+      build = myWaitingThreads.get(build.myThread);
+      if (build == null) return false;
+    }
+    return false;
+  }
+
+  /**
+   * @return number of contexts built by {@link #buildOnce(Object, Module, Computable)}
+   */
+  public int getBuildCount() {
+    return myBuildCount.get();
+  }
+
+  /**
+   * @return number of times a thread waited for a context being built by another thread
+   */
+  public int getWaitCount() {
+    return myWaitCount.get();
+  }
+
+  public long getWaitTimeMillis() {
+    return myWaitTimeNanos.get() / 1000000;
+  }
+
+  @NotNull
+  public String getStatistics() {
+    return myBuildCount.get() + " builds, " + myWaitCount.get() + " waits, " + getWaitTimeMillis() + " ms waiting";
+  }
+
   public static CodeContextHolder getInstance(@NotNull Project project) {
     return project.getComponent(CodeContextHolder.class);
   }
@@ -91,13 +228,19 @@ public class CodeContextHolder extends AbstractProjectComponent {
     return result;
   }
 
-  synchronized void putStandardContext(final String namespace, final Module module, final CodeContext codeContext) {
+  @NotNull
+  synchronized CodeContext getOrCreateStandardContext(final String namespace, final Module module) {
     Map<Module, CodeContext> map = myStandardContexts.get(namespace);
     if (map == null) {
       map = new HashMap<>();
       myStandardContexts.put(namespace, map);
     }
-    map.put(module, codeContext);
+    CodeContext codeContext = map.get(module);
+    if (codeContext == null) {
+      codeContext = new CodeContext(namespace, module);
+      map.put(module, codeContext);
+    }
+    return codeContext;
   }
 
   synchronized boolean areSdkComponentsHandledForModule(final Module module) {
@@ -7,6 +7,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.Function;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -31,7 +32,7 @@ public class BuiltInCompilationTask extends FlexCompilationTask {
     compilationManager.addMessage(this, CompilerMessageCategory.INFORMATION, plainCommand, null, -1, -1);
 
     myListener = createListener(compilationManager);
-    myBuiltInFlexCompilerHandler.sendCompilationCommand(plainCommand, myListener);
+    myBuiltInFlexCompilerHandler.sendCompilationCommand(myModule.getName() + ":" + myBC.getName(), plainCommand, myListener);
   }
 
   private List<String> buildCommand() {
@@ -49,8 +50,21 @@ public class BuiltInCompilationTask extends FlexCompilationTask {
         }
       }
 
+      public void messageAvailable(final CompilerMessageCategory category,
+                                   @Nullable final String path,
+                                   final int line,
+                                   final int column,
+                                   final String message) {
+        // same as for the text output where unknown line and column are omitted
+        FlexCompilationUtils.handleCompilerMessage(compilationManager, BuiltInCompilationTask.this, category, path, null,
+                                                   Math.max(line, 0), Math.max(column, 0), message);
+        if (category == CompilerMessageCategory.ERROR) {
+          myCompilationFailed = true;
+        }
+      }
+
       public void compilationFinished() {
-        myFinished = true;
+        setFinished();
       }
     };
   }
@@ -14,16 +14,25 @@ import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.util.Function;
-import gnu.trove.THashMap;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipFile;
+
+/**
+ * Talks to the built-in compiler process over a socket. If the bundled compiler supports it then {@link BuiltInFlexCompilerProtocol framed
+ * protocol} is used: compiler output comes as frames tagged with compilation id, and warnings and errors come already split into parts.
+ * Otherwise output of all compilations comes as lines prefixed with compilation id. In both cases the output is dispatched to listeners
+ * by the input reading thread without taking the handler lock, so parallel compilations don't wait for each other's output to be parsed.
+ */
 public class BuiltInFlexCompilerHandler {
 
   private static final Logger LOG = Logger.getInstance(BuiltInFlexCompilerHandler.class.getName());
@@ -34,11 +43,12 @@ public class BuiltInFlexCompilerHandler {
 
   private String mySdkHome;
   private ServerSocket myServerSocket;
-  private DataInputStream myDataInputStream;
-  private DataOutputStream myDataOutputStream;
+  private volatile DataInputStream myDataInputStream;
+  private volatile DataOutputStream myDataOutputStream;
+  private volatile boolean myFramedProtocol;
 
-  private int commandNumber = 1;
-  private Map<String, Listener> myActiveListeners = new THashMap<>();
+  private final AtomicInteger myCommandNumber = new AtomicInteger(1);
+  private final ConcurrentMap<Integer, Listener> myActiveListeners = ContainerUtil.newConcurrentMap();
 
   public BuiltInFlexCompilerHandler(final Project project) {
     myProject = project;
@@ -47,6 +57,15 @@ public class BuiltInFlexCompilerHandler {
   public interface Listener {
     void textAvailable(String text);
 
+    /**
+     * Warning or error sent by the compiler as a structured record (framed protocol only).
+     *
+     * @param path   <code>null</code> if the message is not about a file
+     * @param line   -1 if unknown
+     * @param column -1 if unknown
+     */
+    void messageAvailable(CompilerMessageCategory category, @Nullable String path, int line, int column, String message);
+
     void compilationFinished();
   }
 
@@ -61,14 +80,13 @@ public class BuiltInFlexCompilerHandler {
         myServerSocket = new ServerSocket(0);
         myServerSocket.setSoTimeout(10000);
         final int port = myServerSocket.getLocalPort();
+        final boolean framedProtocol = isFramedProtocolSupported();
 
-        startCompilerProcess(sdk, port, context);
+        startCompilerProcess(sdk, port, framedProtocol, context);
 
         final Socket socket = myServerSocket.accept();
-        myDataInputStream = new DataInputStream(socket.getInputStream());
-        myDataOutputStream = new DataOutputStream(socket.getOutputStream());
+        connect(socket.getInputStream(), socket.getOutputStream(), framedProtocol);
         mySdkHome = sdk.getHomePath();
-        scheduleInputReading();
       }
       catch (IOException e) {
         stopCompilerProcess();
@@ -77,7 +95,30 @@ public class BuiltInFlexCompilerHandler {
     }
   }
 
-  private void startCompilerProcess(final Sdk sdk, final int port, final CompileContext context) throws IOException {
+  /**
+   * Starts dispatching compiler output. Also used by tests to talk to a compiler emulator instead of the real compiler process.
+   */
+  public synchronized void connect(@NotNull final InputStream inputStream,
+                                   @NotNull final OutputStream outputStream,
+                                   final boolean framedProtocol) {
+    myFramedProtocol = framedProtocol;
+    myDataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
+    myDataOutputStream = new DataOutputStream(outputStream);
+    scheduleInputReading(myDataInputStream, framedProtocol);
+  }
+
+  private static boolean isFramedProtocolSupported() {
+    // flex-compiler.jar may be built from older sources
+    try (ZipFile zipFile = new ZipFile(FlexCommonUtils.getPathToBundledJar("flex-compiler.jar"))) {
+      return zipFile.getEntry(BuiltInFlexCompilerProtocol.FRAMED_PROTOCOL_CLASS_ENTRY) != null;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void startCompilerProcess(final Sdk sdk, final int port, final boolean framedProtocol, final CompileContext context)
+    throws IOException {
     final StringBuilder classpath = new StringBuilder();
 
     classpath.append(FlexCommonUtils.getPathToBundledJar("idea-flex-compiler-fix.jar"));
@@ -90,6 +131,10 @@ public class BuiltInFlexCompilerHandler {
 
     final List<String> commandLine =
       FlexSdkUtils.getCommandLineForSdkTool(myProject, sdk, classpath.toString(), "com.intellij.flex.compiler.FlexCompiler", null);
+    if (framedProtocol) {
+      // main class is the last item
+      commandLine.add(commandLine.size() - 1, "-D" + BuiltInFlexCompilerProtocol.FRAMED_PROTOCOL_PROPERTY + "=true");
+    }
     commandLine.add(String.valueOf(port));
 
     final ProcessBuilder processBuilder = new ProcessBuilder(commandLine);
@@ -134,92 +179,146 @@ public class BuiltInFlexCompilerHandler {
     });
   }
 
-  private void scheduleInputReading() {
-    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
-      public void run() {
-        final StringBuilder buffer = new StringBuilder();
-        while (true) {
-          final DataInputStream dataInputStream = myDataInputStream;
-          if (dataInputStream != null) {
-            try {
-              buffer.append(dataInputStream.readUTF());
-
-              int index;
-              while ((index = buffer.indexOf("\n")) > -1) {
-                final String line = buffer.substring(0, index);
-                buffer.delete(0, index + 1);
-                handleInputLine(line);
-              }
-            }
-            catch (IOException e) {
-              if (dataInputStream == myDataInputStream) {
-                stopCompilerProcess();
-              }
-              break;
-            }
-          }
-          else {
-            break;
-          }
+  private void scheduleInputReading(final DataInputStream dataInputStream, final boolean framedProtocol) {
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        if (framedProtocol) {
+          readFrames(dataInputStream);
+        }
+        else {
+          readLines(dataInputStream);
+        }
+      }
+      catch (IOException e) {
+        if (dataInputStream == myDataInputStream) {
+          stopCompilerProcess();
         }
       }
     });
   }
 
-  private synchronized void handleInputLine(final String line) {
+  private void readLines(final DataInputStream dataInputStream) throws IOException {
+    final StringBuilder buffer = new StringBuilder();
+    while (true) {
+      buffer.append(dataInputStream.readUTF());
+
+      int index;
+      while ((index = buffer.indexOf("\n")) > -1) {
+        final String line = buffer.substring(0, index);
+        buffer.delete(0, index + 1);
+        handleInputLine(line);
+      }
+    }
+  }
+
+  private void handleInputLine(final String line) {
     LOG.debug("RECEIVED: [" + line + "]");
 
     final int colonPos = line.indexOf(":");
-    if (colonPos <= 0) {
+    final int commandNumber = colonPos <= 0 ? -1 : StringUtil.parseInt(line.substring(0, colonPos), -1);
+    if (commandNumber < 0) {
       LOG.error("Incorrect command: [" + line + "]");
       return;
     }
 
-    final String prefix = line.substring(0, colonPos + 1);
-    final Listener listener = myActiveListeners.get(prefix);
+    final String text = line.substring(colonPos + 1);
+    final Listener listener = text.startsWith(COMPILATION_FINISHED) ? myActiveListeners.remove(commandNumber)
+                                                                    : myActiveListeners.get(commandNumber);
     if (listener == null) {
       LOG.warn("No active listener for input line: [" + line + "]");  // could be message from cancelled compilation
     }
+    else if (text.startsWith(COMPILATION_FINISHED)) {
+      listener.compilationFinished();
+    }
     else {
-      final String text = line.substring(colonPos + 1);
-      if (text.startsWith(COMPILATION_FINISHED)) {
+      listener.textAvailable(text);
+    }
+  }
+
+  private void readFrames(final DataInputStream dataInputStream) throws IOException {
+    while (true) {
+      handleFrame(BuiltInFlexCompilerProtocol.readFrame(dataInputStream));
+    }
+  }
+
+  private void handleFrame(final BuiltInFlexCompilerProtocol.Frame frame) throws IOException {
+    final Listener listener = frame.type == BuiltInFlexCompilerProtocol.FINISHED ? myActiveListeners.remove(frame.compilationId)
+                                                                                : myActiveListeners.get(frame.compilationId);
+    if (listener == null) {
+      return; // cancelled compilation
+    }
+
+    switch (frame.type) {
+      case BuiltInFlexCompilerProtocol.TEXT:
+        listener.textAvailable(BuiltInFlexCompilerProtocol.readString(frame.payload));
+        break;
+      case BuiltInFlexCompilerProtocol.DIAGNOSTIC:
+        final byte level = frame.payload.readByte();
+        final String path = BuiltInFlexCompilerProtocol.readString(frame.payload);
+        final int line = frame.payload.readInt();
+        final int column = frame.payload.readInt();
+        final String message = BuiltInFlexCompilerProtocol.readString(frame.payload);
+        final CompilerMessageCategory category = level == BuiltInFlexCompilerProtocol.LEVEL_WARNING ? CompilerMessageCategory.WARNING
+                                                                                                    : CompilerMessageCategory.ERROR;
+        listener.messageAvailable(category, path, line, column, message);
+        break;
+      case BuiltInFlexCompilerProtocol.FINISHED:
         listener.compilationFinished();
-        myActiveListeners.remove(prefix);
-      }
-      else {
-        listener.textAvailable(text);
-      }
+        break;
+      default:
+        LOG.error("Unexpected frame type: " + frame.type);
     }
   }
 
-  public synchronized void sendCompilationCommand(final String command, final Listener listener) {
-    if (myDataOutputStream == null) {
+  /**
+   * @param bcKey identifies build configuration; compiler process keeps warm state for each BC and doesn't compile the same BC in parallel
+   */
+  public void sendCompilationCommand(final String bcKey, final String command, final Listener listener) {
+    final DataOutputStream dataOutputStream = myDataOutputStream;
+    if (dataOutputStream == null) {
       listener.textAvailable("Error: Compiler process is not started.");
       listener.compilationFinished();
       return;
     }
 
+    final int commandNumber = myCommandNumber.getAndIncrement();
+    // compiler output may come before the command is sent completely
+    myActiveListeners.put(commandNumber, listener);
+
     try {
-      final String prefix = String.valueOf(commandNumber++) + ":";
-      final String commandToSend = prefix + command + "\n";
-      LOG.debug("SENDING: [" + commandToSend + "]");
-      myDataOutputStream.writeUTF(commandToSend);
-      myActiveListeners.put(prefix, listener);
+      LOG.debug("SENDING: [" + commandNumber + ":" + command + "]");
+      if (myFramedProtocol) {
+        new BuiltInFlexCompilerProtocol.FrameBuilder(BuiltInFlexCompilerProtocol.COMPILE, commandNumber)
+          .writeString(bcKey)
+          .writeString(command)
+          .sendTo(dataOutputStream);
+      }
+      else {
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (dataOutputStream) {
+          dataOutputStream.writeUTF(commandNumber + ":" + command + "\n");
+        }
+      }
     }
     catch (IOException e) {
-      listener.textAvailable("Error: Can't start compilation: " + e.toString());
-      listener.compilationFinished();
+      if (myActiveListeners.remove(commandNumber) != null) {
+        listener.textAvailable("Error: Can't start compilation: " + e.toString());
+        listener.compilationFinished();
+      }
     }
   }
 
-  private synchronized void cancelAllCompilations(final boolean reportError) {
-    for (final Listener listener : myActiveListeners.values()) {
+  private void cancelAllCompilations(final boolean reportError) {
+    for (final Integer commandNumber : myActiveListeners.keySet()) {
+      // the input reading thread may finish the same compilation at the same time
+      final Listener listener = myActiveListeners.remove(commandNumber);
+      if (listener == null) continue;
+
       if (reportError) {
         listener.textAvailable("Error: Compilation terminated");
       }
       listener.compilationFinished();
     }
-    myActiveListeners.clear();
   }
 
   public void stopCompilerProcess() {
@@ -266,21 +365,30 @@ public class BuiltInFlexCompilerHandler {
     myDataOutputStream = null;
   }
 
-  public synchronized void removeListener(final Listener listener) {
-    String toRemove = null;
-    for (final Map.Entry<String, Listener> entry : myActiveListeners.entrySet()) {
+  public void removeListener(final Listener listener) {
+    for (final Map.Entry<Integer, Listener> entry : myActiveListeners.entrySet()) {
       if (entry.getValue() == listener) {
-        toRemove = entry.getKey();
+        if (myActiveListeners.remove(entry.getKey(), listener) && myFramedProtocol) {
+          sendCancelCommand(entry.getKey());
+        }
         break;
       }
     }
+  }
+
+  private void sendCancelCommand(final int commandNumber) {
+    final DataOutputStream dataOutputStream = myDataOutputStream;
+    if (dataOutputStream == null) return;
 
-    if (toRemove != null) {
-      myActiveListeners.remove(toRemove);
+    try {
+      new BuiltInFlexCompilerProtocol.FrameBuilder(BuiltInFlexCompilerProtocol.CANCEL, commandNumber).sendTo(dataOutputStream);
+    }
+    catch (IOException e) {
+      LOG.debug(e); // process is being stopped
     }
   }
 
-  public synchronized int getActiveCompilationsNumber() {
+  public int getActiveCompilationsNumber() {
     return myActiveListeners.size();
   }
 }
@@ -0,0 +1,146 @@
+package com.intellij.lang.javascript.flex.build;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol between {@link BuiltInFlexCompilerHandler} and built-in compiler process (flex/tools/BuiltInFlexCompiler).
+ * Each frame is <code>int length, byte type, int compilationId, payload</code> where <code>length</code> counts everything after itself.
+ * A string in payload is <code>int byteCount</code> (-1 for <code>null</code>) followed by UTF-8 bytes.
+ * <p/>
+ * Keep in sync with com.intellij.flex.compiler.FramedProtocol !!!
+ */
+public class BuiltInFlexCompilerProtocol {
+
+  public static final String FRAMED_PROTOCOL_PROPERTY = "idea.flex.compiler.framed.protocol";
+  // present in flex-compiler.jar if compiler process supports framed protocol
+  static final String FRAMED_PROTOCOL_CLASS_ENTRY = "com/intellij/flex/compiler/FramedProtocol.class";
+
+  // IDE -> compiler
+  public static final byte COMPILE = 1;     // String bcKey, String command
+  public static final byte CANCEL = 2;      // no payload
+  public static final byte FINISH = 3;      // no payload, compilationId is 0
+
+  // compiler -> IDE
+  public static final byte TEXT = 10;       // String text
+  public static final byte DIAGNOSTIC = 11; // byte level, String path, int line, int column, String message
+  public static final byte FINISHED = 12;   // no payload
+
+  public static final byte LEVEL_WARNING = 1;
+  public static final byte LEVEL_ERROR = 2;
+
+  private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+  public static class Frame {
+    public final byte type;
+    public final int compilationId;
+    @NotNull public final DataInputStream payload;
+
+    private Frame(final byte type, final int compilationId, @NotNull final DataInputStream payload) {
+      this.type = type;
+      this.compilationId = compilationId;
+      this.payload = payload;
+    }
+  }
+
+  /**
+   * Frame is sent by a single <code>write()</code> call, so frames of parallel compilations are never interleaved.
+   */
+  public static class FrameBuilder {
+    private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+    private final DataOutputStream myOut = new DataOutputStream(myBytes);
+
+    public FrameBuilder(final byte type, final int compilationId) {
+      try {
+        myOut.writeInt(0); // length placeholder
+        myOut.writeByte(type);
+        myOut.writeInt(compilationId);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e); // not possible for ByteArrayOutputStream
+      }
+    }
+
+    @NotNull
+    public FrameBuilder writeByte(final int value) {
+      try {
+        myOut.writeByte(value);
+        return this;
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @NotNull
+    public FrameBuilder writeInt(final int value) {
+      try {
+        myOut.writeInt(value);
+        return this;
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @NotNull
+    public FrameBuilder writeString(@Nullable final String value) {
+      try {
+        if (value == null) {
+          myOut.writeInt(-1);
+        }
+        else {
+          final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          myOut.writeInt(bytes.length);
+          myOut.write(bytes);
+        }
+        return this;
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void sendTo(@NotNull final OutputStream out) throws IOException {
+      final byte[] frame = myBytes.toByteArray();
+      final int length = frame.length - 4;
+      frame[0] = (byte)(length >>> 24);
+      frame[1] = (byte)(length >>> 16);
+      frame[2] = (byte)(length >>> 8);
+      frame[3] = (byte)length;
+
+      //noinspection SynchronizationOnLocalVariableOrMethodParameter
+      synchronized (out) {
+        out.write(frame);
+        out.flush();
+      }
+    }
+  }
+
+  @NotNull
+  public static Frame readFrame(@NotNull final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 5 || length > MAX_FRAME_LENGTH) {
+      throw new IOException("Incorrect frame length: " + length);
+    }
+
+    final byte type = in.readByte();
+    final int compilationId = in.readInt();
+    final byte[] payload = new byte[length - 5];
+    in.readFully(payload);
+    return new Frame(type, compilationId, new DataInputStream(new ByteArrayInputStream(payload)));
+  }
+
+  @Nullable
+  public static String readString(@NotNull final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) return null;
+
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -842,6 +842,17 @@ public class CompilerConfigGenerator {
     return FlexCommonUtils.getTempFlexConfigsDirPath() + "/" + fileName;
   }
 
+  /**
+   * Link report that is requested from the compiler to find out which files the BC output has been compiled from,
+   * see {@link FlexCompilerDependenciesCache}.
+   */
+  static String getDependenciesReportFilePath(final Module module, final FlexBuildConfiguration bc) {
+    final String specifier = BCUtils.getBCSpecifier(bc);
+    final String postfix = specifier == null ? "dependencies" : specifier + "-dependencies";
+    final String fileName = getConfigFileName(module, bc.getName(), PlatformUtils.getPlatformPrefix().toLowerCase(), postfix);
+    return FlexCommonUtils.getTempFlexConfigsDirPath() + "/" + fileName;
+  }
+
   private static boolean isSourceFileWithPublicDeclaration(final Module module, final VirtualFile file, final String qName) {
     return JavaScriptSupportLoader.isMxmlOrFxgFile(file) ||
            ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
@@ -12,6 +12,7 @@ import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.compiler.CompilerMessage;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.NullableComputable;
@@ -21,10 +22,16 @@ import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class FlexCompilationManager {
+  private static final Logger LOG = Logger.getInstance(FlexCompilationManager.class.getName());
+
+  // how often cancellation is checked while all started tasks are in progress
+  private static final long CANCEL_CHECK_INTERVAL_MS = 200;
 
   private final CompileContext myCompileContext;
   private final int myMaxParallelCompilations;
@@ -36,6 +43,10 @@ public class FlexCompilationManager {
   private boolean myCompilationFinished;
   private final FlexCompilerDependenciesCache myCompilerDependenciesCache;
 
+  // released by tasks when they finish, so that free slots are filled immediately
+  private final Semaphore myTaskFinishedSignal = new Semaphore(0);
+  private long myCompilationStartTime;
+
   static final Pattern OUTPUT_FILE_CREATED_PATTERN = Pattern.compile("(\\[.*\\] )?(.+) \\(([0-9]+) bytes\\)");
   private static final String BYTES_WRITTEN_TO = " bytes written to ";
 
@@ -43,7 +54,7 @@ public class FlexCompilationManager {
     myCompileContext = context;
     myMaxParallelCompilations = FlexCompilerProjectConfiguration.getInstance(context.getProject()).MAX_PARALLEL_COMPILATIONS;
     myTasksAmount = compilationTasks.size();
-    myNotStartedTasks = new LinkedList<>(compilationTasks);
+    myNotStartedTasks = new LinkedList<>(sortByCriticalPath(compilationTasks));
     myInProgressTasks = new LinkedList<>();
     myFinishedTasks = new LinkedList<>();
     myCompilationFinished = false;
@@ -51,6 +62,7 @@ public class FlexCompilationManager {
   }
 
   public void compile() {
+    myCompilationStartTime = System.currentTimeMillis();
     try {
       while (!myNotStartedTasks.isEmpty() || !myInProgressTasks.isEmpty()) {
 
@@ -65,13 +77,21 @@ public class FlexCompilationManager {
         startNewTaskIfPossible();
         updateProgressIndicator();
 
-        try {
-          //noinspection BusyWait
-          Thread.sleep(200);
-        }
-        catch (InterruptedException e) {
-          assert false;
+        if (!myInProgressTasks.isEmpty() && !hasFinishedTasksIn(myInProgressTasks)) {
+          try {
+            myTaskFinishedSignal.tryAcquire(CANCEL_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+          }
+          catch (InterruptedException e) {
+            assert false;
+          }
         }
+        // all tasks that have finished by now are handled at the next iteration
+        myTaskFinishedSignal.drainPermits();
+      }
+
+      if (LOG.isDebugEnabled()) {
+        final long time = System.currentTimeMillis() - myCompilationStartTime;
+        LOG.debug("Compiled " + myTasksAmount + " build configurations in " + time + " ms");
       }
     }
     finally {
@@ -133,6 +153,10 @@ public class FlexCompilationManager {
     }
   }
 
+  void taskFinished() {
+    myTaskFinishedSignal.release();
+  }
+
   public boolean isRebuild() {
     return !myCompileContext.isMake();
   }
@@ -145,6 +169,11 @@ public class FlexCompilationManager {
         iterator.remove();
         myFinishedTasks.add(task);
 
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("[" + task.getPresentableName() + "] waited in queue " + (task.getStartTime() - myCompilationStartTime) +
+                    " ms, compiled in " + task.getRunTime() + " ms" + (task.isCompilationFailed() ? " (failed)" : ""));
+        }
+
         if (task.isCompilationFailed()) {
           final Collection<FlexCompilationTask> cancelledTasks = cancelNotStartedDependentTasks(task);
           if (cancelledTasks.isEmpty()) {
@@ -310,6 +339,68 @@ public class FlexCompilationManager {
     return false;
   }
 
+  private static boolean hasFinishedTasksIn(final Collection<FlexCompilationTask> tasks) {
+    for (FlexCompilationTask task : tasks) {
+      if (task.isFinished()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Tasks with the longest chain of dependent tasks go first, so that libraries that many applications wait for are not compiled last.
+   * {@link #startNewTaskIfPossible()} takes the first task whose dependencies are compiled, so this order is kept among ready tasks.
+   * The sort is stable, tasks with equal chains keep the original order.
+   */
+  static List<FlexCompilationTask> sortByCriticalPath(final Collection<FlexCompilationTask> tasks) {
+    final Map<FlexCompilationTask, Collection<FlexCompilationTask>> dependentTasks = new HashMap<>();
+    for (FlexCompilationTask task : tasks) {
+      final Collection<FlexCompilationTask> dependents = new ArrayList<>();
+      for (FlexCompilationTask otherTask : tasks) {
+        if (otherTask != task && (otherTask.getDependencies().contains(task.getBC()) || isRLMOf(otherTask, task))) {
+          dependents.add(otherTask);
+        }
+      }
+      dependentTasks.put(task, dependents);
+    }
+
+    final Map<FlexCompilationTask, Integer> pathLengths = new HashMap<>();
+    for (FlexCompilationTask task : tasks) {
+      computeCriticalPathLength(task, dependentTasks, pathLengths, new HashSet<>());
+    }
+
+    final List<FlexCompilationTask> result = new ArrayList<>(tasks);
+    result.sort((task1, task2) -> pathLengths.get(task2) - pathLengths.get(task1));
+    return result;
+  }
+
+  private static int computeCriticalPathLength(final FlexCompilationTask task,
+                                               final Map<FlexCompilationTask, Collection<FlexCompilationTask>> dependentTasks,
+                                               final Map<FlexCompilationTask, Integer> pathLengths,
+                                               final Set<FlexCompilationTask> tasksInPath) {
+    final Integer cached = pathLengths.get(task);
+    if (cached != null) return cached;
+    if (!tasksInPath.add(task)) return 0; // cyclic dependencies
+
+    int maxDependentPathLength = 0;
+    for (FlexCompilationTask dependent : dependentTasks.get(task)) {
+      final int dependentPathLength = computeCriticalPathLength(dependent, dependentTasks, pathLengths, tasksInPath);
+      maxDependentPathLength = Math.max(maxDependentPathLength, dependentPathLength);
+    }
+
+    tasksInPath.remove(task);
+    final int length = maxDependentPathLength + 1;
+    pathLengths.put(task, length);
+    return length;
+  }
+
+  private static boolean isRLMOf(final FlexCompilationTask rlmTask, final FlexCompilationTask mainAppTask) {
+    return rlmTask.getModule() == mainAppTask.getModule() &&
+           BCUtils.isRLMTemporaryBC(rlmTask.getBC()) &&
+           !BCUtils.isRLMTemporaryBC(mainAppTask.getBC()) &&
+           !BCUtils.isRuntimeStyleSheetBC(mainAppTask.getBC()) &&
+           rlmTask.getBC().getName().equals(mainAppTask.getBC().getName());
+  }
+
   private static boolean hasDependenciesIn(final FlexCompilationTask task,
                                            final Collection<FlexCompilationTask> tasksToSearchDependencies) {
     for (final FlexCompilationTask otherTask : tasksToSearchDependencies) {
@@ -22,8 +22,12 @@ public abstract class FlexCompilationTask {
 
   private List<VirtualFile> myConfigFiles;
 
-  protected boolean myFinished;
-  protected boolean myCompilationFailed;
+  private volatile boolean myFinished;
+  protected volatile boolean myCompilationFailed;
+
+  private FlexCompilationManager myCompilationManager;
+  private long myStartTime = -1;
+  private long myFinishTime = -1;
 
   protected FlexCompilationTask(final Module module,
                                 final FlexBuildConfiguration bc,
@@ -42,6 +46,8 @@ public abstract class FlexCompilationTask {
   }
 
   public void start(final FlexCompilationManager compilationManager) {
+    myCompilationManager = compilationManager;
+    myStartTime = System.currentTimeMillis();
     try {
       myConfigFiles = createConfigFiles();
       final String outputFilePath = myBC.getActualOutputFilePath();
@@ -82,15 +88,43 @@ public abstract class FlexCompilationTask {
 
   public void cancel() {
     doCancel();
-    myFinished = true;
+    setFinished();
   }
 
   protected abstract void doCancel();
 
+  /**
+   * Must be called when the compiler output has been completely handled, wakes up {@link FlexCompilationManager} waiting for free slots.
+   */
+  protected void setFinished() {
+    if (myFinished) return;
+
+    myFinishTime = System.currentTimeMillis();
+    myFinished = true;
+
+    if (myCompilationManager != null) {
+      myCompilationManager.taskFinished();
+    }
+  }
+
   public boolean isFinished() {
     return myFinished;
   }
 
+  /**
+   * @return time when {@link #start(FlexCompilationManager)} was called or -1 if the task has not been started
+   */
+  public long getStartTime() {
+    return myStartTime;
+  }
+
+  /**
+   * @return -1 if the task is not finished yet or has not been started
+   */
+  public long getRunTime() {
+    return myStartTime < 0 || myFinishTime < 0 ? -1 : myFinishTime - myStartTime;
+  }
+
   public boolean isCompilationFailed() {
     return myCompilationFailed;
   }
@@ -112,6 +112,11 @@ public class FlexCompilationUtils {
       command.add("-load-config=" + configFile.getPath());
     }
 
+    final String dependenciesReportPath = FlexCompilerDependenciesCache.getDependenciesReportPathToAdd(module, bc, configFiles);
+    if (dependenciesReportPath != null) {
+      command.add("-link-report=" + dependenciesReportPath);
+    }
+
     final Sdk sdk = bc.getSdk();
     assert sdk != null;
 
@@ -196,15 +201,8 @@ public class FlexCompilationUtils {
 
         final CompilerMessageCategory messageCategory = "Warning".equals(type) ? CompilerMessageCategory.WARNING
                                                                                : CompilerMessageCategory.ERROR;
-        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
-
-        final StringBuilder fullMessage = new StringBuilder();
-        if (file == null) fullMessage.append(filePath).append(": ");
-        if (additionalInfo != null) fullMessage.append(additionalInfo).append(' ');
-        fullMessage.append(message);
-
-        compilationManager.addMessage(task, messageCategory, fullMessage.toString(), file != null ? file.getUrl() : null,
-                                      line != null ? Integer.parseInt(line) : 0, column != null ? Integer.parseInt(column) : 0);
+        handleCompilerMessage(compilationManager, task, messageCategory, filePath, additionalInfo,
+                              line != null ? Integer.parseInt(line) : 0, column != null ? Integer.parseInt(column) : 0, message);
         failureDetected |= messageCategory == CompilerMessageCategory.ERROR;
       }
       else if (text.startsWith("Error: ") || text.startsWith("Exception in thread \"")) {
@@ -220,6 +218,27 @@ public class FlexCompilationUtils {
     return !failureDetected;
   }
 
+  /**
+   * Adds warning or error that is already split into parts, either by {@link #handleCompilerOutput} or by the compiler itself.
+   */
+  static void handleCompilerMessage(final FlexCompilationManager compilationManager,
+                                    final FlexCompilationTask task,
+                                    final CompilerMessageCategory category,
+                                    final @Nullable String filePath,
+                                    final @Nullable String additionalInfo,
+                                    final int line,
+                                    final int column,
+                                    final String message) {
+    final VirtualFile file = filePath == null ? null : LocalFileSystem.getInstance().findFileByPath(filePath);
+
+    final StringBuilder fullMessage = new StringBuilder();
+    if (file == null && filePath != null) fullMessage.append(filePath).append(": ");
+    if (additionalInfo != null) fullMessage.append(additionalInfo).append(' ');
+    fullMessage.append(message);
+
+    compilationManager.addMessage(task, category, fullMessage.toString(), file != null ? file.getUrl() : null, line, column);
+  }
+
   public static void ensureOutputFileWritable(final Project project, final String filePath) {
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
     if (file != null && !file.isWritable()) {
@@ -1,33 +1,70 @@
 package com.intellij.lang.javascript.flex.build;
 
 import com.intellij.ProjectTopics;
+import com.intellij.flex.FlexCommonUtils;
 import com.intellij.flex.model.bc.BuildConfigurationNature;
+import com.intellij.javascript.flex.resolve.SwcCatalogXmlUtil;
+import com.intellij.lang.javascript.JavaScriptSupportLoader;
 import com.intellij.lang.javascript.flex.FlexUtils;
+import com.intellij.lang.javascript.flex.projectStructure.FlexProjectLevelCompilerOptionsHolder;
 import com.intellij.lang.javascript.flex.projectStructure.model.FlexBuildConfiguration;
-import com.intellij.lang.javascript.flex.projectStructure.model.impl.Factory;
+import com.intellij.lang.javascript.flex.projectStructure.model.FlexBuildConfigurationManager;
+import com.intellij.lang.javascript.flex.projectStructure.model.impl.FlexBuildConfigurationImpl;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.ModuleAdapter;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.Condition;
-import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.JDOMUtil;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.impl.source.parsing.xml.XmlBuilderDriver;
 import com.intellij.util.containers.ContainerUtil;
-import gnu.trove.THashMap;
+import com.intellij.util.xmlb.XmlSerializer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
+/**
+ * Remembers the files each build configuration has been compiled from, so that compilation is skipped if none of them has changed.
+ * The file set includes the generated config files, files they refer to, and the scripts listed in the compiler link report, so an edit
+ * of a source file that is not linked into the output doesn't cause recompilation. Files are compared by length and timestamp, generated
+ * config files (they are deleted when the project is closed) by content. The state is saved when the project is closed together with a
+ * digest of the source roots (names, lengths and timestamps of all files under them), so that files added, deleted or edited while the
+ * project was closed cause recompilation when the restored state is used for the first time. The digest is computed once per distinct
+ * set of source roots and is kept until a file changes.
+ * <p/>
+ * May be queried from several compilation threads at once.
+ */
 public class FlexCompilerDependenciesCache {
+  private static final Logger LOG = Logger.getInstance(FlexCompilerDependenciesCache.class.getName());
+
+  private static final int STORAGE_VERSION = 3;
+  private static final String LINK_REPORT_OPTION = "link-report";
 
   private final Project myProject;
-  private final Map<Module, Collection<BCInfo>> myCache = new THashMap<>();
+  // module name -> BC key -> info
+  private final ConcurrentMap<String, ConcurrentMap<String, BCInfo>> myCache = ContainerUtil.newConcurrentMap();
+  @Nullable private final File myStorageFile;
+  // source root URLs -> digest of the files under them, shared by all BCs with the same source roots
+  private final ConcurrentMap<List<String>, String> mySourceRootsDigests = ContainerUtil.newConcurrentMap();
+  // incremented on each file change so that a digest computed before the change is not kept after it
+  private final AtomicLong myFileChangeCount = new AtomicLong();
 
   private static final String[] TAGS_FOR_FILE_PATHS_IN_CONFIG_FILE =
     {"<flex-config><compiler><external-library-path><path-element>", "<flex-config><compiler><local-font-paths><path-element>",
@@ -42,12 +79,28 @@ public class FlexCompilerDependenciesCache {
       // "<flex-config><output>"   intentionally excluded, because already handled
     };
 
+  private static final String LINK_REPORT_TAG = "<flex-config><link-report>";
+  private static final String SCRIPT_LOCATION = ".report.scripts.script";
+  // classes linked from a library are reported as "path/to/lib.swc(package:ClassName)"
+  private static final Pattern LIBRARY_SCRIPT_PATTERN = Pattern.compile("(.+\\.(swc|ane))\\(.*\\)", Pattern.CASE_INSENSITIVE);
+
   public FlexCompilerDependenciesCache(final Project project) {
+    this(project, project.isDefault()
+                  ? null
+                  : new File(PathManager.getSystemPath(), "flex-compiler-dependencies/" + project.getLocationHash() + ".dat"));
+  }
+
+  /**
+   * @param storageFile where the state is saved on project close, <code>null</code> if it is not saved
+   */
+  public FlexCompilerDependenciesCache(final Project project, @Nullable final File storageFile) {
     myProject = project;
+    myStorageFile = storageFile;
+    load();
 
     project.getMessageBus().connect(project).subscribe(ProjectTopics.MODULES, new ModuleAdapter() {
       public void moduleRemoved(@NotNull final Project project, @NotNull final Module module) {
-        myCache.remove(module);
+        myCache.remove(module.getName());
       }
     });
   }
@@ -57,67 +110,127 @@ public class FlexCompilerDependenciesCache {
   }
 
   public void markModuleDirty(final Module module) {
-    myCache.remove(module);
+    myCache.remove(module.getName());
   }
 
   public void markBCDirty(final Module module, final FlexBuildConfiguration bc) {
-    final Collection<BCInfo> infosForModule = myCache.get(module);
-    final BCInfo existingInfo = infosForModule == null ? null : findCacheForBC(infosForModule, bc);
-    if (existingInfo != null) {
-      infosForModule.remove(existingInfo);
-      if (infosForModule.isEmpty()) {
-        myCache.remove(module);
-      }
+    final Map<String, BCInfo> infosForModule = myCache.get(module.getName());
+    if (infosForModule != null) {
+      infosForModule.remove(getBCKey(bc));
     }
   }
 
+  /**
+   * Called when a file is created, deleted, moved or renamed. Such change may add or remove classes compiled into a library or
+   * change class resolution, so all build configurations of the module are compiled again.
+   */
   public void markModuleDirtyIfInSourceRoot(final VirtualFile file) {
+    sourceRootsChanged();
+    if (myCache.isEmpty()) return;
+
+    final Module module = findModuleIfInSourceRoot(file);
+    if (module != null) {
+      markModuleDirty(module);
+    }
+  }
+
+  /**
+   * A changed class is detected by {@link #isNothingChangedSincePreviousCompilation} only in those build configurations that have
+   * been compiled from it. Other files (included .as files, embedded assets, styles) are not listed in link reports, so the module
+   * is marked dirty. A source file that no link report lists may be included by another one, so it is handled the same way.
+   */
+  public void fileContentsChanged(final VirtualFile file) {
+    sourceRootsChanged();
     if (myCache.isEmpty()) return;
 
+    final Module module = findModuleIfInSourceRoot(file);
+    if (module == null) return;
+
+    final Map<String, BCInfo> infosForModule = myCache.get(module.getName());
+    if (infosForModule == null) return;
+
+    if (!isCompilationUnit(file) || !isCompiledFile(infosForModule.values(), file)) {
+      markModuleDirty(module);
+      return;
+    }
+
+    infosForModule.values().removeIf(info -> !info.myCompiledFilesKnown);
+  }
+
+  private void sourceRootsChanged() {
+    myFileChangeCount.incrementAndGet();
+    mySourceRootsDigests.clear();
+  }
+
+  @Nullable
+  private Module findModuleIfInSourceRoot(final VirtualFile file) {
     final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
     final Module module = fileIndex.getModuleForFile(file);
-    if (module != null && fileIndex.getSourceRootForFile(file) != null && !fileIndex.isInTestSourceContent(file)) {
-      markModuleDirty(module);
+    return module != null && fileIndex.getSourceRootForFile(file) != null && !fileIndex.isInTestSourceContent(file) ? module : null;
+  }
+
+  private static boolean isCompilationUnit(final VirtualFile file) {
+    return JavaScriptSupportLoader.isMxmlOrFxgFile(file) ||
+           JavaScriptSupportLoader.ECMA_SCRIPT_L4_FILE_EXTENSION.equalsIgnoreCase(file.getExtension());
+  }
+
+  private static boolean isCompiledFile(final Collection<BCInfo> infos, final VirtualFile file) {
+    final String path = FileUtil.toSystemDependentName(file.getPath());
+    for (BCInfo info : infos) {
+      if (info.myCompiledFilesKnown && info.myFiles.containsKey(path)) {
+        return true;
+      }
     }
+    return false;
   }
 
   public boolean isNothingChangedSincePreviousCompilation(final Module module, final FlexBuildConfiguration bc) {
-    final Collection<BCInfo> infosForModule = myCache.get(module);
-    final BCInfo existingInfo = infosForModule == null ? null : findCacheForBC(infosForModule, bc);
+    final Map<String, BCInfo> infosForModule = myCache.get(module.getName());
+    final String bcKey = getBCKey(bc);
+    final BCInfo existingInfo = infosForModule == null ? null : infosForModule.get(bcKey);
     if (existingInfo == null) {
       return false;
     }
 
-    final String[] currentSourceRoots = ModuleRootManager.getInstance(module).getSourceRootUrls();
-    if (!Arrays.equals(existingInfo.mySourceRootUrls, currentSourceRoots) || existingInfo.timestampsChanged()) {
-      infosForModule.remove(existingInfo);
-      if (infosForModule.isEmpty()) {
-        myCache.remove(module);
+    if (existingInfo.hasMissingGeneratedFiles()) {
+      // generated config file has been deleted on project close, write it again to compare its content
+      try {
+        CompilerConfigGenerator.getOrCreateConfigFile(module, bc);
+      }
+      catch (IOException e) {
+        return false;
       }
+    }
+
+    final String[] currentSourceRoots = ModuleRootManager.getInstance(module).getSourceRootUrls();
+    if (!Arrays.equals(existingInfo.mySourceRootUrls, currentSourceRoots) || existingInfo.filesChanged()) {
+      infosForModule.remove(bcKey, existingInfo);
       return false;
     }
 
+    if (existingInfo.myRestoredSourceRootsDigest != null) {
+      // restored from the previous session, VFS events don't tell what has changed while the project was closed
+      if (!existingInfo.myRestoredSourceRootsDigest.equals(getSourceRootsDigest(existingInfo.mySourceRootUrls))) {
+        infosForModule.remove(bcKey, existingInfo);
+        return false;
+      }
+      existingInfo.myRestoredSourceRootsDigest = null;
+    }
+
     return true;
   }
 
   public void cacheBC(final Module module, final FlexBuildConfiguration bc, final List<VirtualFile> configFiles) {
-    Collection<BCInfo> infosForModule = myCache.get(module);
-    if (infosForModule == null) {
-      infosForModule = new ArrayList<>();
-      myCache.put(module, infosForModule);
-    }
-    else {
-      final BCInfo existingInfo = findCacheForBC(infosForModule, bc);
-      if (existingInfo != null) {
-        infosForModule.remove(existingInfo);
-      }
-    }
+    final String bcKey = getBCKey(bc);
+    final ConcurrentMap<String, BCInfo> infosForModule =
+      myCache.computeIfAbsent(module.getName(), name -> ContainerUtil.newConcurrentMap());
+    infosForModule.remove(bcKey);
 
     final VirtualFile outputFile = FlexCompilationManager.refreshAndFindFileInWriteAction(bc.getActualOutputFilePath());
     if (outputFile == null) return;
 
-    final BCInfo bcInfo = new BCInfo(Factory.getCopy(bc), ModuleRootManager.getInstance(module).getSourceRootUrls());
-    infosForModule.add(bcInfo);
+    final Collection<String> compiledFiles = readLinkReport(module, bc, configFiles);
+    final BCInfo bcInfo = new BCInfo(ModuleRootManager.getInstance(module).getSourceRootUrls(), compiledFiles != null);
 
     bcInfo.addFileDependency(outputFile.getPath());
 
@@ -126,6 +239,12 @@ public class FlexCompilerDependenciesCache {
       addFileDependencies(bcInfo, configFile, workDirPath);
     }
 
+    if (compiledFiles != null) {
+      for (String path : compiledFiles) {
+        bcInfo.addFileDependency(path);
+      }
+    }
+
     if (bc.isTempBCForCompilation() && !bc.getCompilerOptions().getAdditionalConfigFilePath().isEmpty()) {
       bcInfo.addFileDependency(bc.getCompilerOptions().getAdditionalConfigFilePath());
     }
@@ -146,11 +265,89 @@ public class FlexCompilerDependenciesCache {
         }
       }
     }
+
+    infosForModule.put(bcKey, bcInfo);
+  }
+
+  /**
+   * @return path of the link report that should be added to the compiler command line, or <code>null</code> if the link report is
+   * already configured for this BC (then that report is used to find compiled files)
+   */
+  @Nullable
+  static String getDependenciesReportPathToAdd(final Module module,
+                                               final FlexBuildConfiguration bc,
+                                               final List<VirtualFile> configFiles) {
+    if (findConfiguredLinkReport(configFiles) != null) return null;
+
+    final String projectLevelOptions =
+      FlexProjectLevelCompilerOptionsHolder.getInstance(module.getProject()).getProjectLevelCompilerOptions().getAdditionalOptions();
+    final String moduleLevelOptions =
+      FlexBuildConfigurationManager.getInstance(module).getModuleLevelCompilerOptions().getAdditionalOptions();
+    for (String options : new String[]{projectLevelOptions, moduleLevelOptions, bc.getCompilerOptions().getAdditionalOptions()}) {
+      if (!FlexCommonUtils.getOptionValues(options, LINK_REPORT_OPTION).isEmpty()) return null;
+    }
+
+    final String path = CompilerConfigGenerator.getDependenciesReportFilePath(module, bc);
+    FileUtil.delete(new File(path)); // so that a report of the previous compilation is not taken if the compiler fails to write it
+    return path;
   }
 
   @Nullable
-  private static BCInfo findCacheForBC(final @NotNull Collection<BCInfo> bcInfos, @NotNull final FlexBuildConfiguration bc) {
-    return ContainerUtil.find(bcInfos, info -> info.myBC.isEqual(bc));
+  private static File findConfiguredLinkReport(final List<VirtualFile> configFiles) {
+    for (VirtualFile configFile : configFiles) {
+      try {
+        final String path = FlexUtils.findXMLElement(configFile.getInputStream(), LINK_REPORT_TAG);
+        if (path != null) {
+          final File file = new File(FileUtil.toSystemDependentName(path.trim()));
+          return file.isAbsolute() ? file : new File(configFile.getParent().getPath(), path.trim());
+        }
+      }
+      catch (IOException e) {/*ignore*/}
+    }
+    return null;
+  }
+
+  /**
+   * @return paths of compiled sources and libraries or <code>null</code> if the link report is not available
+   */
+  @Nullable
+  private static Collection<String> readLinkReport(final Module module,
+                                                   final FlexBuildConfiguration bc,
+                                                   final List<VirtualFile> configFiles) {
+    File linkReport = new File(CompilerConfigGenerator.getDependenciesReportFilePath(module, bc));
+    if (!linkReport.isFile()) {
+      linkReport = findConfiguredLinkReport(configFiles);
+    }
+    if (linkReport == null || !linkReport.isFile()) return null;
+
+    try {
+      return parseLinkReport(FileUtil.loadFile(linkReport, StandardCharsets.UTF_8));
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to read " + linkReport.getPath(), e);
+      return null;
+    }
+  }
+
+  /**
+   * @return paths of the sources and libraries listed in the compiler link report, without duplicates
+   */
+  @NotNull
+  public static Collection<String> parseLinkReport(@NotNull final CharSequence text) {
+    final Collection<String> result = new LinkedHashSet<>();
+
+    new XmlBuilderDriver(text).build(new SwcCatalogXmlUtil.XmlBuilderAdapter() {
+      @Override
+      public void attribute(final CharSequence name, final CharSequence value, final int start, final int end) {
+        if (SCRIPT_LOCATION.equals(getLocation()) && "name".equals(name)) {
+          final String scriptName = value.toString().trim();
+          final Matcher matcher = LIBRARY_SCRIPT_PATTERN.matcher(scriptName);
+          result.add(matcher.matches() ? matcher.group(1) : scriptName);
+        }
+      }
+    });
+
+    return result;
   }
 
   private static void addFileDependencies(final BCInfo bcInfo, final VirtualFile configFile, final String workDirPath) {
@@ -168,39 +365,249 @@ public class FlexCompilerDependenciesCache {
     catch (IOException e) {/*ignore*/}
   }
 
+  /**
+   * Digest of the BC settings, equal for BCs that {@link FlexBuildConfiguration#isEqual} and stable across IDE restarts.
+   */
+  @NotNull
+  private static String getBCKey(final FlexBuildConfiguration bc) {
+    final String state = JDOMUtil.writeElement(XmlSerializer.serialize(((FlexBuildConfigurationImpl)bc).getState(null)), "\n");
+    final String text = bc.isTempBCForCompilation() + "\n" + state;
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+    catch (NoSuchAlgorithmException e) {
+      return text;
+    }
+  }
+
+  public void save() {
+    if (myStorageFile == null) return;
+
+    try {
+      FileUtil.createParentDirs(myStorageFile);
+      final File tempFile = FileUtil.createTempFile(myStorageFile.getParentFile(), myStorageFile.getName(), ".tmp", true, false);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(STORAGE_VERSION);
+        out.writeInt(myCache.size());
+        for (Map.Entry<String, ConcurrentMap<String, BCInfo>> moduleEntry : myCache.entrySet()) {
+          out.writeUTF(moduleEntry.getKey());
+          final Map<String, BCInfo> infos = new HashMap<>(moduleEntry.getValue());
+          final Map<String, String> digests = new HashMap<>();
+          for (Map.Entry<String, BCInfo> entry : infos.entrySet()) {
+            // not verified in this session, so the digest of the current files might hide changes made while the project was closed
+            final BCInfo info = entry.getValue();
+            final String restoredDigest = info.myRestoredSourceRootsDigest;
+            final String sourceRootsDigest = restoredDigest != null ? restoredDigest : getSourceRootsDigest(info.mySourceRootUrls);
+            if (sourceRootsDigest != null) {
+              digests.put(entry.getKey(), sourceRootsDigest);
+            }
+          }
+          out.writeInt(digests.size());
+          for (Map.Entry<String, String> entry : digests.entrySet()) {
+            out.writeUTF(entry.getKey());
+            infos.get(entry.getKey()).write(out, entry.getValue());
+          }
+        }
+      }
+      FileUtil.rename(tempFile, myStorageFile);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save Flex compiler dependencies", e);
+    }
+  }
+
+  /**
+   * Digest of the paths, lengths and timestamps of all files under the source roots, or <code>null</code> if it can't be computed.
+   */
+  @Nullable
+  private String getSourceRootsDigest(final String[] sourceRootUrls) {
+    final List<String> key = Arrays.asList(sourceRootUrls);
+    final String cachedDigest = mySourceRootsDigests.get(key);
+    if (cachedDigest != null) return cachedDigest;
+
+    final long changeCount = myFileChangeCount.get();
+    final String digest = computeSourceRootsDigest(sourceRootUrls);
+    if (digest != null && changeCount == myFileChangeCount.get()) {
+      mySourceRootsDigests.put(key, digest);
+    }
+    return digest;
+  }
+
+  @Nullable
+  private static String computeSourceRootsDigest(final String[] sourceRootUrls) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      for (String url : sourceRootUrls) {
+        addToDigest(digest, url);
+        addDirectoryToDigest(digest, new File(FileUtil.toSystemDependentName(VfsUtilCore.urlToPath(url))));
+      }
+      return StringUtil.toHexString(digest.digest());
+    }
+    catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  private static void addDirectoryToDigest(final MessageDigest digest, final File dir) {
+    final File[] children = dir.listFiles();
+    if (children == null) return;
+
+    Arrays.sort(children);
+    for (File child : children) {
+      addToDigest(digest, child.getPath());
+      if (child.isDirectory()) {
+        addDirectoryToDigest(digest, child);
+      }
+      else {
+        addToDigest(digest, child.length() + ":" + child.lastModified());
+      }
+    }
+  }
+
+  private static void addToDigest(final MessageDigest digest, final String text) {
+    digest.update(text.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte)0);
+  }
+
+  private void load() {
+    if (myStorageFile == null || !myStorageFile.isFile()) return;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myStorageFile)))) {
+      if (in.readInt() != STORAGE_VERSION) return;
+
+      for (int moduleCount = in.readInt(); moduleCount > 0; moduleCount--) {
+        final String moduleName = in.readUTF();
+        final ConcurrentMap<String, BCInfo> infos = ContainerUtil.newConcurrentMap();
+        for (int bcCount = in.readInt(); bcCount > 0; bcCount--) {
+          final String bcKey = in.readUTF();
+          infos.put(bcKey, BCInfo.read(in));
+        }
+        myCache.put(moduleName, infos);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load Flex compiler dependencies", e);
+      myCache.clear();
+    }
+  }
+
+  private static class FileFingerprint {
+    private final File myFile;
+    private final boolean myGenerated;
+    private final long myLength;
+    private final long myStamp;
+
+    private FileFingerprint(final File file, final boolean generated, final long length, final long stamp) {
+      myFile = file;
+      myGenerated = generated;
+      myLength = length;
+      myStamp = stamp;
+    }
+
+    private static FileFingerprint create(final File file) {
+      final boolean generated = FileUtil.isAncestor(FlexCommonUtils.getTempFlexConfigsDirPath(), file.getPath(), true);
+      return new FileFingerprint(file, generated, file.length(), computeStamp(file, generated));
+    }
+
+    private static long computeStamp(final File file, final boolean generated) {
+      if (!generated) return file.lastModified();
+
+      try {
+        final CRC32 crc = new CRC32();
+        crc.update(FileUtil.loadFileBytes(file));
+        return crc.getValue();
+      }
+      catch (IOException e) {
+        return -1;
+      }
+    }
+
+    private boolean isChanged() {
+      return !myFile.exists() || myFile.length() != myLength || computeStamp(myFile, myGenerated) != myStamp;
+    }
+  }
+
   private static class BCInfo {
-    private final FlexBuildConfiguration myBC;
     private final String[] mySourceRootUrls;
-    private final Collection<Pair<File, Long>> myFileToTimestamp = new ArrayList<>();
+    private final boolean myCompiledFilesKnown; // false if there was no link report
+    private final Map<String, FileFingerprint> myFiles = new LinkedHashMap<>();
+    // not null until the state restored from the previous session is verified
+    @Nullable private volatile String myRestoredSourceRootsDigest;
 
-    private BCInfo(final FlexBuildConfiguration bc, final String[] sourceRootUrls) {
-      myBC = bc;
+    private BCInfo(final String[] sourceRootUrls, final boolean compiledFilesKnown) {
       mySourceRootUrls = sourceRootUrls;
+      myCompiledFilesKnown = compiledFilesKnown;
     }
 
     private void addFileDependency(final String filePath, final String... potentialBaseDirs) {
       final File file = new File(FileUtil.toSystemDependentName(filePath));
       if (file.exists()) {
-        myFileToTimestamp.add(Pair.create(file, file.lastModified()));
+        addFile(file);
       }
       else if (potentialBaseDirs != null) {
         for (String baseDir : potentialBaseDirs) {
           final File file1 = new File(FileUtil.toSystemDependentName(baseDir + '/' + filePath));
           if (file1.exists()) {
-            myFileToTimestamp.add(Pair.create(file1, file1.lastModified()));
+            addFile(file1);
             break;
           }
         }
       }
     }
 
-    public boolean timestampsChanged() {
-      for (Pair<File, Long> fileAndTimestamp : myFileToTimestamp) {
-        if (fileAndTimestamp.first.lastModified() != fileAndTimestamp.second) {
+    private void addFile(final File file) {
+      if (!myFiles.containsKey(file.getPath())) {
+        myFiles.put(file.getPath(), FileFingerprint.create(file));
+      }
+    }
+
+    private boolean hasMissingGeneratedFiles() {
+      for (FileFingerprint fingerprint : myFiles.values()) {
+        if (fingerprint.myGenerated && !fingerprint.myFile.exists()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean filesChanged() {
+      for (FileFingerprint fingerprint : myFiles.values()) {
+        if (fingerprint.isChanged()) {
           return true;
         }
       }
       return false;
     }
+
+    private void write(final DataOutput out, final String sourceRootsDigest) throws IOException {
+      out.writeUTF(sourceRootsDigest);
+      out.writeInt(mySourceRootUrls.length);
+      for (String url : mySourceRootUrls) {
+        out.writeUTF(url);
+      }
+      out.writeBoolean(myCompiledFilesKnown);
+      out.writeInt(myFiles.size());
+      for (FileFingerprint fingerprint : myFiles.values()) {
+        out.writeUTF(fingerprint.myFile.getPath());
+        out.writeBoolean(fingerprint.myGenerated);
+        out.writeLong(fingerprint.myLength);
+        out.writeLong(fingerprint.myStamp);
+      }
+    }
+
+    private static BCInfo read(final DataInput in) throws IOException {
+      final String sourceRootsDigest = in.readUTF();
+      final String[] sourceRootUrls = new String[in.readInt()];
+      for (int i = 0; i < sourceRootUrls.length; i++) {
+        sourceRootUrls[i] = in.readUTF();
+      }
+      final BCInfo info = new BCInfo(sourceRootUrls, in.readBoolean());
+      info.myRestoredSourceRootsDigest = sourceRootsDigest;
+      for (int fileCount = in.readInt(); fileCount > 0; fileCount--) {
+        final File file = new File(in.readUTF());
+        info.myFiles.put(file.getPath(), new FileFingerprint(file, in.readBoolean(), in.readLong(), in.readLong()));
+      }
+      return info;
+    }
   }
 }
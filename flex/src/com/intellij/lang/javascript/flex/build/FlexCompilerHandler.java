@@ -193,7 +193,7 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
       myBuiltInFlexCompilerHandler.stopCompilerProcess();
     }
     quitCompilerShell();
-    myCompilerDependenciesCache.clear();
+    myCompilerDependenciesCache.save();
     FlexCommonUtils.deleteTempFlexConfigFiles(myProject.getName());
     FlexCompilationUtils.deleteUnzippedANEFiles();
     myWidget.destroy();
@@ -749,7 +749,12 @@ public class FlexCompilerHandler extends AbstractProjectComponent {
 
     private void handleVirtualFileEvent(final VirtualFile file, boolean contentsChanged) {
       if (file == null) return;
-      myCompilerDependenciesCache.markModuleDirtyIfInSourceRoot(file);
+      if (contentsChanged) {
+        myCompilerDependenciesCache.fileContentsChanged(file);
+      }
+      else {
+        myCompilerDependenciesCache.markModuleDirtyIfInSourceRoot(file);
+      }
       //clearAutoGeneratedConfigsIfNeeded(file, contentsChanged);
     }
   }
@@ -2,45 +2,37 @@ package com.intellij.lang.javascript.flex.importer;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
-import java.util.zip.InflaterInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
+ * A view over a {@link java.nio.ByteBuffer}: heap buffer for the file content that is already in memory or memory-mapped buffer
+ * for files on disk. Nested structures (DoABC tags, method bodies) are slices of the same memory, not copies.
+ *
  * @author Maxim.Mossienko
 *         Date: Oct 20, 2008
 *         Time: 7:02:53 PM
 */
 class ByteBuffer {
-  private byte[] bytes;
-  private int position;
-  private boolean littleEndian;
+  private final java.nio.ByteBuffer buffer;
 
-  void read(@NotNull InputStream inputStream) throws IOException {
-    try {
-      bytes = readStream(inputStream);
-    }
-    finally {
-      if (inputStream != null) inputStream.close();
-    }
+  ByteBuffer(@NotNull final java.nio.ByteBuffer buffer) {
+    // slice() makes position 0 the start of the view and resets byte order to big endian
+    this.buffer = buffer.slice();
   }
 
   void setLittleEndian() {
-    littleEndian = true;
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
   }
 
   int readInt() {
-    int result;
-    if (littleEndian) {
-      result = (((bytes[position + 3] & 0xFF) << 8 | (bytes[position + 2] & 0xFF)) << 16) + ((bytes[position + 1] & 0xFF) << 8) | (bytes[position] & 0xFF);
-    }
-    else {
-      result = (((bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF)) << 16) + ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
-    }
-    position += 4;
-    return result;
+    return buffer.getInt();
   }
 
   public int readUnsignedInt() {
@@ -48,86 +40,115 @@ class ByteBuffer {
   }
 
   public void setPosition(final int i) {
-    position = i;
+    buffer.position(i);
   }
 
   public int bytesSize() {
-    return bytes.length;
-  }
-
-  public void uncompress() throws IOException {
-    final InflaterInputStream zipInputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
-
-    bytes = readStream(zipInputStream);
-
-    zipInputStream.close();
-  }
-
-  private static byte[] readStream(final InputStream zipInputStream) throws IOException {
-    final byte[] buf = new byte[8192];
-    byte[] result = new byte[8192];
-    int total = 0;
+    return buffer.limit();
+  }
+
+  /**
+   * Inflates zlib data from the current position till the end of the buffer. If <code>expectedSize</code> is correct then the result
+   * is decoded directly into the array of the exact size, without intermediate buffers.
+   */
+  @NotNull
+  ByteBuffer inflate(final int expectedSize) throws IOException {
+    final byte[] input;
+    final int inputOffset;
+    final int inputLength = buffer.remaining();
+    if (buffer.hasArray()) {
+      input = buffer.array();
+      inputOffset = buffer.arrayOffset() + buffer.position();
+    }
+    else {
+      // Inflater can't read from a direct buffer
+      input = new byte[inputLength];
+      buffer.duplicate().get(input);
+      inputOffset = 0;
+    }
+    buffer.position(buffer.limit());
 
-    while (true) {
-      int read = zipInputStream.read(buf);
-      if (read == -1) break;
-      if (total + read >= result.length) {
-        byte[] newresult = new byte[result.length * 2];
-        System.arraycopy(result, 0, newresult, 0, total);
-        result = newresult;
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input, inputOffset, inputLength);
+
+      // zlib can't compress better than ~1:1032, a larger size in a broken header must not make us allocate a huge array
+      final boolean expectedSizeValid = expectedSize > 0 && expectedSize <= 1032L * inputLength;
+      // one spare byte lets the inflater reach the end of the zlib stream without growing the array
+      byte[] result = new byte[expectedSizeValid ? expectedSize + 1 : Math.max(8192, inputLength * 4)];
+      int total = 0;
+      while (!inflater.finished()) {
+        if (total == result.length) {
+          result = Arrays.copyOf(result, result.length * 2);
+        }
+
+        final int read = inflater.inflate(result, total, result.length - total);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        total += read;
       }
 
-      System.arraycopy(buf, 0, result, total, read);
-      total += read;
+      return new ByteBuffer(java.nio.ByteBuffer.wrap(result, 0, total));
+    }
+    catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    finally {
+      inflater.end();
     }
-
-    final byte[] realResult = new byte[total];
-    System.arraycopy(result, 0, realResult, 0, total);
-    return realResult;
   }
 
   public int readUnsignedByte() {
-    return bytes[position++] & 0xFF;
+    return buffer.get() & 0xFF;
   }
 
   public int readByte() {
-    return bytes[position++];
+    return buffer.get();
   }
 
   public int readUnsignedShort() {
-    int result;
-    if (littleEndian) {
-      result = (bytes[position + 1] & 0xFF) << 8 | (bytes[position] & 0xFF);
-    }
-    else {
-      result = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
-    }
-    position += 2;
-    return result;
+    return buffer.getShort() & 0xFFFF;
   }
 
-  public void readBytes(ByteBuffer data2, int length) {
-    data2.bytes = new byte[length];
-    System.arraycopy(bytes, position, data2.bytes, 0, length);
-    position += length;
+  /**
+   * @return view of the next <code>length</code> bytes (sharing memory with this buffer) with big endian byte order
+   */
+  @NotNull
+  public ByteBuffer slice(final int length) {
+    if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+
+    final java.nio.ByteBuffer duplicate = buffer.duplicate();
+    duplicate.limit(buffer.position() + length);
+    buffer.position(buffer.position() + length);
+    return new ByteBuffer(duplicate);
   }
 
   public boolean eof() {
-    return position >= bytes.length;
+    return !buffer.hasRemaining();
   }
 
   public String readUTFBytes(int i) {
-    try {
-      final byte[] buf = new byte[i];
-      while (i > 0) {
-        buf[buf.length - i] = (byte)readByte();
-        --i;
-      }
-      return new String(buf, "utf-8");
-    }
-    catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e);
+    final String result = getUTFBytes(buffer.position(), i);
+    buffer.position(buffer.position() + i);
+    return result;
+  }
+
+  /**
+   * Absolute read, doesn't change the position.
+   */
+  public String getUTFBytes(final int position, final int length) {
+    if (length < 0 || position < 0 || position > buffer.limit() - length) throw new BufferUnderflowException();
+
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
     }
+
+    final java.nio.ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(position);
+    final byte[] bytes = new byte[length];
+    duplicate.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
   }
 
   public double readDouble() {
@@ -149,14 +170,20 @@ class ByteBuffer {
   }
 
   public byte getByte(int i) {
-    return bytes[i];
+    return buffer.get(i);
   }
 
   public int getPosition() {
-    return position;
+    return buffer.position();
+  }
+
+  public void skip(final int length) {
+    if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+    buffer.position(buffer.position() + length);
   }
 
   public void incPosition(final int length) {
-    position += length;
+    // a truncated last tag moves position to the end, same as it was with the plain array
+    buffer.position((int)Math.min((long)buffer.position() + length, buffer.limit()));
   }
 }
@@ -6,6 +6,9 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Produced from abcdump.as
@@ -26,7 +29,7 @@ public class FlexImporter {
 
       for (String file : args) {
         try {
-          String result = dumpContentsFromStream(new BufferedInputStream(new FileInputStream(file)), true);
+          String result = dumpContentsFromFile(new File(file), true);
 
           saveStringAsFile(result, file + ".il");
         }
@@ -43,16 +46,40 @@ public class FlexImporter {
   }
 
   public static String dumpContentsFromStream(final InputStream in, boolean _dumpCode) throws IOException {
+    return dumpContents(java.nio.ByteBuffer.wrap(readStream(in)), _dumpCode);
+  }
+
+  /**
+   * The file is memory-mapped, not read into heap.
+   */
+  public static String dumpContentsFromFile(@NotNull final File file, boolean _dumpCode) throws IOException {
+    try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+      final MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return dumpContents(content, _dumpCode);
+    }
+  }
+
+  private static String dumpContents(@NotNull final java.nio.ByteBuffer content, boolean _dumpCode) throws IOException {
     final AbstractDumpProcessor abcDumper = new AbcDumper(_dumpCode);
-    processFlexByteCode(in, abcDumper);
+    processFlexByteCode(content, abcDumper);
     return abcDumper.getResult();
   }
 
   @NonNls
   public static String buildInterfaceFromStream(final InputStream in) {
+    try {
+      return buildInterface(readStream(in));
+    }
+    catch (IOException ex) {
+      return "/* " + ex.getLocalizedMessage() + " */";
+    }
+  }
+
+  @NonNls
+  public static String buildInterface(@NotNull final byte[] content) {
     try {
       final AbstractDumpProcessor abcDumper = new AS3InterfaceDumper();
-      processFlexByteCode(in, abcDumper);
+      processFlexByteCode(java.nio.ByteBuffer.wrap(content), abcDumper);
       final String s = abcDumper.getResult();
       //saveStringAsFile(s, File.createTempFile("fleximport", ".as").getPath());
       return s;
@@ -60,19 +87,37 @@ public class FlexImporter {
     catch (IOException ex) {
       return "/* " + ex.getLocalizedMessage() + " */";
     }
-    catch (ArrayIndexOutOfBoundsException ex) {
+    catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
       return "/* Invalid format */";
     }
   }
 
   @NonNls
   public static void buildStubsInterfaceFromStream(final InputStream in, final StubElement parent) throws Exception {
-    processFlexByteCode(in, new AS3InterfaceStubDumper(parent));
+    buildStubsInterface(readStream(in), parent);
+  }
+
+  /**
+   * The content is decoded in place, only compressed SWF is inflated into a new array.
+   */
+  @NonNls
+  public static void buildStubsInterface(@NotNull final byte[] content, final StubElement parent) throws Exception {
+    processFlexByteCode(java.nio.ByteBuffer.wrap(content), new AS3InterfaceStubDumper(parent));
+  }
+
+  @NotNull
+  private static byte[] readStream(@NotNull final InputStream in) throws IOException {
+    try {
+      return FileUtil.loadBytes(in);
+    }
+    finally {
+      in.close();
+    }
   }
 
-  private static void processFlexByteCode(@NotNull final InputStream in, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
-    ByteBuffer data = new ByteBuffer();
-    data.read(in);
+  private static void processFlexByteCode(@NotNull final java.nio.ByteBuffer content, @NotNull FlexByteCodeInformationProcessor processor)
+    throws IOException {
+    ByteBuffer data = new ByteBuffer(content);
     data.setLittleEndian();
     if (data.bytesSize() == 0) return;
     int version = data.readUnsignedInt();
@@ -83,14 +128,13 @@ public class FlexImporter {
     }
     else if ((version & SWF_MAGIC) == SWF_MAGIC) {
       final int delta = 8;
+      // header contains the length of the whole uncompressed file, so the inflated data is written into the array of the right size
+      final int uncompressedSize = data.readInt() - delta;
       data.setPosition(delta);
-      ByteBuffer udata = new ByteBuffer();
+      int csize = data.bytesSize() - delta;
+      ByteBuffer udata = data.inflate(uncompressedSize);
       udata.setLittleEndian();
-      data.readBytes(udata, data.bytesSize() - delta);
-      int csize = udata.bytesSize();
-      udata.uncompress();
       processor.dumpStat("decompressed swf " + csize + " -> " + udata.bytesSize() + "\n");
-      udata.setPosition(0);
       new Swf(udata, processor);
     }
     else if ((version & SWF_MAGIC2) == SWF_MAGIC2) {
@@ -1,6 +1,14 @@
 package com.intellij.lang.javascript.flex.importer;
 
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * @author Maxim.Mossienko
@@ -24,6 +32,10 @@ class Swf {
 
   private final ByteBuffer data;
 
+  private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+  // handing ABC blocks over to other threads only costs time on a single CPU
+  private static final boolean PARALLEL_PARSING = PARALLELISM > 1 && !Boolean.getBoolean("flex.importer.sequential.parsing");
+
   private static final int stagDoABC = 72;   // embedded .abc (AVM+) bytecode
   private static final int stagDoABC2 = 82;   // revised ABC version with a name
 
@@ -164,46 +176,100 @@ class Swf {
   }
 
   private void decodeTags() {
+    // stats (String) and DoABC tag data (ByteBuffer) in the order of tags
+    final List<Object> items = new ArrayList<>();
     int type, h, length;
 
+    loop:
     while (data.getPosition() < data.bytesSize()) {
       type = (h = data.readUnsignedShort()) >> 6;
 
       if (((length = h & 0x3F) == 0x3F)) length = data.readInt();
 
-      processor.dumpStat(
-        (type < tagNames.length ? tagNames[type] : "undefined") + " " + length + "b " + ((int)100f * length / data.bytesSize()) + "%\n");
+      items.add((type < tagNames.length ? tagNames[type] : "undefined") + " " + length + "b " + ((int)100f * length / data.bytesSize()) + "%\n");
 
       switch (type) {
         case 0:
-          return;
+          break loop;
         case stagDoABC2:
           int pos1 = data.getPosition();
           data.readInt();
           final String abcName = readString();
-          processor.dumpStat("\nabc name " + abcName + "\n");
+          items.add("\nabc name " + abcName + "\n");
           length -= (data.getPosition() - pos1);
           // fall through
         case stagDoABC:
-          ByteBuffer data2 = new ByteBuffer();
+          ByteBuffer data2 = data.slice(length);
           data2.setLittleEndian();
-          data.readBytes(data2, length);
-          new Abc(data2, processor).dump(processor.getAbcInSwfIndent());
-          processor.append("\n");
+          items.add(data2);
           break;
         default:
           data.incPosition(length);
       }
     }
+
+    final List<ByteBuffer> abcData = new ArrayList<>();
+    for (Object item : items) {
+      if (item instanceof ByteBuffer) abcData.add((ByteBuffer)item);
+    }
+
+    // Library SWFs compiled by compc contain a DoABC tag per class. They don't depend on each other, so the ones following the tag
+    // being dumped are parsed in other threads. Only dumping, that passes the result to the processor, is done sequentially
+    // in the order of tags, so the result doesn't change. Parsing ahead is limited to keep few parsed blocks in memory.
+    final int parseAhead = PARALLEL_PARSING && abcData.size() > 1 ? PARALLELISM * 2 : 0;
+    final List<Future<Abc>> futures = new ArrayList<>(Collections.nCopies(abcData.size(), null));
+    try {
+      int abcIndex = 0;
+      for (Object item : items) {
+        if (item instanceof String) {
+          processor.dumpStat((String)item);
+          continue;
+        }
+
+        for (int i = abcIndex + 1; i <= abcIndex + parseAhead && i < abcData.size(); i++) {
+          if (futures.get(i) == null) {
+            final ByteBuffer nextAbcData = abcData.get(i);
+            futures.set(i, ForkJoinPool.commonPool().submit(() -> new Abc(nextAbcData, processor)));
+          }
+        }
+
+        final Future<Abc> future = futures.set(abcIndex, null);
+        final Abc abc = future != null ? getResult(future) : new Abc(abcData.get(abcIndex), processor);
+        abcIndex++;
+        abc.dump(processor.getAbcInSwfIndent());
+        processor.append("\n");
+      }
+    }
+    finally {
+      for (Future<Abc> future : futures) {
+        if (future != null) future.cancel(false);
+      }
+    }
+  }
+
+  private static Abc getResult(@NotNull final Future<Abc> future) {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    catch (ExecutionException e) {
+      // rethrow the original exception as if the Abc was parsed in this thread
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new RuntimeException(cause);
+    }
   }
 
   private String readString() {
-    String s = "";
+    final StringBuilder s = new StringBuilder();
     int c;
 
-    while ((c = data.readUnsignedByte()) != 0) s += (char)c;
+    while ((c = data.readUnsignedByte()) != 0) s.append((char)c);
 
-    return s;
+    return s.toString();
   }
 
   private void syncBits() {
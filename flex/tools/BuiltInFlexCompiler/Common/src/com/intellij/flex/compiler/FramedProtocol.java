@@ -0,0 +1,137 @@
+package com.intellij.flex.compiler;
+
+import java.io.*;
+
+/**
+ * Binary protocol between IDE and compiler process. It is used if the process is started with
+ * <code>-Didea.flex.compiler.framed.protocol=true</code>, otherwise the process talks the line protocol (commands and output lines
+ * prefixed with command number and sent by <code>DataOutputStream.writeUTF()</code>), which is still used by the external build.
+ * <p/>
+ * Each frame is <code>int length, byte type, int compilationId, payload</code> where <code>length</code> counts everything after itself.
+ * A string in payload is <code>int byteCount</code> (-1 for <code>null</code>) followed by UTF-8 bytes.
+ * <p/>
+ * Keep in sync with com.intellij.lang.javascript.flex.build.BuiltInFlexCompilerProtocol !!!
+ */
+public class FramedProtocol {
+
+  public static final String FRAMED_PROTOCOL_PROPERTY = "idea.flex.compiler.framed.protocol";
+
+  // IDE -> compiler
+  public static final byte COMPILE = 1;     // String bcKey, String command
+  public static final byte CANCEL = 2;      // no payload
+  public static final byte FINISH = 3;      // no payload, compilationId is 0
+
+  // compiler -> IDE
+  public static final byte TEXT = 10;       // String text
+  public static final byte DIAGNOSTIC = 11; // byte level, String path, int line, int column, String message
+  public static final byte FINISHED = 12;   // no payload
+
+  public static final byte LEVEL_WARNING = 1;
+  public static final byte LEVEL_ERROR = 2;
+
+  private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+  public static class Frame {
+    public final byte type;
+    public final int compilationId;
+    public final DataInputStream payload;
+
+    private Frame(final byte type, final int compilationId, final DataInputStream payload) {
+      this.type = type;
+      this.compilationId = compilationId;
+      this.payload = payload;
+    }
+  }
+
+  /**
+   * Frame is sent by a single <code>write()</code> call, so frames of parallel compilations are never interleaved.
+   */
+  public static class FrameBuilder {
+    private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+    private final DataOutputStream myOut = new DataOutputStream(myBytes);
+
+    public FrameBuilder(final byte type, final int compilationId) {
+      try {
+        myOut.writeInt(0); // length placeholder
+        myOut.writeByte(type);
+        myOut.writeInt(compilationId);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e); // not possible for ByteArrayOutputStream
+      }
+    }
+
+    public FrameBuilder writeByte(final int value) {
+      try {
+        myOut.writeByte(value);
+        return this;
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    public FrameBuilder writeInt(final int value) {
+      try {
+        myOut.writeInt(value);
+        return this;
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    public FrameBuilder writeString(final String value) {
+      try {
+        if (value == null) {
+          myOut.writeInt(-1);
+        }
+        else {
+          final byte[] bytes = value.getBytes("UTF-8");
+          myOut.writeInt(bytes.length);
+          myOut.write(bytes);
+        }
+        return this;
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void sendTo(final OutputStream out) throws IOException {
+      final byte[] frame = myBytes.toByteArray();
+      final int length = frame.length - 4;
+      frame[0] = (byte)(length >>> 24);
+      frame[1] = (byte)(length >>> 16);
+      frame[2] = (byte)(length >>> 8);
+      frame[3] = (byte)length;
+
+      synchronized (out) {
+        out.write(frame);
+        out.flush();
+      }
+    }
+  }
+
+  public static Frame readFrame(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 5 || length > MAX_FRAME_LENGTH) {
+      throw new IOException("Incorrect frame length: " + length);
+    }
+
+    final byte type = in.readByte();
+    final int compilationId = in.readInt();
+    final byte[] payload = new byte[length - 5];
+    in.readFully(payload);
+    return new Frame(type, compilationId, new DataInputStream(new ByteArrayInputStream(payload)));
+  }
+
+  public static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) return null;
+
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
@@ -21,13 +21,20 @@ import java.io.IOException;
 
 public class Flex4Handler extends SdkSpecificHandler {
 
+  // compilation thread is reused for the next compilation of the same BC, no need to load resource bundles once again
+  private static final ThreadLocal<LocalizationManager> ourLocalizationManagers = new ThreadLocal<LocalizationManager>();
+
   public void initThreadLocals(final Logger logger) {
     super.initThreadLocals(logger);
 
     CompilerAPI.useAS3();
     CompilerAPI.usePathResolver();
-    final LocalizationManager localizationManager = new LocalizationManager();
-    localizationManager.addLocalizer(new ResourceBundleLocalizer());
+    LocalizationManager localizationManager = ourLocalizationManagers.get();
+    if (localizationManager == null) {
+      localizationManager = new LocalizationManager();
+      localizationManager.addLocalizer(new ResourceBundleLocalizer());
+      ourLocalizationManagers.set(localizationManager);
+    }
     ThreadLocalToolkit.setLocalizationManager(localizationManager);
     ThreadLocalToolkit.setLogger(logger);
   }
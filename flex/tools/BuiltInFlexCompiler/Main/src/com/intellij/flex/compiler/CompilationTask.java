@@ -3,7 +3,7 @@ package com.intellij.flex.compiler;
 import flex2.compiler.ILocalizableMessage;
 import flex2.compiler.common.Configuration;
 
-public class CompilationThread extends Thread {
+public class CompilationTask implements Runnable {
 
   private static int omitTraceCompilationsCount = 0;
   private static int traceCompilationsCount = 0;
@@ -14,10 +14,10 @@ public class CompilationThread extends Thread {
   private final String[] myParams;
   private final OutputLogger myLogger;
 
-  public CompilationThread(final boolean isSwf,
-                           final SdkSpecificHandler sdkSpecificHandler,
-                           final String[] params,
-                           final OutputLogger logger) {
+  public CompilationTask(final boolean isSwf,
+                         final SdkSpecificHandler sdkSpecificHandler,
+                         final String[] params,
+                         final OutputLogger logger) {
     mySwf = isSwf;
     mySdkSpecificHandler = sdkSpecificHandler;
     myParams = params;
@@ -81,7 +81,7 @@ public class CompilationThread extends Thread {
       System.exit(1);
     }
     finally {
-      myLogger.log(FlexCompiler.COMPILATION_FINISHED);
+      myLogger.compilationFinished();
       mySdkSpecificHandler.cleanThreadLocals();
       System.gc();
     }
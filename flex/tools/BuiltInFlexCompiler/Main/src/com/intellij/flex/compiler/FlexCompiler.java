@@ -8,6 +8,8 @@ import flex2.tools.VersionInfo;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class FlexCompiler implements MessageSender {
 
@@ -21,9 +23,18 @@ public class FlexCompiler implements MessageSender {
   public static String SDK_MINOR_VERSION = VersionInfo.FLEX_MINOR_VERSION;
   public static String SDK_REVISION_VERSION = VersionInfo.FLEX_NANO_VERSION;
 
+  // compilation threads of a BC are kept alive between compilations, so that the next compilation of the same BC finds warm caches
+  private static final long WORKER_KEEP_ALIVE_MINUTES = 10;
+
+  private final boolean myFramedProtocol = Boolean.getBoolean(FramedProtocol.FRAMED_PROTOCOL_PROPERTY);
+
   private DataInputStream myDataInputStream;
   private DataOutputStream myDataOutputStream;
 
+  // accessed from the input reading thread only
+  private final Map<String, ThreadPoolExecutor> myWorkers = new HashMap<String, ThreadPoolExecutor>();
+  private final Set<Integer> myCancelledCompilations = Collections.synchronizedSet(new HashSet<Integer>());
+
   private void openSocket(int port) throws IOException {
     final int maxAttempts = 10;
     Socket socket;
@@ -79,7 +90,30 @@ public class FlexCompiler implements MessageSender {
     }
   }
 
+  public void sendFrame(final FramedProtocol.FrameBuilder frame) {
+    try {
+      frame.sendTo(myDataOutputStream);
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  public boolean isCancelled(final int compilationId) {
+    return myCancelledCompilations.contains(compilationId);
+  }
+
+  public void compilationFinished(final int compilationId) {
+    myCancelledCompilations.remove(compilationId);
+    sendFrame(new FramedProtocol.FrameBuilder(FramedProtocol.FINISHED, compilationId));
+  }
+
   private void processInput() throws IOException {
+    if (myFramedProtocol) {
+      processFrames();
+      return;
+    }
+
     final StringBuilder buffer = new StringBuilder();
     while (true) {
       final String line = myDataInputStream.readUTF();
@@ -111,6 +145,77 @@ public class FlexCompiler implements MessageSender {
     return false;
   }
 
+  private void processFrames() throws IOException {
+    while (true) {
+      final FramedProtocol.Frame frame = FramedProtocol.readFrame(myDataInputStream);
+      switch (frame.type) {
+        case FramedProtocol.COMPILE:
+          final String bcKey = FramedProtocol.readString(frame.payload);
+          final String command = FramedProtocol.readString(frame.payload);
+          startCompilation(frame.compilationId, bcKey, command);
+          break;
+        case FramedProtocol.CANCEL:
+          myCancelledCompilations.add(frame.compilationId);
+          break;
+        case FramedProtocol.FINISH:
+          exit();
+          return;
+        default:
+          final FramedOutputLogger logger = new FramedOutputLogger(this, frame.compilationId);
+          logger.log("Error: Incorrect frame type: " + frame.type);
+          logger.compilationFinished();
+      }
+    }
+  }
+
+  private void startCompilation(final int compilationId, final String bcKey, final String command) {
+    final FramedOutputLogger logger = new FramedOutputLogger(this, compilationId);
+
+    final boolean isSwf = command.startsWith("mxmlc ");
+    if (!isSwf && !command.startsWith("compc")) {
+      logger.log("Error: Incorrect compilation command: [" + command + "]");
+      logger.compilationFinished();
+      return;
+    }
+
+    final SdkSpecificHandler sdkSpecificHandler = getSdkSpecificHandler();
+    if (sdkSpecificHandler == null) {
+      logger.log(getSdkNotSupportedMessage());
+      logger.compilationFinished();
+      return;
+    }
+
+    final CompilationTask compilationTask = new CompilationTask(isSwf, sdkSpecificHandler, getParams(command), logger);
+    getWorker(bcKey).execute(new Runnable() {
+      public void run() {
+        if (isCancelled(compilationId)) {
+          logger.compilationFinished();
+        }
+        else {
+          compilationTask.run();
+        }
+      }
+    });
+  }
+
+  private ThreadPoolExecutor getWorker(final String bcKey) {
+    ThreadPoolExecutor worker = myWorkers.get(bcKey);
+    if (worker == null) {
+      worker = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+                                      new ThreadFactory() {
+                                        public Thread newThread(final Runnable runnable) {
+                                          final Thread thread = new Thread(runnable, "Compilation of " + bcKey);
+                                          thread.setPriority(Thread.MAX_PRIORITY);
+                                          thread.setDaemon(true);
+                                          return thread;
+                                        }
+                                      });
+      worker.allowCoreThreadTimeOut(true);
+      myWorkers.put(bcKey, worker);
+    }
+    return worker;
+  }
+
   private void startCompilationThread(final String command) {
     final int colonPos = command.indexOf(":");
     if (colonPos <= 0) {
@@ -141,21 +246,23 @@ public class FlexCompiler implements MessageSender {
     final OutputLogger logger = new OutputLogger(this, logMessagePrefix);
     final SdkSpecificHandler sdkSpecificHandler = getSdkSpecificHandler();
     if (sdkSpecificHandler == null) {
-      logger.log(
-        "Error: Flex SDK " + SDK_MAJOR_VERSION + '.' + SDK_MINOR_VERSION + '.' + SDK_REVISION_VERSION
-          + " is not supported by built-in compiler shell. Please change compiler at " +
-          CommonBundle.settingsActionPath() + " | Compiler | Flex Compiler.");
-      logger.log(COMPILATION_FINISHED);
+      logger.log(getSdkNotSupportedMessage());
+      logger.compilationFinished();
       return;
     }
 
-    final CompilationThread compilationThread =
-      new CompilationThread(isSwf, sdkSpecificHandler, getParams(compilationCommand), logger);
+    final Thread compilationThread = new Thread(new CompilationTask(isSwf, sdkSpecificHandler, getParams(compilationCommand), logger));
     compilationThread.setPriority(Thread.MAX_PRIORITY);
     compilationThread.setDaemon(true);
     compilationThread.start();
   }
 
+  private static String getSdkNotSupportedMessage() {
+    return "Error: Flex SDK " + SDK_MAJOR_VERSION + '.' + SDK_MINOR_VERSION + '.' + SDK_REVISION_VERSION
+           + " is not supported by built-in compiler shell. Please change compiler at " +
+           CommonBundle.settingsActionPath() + " | Compiler | Flex Compiler.";
+  }
+
   private SdkSpecificHandler getSdkSpecificHandler() {
     if ("3".equals(SDK_MAJOR_VERSION)) {
       return new Flex3Handler();
@@ -182,6 +289,9 @@ public class FlexCompiler implements MessageSender {
 
   private void exit() {
     cancelAllCompilations();
+    for (ThreadPoolExecutor worker : myWorkers.values()) {
+      worker.shutdownNow();
+    }
     try {
       myDataInputStream.close();
     } catch (IOException ignored) {
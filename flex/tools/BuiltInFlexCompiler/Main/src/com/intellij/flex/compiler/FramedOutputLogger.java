@@ -0,0 +1,51 @@
+package com.intellij.flex.compiler;
+
+/**
+ * Sends warnings and errors as {@link FramedProtocol#DIAGNOSTIC} frames, so IDE doesn't need to parse them out of the text output.
+ */
+public class FramedOutputLogger extends OutputLogger {
+
+  private final FlexCompiler myCompiler;
+  private final int myCompilationId;
+
+  public FramedOutputLogger(final FlexCompiler compiler, final int compilationId) {
+    super(compiler, "");
+    myCompiler = compiler;
+    myCompilationId = compilationId;
+  }
+
+  public void log(final String level, final String path, final int line, final int column, final String message) {
+    final boolean warning = WARNING_LEVEL.equalsIgnoreCase(level);
+    final boolean error = ERROR_LEVEL.equalsIgnoreCase(level);
+    if (!warning && !error) {
+      super.log(level, path, line, column, message);
+      return;
+    }
+
+    if (error) {
+      errorReported();
+    }
+
+    send(new FramedProtocol.FrameBuilder(FramedProtocol.DIAGNOSTIC, myCompilationId)
+           .writeByte(error ? FramedProtocol.LEVEL_ERROR : FramedProtocol.LEVEL_WARNING)
+           .writeString(isEmpty(path) ? null : path)
+           .writeInt(line)
+           .writeInt(column)
+           .writeString(isEmpty(message) ? "unknown error" : message));
+  }
+
+  protected void sendText(final String message) {
+    send(new FramedProtocol.FrameBuilder(FramedProtocol.TEXT, myCompilationId).writeString(message));
+  }
+
+  public void compilationFinished() {
+    myCompiler.compilationFinished(myCompilationId);
+  }
+
+  private void send(final FramedProtocol.FrameBuilder frame) {
+    // IDE is not interested in the output of cancelled compilation
+    if (!myCompiler.isCancelled(myCompilationId)) {
+      myCompiler.sendFrame(frame);
+    }
+  }
+}
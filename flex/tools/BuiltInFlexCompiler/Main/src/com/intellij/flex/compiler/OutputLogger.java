@@ -64,9 +64,17 @@ public class OutputLogger extends LoggerAdapter implements Logger {
       }
     }
 
+    sendText(message);
+  }
+
+  protected void sendText(final String message) {
     myMessageSender.sendMessage(myLogMessagePrefix + message);
   }
 
+  public void compilationFinished() {
+    log(FlexCompiler.COMPILATION_FINISHED);
+  }
+
   public void log(final Message msg, final int errorCode, final String source) {
     log(msg.getLevel(), msg.getPath(), msg.getLine(), msg.getColumn(), msg.toString());
   }
@@ -91,7 +99,11 @@ public class OutputLogger extends LoggerAdapter implements Logger {
     log(builder.toString());
   }
 
-  private static boolean isEmpty(final String s) {
+  protected void errorReported() {
+    myErrorsReported = true;
+  }
+
+  protected static boolean isEmpty(final String s) {
     return s == null || s.trim().length() == 0;
   }
 
@@ -20,19 +20,25 @@ public class NavigatableTree extends JTree implements DataProvider {
     if (CommonDataKeys.NAVIGATABLE.is(dataId)) {
       return navigatableSelectedItem();
     }
+    if (SnapshotSaver.DATA_KEY.is(dataId)) {
+      final Object component = selectedItem();
+      return component instanceof SnapshotSaver ? component : null;
+    }
     return null;
   }
 
   @Nullable
   private Navigatable navigatableSelectedItem() {
-    final TreePath path = getSelectionPath();
-    if (path == null) {
-      return null;
-    }
-    final Object component = path.getLastPathComponent();
+    final Object component = selectedItem();
     if (component instanceof NavigatableDataProducer) {
       return ((NavigatableDataProducer)component).getNavigatable();
     }
     return null;
   }
+
+  @Nullable
+  private Object selectedItem() {
+    final TreePath path = getSelectionPath();
+    return path == null ? null : path.getLastPathComponent();
+  }
 }
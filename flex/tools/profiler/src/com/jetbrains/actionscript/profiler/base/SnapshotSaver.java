@@ -0,0 +1,23 @@
+package com.jetbrains.actionscript.profiler.base;
+
+import com.intellij.openapi.actionSystem.DataKey;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Snapshot that can be saved to a file and opened later.
+ */
+public interface SnapshotSaver {
+  DataKey<SnapshotSaver> DATA_KEY = DataKey.create("ActionScriptProfilerSnapshotSaver");
+
+  @NotNull
+  String getDefaultFileName();
+
+  @NotNull
+  String getFileExtension();
+
+  void save(@NotNull File target, @NotNull ProgressIndicator indicator) throws IOException;
+}
@@ -1,68 +1,227 @@
 package com.jetbrains.actionscript.profiler.calltree;
 
 import com.intellij.openapi.util.Pair;
-import com.intellij.util.ArrayUtil;
 import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
-import gnu.trove.THashSet;
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TObjectIntHashMap;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Call tree stored in parallel arrays indexed by node: parent, interned frame id, self time and total time.
+ * A node is always added after its parent, so a forward scan visits parents before children and a backward scan visits children
+ * before parents. Node 0 is the root, it has no frame.
+ */
 public class CallTree {
-  private final CallTreeNode root;
+  static final int ROOT = 0;
+  static final int NONE = -1;
 
-  public CallTree() {
-    root = new CallTreeNode();
-  }
+  private static final int INITIAL_CAPACITY = 1024;
 
-  CallTree(CallTreeNode root) {
-    this.root = root;
-  }
+  private final List<FrameInfo> frames = new ArrayList<>();
+  private final TObjectIntHashMap<FrameInfo> frameIds = new TObjectIntHashMap<>();
+
+  private int size;
+  private int[] parents = new int[INITIAL_CAPACITY];
+  private int[] nodeFrames = new int[INITIAL_CAPACITY];
+  private long[] selfTimes = new long[INITIAL_CAPACITY];
+  private long[] totalTimes = new long[INITIAL_CAPACITY];
+  private int[] firstChildren = new int[INITIAL_CAPACITY];
+  private int[] nextSiblings = new int[INITIAL_CAPACITY];
+  // (parent << 32 | frame) -> child; root is never a child, so 0 returned for a missing key is not ambiguous
+  private final TLongIntHashMap children = new TLongIntHashMap();
 
-  CallTreeNode getRoot() {
-    return root;
+  public CallTree() {
+    addNode(NONE, NONE);
   }
 
+  /**
+   * @param frames innermost frame first
+   */
   public void addFrames(FrameInfo[] frames, long duration) {
-    root.addChildren(Arrays.asList(ArrayUtil.reverseArray(frames)), duration);
+    int node = ROOT;
+    for (int i = frames.length - 1; i >= 0; i--) {
+      node = getOrCreateChild(node, getFrameId(frames[i]));
+      totalTimes[node] += duration;
+    }
+    if (node != ROOT) {
+      selfTimes[node] += duration;
+    }
   }
 
   /*
    * @return pair <cumulative time map, self time map>
    */
   public Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> getTimeMaps() {
-    return TimeMapBuilder.buildTimeMaps(root, root.getChildren());
+    final boolean[] tracked = new boolean[size];
+    Arrays.fill(tracked, 1, size, true);
+    return TimeMapBuilder.buildTimeMaps(this, tracked, null);
   }
 
   /*
    * @return pair <cumulative time map, self time map>
    */
   public Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> getCallersTimeMaps(FrameInfo[] frames) {
-    List<CallTreeNode> calls = CallerFinder.findCallsByFrames(root, frames);
-    Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> timeMaps = TimeMapBuilder.buildTimeMaps(root, calls);
-    Set<FrameInfo> callerNames = getNamesOfNodes(calls);
-    Map<FrameInfo, Long> filteredCountMap = filterMap(timeMaps.getFirst(), callerNames);
-    Map<FrameInfo, Long> filteredSelfTimeMap = filterMap(timeMaps.getSecond(), callerNames);
-    return Pair.create(filteredCountMap, filteredSelfTimeMap);
+    final boolean[] calls = CallerFinder.findCallsByFrames(this, frames);
+    // only callers themselves are interesting, not what they call
+    final boolean[] callerFrames = new boolean[getFrameCount()];
+    for (int node = 1; node < calls.length; node++) {
+      if (calls[node]) {
+        callerFrames[nodeFrames[node]] = true;
+      }
+    }
+    return TimeMapBuilder.buildTimeMaps(this, calls, callerFrames);
   }
 
   /*
    * @return pair <cumulative time map, self time map>
    */
   public Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> getCalleesTimeMaps(FrameInfo[] frames) {
-    List<CallTreeNode> calls = CalleeFinder.findCallsByFrameName(root, frames);
-    return TimeMapBuilder.buildTimeMaps(root, calls);
+    return TimeMapBuilder.buildTimeMaps(this, CalleeFinder.findCallsByFrameName(this, frames), null);
+  }
+
+  int getSize() {
+    return size;
+  }
+
+  int getParent(int node) {
+    return parents[node];
+  }
+
+  int getFrame(int node) {
+    return nodeFrames[node];
+  }
+
+  long getSelfTime(int node) {
+    return selfTimes[node];
+  }
+
+  long getTotalTime(int node) {
+    return totalTimes[node];
+  }
+
+  int getFirstChild(int node) {
+    return firstChildren[node];
+  }
+
+  int getNextSibling(int node) {
+    return nextSiblings[node];
+  }
+
+  int getFrameCount() {
+    return frames.size();
+  }
+
+  FrameInfo getFrameInfo(int frame) {
+    return frames.get(frame);
+  }
+
+  /**
+   * @return frame id or {@link #NONE} if there's no such frame in the tree
+   */
+  int findFrameId(FrameInfo frameInfo) {
+    return frameIds.containsKey(frameInfo) ? frameIds.get(frameInfo) : NONE;
+  }
+
+  int getFrameId(FrameInfo frameInfo) {
+    int frame = findFrameId(frameInfo);
+    if (frame == NONE) {
+      frame = frames.size();
+      frames.add(frameInfo);
+      frameIds.put(frameInfo, frame);
+    }
+    return frame;
+  }
+
+  interface NodeVisitor {
+    void enter(int node);
+
+    void exit(int node);
+  }
+
+  /**
+   * Depth-first traversal of all nodes except the root. It is not recursive: recursive calls may make the tree thousands of levels deep.
+   */
+  void traverse(NodeVisitor visitor) {
+    int node = firstChildren[ROOT];
+    while (node != NONE) {
+      visitor.enter(node);
+      if (firstChildren[node] != NONE) {
+        node = firstChildren[node];
+        continue;
+      }
+
+      while (true) {
+        visitor.exit(node);
+        if (nextSiblings[node] != NONE) {
+          node = nextSiblings[node];
+          break;
+        }
+        node = parents[node];
+        if (node == ROOT) {
+          node = NONE;
+          break;
+        }
+      }
+    }
   }
 
-  private static Map<FrameInfo, Long> filterMap(Map<FrameInfo, Long> first, Set<FrameInfo> callerNames) {
-    first.keySet().retainAll(callerNames);
-    return first;
+  /**
+   * Adds <code>time</code> to the total time of the child node, the node is created if needed.
+   * Self times must be updated by {@link #updateSelfTimes()} when the tree is built this way.
+   *
+   * @return child node
+   */
+  int addTime(int parent, FrameInfo frameInfo, long time) {
+    final int node = getOrCreateChild(parent, getFrameId(frameInfo));
+    totalTimes[node] += time;
+    return node;
+  }
+
+  /**
+   * Self time of each node is its total time minus total time of its children.
+   */
+  void updateSelfTimes() {
+    System.arraycopy(totalTimes, 0, selfTimes, 0, size);
+    for (int node = size - 1; node > ROOT; node--) {
+      selfTimes[parents[node]] -= totalTimes[node];
+    }
   }
 
-  private static Set<FrameInfo> getNamesOfNodes(Collection<CallTreeNode> nodes) {
-    THashSet<FrameInfo> names = new THashSet<>();
-    for (CallTreeNode node : nodes) {
-      names.add(node.getFrameInfo());
+  private int getOrCreateChild(int parent, int frame) {
+    final long key = (long)parent << 32 | frame;
+    final int child = children.get(key);
+    if (child != ROOT) {
+      return child;
+    }
+
+    final int node = addNode(parent, frame);
+    children.put(key, node);
+    return node;
+  }
+
+  private int addNode(int parent, int frame) {
+    if (size == parents.length) {
+      final int capacity = size + (size >> 1);
+      parents = Arrays.copyOf(parents, capacity);
+      nodeFrames = Arrays.copyOf(nodeFrames, capacity);
+      selfTimes = Arrays.copyOf(selfTimes, capacity);
+      totalTimes = Arrays.copyOf(totalTimes, capacity);
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+    }
+
+    final int node = size++;
+    parents[node] = parent;
+    nodeFrames[node] = frame;
+    firstChildren[node] = NONE;
+    nextSiblings[node] = parent == NONE ? NONE : firstChildren[parent];
+    if (parent != NONE) {
+      firstChildren[parent] = node;
     }
-    return names;
+    return node;
   }
 }
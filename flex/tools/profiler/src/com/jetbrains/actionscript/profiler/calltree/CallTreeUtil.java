@@ -1,26 +1,37 @@
 package com.jetbrains.actionscript.profiler.calltree;
 
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+
 /**
  * @author: Fedor.Korotkov
  */
 public class CallTreeUtil {
+  /*
+   * System frames are removed, their callees are merged into their callers.
+   */
   public static CallTree filterSystemStuff(CallTree tree) {
-    return new CallTree(filterSystemStuffImpl(tree.getRoot()));
-  }
-
-  private static CallTreeNode filterSystemStuffImpl(CallTreeNode node) {
-    CallTreeNode result = new CallTreeNode(node.getFrameInfo(), node.getCumulativeTiming());
+    final CallTree result = new CallTree();
+    final boolean[] systemFrames = new boolean[tree.getFrameCount()];
+    for (int frame = 0; frame < systemFrames.length; frame++) {
+      systemFrames[frame] = tree.getFrameInfo(frame).isSystem();
+    }
 
-    for (CallTreeNode child : node.getChildren()) {
-      CallTreeNode newChild = filterSystemStuffImpl(child);
-      if (newChild.getFrameInfo().isSystem()) {
-        result.addChildrenRecursive(newChild.getChildren());
+    // parents are always before children, so parent's node in the result is known when a child is visited
+    final int[] resultNodes = new int[tree.getSize()];
+    resultNodes[CallTree.ROOT] = CallTree.ROOT;
+    for (int node = CallTree.ROOT + 1; node < resultNodes.length; node++) {
+      final int resultParent = resultNodes[tree.getParent(node)];
+      final int frame = tree.getFrame(node);
+      if (systemFrames[frame]) {
+        resultNodes[node] = resultParent;
       }
       else {
-        result.addChildRecursive(newChild);
+        final FrameInfo frameInfo = tree.getFrameInfo(frame);
+        resultNodes[node] = result.addTime(resultParent, frameInfo, tree.getTotalTime(node));
       }
     }
 
+    result.updateSelfTimes();
     return result;
   }
 }
@@ -1,33 +1,54 @@
 package com.jetbrains.actionscript.profiler.calltree;
 
-import com.intellij.util.ArrayUtil;
 import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
 
-import java.util.ArrayList;
-import java.util.List;
-
 class CalleeFinder {
   private CalleeFinder() {
   }
 
   /*
-  * Find nodes with <code>frameName == frames[0]</code>. Node's call stack contains all <code>frames</code> in order.
+  * Find children of nodes with <code>frameName == frames[0]</code>. Node's call stack contains all <code>frames</code> in order.
+  *
+  * @return <code>true</code> for found nodes
   */
-  static List<CallTreeNode> findCallsByFrameName(CallTreeNode root, FrameInfo[] frames) {
-    ArrayList<CallTreeNode> result = new ArrayList<>();
-    fillCallsByFrameName(root, ArrayUtil.reverseArray(frames), result);
+  static boolean[] findCallsByFrameName(CallTree tree, FrameInfo[] frames) {
+    final boolean[] ends = findCallChainEnds(tree, frames);
+    final boolean[] result = new boolean[tree.getSize()];
+    for (int node = CallTree.ROOT + 1; node < result.length; node++) {
+      result[node] = ends[tree.getParent(node)];
+    }
     return result;
   }
 
-  private static void fillCallsByFrameName(CallTreeNode node,
-                                           FrameInfo[] frames,
-                                           List<CallTreeNode> result) {
-    final CallTreeNode deepChild = node.getChildDeep(frames);
-    if (deepChild != null) {
-      result.addAll(deepChild.getChildren());
+  /*
+  * Find nodes that end a call chain of <code>frames</code>: the node has frame <code>frames[0]</code>, its parent has frame
+  * <code>frames[1]</code> and so on. Root ends empty chain.
+  */
+  static boolean[] findCallChainEnds(CallTree tree, FrameInfo[] frames) {
+    final boolean[] result = new boolean[tree.getSize()];
+    final int[] frameIds = new int[frames.length];
+    for (int i = 0; i < frames.length; i++) {
+      frameIds[i] = tree.findFrameId(frames[i]);
+      if (frameIds[i] == CallTree.NONE) {
+        return result;
+      }
     }
-    for (CallTreeNode child : node.getChildren()) {
-      fillCallsByFrameName(child, frames, result);
+
+    for (int node = frames.length == 0 ? CallTree.ROOT : CallTree.ROOT + 1; node < result.length; node++) {
+      result[node] = matchesCallChain(tree, node, frameIds);
+    }
+    return result;
+  }
+
+  private static boolean matchesCallChain(CallTree tree, int node, int[] frameIds) {
+    int current = node;
+    for (int frame : frameIds) {
+      // root has no frame and doesn't match
+      if (current == CallTree.ROOT || tree.getFrame(current) != frame) {
+        return false;
+      }
+      current = tree.getParent(current);
     }
+    return true;
   }
 }
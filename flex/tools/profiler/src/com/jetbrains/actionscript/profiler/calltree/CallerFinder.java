@@ -1,11 +1,7 @@
 package com.jetbrains.actionscript.profiler.calltree;
 
-import com.intellij.util.ArrayUtil;
 import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
 
-import java.util.ArrayList;
-import java.util.List;
-
 class CallerFinder {
   private CallerFinder() {
   }
@@ -20,37 +16,46 @@ class CallerFinder {
   * <code>frames = [baz, bar]</code>
   *
   * Method return only <code>foo</code>.
+  *
+  * @return <code>true</code> for found nodes
   */
-  static List<CallTreeNode> findCallsByFrames(CallTreeNode root, FrameInfo[] frames) {
-    List<CallTreeNode> calls = new ArrayList<>();
+  static boolean[] findCallsByFrames(final CallTree tree, FrameInfo[] frames) {
+    final boolean[] result = new boolean[tree.getSize()];
     if (frames.length == 0) {
-      return calls;
+      return result;
     }
-    frames = ArrayUtil.reverseArray(frames);
-    for (CallTreeNode node : root.getChildren()) {
-      fillCallsByFrames(node, calls, frames, new ArrayList<>());
+
+    // nodes that have a chain of children with frames in reverse order, i.e. parents of the chains ending in frames[0]
+    final boolean[] chainEnds = CalleeFinder.findCallChainEnds(tree, frames);
+    final boolean[] hasCallChain = new boolean[tree.getSize()];
+    for (int node = CallTree.ROOT + 1; node < chainEnds.length; node++) {
+      if (chainEnds[node]) {
+        int chainStart = node;
+        for (int i = 1; i < frames.length; i++) {
+          chainStart = tree.getParent(chainStart);
+        }
+        hasCallChain[tree.getParent(chainStart)] = true;
+      }
     }
-    return calls;
-  }
 
-  private static void fillCallsByFrames(CallTreeNode currentNode,
-                                        List<CallTreeNode> result,
-                                        FrameInfo[] frames,
-                                        List<FrameInfo> callChainAddedFrames) {
     //we need only the nearest node to the root
-    //we have <code>callChainAddedFrames<code>
-    boolean needAdd = !callChainAddedFrames.contains(currentNode.getFrameInfo()) && currentNode.getChildDeep(frames) != null;
-    if (needAdd) {
-      result.add(currentNode);
-      callChainAddedFrames.add(currentNode.getFrameInfo());
-    }
+    final int[] addedCalls = new int[tree.getFrameCount()];
+    tree.traverse(new CallTree.NodeVisitor() {
+      @Override
+      public void enter(int node) {
+        if (hasCallChain[node] && addedCalls[tree.getFrame(node)] == 0) {
+          result[node] = true;
+          addedCalls[tree.getFrame(node)]++;
+        }
+      }
 
-    for (CallTreeNode childCall : currentNode.getChildren()) {
-      fillCallsByFrames(childCall, result, frames, callChainAddedFrames);
-    }
-    if (needAdd) {
-      //pop
-      callChainAddedFrames.remove(callChainAddedFrames.size() - 1);
-    }
+      @Override
+      public void exit(int node) {
+        if (result[node]) {
+          addedCalls[tree.getFrame(node)]--;
+        }
+      }
+    });
+    return result;
   }
 }
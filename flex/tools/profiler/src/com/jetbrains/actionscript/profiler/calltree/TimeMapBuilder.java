@@ -3,9 +3,8 @@ package com.jetbrains.actionscript.profiler.calltree;
 import com.intellij.openapi.util.Pair;
 import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
 import gnu.trove.THashMap;
-import gnu.trove.THashSet;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
 import java.util.Map;
 
 class TimeMapBuilder {
@@ -13,49 +12,55 @@ class TimeMapBuilder {
   }
 
   /*
+  * Times are summed up for <code>trackedCalls</code> and all nodes below them.
+  * A recursive call is counted in cumulative time only once: only the nearest to the root tracked node with the same frame is counted.
+  *
+  * @param frameFilter if not null then only frames with <code>true</code> are included in the result
   * @return pair <cumulative time map, self time map>
   */
-  static Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> buildTimeMaps(CallTreeNode root, List<CallTreeNode> calls) {
-    Map<FrameInfo, Long> countMap = new THashMap<>();
-    Map<FrameInfo, Long> selfCountMap = new THashMap<>();
-    THashSet<CallTreeNode> trackedCalls = new THashSet<>(calls);
+  static Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> buildTimeMaps(final CallTree tree,
+                                                                         final boolean[] trackedCalls,
+                                                                         @Nullable boolean[] frameFilter) {
+    final int frameCount = tree.getFrameCount();
+    final long[] counts = new long[frameCount];
+    final long[] selfCounts = new long[frameCount];
+    final boolean[] found = new boolean[frameCount];
+    // number of tracked nodes with the frame on the path from the root to the current node
+    final int[] activeCalls = new int[frameCount];
+    final boolean[] tracking = new boolean[tree.getSize()];
 
-    for (CallTreeNode node : root.getChildren()) {
-      fillTimeMaps(node, countMap, selfCountMap, trackedCalls.contains(node), trackedCalls);
-    }
-    return Pair.create(countMap, selfCountMap);
-  }
+    tree.traverse(new CallTree.NodeVisitor() {
+      @Override
+      public void enter(int node) {
+        final int parent = tree.getParent(node);
+        tracking[node] = trackedCalls[node] || tracking[parent];
+        if (!tracking[node]) return;
 
-  private static void fillTimeMaps(CallTreeNode node,
-                                   Map<FrameInfo, Long> countMap,
-                                   Map<FrameInfo, Long> selfCountMap,
-                                   boolean tracking,
-                                   THashSet<CallTreeNode> trackedCalls) {
-    if (tracking) {
-      updateSelfTime(node, selfCountMap);
-    }
+        final int frame = tree.getFrame(node);
+        found[frame] = true;
+        selfCounts[frame] += tree.getSelfTime(node);
+        if (activeCalls[frame]++ == 0) {
+          counts[frame] += tree.getTotalTime(node);
+        }
+      }
 
-    //save value before subcalls
-    Long countBefore = countMap.get(node.getFrameInfo());
-    if (countBefore == null) {
-      countBefore = 0L;
-    }
-    for (CallTreeNode child : node.getChildren()) {
-      fillTimeMaps(child, countMap, selfCountMap, tracking || trackedCalls.contains(child), trackedCalls);
-    }
-    if (tracking) {
-      //rewrite values that were added in subcalls.
-      //cause of that we get value only of the nearest node to the root
-      countMap.put(node.getFrameInfo(), countBefore + node.getCumulativeTiming());
-    }
-  }
+      @Override
+      public void exit(int node) {
+        if (tracking[node]) {
+          activeCalls[tree.getFrame(node)]--;
+        }
+      }
+    });
 
-  private static void updateSelfTime(CallTreeNode node, Map<FrameInfo, Long> selfCountMap) {
-    long currentSelfTime = node.getCumulativeTiming() - node.calcSelfTiming();
-    Long selfTime = selfCountMap.get(node.getFrameInfo());
-    if (selfTime == null) {
-      selfTime = 0L;
+    final Map<FrameInfo, Long> countMap = new THashMap<>();
+    final Map<FrameInfo, Long> selfCountMap = new THashMap<>();
+    for (int frame = 0; frame < frameCount; frame++) {
+      if (found[frame] && (frameFilter == null || frameFilter[frame])) {
+        final FrameInfo frameInfo = tree.getFrameInfo(frame);
+        countMap.put(frameInfo, counts[frame]);
+        selfCountMap.put(frameInfo, selfCounts[frame]);
+      }
     }
-    selfCountMap.put(node.getFrameInfo(), selfTime + currentSelfTime);
+    return Pair.create(countMap, selfCountMap);
   }
 }
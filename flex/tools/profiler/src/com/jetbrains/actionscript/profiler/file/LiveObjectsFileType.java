@@ -39,7 +39,7 @@ public class LiveObjectsFileType implements FileType {
 
   @Override
   public boolean isBinary() {
-    return false;
+    return true;
   }
 
   @Override
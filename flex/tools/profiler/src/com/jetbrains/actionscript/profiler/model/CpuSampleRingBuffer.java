@@ -0,0 +1,138 @@
+package com.jetbrains.actionscript.profiler.model;
+
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded single-producer single-consumer queue of CPU samples between the thread reading agent packets and the thread writing
+ * them to the snapshot. Slots and their frame arrays are preallocated and reused. The producer blocks when the buffer is full,
+ * so a consumer that can't keep up slows down reading from the socket instead of dropping samples or growing the heap.
+ */
+final class CpuSampleRingBuffer {
+  interface Consumer {
+    void consume(long duration, FrameInfo[] frames, int frameCount);
+  }
+
+  private final int mask;
+  private final long[] durations;
+  private final FrameInfo[][] frames;
+  private final int[] frameCounts;
+
+  // next slot to publish, written by the producer only
+  private volatile long head;
+  // next slot to consume, written by the consumer only
+  private volatile long tail;
+
+  private final Object lock = new Object();
+  private volatile boolean producerWaiting;
+  private volatile boolean consumerWaiting;
+  private volatile boolean closed;
+
+  /**
+   * @param capacity power of two
+   */
+  CpuSampleRingBuffer(int capacity) {
+    assert Integer.bitCount(capacity) == 1 : capacity;
+    mask = capacity - 1;
+    durations = new long[capacity];
+    frames = new FrameInfo[capacity][];
+    frameCounts = new int[capacity];
+    for (int i = 0; i < capacity; i++) {
+      frames[i] = new FrameInfo[32];
+    }
+  }
+
+  /**
+   * Copies the sample to the buffer, waits while the buffer is full. Does nothing after {@link #close()}.
+   */
+  void put(long duration, FrameInfo[] sampleFrames, int frameCount) throws InterruptedException {
+    final long h = head;
+    if (h - tail > mask) {
+      waitForConsumer(() -> h - tail <= mask);
+    }
+    if (closed) return;
+
+    final int slot = (int)h & mask;
+    if (frames[slot].length < frameCount) {
+      frames[slot] = new FrameInfo[Math.max(frameCount, frames[slot].length * 2)];
+    }
+    System.arraycopy(sampleFrames, 0, frames[slot], 0, frameCount);
+    durations[slot] = duration;
+    frameCounts[slot] = frameCount;
+    head = h + 1;
+
+    if (consumerWaiting) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Waits until all published samples are consumed.
+   */
+  void awaitEmpty() throws InterruptedException {
+    if (tail != head) {
+      waitForConsumer(() -> tail == head);
+    }
+  }
+
+  /**
+   * Waits for samples and passes all available ones to <code>consumer</code>.
+   *
+   * @return <code>false</code> if the buffer is closed
+   */
+  boolean consume(Consumer consumer) throws InterruptedException {
+    long t = tail;
+    if (t == head) {
+      synchronized (lock) {
+        consumerWaiting = true;
+        try {
+          while (tail == head && !closed) {
+            lock.wait();
+          }
+        }
+        finally {
+          consumerWaiting = false;
+        }
+      }
+    }
+    if (closed) return false;
+
+    final long h = head;
+    for (; t < h; t++) {
+      final int slot = (int)t & mask;
+      consumer.consume(durations[slot], frames[slot], frameCounts[slot]);
+    }
+    tail = h;
+
+    if (producerWaiting) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+    return true;
+  }
+
+  void close() {
+    closed = true;
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+  }
+
+  private void waitForConsumer(BooleanSupplier condition) throws InterruptedException {
+    synchronized (lock) {
+      producerWaiting = true;
+      try {
+        while (!condition.getAsBoolean() && !closed) {
+          lock.wait();
+        }
+      }
+      finally {
+        producerWaiting = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.jetbrains.actionscript.profiler.model;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+
+/**
+ * Agent packet written with <code>Socket.writeUTF()</code>. Unlike {@link DataInputStream#readUTF()} it is decoded into buffers
+ * reused for every packet, so sample packets are parsed without creating strings; a string is made only for text that is kept,
+ * e.g. a frame or a class name seen for the first time.
+ */
+final class Packet implements CharSequence {
+  private byte[] bytes = new byte[1024];
+  private char[] chars = new char[1024];
+  private int length;
+
+  void read(DataInputStream in) throws IOException {
+    final int byteCount = in.readUnsignedShort();
+    if (bytes.length < byteCount) {
+      bytes = new byte[Math.max(byteCount, bytes.length * 2)];
+      chars = new char[bytes.length];
+    }
+    in.readFully(bytes, 0, byteCount);
+
+    // modified UTF-8, see DataInput
+    int charCount = 0;
+    for (int i = 0; i < byteCount; ) {
+      final int b = bytes[i] & 0xFF;
+      if (b < 0x80) {
+        chars[charCount++] = (char)b;
+        i++;
+      }
+      else if ((b & 0xE0) == 0xC0 && i + 1 < byteCount) {
+        chars[charCount++] = (char)((b & 0x1F) << 6 | bytes[i + 1] & 0x3F);
+        i += 2;
+      }
+      else if ((b & 0xF0) == 0xE0 && i + 2 < byteCount) {
+        chars[charCount++] = (char)((b & 0x0F) << 12 | (bytes[i + 1] & 0x3F) << 6 | bytes[i + 2] & 0x3F);
+        i += 3;
+      }
+      else {
+        throw new UTFDataFormatException("malformed input around byte " + i);
+      }
+    }
+    length = charCount;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index >= length) {
+      throw new StringIndexOutOfBoundsException(index);
+    }
+    return chars[index];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return substring(start, end);
+  }
+
+  String substring(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new StringIndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+    }
+    return new String(chars, start, end - start);
+  }
+
+  boolean startsWith(String prefix) {
+    if (prefix.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (chars[i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return index of <code>c</code> or -1
+   */
+  int indexOf(char c, int fromIndex) {
+    for (int i = fromIndex; i < length; i++) {
+      if (chars[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  int parseInt(int start, int end) {
+    final long value = parseLong(start, end);
+    if (value != (int)value) {
+      throw new NumberFormatException(substring(start, end));
+    }
+    return (int)value;
+  }
+
+  long parseLong(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new NumberFormatException("[" + start + ", " + end + ") of " + this);
+    }
+    final boolean negative = start < end && chars[start] == '-';
+    int i = negative ? start + 1 : start;
+    if (i == end) {
+      throw new NumberFormatException(substring(start, end));
+    }
+    long value = 0;
+    for (; i < end; i++) {
+      final int digit = chars[i] - '0';
+      if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+        throw new NumberFormatException(substring(start, end));
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  @Override
+  public String toString() {
+    return new String(chars, 0, length);
+  }
+}
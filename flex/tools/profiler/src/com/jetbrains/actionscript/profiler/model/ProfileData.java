@@ -1,54 +1,112 @@
 package com.jetbrains.actionscript.profiler.model;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Key;
-import com.jetbrains.actionscript.profiler.calltree.CallTree;
+import com.intellij.openapi.util.io.FileUtil;
 import com.jetbrains.actionscript.profiler.livetable.LiveModelController;
 import com.jetbrains.actionscript.profiler.sampler.CreateObjectSample;
-import com.jetbrains.actionscript.profiler.sampler.Sample;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import com.jetbrains.actionscript.profiler.snapshot.CpuSnapshot;
+import com.jetbrains.actionscript.profiler.snapshot.LiveObjects;
+import com.jetbrains.actionscript.profiler.snapshot.SnapshotWriter;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
 
 /**
+ * Profiling session data is written to a snapshot file as it arrives instead of being kept in memory.
+ *
  * @author: Fedor.Korotkov
  */
 public class ProfileData {
-  public static final Key<CallTree> CALL_TREE_KEY = Key.create("ASCallTree");
+  private static final Logger LOG = Logger.getInstance(ProfileData.class.getName());
+
+  public static final Key<CpuSnapshot> CPU_SNAPSHOT_KEY = Key.create("ASCpuSnapshot");
   public static final Key<LiveModelController> CONTROLLER = Key.create("ASLiveController");
   public static final Key<ProfilingManager> PROFILING_MANAGER = Key.create("ASProfilingManager");
 
-  private CallTree callTree = new CallTree();
-  private final Map<Integer, CreateObjectSample> objects = new HashMap<>();
-  private final Map<Integer, Set<Integer>> references = new LinkedHashMap<>(50);
+  private final SnapshotWriter writer;
+  private volatile long cpuDataStart;
+  private volatile boolean writeFailed;
+
+  public ProfileData() throws IOException {
+    writer = new SnapshotWriter(FileUtil.createTempFile("flex-profiler", ".snapshot", true));
+    cpuDataStart = writer.mark();
+  }
 
-  public CallTree getCallTree() {
-    return callTree;
+  /**
+   * @return CPU samples collected since the last {@link #clearPerformance()}
+   */
+  public CpuSnapshot getCpuSnapshot() throws IOException {
+    return new CpuSnapshot(writer.getFile(), cpuDataStart, writer.mark());
   }
 
-  public Map<Integer, Set<Integer>> getReferences() {
-    return references;
+  /**
+   * @return objects created and not deleted so far
+   */
+  public LiveObjects loadLiveObjects() throws IOException {
+    return LiveObjects.load(writer.getFile(), writer.mark());
   }
 
-  public void putNewObject(int id, CreateObjectSample sample) {
-    objects.put(id, sample);
+  public void putNewObject(CreateObjectSample sample) {
+    try {
+      writer.writeObjectCreated(sample);
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
   }
 
-  public CreateObjectSample removeObject(int id) {
-    return objects.remove(id);
+  public void removeObject(int id) {
+    try {
+      writer.writeObjectDeleted(id);
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
   }
 
-  public void addPerformanceSample(Sample sample) {
-    callTree.addFrames(sample.frames, sample.duration);
+  public void addReference(int id, int referencedId) {
+    try {
+      writer.writeReference(id, referencedId);
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
   }
 
-  public void clearMemory() {
-    objects.clear();
-    references.clear();
+  public void addPerformanceSample(long duration, FrameInfo[] frames, int frameCount) {
+    try {
+      writer.writeCpuSample(duration, frames, frameCount);
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
   }
 
   public void clearPerformance() {
-    callTree = new CallTree();
+    try {
+      cpuDataStart = writer.mark();
+    }
+    catch (IOException e) {
+      writeFailed(e);
+    }
+  }
+
+  public void dispose() {
+    try {
+      writer.close();
+    }
+    catch (IOException e) {
+      LOG.warn(e);
+    }
+    FileUtil.delete(writer.getFile());
+  }
+
+  private void writeFailed(IOException e) {
+    // the agent keeps sending samples, report the problem once
+    if (!writeFailed) {
+      writeFailed = true;
+      LOG.warn("Failed to write profiler snapshot " + writer.getFile(), e);
+    }
   }
 }
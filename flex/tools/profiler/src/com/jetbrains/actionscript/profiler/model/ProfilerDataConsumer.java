@@ -1,20 +1,36 @@
 package com.jetbrains.actionscript.profiler.model;
 
-import com.jetbrains.actionscript.profiler.sampler.CreateObjectSample;
-import com.jetbrains.actionscript.profiler.sampler.DeleteObjectSample;
-import com.jetbrains.actionscript.profiler.sampler.ObjectSampleHandler;
-import com.jetbrains.actionscript.profiler.sampler.Sample;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.jetbrains.actionscript.profiler.sampler.*;
+import com.jetbrains.actionscript.profiler.snapshot.CpuSnapshot;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.io.IOException;
 
 public class ProfilerDataConsumer {
-  private final ProfileData profileData = new ProfileData();
+  private static final Logger LOG = Logger.getInstance(ProfilerDataConsumer.class.getName());
+  private static final int CPU_SAMPLE_BUFFER_SIZE = 16 * 1024;
+
+  private final ProfileData profileData;
   @Nullable private final ObjectSampleHandler objectSampleHandler;
 
-  public ProfilerDataConsumer(@Nullable ObjectSampleHandler objectSampleHandler) {
+  // CPU samples are written to the snapshot on a separate thread so that reading from the agent doesn't wait for disk
+  private final CpuSampleRingBuffer cpuSamples = new CpuSampleRingBuffer(CPU_SAMPLE_BUFFER_SIZE);
+
+  public ProfilerDataConsumer(@Nullable ObjectSampleHandler objectSampleHandler) throws IOException {
     this.objectSampleHandler = objectSampleHandler;
+    profileData = new ProfileData();
+
+    final CpuSampleRingBuffer.Consumer sampleWriter = profileData::addPerformanceSample;
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        while (cpuSamples.consume(sampleWriter)) {
+        }
+      }
+      catch (InterruptedException ignored) {
+      }
+    });
   }
 
   public ProfileData getProfileData() {
@@ -24,7 +40,7 @@ public class ProfilerDataConsumer {
   public void process(Sample sample) {
     if (sample instanceof CreateObjectSample) {
       final CreateObjectSample createObjectSample = (CreateObjectSample)sample;
-      profileData.putNewObject(createObjectSample.id, createObjectSample);
+      profileData.putNewObject(createObjectSample);
 
       if (objectSampleHandler != null) {
         objectSampleHandler.processCreateSample(createObjectSample);
@@ -40,20 +56,51 @@ public class ProfilerDataConsumer {
       }
     }
     else {
-      profileData.addPerformanceSample(sample);
+      processCpuSample(sample.duration, sample.frames, sample.frames.length);
     }
   }
 
-  public void referenced(int pid, int id) {
-    Set<Integer> integers = profileData.getReferences().get(pid);
-    if (integers == null) {
-      integers = new LinkedHashSet<>(3);
-      profileData.getReferences().put(pid, integers);
+  /**
+   * Frames are copied, so <code>frames</code> may be reused by the caller.
+   */
+  public void processCpuSample(long duration, FrameInfo[] frames, int frameCount) {
+    try {
+      cpuSamples.put(duration, frames, frameCount);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
-    integers.add(id);
+  }
+
+  public void referenced(int pid, int id) {
+    profileData.addReference(pid, id);
   }
 
   public void resetCpuUsageData() {
+    flushCpuSamples();
     profileData.clearPerformance();
   }
+
+  /**
+   * @return CPU samples received since the last {@link #resetCpuUsageData()}
+   */
+  public CpuSnapshot getCpuSnapshot() throws IOException {
+    flushCpuSamples();
+    return profileData.getCpuSnapshot();
+  }
+
+  public void dispose() {
+    cpuSamples.close();
+    profileData.dispose();
+  }
+
+  private void flushCpuSamples() {
+    try {
+      cpuSamples.awaitEmpty();
+    }
+    catch (InterruptedException e) {
+      LOG.warn(e);
+      Thread.currentThread().interrupt();
+    }
+  }
 }
@@ -11,9 +11,7 @@ import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.*;
 
 /**
  * User: Maxim
@@ -28,6 +26,9 @@ public class ProfilingConnection {
   private DataInputStream myInputStream;
   private PacketProcessor myCurrentPacketProcessor;
   private final Map<String, PacketProcessor> myInitialString2ProcessorsMap = new HashMap<>();
+  // markers of myInitialString2ProcessorsMap, matched as packet prefixes
+  private final String[] myMarkers;
+  private final PacketProcessor[] myMarkerProcessors;
   private final Callback myIoHandler;
   private final int myPort;
   private static final int ourAgentVersion = 4;
@@ -78,6 +79,12 @@ public class ProfilingConnection {
     );
 
     myIoHandler = ioHandler;
+
+    myMarkers = myInitialString2ProcessorsMap.keySet().toArray(new String[0]);
+    myMarkerProcessors = new PacketProcessor[myMarkers.length];
+    for (int i = 0; i < myMarkers.length; i++) {
+      myMarkerProcessors[i] = myInitialString2ProcessorsMap.get(myMarkers[i]);
+    }
   }
 
   void connect() {
@@ -106,39 +113,10 @@ public class ProfilingConnection {
     }
 
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
-      int bytesRead = 0;
       try {
-        while (true) {
-          String x = myInputStream.readUTF();
-          if (x == null) break;
-          LOG.debug(x);
-          bytesRead += x.length();
-          try {
-            if (myCurrentPacketProcessor == null) {
-              String marker = x;
-              int i = x.indexOf('\0');
-              if (i != -1) marker = x.substring(0, i + 1);
-              myCurrentPacketProcessor = myInitialString2ProcessorsMap.get(marker);
-              if (myCurrentPacketProcessor != null) {
-                myCurrentPacketProcessor.startingPacket(x);
-              }
-            }
-            if (myCurrentPacketProcessor != null) {
-              PacketProcessor.ProcessingResult processingResult = myCurrentPacketProcessor.process(x);
-              if (processingResult == PacketProcessor.ProcessingResult.FINISHED) myCurrentPacketProcessor = null;
-              if (processingResult == PacketProcessor.ProcessingResult.STOP) return;
-            }
-            else {
-              LOG.warn("No processing:" + x);
-            }
-          }
-          catch (Exception e) {
-            LOG.error(e);
-          }
-        }
+        readPackets(myInputStream);
       }
       catch (IOException ex) {
-        LOG.debug("Bytes read:" + bytesRead);
         myIoHandler.finished(null, ex);
       }
       catch (Throwable t) {
@@ -147,6 +125,57 @@ public class ProfilingConnection {
     });
   }
 
+  /**
+   * Processes agent packets until the stream is closed or a processor stops processing.
+   */
+  void readPackets(DataInputStream input) throws IOException {
+    final Packet packet = new Packet();
+    long charsRead = 0;
+    try {
+      while (true) {
+        packet.read(input);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(packet.toString());
+        }
+        charsRead += packet.length();
+        try {
+          if (myCurrentPacketProcessor == null) {
+            myCurrentPacketProcessor = findProcessor(packet);
+            if (myCurrentPacketProcessor != null) {
+              myCurrentPacketProcessor.startingPacket(packet);
+            }
+          }
+          if (myCurrentPacketProcessor != null) {
+            PacketProcessor.ProcessingResult processingResult = myCurrentPacketProcessor.process(packet);
+            if (processingResult == PacketProcessor.ProcessingResult.FINISHED) myCurrentPacketProcessor = null;
+            if (processingResult == PacketProcessor.ProcessingResult.STOP) return;
+          }
+          else {
+            LOG.warn("No processing:" + packet);
+          }
+        }
+        catch (Exception e) {
+          LOG.error(e);
+        }
+      }
+    }
+    catch (IOException ex) {
+      LOG.debug("Chars read:" + charsRead);
+      throw ex;
+    }
+  }
+
+  @Nullable
+  private PacketProcessor findProcessor(Packet packet) {
+    // every marker ends with '\0', so a prefix match is the same as matching the packet text up to the first '\0'
+    for (int i = 0; i < myMarkers.length; i++) {
+      if (packet.startsWith(myMarkers[i])) {
+        return myMarkerProcessors[i];
+      }
+    }
+    return null;
+  }
+
   private void ensurePolicyServedEvenOnFlashSecurityPort() {
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
       try {
@@ -239,10 +268,10 @@ public class ProfilingConnection {
       CONTINUE, FINISHED, STOP
     }
 
-    void startingPacket(String output) {
+    void startingPacket(Packet packet) {
     }
 
-    abstract ProcessingResult process(String output) throws IOException;
+    abstract ProcessingResult process(Packet packet) throws IOException;
   }
 
   class PolicyFileRequestProcessor extends PacketProcessor {
@@ -254,7 +283,7 @@ public class ProfilingConnection {
     }
 
     @Override
-    ProcessingResult process(String output) throws IOException {
+    ProcessingResult process(Packet packet) throws IOException {
       String s = policyFileRequestAnswer(myPort);
       synchronized (myOutputStream) {
         LOG.debug("policy served");     // TODO merge with FlexUnit code
@@ -279,22 +308,35 @@ public class ProfilingConnection {
     private static final String SAMPLE_MARKER = "s\0";
     private static final String CREATE_OBJECT_SAMPLE_MARKER = "c\0";
     private static final String DELETE_OBJECT_SAMPLE_MARKER = "d\0";
+    private static final String UNCHANGED_FRAMES_MARKER = "u>:";
+
+    private static final int CPU_SAMPLE = 0;
+    private static final int CREATE_OBJECT_SAMPLE = 1;
+    private static final int DELETE_OBJECT_SAMPLE = 2;
 
     private final ProfilerDataConsumer mySampleProcessor;
 
     private long sampleDuration = -1;
     private int frameIndex;
-
-    private final Map<String, String> dictionary = new HashMap<>(1000);
-    private final Map<String, String> typeDictionary = new HashMap<>(1000);
+    private int frameCount;
+    private int sampleType;
+    private int objectId;
+    private String objectType;
+    private int objectSize;
+
+    // frame with id N sent by the agent is at N - 1
+    private final List<FrameInfo> dictionary = new ArrayList<>(1000);
+    // type with id N sent by the agent is at N
+    private final List<String> typeDictionary = new ArrayList<>(1000);
     private FrameInfo[] frames;
-    private String type;
-    private String specialArgs;
     static final int INDEX = SAMPLE_MARKER.length();
     private int cpuSamples;
     private int memorySamples;
-    private Sample lastCpuSample;
-    private Sample lastCreateObjectSample;
+    // CPU samples are handed over by copying, so two buffers are enough: the current sample and the previous one
+    private FrameInfo[] cpuFrames = new FrameInfo[64];
+    private FrameInfo[] lastCpuFrames = new FrameInfo[64];
+    private int lastCpuFrameCount;
+    private FrameInfo[] lastCreateObjectFrames;
     private final FrameInfoBuilder frameInfoBuilder = new FrameInfoBuilder();
 
     public BatchSamplesProcessor(ProfilerDataConsumer sampleProcessor) {
@@ -302,53 +344,58 @@ public class ProfilingConnection {
     }
 
     @Override
-    ProcessingResult process(String output) throws IOException {
+    ProcessingResult process(Packet output) throws IOException {
       if (frameIndex == -1) {
         if (output.startsWith(BATCH_MARKER)) return ProcessingResult.FINISHED;
 
-        int i = INDEX + 1; //output.indexOf(' ', INDEX);
         final boolean cpuSample = output.startsWith(SAMPLE_MARKER);
+        final boolean createObjectSample = !cpuSample && output.startsWith(CREATE_OBJECT_SAMPLE_MARKER);
+        if (cpuSample || createObjectSample || output.startsWith(DELETE_OBJECT_SAMPLE_MARKER)) {
+          int i = INDEX;
+          if (cpuSample) {
+            final int durationEnd = output.indexOf(' ', INDEX);
+            sampleDuration = output.parseLong(INDEX, durationEnd);
+            i = durationEnd + 1;
+          }
 
-        if (cpuSample) {
-          i = output.indexOf(' ', INDEX);
-          sampleDuration = Long.parseLong(output.substring(INDEX, i));
-          i += 2;
-        }
-
-        if (cpuSample ||
-            output.startsWith(CREATE_OBJECT_SAMPLE_MARKER) ||
-            output.startsWith(DELETE_OBJECT_SAMPLE_MARKER)) {
-          int i2 = output.indexOf(' ', i);
-          int frameCount = Integer.parseInt(output.substring(i - 1, i2 != -1 ? i2 : output.length()));
-          frames = frameCount > 0 ? new FrameInfo[frameCount] : FrameInfo.EMPTY_FRAME_INFO_ARRAY;
+          final int i2 = output.indexOf(' ', i);
+          frameCount = output.parseInt(i, i2 != -1 ? i2 : output.length());
+          if (cpuSample) {
+            sampleType = CPU_SAMPLE;
+            if (cpuFrames.length < frameCount) {
+              cpuFrames = new FrameInfo[Math.max(frameCount, cpuFrames.length * 2)];
+            }
+            frames = cpuFrames;
+          }
+          else {
+            sampleType = createObjectSample ? CREATE_OBJECT_SAMPLE : DELETE_OBJECT_SAMPLE;
+            // object samples are kept by the live objects view, so they get their own arrays
+            frames = frameCount > 0 ? new FrameInfo[frameCount] : FrameInfo.EMPTY_FRAME_INFO_ARRAY;
+            parseObjectArgs(output, i2 + 1);
+          }
           frameIndex = 0;
-          type = output;
-          specialArgs = i2 != -1 ? output.substring(i2 + 1) : "";
 
           return maybeFinishSample();
         }
       }
 
-      if (frames != null && frameIndex >= 0 && frameIndex < frames.length) {
-
-        char ch = output.charAt(0);
-        if (output.startsWith("u>:")) {
-          int count = Integer.parseInt(output.substring(output.indexOf(':') + 1));
-          Sample s =
-            type.startsWith(CREATE_OBJECT_SAMPLE_MARKER) ? lastCreateObjectSample : type.startsWith(SAMPLE_MARKER) ? lastCpuSample : null;
-          for (int i = s.frames.length - count; i < s.frames.length; ++i) {
-            frames[frameIndex++] = s.frames[i];
+      if (frames != null && frameIndex >= 0 && frameIndex < frameCount) {
+        if (output.startsWith(UNCHANGED_FRAMES_MARKER)) {
+          // outermost frames are the same as in the previous sample of this kind
+          final int count = output.parseInt(UNCHANGED_FRAMES_MARKER.length(), output.length());
+          final FrameInfo[] lastFrames = sampleType == CPU_SAMPLE ? lastCpuFrames : lastCreateObjectFrames;
+          final int lastFrameCount = sampleType == CPU_SAMPLE ? lastCpuFrameCount : lastCreateObjectFrames.length;
+          for (int i = lastFrameCount - count; i < lastFrameCount; ++i) {
+            frames[frameIndex++] = lastFrames[i];
           }
         }
+        else if (Character.isDigit(output.charAt(0))) {
+          frames[frameIndex++] = dictionary.get(output.parseInt(0, output.length()) - 1);
+        }
         else {
-          if (Character.isDigit(ch)) {
-            output = dictionary.get(output);
-          }
-          else {
-            dictionary.put("" + (dictionary.size() + 1), output);
-          }
-
-          frames[frameIndex++] = frameInfoBuilder.buildInstance(output);
+          final FrameInfo frame = frameInfoBuilder.buildInstance(output.toString());
+          dictionary.add(frame);
+          frames[frameIndex++] = frame;
         }
         return maybeFinishSample();
       }
@@ -358,70 +405,60 @@ public class ProfilingConnection {
       return ProcessingResult.FINISHED;
     }
 
+    private void parseObjectArgs(Packet output, int start) {
+      final int idEnd = output.indexOf(' ', start);
+      objectId = output.parseInt(start, idEnd);
+      int typeEnd = output.indexOf(' ', idEnd + 1);
+      if (typeEnd == -1) typeEnd = output.length();
+      objectType = getClassName(output, idEnd + 1, typeEnd);
+      objectSize = typeEnd != output.length() ? output.parseInt(typeEnd + 1, output.length()) : 0;
+    }
+
     private ProcessingResult maybeFinishSample() {
-      if (frameIndex == frames.length) {
-        Sample sample;
-        if (type.startsWith(CREATE_OBJECT_SAMPLE_MARKER)) {
-          ++memorySamples;
-          final int endIndex = specialArgs.indexOf(' ');
-          final int endIndex2 = specialArgs.indexOf(' ', endIndex + 1);
-
-          final int id = Integer.parseInt(specialArgs.substring(0, endIndex));
-          String className = specialArgs.substring(endIndex + 1, endIndex2);
-          className = getClassName(className);
-          final int size = Integer.parseInt(specialArgs.substring(endIndex2 + 1));
-          sample = new CreateObjectSample(
-            sampleDuration,
-            frames,
-            id,
-            className,
-            size
-          );
-          lastCreateObjectSample = sample;
-        }
-        else if (type.startsWith(DELETE_OBJECT_SAMPLE_MARKER)) {
-          ++memorySamples;
-          final int endIndex = specialArgs.indexOf(' ');
-          int endIndex2 = specialArgs.indexOf(' ', endIndex + 1);
-          if (endIndex2 == -1) endIndex2 = specialArgs.length();
-          final int id = Integer.parseInt(specialArgs.substring(0, endIndex));
-          String type = specialArgs.substring(endIndex + 1, endIndex2);
-          final int size = endIndex2 != specialArgs.length() ? Integer.parseInt(specialArgs.substring(endIndex2 + 1)) : 0;
-          if (type != null) {
-            type = getClassName(type);
-            mySampleProcessor.process(new DeleteObjectSample(sampleDuration, frames, id, type, size));
-          }
-          return ProcessingResult.FINISHED;
-        }
-        else {
-          ++cpuSamples;
-          sample = new Sample(sampleDuration, frames);
-          lastCpuSample = sample;
+      if (frameIndex < frameCount) {
+        return ProcessingResult.CONTINUE;
+      }
+
+      if (sampleType == CREATE_OBJECT_SAMPLE) {
+        ++memorySamples;
+        lastCreateObjectFrames = frames;
+        mySampleProcessor.process(new CreateObjectSample(sampleDuration, frames, objectId, objectType, objectSize));
+      }
+      else if (sampleType == DELETE_OBJECT_SAMPLE) {
+        ++memorySamples;
+        if (objectType != null) {
+          mySampleProcessor.process(new DeleteObjectSample(sampleDuration, frames, objectId, objectType, objectSize));
         }
-        mySampleProcessor.process(sample);
-        frameIndex = -1;
         return ProcessingResult.FINISHED;
       }
       else {
-        return ProcessingResult.CONTINUE;
+        ++cpuSamples;
+        mySampleProcessor.processCpuSample(sampleDuration, frames, frameCount);
+        cpuFrames = lastCpuFrames;
+        lastCpuFrames = frames;
+        lastCpuFrameCount = frameCount;
       }
+      frameIndex = -1;
+      return ProcessingResult.FINISHED;
     }
 
-    private String getClassName(String className) {
-      if (Character.isDigit(className.charAt(0))) {
-        className = typeDictionary.get(className);
+    @Nullable
+    private String getClassName(Packet output, int start, int end) {
+      if (Character.isDigit(output.charAt(start))) {
+        final int index = output.parseInt(start, end);
+        return index < typeDictionary.size() ? typeDictionary.get(index) : null;
       }
-      else {
-        className = className.replace("::", ".");
-        if (className.startsWith(CodeContext.AS3_VEC_VECTOR_QUALIFIED_NAME)) {
-          className = JSCommonTypeNames.VECTOR_CLASS_NAME + className.substring(CodeContext.AS3_VEC_VECTOR_QUALIFIED_NAME.length());
-        }
-        typeDictionary.put(String.valueOf(typeDictionary.size()), className);
+
+      String className = output.substring(start, end).replace("::", ".");
+      if (className.startsWith(CodeContext.AS3_VEC_VECTOR_QUALIFIED_NAME)) {
+        className = JSCommonTypeNames.VECTOR_CLASS_NAME + className.substring(CodeContext.AS3_VEC_VECTOR_QUALIFIED_NAME.length());
       }
+      typeDictionary.add(className);
       return className;
     }
 
-    void startingPacket(String output) {
+    @Override
+    void startingPacket(Packet output) {
       if (output.startsWith(BATCH_MARKER)) {
         if (LOG.isDebugEnabled()) {
           LOG.debug(output + "," + System.currentTimeMillis() + "," + cpuSamples + "," + memorySamples);
@@ -432,15 +469,13 @@ public class ProfilingConnection {
 
       frameIndex = -1;
       frames = null;
-      type = null;
-      specialArgs = null;
     }
 
     private void clearProfilingState() {
       dictionary.clear();
       typeDictionary.clear();
-      lastCpuSample = null;
-      lastCreateObjectSample = null;
+      lastCpuFrameCount = 0;
+      lastCreateObjectFrames = null;
       cpuSamples = 0;
       memorySamples = 0;
     }
@@ -450,7 +485,8 @@ public class ProfilingConnection {
     static final String END_COMMAND_MARKER = "e\0";
 
     @Override
-    ProcessingResult process(String output) throws IOException {
+    ProcessingResult process(Packet packet) throws IOException {
+      final String output = packet.toString();
       Callback callback;
       synchronized (myOutputStream) {
         callback = callbacks.removeFirst();
@@ -464,7 +500,8 @@ public class ProfilingConnection {
     static final String VERSION_COMMAND_MARKER = "v\0";
 
     @Override
-    ProcessingResult process(String output) throws IOException {
+    ProcessingResult process(Packet packet) throws IOException {
+      final String output = packet.toString();
       if (Integer.parseInt(output.substring(output.lastIndexOf(' ') + 1)) != ourAgentVersion) {
         LOG.warn("Version mismatch");
         myIoHandler.finished(null, new AgentVersionMismatchProblem());
@@ -484,20 +521,20 @@ public class ProfilingConnection {
     }
 
     @Override
-    ProcessingResult process(String output) throws IOException {
+    ProcessingResult process(Packet output) throws IOException {
       if (output.startsWith("EndSnapshot")) return ProcessingResult.FINISHED;
       if (output.startsWith(COMMAND_MARKER)) return ProcessingResult.CONTINUE;
       if (output.startsWith("cls:")) {
         return ProcessingResult.CONTINUE;
       }
 
-      int i = output.indexOf(',');
-      int id = Integer.parseInt(output.substring(0, i));
+      int i = output.indexOf(',', 0);
+      int id = output.parseInt(0, i);
 
       while (i != -1) {
         int nextI = output.indexOf(',', i + 1);
         if (nextI == -1) nextI = output.length();
-        int nextId = Integer.parseInt(output.substring(i + 1, nextI));
+        int nextId = output.parseInt(i + 1, nextI);
         myDataConsumer.referenced(id, nextId);
         if (nextI == output.length()) break;
         i = nextI;
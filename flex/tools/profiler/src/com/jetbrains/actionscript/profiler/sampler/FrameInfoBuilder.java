@@ -3,6 +3,7 @@ package com.jetbrains.actionscript.profiler.sampler;
 import com.intellij.lang.javascript.psi.JSFunction;
 import com.intellij.openapi.util.text.StringUtil;
 import gnu.trove.THashMap;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 
@@ -44,6 +45,20 @@ public class FrameInfoBuilder {
     return result;
   }
 
+  /**
+   * Restores a frame read from a profiler snapshot file.
+   */
+  public static FrameInfo createInstance(@Nullable String fileDirectory,
+                                         @Nullable String fileName,
+                                         int fileLine,
+                                         @Nullable String packageName,
+                                         String qName,
+                                         @Nullable String methodName,
+                                         @Nullable JSFunction.FunctionKind kind,
+                                         @Nullable String namespace) {
+    return new FrameInfo(fileDirectory, fileName, fileLine, packageName, qName, methodName, kind, namespace);
+  }
+
   public FrameInfo createInstance(final String data) {
     int line = UNKNOWN_LINE;
     String dir = null;
@@ -0,0 +1,92 @@
+package com.jetbrains.actionscript.profiler.snapshot;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.jetbrains.actionscript.profiler.calltree.CallTree;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * CPU samples written to a snapshot file between two positions. The call tree is built only when the snapshot is viewed.
+ */
+public class CpuSnapshot {
+  private final File file;
+  private final long start;
+  private final long end;
+
+  /**
+   * All samples of the file.
+   */
+  public CpuSnapshot(File file) {
+    this(file, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param start position of the first sample, see {@link SnapshotWriter#mark()}
+   * @param end   position after the last sample
+   */
+  public CpuSnapshot(File file, long start, long end) {
+    this.file = file;
+    this.start = start;
+    this.end = end;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public CallTree loadCallTree() throws IOException {
+    return loadCallTree(null);
+  }
+
+  /**
+   * @param indicator gets the fraction of the samples read and is checked for cancellation
+   */
+  public CallTree loadCallTree(@Nullable final ProgressIndicator indicator) throws IOException {
+    final CallTree callTree = new CallTree();
+    processSamples(indicator, new SnapshotReader.RecordProcessor() {
+      @Override
+      public void cpuSample(long offset, long duration, FrameInfo[] frames) {
+        callTree.addFrames(frames, duration);
+      }
+    });
+    return callTree;
+  }
+
+  /**
+   * Writes the samples of this snapshot to a separate file that can be opened as {@link #CpuSnapshot(File)}.
+   *
+   * @param indicator gets the fraction of the samples read and is checked for cancellation
+   */
+  public void save(File target, @Nullable final ProgressIndicator indicator) throws IOException {
+    try (SnapshotWriter writer = new SnapshotWriter(target)) {
+      processSamples(indicator, new SnapshotReader.RecordProcessor() {
+        @Override
+        public void cpuSample(long offset, long duration, FrameInfo[] frames) throws IOException {
+          writer.writeCpuSample(duration, frames, frames.length);
+        }
+      });
+    }
+  }
+
+  private void processSamples(@Nullable final ProgressIndicator indicator, final SnapshotReader.RecordProcessor processor)
+    throws IOException {
+    final long length = Math.max(1, Math.min(end, file.length()) - start);
+    try (SnapshotReader reader = new SnapshotReader(file, end)) {
+      reader.read(new SnapshotReader.RecordProcessor() {
+        @Override
+        public void cpuSample(long offset, long duration, FrameInfo[] frames) throws IOException {
+          if (offset >= start) {
+            processor.cpuSample(offset, duration, frames);
+          }
+          if (indicator != null) {
+            indicator.checkCanceled();
+            indicator.setFraction((double)Math.max(0, offset - start) / length);
+          }
+        }
+      });
+    }
+  }
+}
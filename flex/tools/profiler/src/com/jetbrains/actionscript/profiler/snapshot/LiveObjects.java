@@ -0,0 +1,181 @@
+package com.jetbrains.actionscript.profiler.snapshot;
+
+import com.jetbrains.actionscript.profiler.sampler.CreateObjectSample;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import com.jetbrains.actionscript.profiler.sampler.ObjectSampleHandler;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Objects that were created and not deleted by the end of a snapshot, with references between them kept as an adjacency list:
+ * references of object <code>i</code> are <code>references[referenceStarts[i]..referenceStarts[i + 1])</code>.
+ */
+public class LiveObjects {
+  private final int[] ids;
+  private final String[] classNames;
+  private final int[] sizes;
+  private final FrameInfo[][] frames;
+  private final int[] referenceStarts;
+  private final int[] references;
+
+  private LiveObjects(int[] ids, String[] classNames, int[] sizes, FrameInfo[][] frames, int[] referenceStarts, int[] references) {
+    this.ids = ids;
+    this.classNames = classNames;
+    this.sizes = sizes;
+    this.frames = frames;
+    this.referenceStarts = referenceStarts;
+    this.references = references;
+  }
+
+  public int getObjectCount() {
+    return ids.length;
+  }
+
+  public int getId(int object) {
+    return ids[object];
+  }
+
+  public String getClassName(int object) {
+    return classNames[object];
+  }
+
+  public int getSize(int object) {
+    return sizes[object];
+  }
+
+  public FrameInfo[] getFrames(int object) {
+    return frames[object];
+  }
+
+  /**
+   * @return indices of the objects referenced by <code>object</code>
+   */
+  public int[] getReferences(int object) {
+    final int[] result = new int[referenceStarts[object + 1] - referenceStarts[object]];
+    System.arraycopy(references, referenceStarts[object], result, 0, result.length);
+    return result;
+  }
+
+  public void processObjects(ObjectSampleHandler handler) {
+    for (int i = 0; i < ids.length; i++) {
+      handler.processCreateSample(new CreateObjectSample(0, frames[i], ids[i], classNames[i], sizes[i]));
+    }
+  }
+
+  /**
+   * Writes these objects and references between them to a separate file that can be loaded with {@link #load(File, long)}.
+   */
+  public void save(File target) throws IOException {
+    try (SnapshotWriter writer = new SnapshotWriter(target)) {
+      for (int i = 0; i < ids.length; i++) {
+        writer.writeObjectCreated(new CreateObjectSample(0, frames[i], ids[i], classNames[i], sizes[i]));
+      }
+      for (int i = 0; i < ids.length; i++) {
+        for (int j = referenceStarts[i]; j < referenceStarts[i + 1]; j++) {
+          writer.writeReference(ids[i], ids[references[j]]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param limit see {@link SnapshotWriter#mark()}
+   */
+  public static LiveObjects load(File file, long limit) throws IOException {
+    final Builder builder = new Builder();
+    try (SnapshotReader reader = new SnapshotReader(file, limit)) {
+      reader.read(builder);
+    }
+    return builder.build();
+  }
+
+  private static class Builder extends SnapshotReader.RecordProcessor {
+    // all created objects in creation order, deleted ones are dropped from indexById only
+    private final TIntArrayList ids = new TIntArrayList();
+    private final List<String> classNames = new ArrayList<>();
+    private final TIntArrayList sizes = new TIntArrayList();
+    private final List<FrameInfo[]> frames = new ArrayList<>();
+    private final TIntIntHashMap indexById = new TIntIntHashMap();
+    private final TIntArrayList referenceSources = new TIntArrayList();
+    private final TIntArrayList referenceTargets = new TIntArrayList();
+
+    @Override
+    public void objectCreated(int id, String className, int size, FrameInfo[] frames) {
+      indexById.put(id, ids.size());
+      ids.add(id);
+      classNames.add(className);
+      sizes.add(size);
+      this.frames.add(frames);
+    }
+
+    @Override
+    public void objectDeleted(int id) {
+      indexById.remove(id);
+    }
+
+    @Override
+    public void objectReferenced(int id, int referencedId) {
+      referenceSources.add(id);
+      referenceTargets.add(referencedId);
+    }
+
+    private LiveObjects build() {
+      // index of a created object among live ones, or -1
+      final int[] liveIndex = new int[ids.size()];
+      int liveCount = 0;
+      for (int i = 0; i < liveIndex.length; i++) {
+        liveIndex[i] = indexById.containsKey(ids.get(i)) && indexById.get(ids.get(i)) == i ? liveCount++ : -1;
+      }
+
+      final int[] liveIds = new int[liveCount];
+      final String[] liveClassNames = new String[liveCount];
+      final int[] liveSizes = new int[liveCount];
+      final FrameInfo[][] liveFrames = new FrameInfo[liveCount][];
+      for (int i = 0; i < liveIndex.length; i++) {
+        final int index = liveIndex[i];
+        if (index != -1) {
+          liveIds[index] = ids.get(i);
+          liveClassNames[index] = classNames.get(i);
+          liveSizes[index] = sizes.get(i);
+          liveFrames[index] = frames.get(i);
+        }
+      }
+
+      // references between live objects, grouped by source
+      final int[] sources = new int[referenceSources.size()];
+      final int[] targets = new int[referenceSources.size()];
+      final int[] referenceStarts = new int[liveCount + 1];
+      int referenceCount = 0;
+      for (int i = 0; i < sources.length; i++) {
+        final int source = getLiveIndex(referenceSources.get(i), liveIndex);
+        final int target = getLiveIndex(referenceTargets.get(i), liveIndex);
+        if (source != -1 && target != -1) {
+          sources[referenceCount] = source;
+          targets[referenceCount] = target;
+          referenceCount++;
+          referenceStarts[source + 1]++;
+        }
+      }
+      for (int i = 0; i < liveCount; i++) {
+        referenceStarts[i + 1] += referenceStarts[i];
+      }
+      final int[] references = new int[referenceCount];
+      final int[] next = new int[liveCount];
+      System.arraycopy(referenceStarts, 0, next, 0, liveCount);
+      for (int i = 0; i < referenceCount; i++) {
+        references[next[sources[i]]++] = targets[i];
+      }
+
+      return new LiveObjects(liveIds, liveClassNames, liveSizes, liveFrames, referenceStarts, references);
+    }
+
+    private int getLiveIndex(int id, int[] liveIndex) {
+      return indexById.containsKey(id) ? liveIndex[indexById.get(id)] : -1;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.jetbrains.actionscript.profiler.snapshot;
+
+/**
+ * Binary profiler snapshot: a header followed by records, each record starts with a tag byte.
+ * <pre>
+ * header:        int MAGIC, byte VERSION
+ * STRING:        varint length, UTF-8 bytes
+ * FRAME:         varint directory, varint file name, varint (line + 1), varint package, varint qName, varint method name,
+ *                byte (function kind ordinal + 1 or 0), varint namespace
+ * CPU_SAMPLE:    varlong duration, varint frame count, varint frame ids (innermost first)
+ * CREATE_OBJECT: varint object id, varint class name, varint size, varint frame count, varint frame ids
+ * DELETE_OBJECT: varint object id
+ * REFERENCE:     varint object id, varint referenced object id
+ * FRAME_LINE:    varint frame id, varint (line + 1)
+ * </pre>
+ * Strings and frames get ids in the order they are written and are referenced by id, string references are shifted by one
+ * so that 0 means <code>null</code>. Records only refer to strings and frames written before them, so a file can be read up to any
+ * record boundary while it is still being written. The line of a frame may be corrected by a later FRAME_LINE record, that line
+ * applies to all records using the frame, including earlier ones.
+ */
+final class SnapshotFormat {
+  static final int MAGIC = 0x41535053; // ASPS
+  static final byte VERSION = 2;
+  static final int HEADER_SIZE = 5;
+
+  static final byte STRING = 1;
+  static final byte FRAME = 2;
+  static final byte CPU_SAMPLE = 3;
+  static final byte CREATE_OBJECT = 4;
+  static final byte DELETE_OBJECT = 5;
+  static final byte REFERENCE = 6;
+  static final byte FRAME_LINE = 7;
+
+  private SnapshotFormat() {
+  }
+}
@@ -0,0 +1,192 @@
+package com.jetbrains.actionscript.profiler.snapshot;
+
+import com.intellij.lang.javascript.psi.JSFunction;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfoBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a snapshot file written by {@link SnapshotWriter}. The file is memory mapped by windows of limited size, so snapshots
+ * that don't fit in heap (or in a single mapping) are paged through rather than loaded.
+ */
+public class SnapshotReader implements Closeable {
+  private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+  private static final JSFunction.FunctionKind[] KINDS = JSFunction.FunctionKind.values();
+
+  public abstract static class RecordProcessor {
+    /**
+     * @param offset position of the sample record in the file
+     */
+    public void cpuSample(long offset, long duration, FrameInfo[] frames) throws IOException {
+    }
+
+    public void objectCreated(int id, String className, int size, FrameInfo[] frames) throws IOException {
+    }
+
+    public void objectDeleted(int id) throws IOException {
+    }
+
+    public void objectReferenced(int id, int referencedId) throws IOException {
+    }
+  }
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final long limit;
+  private final int windowSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+
+  private final List<String> strings = new ArrayList<>();
+  private final List<FrameInfo> frames = new ArrayList<>();
+  private byte[] stringBuffer = new byte[256];
+
+  /**
+   * @param limit position to stop reading at, see {@link SnapshotWriter#mark()}
+   */
+  public SnapshotReader(File file, long limit) throws IOException {
+    this(file, limit, WINDOW_SIZE);
+  }
+
+  SnapshotReader(File file, long limit, int windowSize) throws IOException {
+    this.file = file;
+    this.windowSize = windowSize;
+    randomAccessFile = new RandomAccessFile(file, "r");
+    channel = randomAccessFile.getChannel();
+    this.limit = Math.min(limit, channel.size());
+  }
+
+  public void read(RecordProcessor processor) throws IOException {
+    map(0);
+    final int magic = readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    if (magic != SnapshotFormat.MAGIC || readByte() != SnapshotFormat.VERSION) {
+      throw new IOException("Not a profiler snapshot: " + file.getPath());
+    }
+
+    while (getPosition() < limit) {
+      final long offset = getPosition();
+      final int tag = readByte();
+      switch (tag) {
+        case SnapshotFormat.STRING:
+          strings.add(readUtf8());
+          break;
+        case SnapshotFormat.FRAME:
+          frames.add(readFrame());
+          break;
+        case SnapshotFormat.CPU_SAMPLE:
+          final long duration = readVarLong();
+          processor.cpuSample(offset, duration, readFrames());
+          break;
+        case SnapshotFormat.CREATE_OBJECT:
+          final int id = readVarInt();
+          final String className = readString();
+          final int size = readVarInt();
+          processor.objectCreated(id, className, size, readFrames());
+          break;
+        case SnapshotFormat.DELETE_OBJECT:
+          processor.objectDeleted(readVarInt());
+          break;
+        case SnapshotFormat.REFERENCE:
+          processor.objectReferenced(readVarInt(), readVarInt());
+          break;
+        case SnapshotFormat.FRAME_LINE:
+          // frames are shared by all records using them, as FrameInfoBuilder does it
+          final FrameInfo frame = frames.get(readVarInt());
+          frame.setFileLine(readVarInt() - 1);
+          break;
+        default:
+          throw new IOException("Unexpected record " + tag + " at " + offset + " in " + file.getPath());
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    randomAccessFile.close();
+  }
+
+  private FrameInfo readFrame() throws IOException {
+    final String directory = readString();
+    final String fileName = readString();
+    final int line = readVarInt() - 1;
+    final String packageName = readString();
+    final String qName = readString();
+    final String methodName = readString();
+    final int kind = readByte();
+    final String namespace = readString();
+    return FrameInfoBuilder.createInstance(directory, fileName, line, packageName, qName, methodName,
+                                           kind == 0 ? null : KINDS[kind - 1], namespace);
+  }
+
+  private FrameInfo[] readFrames() throws IOException {
+    final int count = readVarInt();
+    if (count == 0) {
+      return FrameInfo.EMPTY_FRAME_INFO_ARRAY;
+    }
+    final FrameInfo[] result = new FrameInfo[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = frames.get(readVarInt());
+    }
+    return result;
+  }
+
+  @Nullable
+  private String readString() throws IOException {
+    final int ref = readVarInt();
+    return ref == 0 ? null : strings.get(ref - 1);
+  }
+
+  private String readUtf8() throws IOException {
+    final int length = readVarInt();
+    if (stringBuffer.length < length) {
+      stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      stringBuffer[i] = (byte)readByte();
+    }
+    return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private int readVarInt() throws IOException {
+    return (int)readVarLong();
+  }
+
+  private long readVarLong() throws IOException {
+    long result = 0;
+    for (int shift = 0; ; shift += 7) {
+      final int b = readByte();
+      result |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+  }
+
+  private int readByte() throws IOException {
+    if (!window.hasRemaining()) {
+      map(windowStart + window.limit());
+    }
+    return window.get() & 0xFF;
+  }
+
+  private long getPosition() {
+    return windowStart + window.position();
+  }
+
+  private void map(long position) throws IOException {
+    final long size = Math.min(windowSize, limit - position);
+    if (size <= 0) {
+      throw new EOFException("Unexpected end of profiler snapshot " + file.getPath());
+    }
+    window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    windowStart = position;
+  }
+}
@@ -0,0 +1,216 @@
+package com.jetbrains.actionscript.profiler.snapshot;
+
+import com.intellij.lang.javascript.psi.JSFunction;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.actionscript.profiler.sampler.CreateObjectSample;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import com.jetbrains.actionscript.profiler.sampler.Sample;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Appends profiling data to a snapshot file while the session goes on, see {@link SnapshotFormat}.
+ * Strings and frames are written the first time they are used, so nothing but the id tables is kept in memory.
+ */
+public class SnapshotWriter implements Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final OutputStream output;
+  private long position;
+
+  private final TObjectIntHashMap<String> stringIds = new TObjectIntHashMap<>();
+  // FrameInfoBuilder shares FrameInfo instances, comparing them by identity is enough and much cheaper than equals()
+  private final TObjectIntHashMap<FrameInfo> frameIds = new TObjectIntHashMap<>(ContainerUtil.identityStrategy());
+  // line last written for each frame id, FrameInfoBuilder corrects the line of a shared instance when it sees the same frame again
+  private final TIntArrayList frameLines = new TIntArrayList();
+
+  private byte[] record = new byte[256];
+  private int recordLength;
+  private int[] sampleFrames = new int[64];
+
+  public SnapshotWriter(File file) throws IOException {
+    this.file = file;
+    output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+    writeByte(SnapshotFormat.MAGIC >>> 24);
+    writeByte(SnapshotFormat.MAGIC >>> 16);
+    writeByte(SnapshotFormat.MAGIC >>> 8);
+    writeByte(SnapshotFormat.MAGIC);
+    writeByte(SnapshotFormat.VERSION);
+    endRecord();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Flushes written data.
+   *
+   * @return position in the file after the last written record, a {@link SnapshotReader} may read up to this position
+   */
+  public synchronized long mark() throws IOException {
+    output.flush();
+    return position;
+  }
+
+  public void writeCpuSample(Sample sample) throws IOException {
+    writeCpuSample(sample.duration, sample.frames, sample.frames.length);
+  }
+
+  /**
+   * @param frames innermost frame first, only first <code>frameCount</code> elements are used
+   */
+  public synchronized void writeCpuSample(long duration, FrameInfo[] frames, int frameCount) throws IOException {
+    collectFrameIds(frames, frameCount);
+    startRecord(SnapshotFormat.CPU_SAMPLE);
+    writeVarLong(duration);
+    writeFrameIds(frameCount);
+    endRecord();
+  }
+
+  public synchronized void writeObjectCreated(CreateObjectSample sample) throws IOException {
+    final int className = getStringRef(sample.className);
+    collectFrameIds(sample.frames, sample.frames.length);
+    startRecord(SnapshotFormat.CREATE_OBJECT);
+    writeVarInt(sample.id);
+    writeVarInt(className);
+    writeVarInt(sample.size);
+    writeFrameIds(sample.frames.length);
+    endRecord();
+  }
+
+  public synchronized void writeObjectDeleted(int id) throws IOException {
+    startRecord(SnapshotFormat.DELETE_OBJECT);
+    writeVarInt(id);
+    endRecord();
+  }
+
+  public synchronized void writeReference(int id, int referencedId) throws IOException {
+    startRecord(SnapshotFormat.REFERENCE);
+    writeVarInt(id);
+    writeVarInt(referencedId);
+    endRecord();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    output.close();
+  }
+
+  private void collectFrameIds(FrameInfo[] frames, int frameCount) throws IOException {
+    if (sampleFrames.length < frameCount) {
+      sampleFrames = new int[Math.max(frameCount, sampleFrames.length * 2)];
+    }
+    for (int i = 0; i < frameCount; i++) {
+      sampleFrames[i] = getFrameId(frames[i]);
+    }
+  }
+
+  private void writeFrameIds(int frameCount) {
+    writeVarInt(frameCount);
+    for (int i = 0; i < frameCount; i++) {
+      writeVarInt(sampleFrames[i]);
+    }
+  }
+
+  private int getFrameId(FrameInfo frame) throws IOException {
+    if (frameIds.containsKey(frame)) {
+      final int id = frameIds.get(frame);
+      if (frameLines.get(id) != frame.getFileLine()) {
+        startRecord(SnapshotFormat.FRAME_LINE);
+        writeVarInt(id);
+        writeVarInt(frame.getFileLine() + 1);
+        endRecord();
+        frameLines.set(id, frame.getFileLine());
+      }
+      return id;
+    }
+
+    final int directory = getStringRef(frame.getFileDirectory());
+    final int fileName = getStringRef(frame.getFileName());
+    final int packageName = getStringRef(frame.getPackageName());
+    final int qName = getStringRef(frame.getQName());
+    final int methodName = getStringRef(frame.getMethodName());
+    final int namespace = getStringRef(frame.getNamespace());
+    final JSFunction.FunctionKind kind = frame.getKind();
+
+    startRecord(SnapshotFormat.FRAME);
+    writeVarInt(directory);
+    writeVarInt(fileName);
+    writeVarInt(frame.getFileLine() + 1);
+    writeVarInt(packageName);
+    writeVarInt(qName);
+    writeVarInt(methodName);
+    writeByte(kind == null ? 0 : kind.ordinal() + 1);
+    writeVarInt(namespace);
+    endRecord();
+
+    final int id = frameIds.size();
+    frameIds.put(frame, id);
+    frameLines.add(frame.getFileLine());
+    return id;
+  }
+
+  /**
+   * @return string id + 1 or 0 for <code>null</code>
+   */
+  private int getStringRef(@Nullable String s) throws IOException {
+    if (s == null) {
+      return 0;
+    }
+    if (stringIds.containsKey(s)) {
+      return stringIds.get(s) + 1;
+    }
+
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    startRecord(SnapshotFormat.STRING);
+    writeVarInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, record, recordLength, bytes.length);
+    recordLength += bytes.length;
+    endRecord();
+
+    final int id = stringIds.size();
+    stringIds.put(s, id);
+    return id + 1;
+  }
+
+  private void startRecord(byte tag) {
+    recordLength = 0;
+    writeByte(tag);
+  }
+
+  private void endRecord() throws IOException {
+    output.write(record, 0, recordLength);
+    position += recordLength;
+  }
+
+  private void writeByte(int b) {
+    ensureCapacity(1);
+    record[recordLength++] = (byte)b;
+  }
+
+  private void writeVarInt(int value) {
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  private void writeVarLong(long value) {
+    while ((value & ~0x7FL) != 0) {
+      writeByte((int)(value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    writeByte((int)value);
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (recordLength + bytes > record.length) {
+      record = Arrays.copyOf(record, Math.max(recordLength + bytes, record.length * 2));
+    }
+  }
+}
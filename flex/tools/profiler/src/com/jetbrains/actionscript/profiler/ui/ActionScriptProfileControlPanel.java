@@ -18,6 +18,7 @@ import com.jetbrains.actionscript.profiler.livetable.LiveModelController;
 import com.jetbrains.actionscript.profiler.model.ActionScriptProfileSettings;
 import com.jetbrains.actionscript.profiler.model.ProfilerDataConsumer;
 import com.jetbrains.actionscript.profiler.model.ProfilingManager;
+import com.jetbrains.actionscript.profiler.snapshot.CpuSnapshot;
 import com.jetbrains.actionscript.profiler.ui.node.CPUSnapshotNode;
 import com.jetbrains.actionscript.profiler.ui.node.LiveObjectsNode;
 import icons.FlexProfilerIcons;
@@ -98,8 +99,15 @@ public class ActionScriptProfileControlPanel implements ProfilerActionGroup, Dis
   }
 
   private void doCPUSnapshot() {
-    final CPUSnapshotNode newNode =
-      new CPUSnapshotNode(runConfigurationName, module, new Date(), profilerDataConsumer.getProfileData().getCallTree());
+    final CpuSnapshot snapshot;
+    try {
+      snapshot = profilerDataConsumer.getCpuSnapshot();
+    }
+    catch (IOException e) {
+      notifySnapshotError(e);
+      return;
+    }
+    final CPUSnapshotNode newNode = new CPUSnapshotNode(runConfigurationName, module, new Date(), snapshot);
     ApplicationManager.getApplication().invokeLater(() -> {
       final MutableTreeNode root = (MutableTreeNode)treeModel.getRoot();
       treeModel.insertNodeInto(newNode, root, root.getChildCount());
@@ -110,11 +118,18 @@ public class ActionScriptProfileControlPanel implements ProfilerActionGroup, Dis
     if (profilingManager != null) {
       profilingManager.dispose();
     }
-    profilingManager = new ProfilingManager(ActionScriptProfileSettings.getInstance().getPort());
     final LiveModelController liveModelController = new LiveModelController();
+    try {
+      profilerDataConsumer = new ProfilerDataConsumer(liveModelController);
+    }
+    catch (IOException e) {
+      notifySnapshotError(e);
+      return;
+    }
+    profilingManager = new ProfilingManager(ActionScriptProfileSettings.getInstance().getPort());
 
-    final LiveObjectsNode liveObjectsNode = new LiveObjectsNode(runConfigurationName, module, profilingManager, liveModelController);
-    profilerDataConsumer = new ProfilerDataConsumer(liveModelController);
+    final LiveObjectsNode liveObjectsNode = new LiveObjectsNode(runConfigurationName, module, profilingManager, liveModelController,
+                                                                profilerDataConsumer.getProfileData());
 
     setStatus(ProfilerBundle.message("agent.connection.waiting"));
     myAlarm.cancelAllRequests();
@@ -139,13 +154,23 @@ public class ActionScriptProfileControlPanel implements ProfilerActionGroup, Dis
     treeModel.insertNodeInto(liveObjectsNode, (MutableTreeNode)treeModel.getRoot(), 0);
   }
 
+  private void notifySnapshotError(IOException e) {
+    NOTIFICATION_GROUP.createNotification(ProfilerBundle.message("profiler.snapshot.write.error", e.getMessage()), NotificationType.ERROR)
+      .notify(module.getProject());
+  }
+
   public void setConnectionCallback(Runnable runnable) {
     this.connectionCallback = runnable;
   }
 
   @Override
   public void dispose() {
-    profilingManager.dispose();
+    if (profilingManager != null) {
+      profilingManager.dispose();
+    }
+    if (profilerDataConsumer != null) {
+      profilerDataConsumer.dispose();
+    }
     Disposer.dispose(myAlarm);
   }
 
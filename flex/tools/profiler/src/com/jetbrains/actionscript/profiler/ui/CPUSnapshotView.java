@@ -4,8 +4,13 @@ import com.intellij.ide.util.scopeChooser.ScopeChooserCombo;
 import com.intellij.ide.util.scopeChooser.ScopeDescriptor;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionPlaces;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.SearchScope;
@@ -24,6 +29,7 @@ import com.jetbrains.actionscript.profiler.model.ProfileData;
 import com.jetbrains.actionscript.profiler.render.FrameInfoCellRenderer;
 import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
 import com.jetbrains.actionscript.profiler.sampler.Sample;
+import com.jetbrains.actionscript.profiler.snapshot.CpuSnapshot;
 import com.jetbrains.actionscript.profiler.util.AllSearchScope;
 import com.jetbrains.actionscript.profiler.util.JTreeUtil;
 import com.jetbrains.actionscript.profiler.util.ResolveUtil;
@@ -43,6 +49,7 @@ import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +58,7 @@ import java.util.Map;
  * @author: Fedor.Korotkov
  */
 public class CPUSnapshotView extends ProfileView implements Disposable {
+  private static final Logger LOG = Logger.getInstance(CPUSnapshotView.class.getName());
   private static final int MS_COLUMN_WIDTH = 140;
 
   private JCheckBox myFilterSystemStuff;
@@ -64,8 +72,10 @@ public class CPUSnapshotView extends ProfileView implements Disposable {
   private JPanel topPanel;
   private JPanel bottomPanel;
 
-  private final CallTree rawCallTree;
+  // empty until the snapshot is loaded in background
+  private CallTree rawCallTree = new CallTree();
   private Alarm myAlarm;
+  private boolean myDisposed;
 
   private final GlobalSearchScope projectScope;
 
@@ -78,9 +88,43 @@ public class CPUSnapshotView extends ProfileView implements Disposable {
   public CPUSnapshotView(VirtualFile file, Project project) {
     super(file, project);
     projectScope = GlobalSearchScope.projectScope(project);
-    rawCallTree = file.getUserData(ProfileData.CALL_TREE_KEY);
     setupUI();
-    buildPerformanceSamples(myHotSpotsTreeTable.getSortableTreeTableModel());
+    loadCallTreeInBackground(file);
+  }
+
+  private void loadCallTreeInBackground(final VirtualFile file) {
+    ProgressManager.getInstance().run(new Task.Backgroundable(getProject(), "Loading CPU snapshot " + file.getName(), true) {
+      private CallTree myCallTree;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        myCallTree = loadCallTree(file, indicator);
+      }
+
+      @Override
+      public void onSuccess() {
+        if (myDisposed) return;
+        rawCallTree = myCallTree;
+        buildPerformanceSamples(myHotSpotsTreeTable.getSortableTreeTableModel());
+        TreeUtil.expand(myHotSpotsTreeTable.getTree(), 1);
+      }
+    });
+  }
+
+  private static CallTree loadCallTree(VirtualFile file, ProgressIndicator indicator) {
+    CpuSnapshot snapshot = file.getUserData(ProfileData.CPU_SNAPSHOT_KEY);
+    if (snapshot == null && file.isInLocalFileSystem()) {
+      snapshot = new CpuSnapshot(VfsUtilCore.virtualToIoFile(file));
+    }
+    if (snapshot != null) {
+      try {
+        return snapshot.loadCallTree(indicator);
+      }
+      catch (IOException e) {
+        LOG.warn(e);
+      }
+    }
+    return new CallTree();
   }
 
   @Nullable
@@ -237,7 +281,7 @@ public class CPUSnapshotView extends ProfileView implements Disposable {
 
   @Override
   public void dispose() {
-
+    myDisposed = true;
   }
 
   @NotNull
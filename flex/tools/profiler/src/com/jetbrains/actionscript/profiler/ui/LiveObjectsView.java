@@ -7,8 +7,12 @@ import com.intellij.lang.javascript.psi.ecmal4.JSClass;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionPlaces;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbServiceImpl;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.Navigatable;
 import com.intellij.psi.PsiElement;
@@ -31,6 +35,7 @@ import com.jetbrains.actionscript.profiler.model.ProfilingManager;
 import com.jetbrains.actionscript.profiler.render.SizeInfoCellRenderer;
 import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
 import com.jetbrains.actionscript.profiler.sampler.SampleLocationResolver;
+import com.jetbrains.actionscript.profiler.snapshot.LiveObjects;
 import com.jetbrains.actionscript.profiler.util.AllSearchScope;
 import com.jetbrains.actionscript.profiler.util.ResolveUtil;
 import com.jetbrains.profiler.ProfileView;
@@ -42,6 +47,7 @@ import javax.swing.table.TableColumn;
 import javax.swing.tree.TreePath;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -61,6 +67,7 @@ public class LiveObjectsView extends ProfileView implements Disposable {
   private final ProfilingManager profilingManager;
 
   private Timer updateTimer = null;
+  private boolean myDisposed;
 
   public LiveObjectsView(VirtualFile file, Project project) {
     super(file, project);
@@ -69,6 +76,9 @@ public class LiveObjectsView extends ProfileView implements Disposable {
     profilingManager = file.getUserData(ProfileData.PROFILING_MANAGER);
 
     if (controller == null || profilingManager == null) {
+      if (file.isInLocalFileSystem()) {
+        showSnapshot(VfsUtilCore.virtualToIoFile(file));
+      }
       return;
     }
     updateTimer = UIUtil.createNamedTimer("LiveObjects", 2000, new ActionListener() {
@@ -126,6 +136,29 @@ public class LiveObjectsView extends ProfileView implements Disposable {
     });
   }
 
+  private void showSnapshot(final File file) {
+    ProgressManager.getInstance().run(new Task.Backgroundable(getProject(), "Loading live objects snapshot " + file.getName(), true) {
+      private final LiveModelController mySnapshotController = new LiveModelController();
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          LiveObjects.load(file, Long.MAX_VALUE).processObjects(mySnapshotController);
+        }
+        catch (IOException e) {
+          LOG.warn(e);
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        if (myDisposed) return;
+        mySnapshotController.apply(liveObjectsTreeTable.getSortableTreeTableModel());
+        liveObjectsTreeTable.reload();
+      }
+    });
+  }
+
   @Override
   protected void uiSettingsChange() {
     super.uiSettingsChange();
@@ -188,6 +221,7 @@ public class LiveObjectsView extends ProfileView implements Disposable {
   @Override
   public void dispose() {
     super.dispose();
+    myDisposed = true;
     if (updateTimer != null) {
       updateTimer.stop();
     }
@@ -0,0 +1,83 @@
+package com.jetbrains.actionscript.profiler.ui;
+
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.jetbrains.actionscript.profiler.ProfilerBundle;
+import com.jetbrains.actionscript.profiler.base.SnapshotSaver;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Saves the selected CPU or live objects snapshot to a file that can be opened later.
+ */
+public class SaveSnapshotAction extends AnAction {
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getProject() != null && e.getData(SnapshotSaver.DATA_KEY) != null);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    final Project project = e.getProject();
+    final SnapshotSaver saver = e.getData(SnapshotSaver.DATA_KEY);
+    if (project == null || saver == null) {
+      return;
+    }
+
+    final FileSaverDescriptor descriptor = new FileSaverDescriptor(ProfilerBundle.message("save.snapshot.title"),
+                                                                   ProfilerBundle.message("save.snapshot.description"),
+                                                                   saver.getFileExtension());
+    final VirtualFileWrapper wrapper = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project)
+      .save(null, saver.getDefaultFileName());
+    if (wrapper == null) {
+      return;
+    }
+
+    final File target = wrapper.getFile();
+    final String title = ProfilerBundle.message("save.snapshot.progress", target.getName());
+    ProgressManager.getInstance().run(new Task.Backgroundable(project, title, true) {
+      private IOException myError;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        boolean saved = false;
+        try {
+          saver.save(target, indicator);
+          saved = true;
+        }
+        catch (IOException ex) {
+          myError = ex;
+        }
+        finally {
+          if (!saved) {
+            FileUtil.delete(target);
+          }
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        if (myError != null) {
+          ActionScriptProfileControlPanel.NOTIFICATION_GROUP
+            .createNotification(ProfilerBundle.message("profiler.snapshot.write.error", myError.getMessage()), NotificationType.ERROR)
+            .notify(project);
+        }
+        else {
+          LocalFileSystem.getInstance().refreshAndFindFileByIoFile(target);
+        }
+      }
+    });
+  }
+}
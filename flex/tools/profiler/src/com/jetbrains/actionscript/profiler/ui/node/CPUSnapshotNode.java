@@ -2,36 +2,41 @@ package com.jetbrains.actionscript.profiler.ui.node;
 
 import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.Navigatable;
 import com.intellij.testFramework.LightVirtualFile;
 import com.jetbrains.actionscript.profiler.base.NavigatableDataProducer;
-import com.jetbrains.actionscript.profiler.calltree.CallTree;
+import com.jetbrains.actionscript.profiler.base.SnapshotSaver;
 import com.jetbrains.actionscript.profiler.file.CpuSnapshotFileType;
 import com.jetbrains.actionscript.profiler.model.ProfileData;
+import com.jetbrains.actionscript.profiler.snapshot.CpuSnapshot;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.util.Date;
 
 /**
  * @author: Fedor.Korotkov
  */
-public class CPUSnapshotNode extends DefaultMutableTreeNode implements NavigatableDataProducer {
+public class CPUSnapshotNode extends DefaultMutableTreeNode implements NavigatableDataProducer, SnapshotSaver {
   private final String runConfigurationName;
   private final Module module;
   private final Date date;
-  private final CallTree callTree;
+  private final CpuSnapshot snapshot;
 
   private Navigatable navigatableCache;
 
 
-  public CPUSnapshotNode(String name, Module module, Date date, CallTree tree) {
+  public CPUSnapshotNode(String name, Module module, Date date, CpuSnapshot snapshot) {
     this.runConfigurationName = name;
     this.module = module;
     this.date = date;
-    this.callTree = tree;
+    this.snapshot = snapshot;
     setUserObject(getTitle());
   }
 
@@ -51,9 +56,26 @@ public class CPUSnapshotNode extends DefaultMutableTreeNode implements Navigatab
           return getName();
         }
       };
-      virtualFile.putUserData(ProfileData.CALL_TREE_KEY, callTree);
+      virtualFile.putUserData(ProfileData.CPU_SNAPSHOT_KEY, snapshot);
       navigatableCache = new OpenFileDescriptor(module.getProject(), virtualFile);
     }
     return navigatableCache;
   }
+
+  @NotNull
+  @Override
+  public String getDefaultFileName() {
+    return FileUtil.sanitizeFileName(runConfigurationName + " " + getTitle(), false) + "." + getFileExtension();
+  }
+
+  @NotNull
+  @Override
+  public String getFileExtension() {
+    return CpuSnapshotFileType.DEFAULT_EXTENSION;
+  }
+
+  @Override
+  public void save(@NotNull File target, @NotNull ProgressIndicator indicator) throws IOException {
+    snapshot.save(target, indicator);
+  }
 }
@@ -2,10 +2,13 @@ package com.jetbrains.actionscript.profiler.ui.node;
 
 import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.Navigatable;
 import com.intellij.testFramework.LightVirtualFile;
 import com.jetbrains.actionscript.profiler.base.NavigatableDataProducer;
+import com.jetbrains.actionscript.profiler.base.SnapshotSaver;
 import com.jetbrains.actionscript.profiler.file.LiveObjectsFileType;
 import com.jetbrains.actionscript.profiler.livetable.LiveModelController;
 import com.jetbrains.actionscript.profiler.model.ProfileData;
@@ -13,24 +16,34 @@ import com.jetbrains.actionscript.profiler.model.ProfilingManager;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
 
 /**
  * @author: Fedor.Korotkov
  */
-public class LiveObjectsNode extends DefaultMutableTreeNode implements NavigatableDataProducer {
+public class LiveObjectsNode extends DefaultMutableTreeNode implements NavigatableDataProducer, SnapshotSaver {
   private final String runConfigurationName;
   private final Module module;
   private final ProfilingManager profilingManager;
   private final LiveModelController liveModelController;
+  private final ProfileData profileData;
 
   private Navigatable navigatableCache;
 
-  public LiveObjectsNode(String runConfigurationName, Module module, ProfilingManager profilingManager, LiveModelController liveModelController) {
+  public LiveObjectsNode(String runConfigurationName,
+                         Module module,
+                         ProfilingManager profilingManager,
+                         LiveModelController liveModelController,
+                         ProfileData profileData) {
     super("Live Objects");
     this.runConfigurationName = runConfigurationName;
     this.module = module;
     this.profilingManager = profilingManager;
     this.liveModelController = liveModelController;
+    this.profileData = profileData;
   }
 
   @Override
@@ -49,4 +62,22 @@ public class LiveObjectsNode extends DefaultMutableTreeNode implements Navigatab
     }
     return navigatableCache;
   }
+
+  @NotNull
+  @Override
+  public String getDefaultFileName() {
+    final String time = DateFormat.getTimeInstance(DateFormat.SHORT).format(new Date());
+    return FileUtil.sanitizeFileName(runConfigurationName + " Live Objects " + time, false) + "." + getFileExtension();
+  }
+
+  @NotNull
+  @Override
+  public String getFileExtension() {
+    return LiveObjectsFileType.LIVE_OBJECTS;
+  }
+
+  @Override
+  public void save(@NotNull File target, @NotNull ProgressIndicator indicator) throws IOException {
+    profileData.loadLiveObjects().save(target);
+  }
 }
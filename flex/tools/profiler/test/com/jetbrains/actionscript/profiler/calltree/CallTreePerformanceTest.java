@@ -0,0 +1,88 @@
+package com.jetbrains.actionscript.profiler.calltree;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import com.jetbrains.actionscript.profiler.sampler.FrameUtil;
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic CPU snapshot with 10M samples: 20000 distinct call stacks over 1800 methods and system frames, some of the stacks are deeply
+ * recursive.
+ */
+public class CallTreePerformanceTest extends TestCase {
+  private static final int SAMPLES = 10000000;
+  private static final int STACKS = 20000;
+  private static final int FRAMES = 2000;
+  // all system frames are equal
+  private static final int DISTINCT_FRAMES = FRAMES - FRAMES / 10 + 1;
+  private static final int RECURSION_DEPTH = 5000;
+
+  private static CallTree ourCallTree;
+  private static FrameInfo[] ourFrames;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    if (ourCallTree == null) {
+      buildSnapshot();
+    }
+  }
+
+  private static void buildSnapshot() {
+    final Random random = new Random(42);
+    ourFrames = new FrameInfo[FRAMES];
+    for (int i = 0; i < FRAMES; i++) {
+      ourFrames[i] = FrameUtil.getFrameInfo(i % 10 == 0 ? "" : "Class" + i);
+    }
+
+    final FrameInfo[][] stacks = new FrameInfo[STACKS][];
+    for (int i = 0; i < STACKS; i++) {
+      final int depth = i % 5000 == 0 ? RECURSION_DEPTH : 5 + random.nextInt(20);
+      final FrameInfo[] stack = new FrameInfo[depth];
+      for (int j = 0; j < depth; j++) {
+        // deep stacks are recursive calls of the same method
+        stack[j] = ourFrames[depth == RECURSION_DEPTH ? 1 : random.nextInt(FRAMES)];
+      }
+      stacks[i] = stack;
+    }
+
+    ourCallTree = new CallTree();
+    for (int i = 0; i < SAMPLES; i++) {
+      ourCallTree.addFrames(stacks[random.nextInt(STACKS)], 1);
+    }
+  }
+
+  public void testTimeMaps() {
+    PlatformTestUtil.startPerformanceTest("Time maps of 10M samples", 3000, () -> {
+      final Pair<Map<FrameInfo, Long>, Map<FrameInfo, Long>> maps = ourCallTree.getTimeMaps();
+      assertEquals(DISTINCT_FRAMES, maps.getFirst().size());
+
+      long selfTime = 0;
+      for (Long time : maps.getSecond().values()) {
+        selfTime += time;
+      }
+      assertEquals(SAMPLES, selfTime);
+    }).cpuBound().assertTiming();
+  }
+
+  public void testCallersAndCallees() {
+    final FrameInfo[] frames = {ourFrames[1], ourFrames[1]};
+    PlatformTestUtil.startPerformanceTest("Callers and callees in 10M samples", 3000, () -> {
+      for (int i = 0; i < 5; i++) {
+        assertFalse(ourCallTree.getCallersTimeMaps(frames).getFirst().isEmpty());
+        assertFalse(ourCallTree.getCalleesTimeMaps(frames).getFirst().isEmpty());
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  public void testFilterSystemStuff() {
+    PlatformTestUtil.startPerformanceTest("Filtering system frames in 10M samples", 3000, () -> {
+      final CallTree filtered = CallTreeUtil.filterSystemStuff(ourCallTree);
+      assertEquals(DISTINCT_FRAMES - 1, filtered.getTimeMaps().getFirst().size());
+    }).cpuBound().assertTiming();
+  }
+}
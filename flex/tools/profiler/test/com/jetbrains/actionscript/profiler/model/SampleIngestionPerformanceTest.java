@@ -0,0 +1,136 @@
+package com.jetbrains.actionscript.profiler.model;
+
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.jetbrains.actionscript.profiler.calltree.CallTree;
+import com.jetbrains.actionscript.profiler.sampler.FrameUtil;
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Feeds CPU samples encoded the same way as ProfilerAgent.as does through {@link ProfilingConnection} into the snapshot.
+ */
+public class SampleIngestionPerformanceTest extends LightPlatformTestCase {
+  private static final int FRAMES = 2000;
+  private static final int STACKS = 5000;
+
+  public void testDecodedSamples() throws IOException {
+    final String[][] stacks = createStacks(new Random(1));
+    final Random random = new Random(2);
+    final int[] sampleStacks = new int[10000];
+    final long[] durations = new long[sampleStacks.length];
+    for (int i = 0; i < sampleStacks.length; i++) {
+      sampleStacks[i] = random.nextInt(3) == 0 && i > 0 ? sampleStacks[i - 1] : random.nextInt(STACKS);
+      durations[i] = random.nextInt(1000);
+    }
+
+    final CallTree expected = new CallTree();
+    for (int i = 0; i < sampleStacks.length; i++) {
+      expected.addFrames(FrameUtil.getInstances(stacks[sampleStacks[i]]), durations[i]);
+    }
+
+    final ProfilerDataConsumer consumer = new ProfilerDataConsumer(null);
+    try {
+      ingest(consumer, encode(stacks, sampleStacks, durations));
+      assertEquals(expected.getTimeMaps(), consumer.getCpuSnapshot().loadCallTree().getTimeMaps());
+    }
+    finally {
+      consumer.dispose();
+    }
+  }
+
+  public void testSustainedIngestionRate() throws IOException {
+    final int samples = 500000;
+    final String[][] stacks = createStacks(new Random(1));
+    final Random random = new Random(2);
+    final int[] sampleStacks = new int[samples];
+    final long[] durations = new long[samples];
+    for (int i = 0; i < samples; i++) {
+      // consecutive samples often share the stack, the agent sends "u>:" for the common part then
+      sampleStacks[i] = random.nextInt(3) == 0 && i > 0 ? sampleStacks[i - 1] : random.nextInt(STACKS);
+      durations[i] = 1 + random.nextInt(10);
+    }
+    final byte[] data = encode(stacks, sampleStacks, durations);
+
+    PlatformTestUtil.startPerformanceTest("Ingestion of " + samples + " CPU samples", 3000, () -> {
+      final ProfilerDataConsumer consumer = new ProfilerDataConsumer(null);
+      try {
+        ingest(consumer, data);
+        consumer.getCpuSnapshot();
+      }
+      finally {
+        consumer.dispose();
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static void ingest(ProfilerDataConsumer consumer, byte[] data) throws IOException {
+    final ProfilingConnection connection = new ProfilingConnection(0, consumer, (result, ex) -> {
+    });
+    try {
+      connection.readPackets(new DataInputStream(new ByteArrayInputStream(data)));
+      fail("End of stream expected");
+    }
+    catch (EOFException ignored) {
+    }
+  }
+
+  private static String[][] createStacks(Random random) {
+    final String[] frames = new String[FRAMES];
+    for (int i = 0; i < FRAMES; i++) {
+      final int cls = i / 10;
+      frames[i] = "com.foo::Class" + cls + "/method" + i + "()[/project/src;com/foo;Class" + cls + ".as:" + (i + 1) + "]";
+    }
+
+    final String[][] stacks = new String[STACKS][];
+    for (int i = 0; i < STACKS; i++) {
+      final String[] stack = new String[3 + random.nextInt(30)];
+      for (int j = 0; j < stack.length; j++) {
+        stack[j] = frames[random.nextInt(FRAMES)];
+      }
+      stacks[i] = stack;
+    }
+    return stacks;
+  }
+
+  /**
+   * The same encoding as ProfilerAgent.onEnterFrame() and writeStack(): a frame is sent as text the first time and as its number
+   * later, outermost frames that are the same as in the previous sample are replaced with "u>:count".
+   */
+  private static byte[] encode(String[][] stacks, int[] sampleStacks, long[] durations) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    final TObjectIntHashMap<String> dictionary = new TObjectIntHashMap<>();
+
+    String[] lastStack = null;
+    for (int s = 0; s < sampleStacks.length; s++) {
+      final String[] stack = stacks[sampleStacks[s]];
+      out.writeUTF("s\0" + durations[s] + " " + stack.length);
+
+      int matchedCount = 0;
+      if (lastStack != null) {
+        for (int i = lastStack.length - 1, j = stack.length - 1; i >= 0 && j >= 0 && lastStack[i].equals(stack[j]); --i, --j) {
+          matchedCount++;
+        }
+      }
+
+      for (int i = 0; i < stack.length - matchedCount; i++) {
+        final String frame = stack[i];
+        if (dictionary.containsKey(frame)) {
+          out.writeUTF(String.valueOf(dictionary.get(frame)));
+        }
+        else {
+          dictionary.put(frame, dictionary.size() + 1);
+          out.writeUTF(frame);
+        }
+      }
+      if (matchedCount != 0) {
+        out.writeUTF("u>:" + matchedCount);
+      }
+      lastStack = stack;
+    }
+    return bytes.toByteArray();
+  }
+}
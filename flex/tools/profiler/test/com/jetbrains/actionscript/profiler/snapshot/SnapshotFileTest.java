@@ -0,0 +1,215 @@
+package com.jetbrains.actionscript.profiler.snapshot;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.jetbrains.actionscript.profiler.calltree.CallTree;
+import com.jetbrains.actionscript.profiler.sampler.CreateObjectSample;
+import com.jetbrains.actionscript.profiler.sampler.FrameInfo;
+import com.jetbrains.actionscript.profiler.sampler.FrameUtil;
+import com.jetbrains.actionscript.profiler.sampler.Sample;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SnapshotFileTest extends TestCase {
+  private static final FrameInfo[] FRAMES = FrameUtil.getInstances(new String[]{
+    "com.foo::Main/main()[/project/src;com/foo;Main.as:12]",
+    "com.foo::Main/get size()[/project/src;com/foo;Main.as:20]",
+    "com.foo::Main/mx_internal::handler()[/project/src;com/foo;Main.as:35]",
+    "com.foo::Util$/compute()",
+    "Function/<anonymous>()[/project/src;com/foo;Main.as:40]",
+    "[mark]()",
+    "",
+    "Object()"
+  });
+
+  private File myFile;
+  private SnapshotWriter myWriter;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFile = FileUtil.createTempFile("profiler", ".snapshot", true);
+    myWriter = new SnapshotWriter(myFile);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myWriter.close();
+      FileUtil.delete(myFile);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testFrames() throws IOException {
+    myWriter.writeCpuSample(new Sample(10, FRAMES));
+    final long end = myWriter.mark();
+
+    final FrameInfo[][] result = new FrameInfo[1][];
+    try (SnapshotReader reader = new SnapshotReader(myFile, end)) {
+      reader.read(new SnapshotReader.RecordProcessor() {
+        @Override
+        public void cpuSample(long offset, long duration, FrameInfo[] frames) {
+          assertEquals(10, duration);
+          result[0] = frames;
+        }
+      });
+    }
+
+    assertEquals(FRAMES.length, result[0].length);
+    for (int i = 0; i < FRAMES.length; i++) {
+      final FrameInfo expected = FRAMES[i];
+      final FrameInfo actual = result[0][i];
+      assertEquals(expected, actual);
+      assertEquals(expected.toString(), actual.toString());
+      assertEquals(expected.getFilePath(), actual.getFilePath());
+      assertEquals(expected.getFileLine(), actual.getFileLine());
+      assertEquals(expected.getQName(), actual.getQName());
+      assertEquals(expected.getKind(), actual.getKind());
+      assertEquals(expected.getNamespace(), actual.getNamespace());
+    }
+  }
+
+  public void testFrameLineCorrectedLater() throws IOException {
+    final FrameInfo frame = FrameUtil.getInstances(new String[]{"com.foo::Main/later()[/project/src;com/foo;Main.as:50]"})[0];
+    myWriter.writeCpuSample(new Sample(10, new FrameInfo[]{frame}));
+    // FrameInfoBuilder corrects the line of a shared instance when the same function is seen at another line
+    frame.setFileLine(45);
+    myWriter.writeCpuSample(new Sample(20, new FrameInfo[]{frame}));
+    final long end = myWriter.mark();
+
+    final List<FrameInfo> result = new ArrayList<>();
+    try (SnapshotReader reader = new SnapshotReader(myFile, end)) {
+      reader.read(new SnapshotReader.RecordProcessor() {
+        @Override
+        public void cpuSample(long offset, long duration, FrameInfo[] frames) {
+          result.add(frames[0]);
+        }
+      });
+    }
+
+    assertEquals(2, result.size());
+    assertSame(result.get(0), result.get(1));
+    assertEquals(45, result.get(0).getFileLine());
+  }
+
+  public void testSaveCpuSnapshot() throws IOException {
+    final Random random = new Random(2);
+    for (int i = 0; i < 100; i++) {
+      myWriter.writeCpuSample(randomSample(random));
+    }
+    final long start = myWriter.mark();
+    final CallTree lastSamples = new CallTree();
+    for (int i = 0; i < 100; i++) {
+      final Sample sample = randomSample(random);
+      myWriter.writeCpuSample(sample);
+      lastSamples.addFrames(sample.frames, sample.duration);
+    }
+    final long end = myWriter.mark();
+
+    final File saved = FileUtil.createTempFile("profiler", ".cpu.snapshot", true);
+    try {
+      new CpuSnapshot(myFile, start, end).save(saved, null);
+      assertEquals(lastSamples.getTimeMaps(), new CpuSnapshot(saved).loadCallTree().getTimeMaps());
+    }
+    finally {
+      FileUtil.delete(saved);
+    }
+  }
+
+  public void testCpuSnapshot() throws IOException {
+    final Random random = new Random(1);
+    final CallTree allSamples = new CallTree();
+    final CallTree lastSamples = new CallTree();
+
+    for (int i = 0; i < 1000; i++) {
+      final Sample sample = randomSample(random);
+      myWriter.writeCpuSample(sample);
+      allSamples.addFrames(sample.frames, sample.duration);
+    }
+    final long start = myWriter.mark();
+    for (int i = 0; i < 1000; i++) {
+      final Sample sample = randomSample(random);
+      myWriter.writeCpuSample(sample);
+      allSamples.addFrames(sample.frames, sample.duration);
+      lastSamples.addFrames(sample.frames, sample.duration);
+    }
+    final long end = myWriter.mark();
+    // not flushed yet, must not be read
+    myWriter.writeCpuSample(randomSample(random));
+
+    assertEquals(allSamples.getTimeMaps(), new CpuSnapshot(myFile, 0, end).loadCallTree().getTimeMaps());
+    assertEquals(lastSamples.getTimeMaps(), new CpuSnapshot(myFile, start, end).loadCallTree().getTimeMaps());
+
+    // records crossing mapped window boundaries
+    final CallTree paged = new CallTree();
+    try (SnapshotReader reader = new SnapshotReader(myFile, end, 7)) {
+      reader.read(new SnapshotReader.RecordProcessor() {
+        @Override
+        public void cpuSample(long offset, long duration, FrameInfo[] frames) {
+          paged.addFrames(frames, duration);
+        }
+      });
+    }
+    assertEquals(allSamples.getTimeMaps(), paged.getTimeMaps());
+  }
+
+  public void testLiveObjects() throws IOException {
+    myWriter.writeObjectCreated(new CreateObjectSample(0, new FrameInfo[]{FRAMES[0]}, 1, "com.foo.Main", 100));
+    myWriter.writeObjectCreated(new CreateObjectSample(0, new FrameInfo[]{FRAMES[3], FRAMES[0]}, 2, "Array", 20));
+    myWriter.writeObjectCreated(new CreateObjectSample(0, FrameInfo.EMPTY_FRAME_INFO_ARRAY, 3, "String", 8));
+    myWriter.writeReference(1, 2);
+    myWriter.writeReference(1, 3);
+    myWriter.writeReference(3, 1);
+    myWriter.writeReference(2, 4);
+    myWriter.writeObjectDeleted(2);
+    final long end = myWriter.mark();
+    myWriter.writeObjectDeleted(3);
+
+    final LiveObjects objects = LiveObjects.load(myFile, end);
+    assertEquals(2, objects.getObjectCount());
+
+    assertEquals(1, objects.getId(0));
+    assertEquals("com.foo.Main", objects.getClassName(0));
+    assertEquals(100, objects.getSize(0));
+    assertEquals(FRAMES[0], objects.getFrames(0)[0]);
+    assertEquals("[1]", Arrays.toString(objects.getReferences(0)));
+
+    assertEquals(3, objects.getId(1));
+    assertEquals("String", objects.getClassName(1));
+    assertEquals(0, objects.getFrames(1).length);
+    assertEquals("[0]", Arrays.toString(objects.getReferences(1)));
+
+    final File saved = FileUtil.createTempFile("profiler", ".live.snapshot", true);
+    try {
+      objects.save(saved);
+      final LiveObjects loaded = LiveObjects.load(saved, Long.MAX_VALUE);
+      assertEquals(2, loaded.getObjectCount());
+      for (int i = 0; i < 2; i++) {
+        assertEquals(objects.getId(i), loaded.getId(i));
+        assertEquals(objects.getClassName(i), loaded.getClassName(i));
+        assertEquals(objects.getSize(i), loaded.getSize(i));
+        assertEquals(Arrays.asList(objects.getFrames(i)), Arrays.asList(loaded.getFrames(i)));
+        assertEquals(Arrays.toString(objects.getReferences(i)), Arrays.toString(loaded.getReferences(i)));
+      }
+    }
+    finally {
+      FileUtil.delete(saved);
+    }
+  }
+
+  private static Sample randomSample(Random random) {
+    final FrameInfo[] frames = new FrameInfo[1 + random.nextInt(10)];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = FRAMES[random.nextInt(FRAMES.length)];
+    }
+    return new Sample(random.nextInt(1000), frames);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.dom.struts.model;
+
+import com.intellij.openapi.util.Comparing;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.struts2.BasicLightHighlightingTestCase;
+import com.intellij.struts2.dom.struts.action.Action;
+import com.intellij.struts2.dom.struts.strutspackage.StrutsPackage;
+import com.intellij.struts2.facet.StrutsFacet;
+import com.intellij.struts2.facet.StrutsFacetConfiguration;
+import com.intellij.struts2.facet.ui.StrutsFileSet;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link StrutsModel} Action lookups on a large struts.xml, compared with scanning all Actions.
+ */
+public class StrutsModelActionLookupTest extends BasicLightHighlightingTestCase {
+
+  private static final int PACKAGES = 30;
+  private static final int ACTIONS_PER_PACKAGE = 100;
+  private static final int ACTION_CLASSES = 50;
+
+  @Override
+  @NotNull
+  protected String getTestDataLocation() {
+    return "strutsXml/highlighting";
+  }
+
+  public void testFindActionsByName() {
+    final StrutsModel model = createModel();
+
+    for (final String namespace : Arrays.asList(null, "/", "/ns0", "/ns7", "/unknown")) {
+      for (final String path : Arrays.asList("action1", "action1!edit", "action99", "wild0_something", "wild0_exact",
+                                             "wild10_x!edit", "wild10_x/y", "wild10_", "unknown")) {
+        assertEquals(namespace + " " + path, scanActionsByName(model, path, namespace), model.findActionsByName(path, namespace));
+      }
+    }
+
+    // wildcard and exact match in declaration order
+    final List<Action> actions = model.findActionsByName("wild0_exact", "/ns3");
+    assertEquals(2, actions.size());
+    assertEquals("wild0_*", actions.get(0).getName().getStringValue());
+    assertEquals("wild0_exact", actions.get(1).getName().getStringValue());
+
+    assertEquals(ACTIONS_PER_PACKAGE + 1, model.getActionsForNamespace("/ns5").size());
+    assertEquals(PACKAGES * (ACTIONS_PER_PACKAGE + 1) + 1, model.getActionsForNamespace(null).size());
+  }
+
+  public void testFindActionsByClass() {
+    final StrutsModel model = createModel();
+
+    for (int i = 0; i < ACTION_CLASSES; i++) {
+      final PsiClass actionClass = myFixture.findClass("com.test.Action" + i);
+      assertTrue(model.isActionClass(actionClass));
+      assertEquals(scanActionsByClass(model, actionClass), model.findActionsByClass(actionClass));
+    }
+
+    final PsiClass notAnAction = myFixture.addClass("package com.test; public class NotAnAction {}");
+    assertFalse(model.isActionClass(notAnAction));
+    assertEmpty(model.findActionsByClass(notAnAction));
+  }
+
+  public void testLookupPerformance() {
+    final StrutsModel model = createModel();
+    final PsiClass[] actionClasses = new PsiClass[ACTION_CLASSES];
+    for (int i = 0; i < ACTION_CLASSES; i++) {
+      actionClasses[i] = myFixture.findClass("com.test.Action" + i);
+    }
+
+    final int actions = PACKAGES * ACTIONS_PER_PACKAGE;
+    PlatformTestUtil.startPerformanceTest("Looking up " + actions + " Actions by name and class", 1000, () -> {
+      for (int i = 0; i < PACKAGES; i++) {
+        for (int j = 0; j < ACTIONS_PER_PACKAGE; j++) {
+          final String path = j % 10 == 0 ? "wild" + j + "_x!method" : "action" + j;
+          assertEquals(1, model.findActionsByName(path, "/ns" + i).size());
+        }
+      }
+      for (final PsiClass actionClass : actionClasses) {
+        assertTrue(model.isActionClass(actionClass));
+        assertEquals(actions / ACTION_CLASSES, model.findActionsByClass(actionClass).size());
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  /**
+   * {@link #PACKAGES} packages with namespaces <code>/ns0</code>... and {@link #ACTIONS_PER_PACKAGE} Actions, every tenth
+   * with a wildcard name, and one more exact Action matching the first wildcard; one package in the default namespace.
+   */
+  private StrutsModel createModel() {
+    for (int i = 0; i < ACTION_CLASSES; i++) {
+      myFixture.addClass("package com.test; public class Action" + i + " { public String execute() { return null; } }");
+    }
+
+    final StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n")
+      .append("<!DOCTYPE struts PUBLIC \"-//Apache Software Foundation//DTD Struts Configuration 2.0//EN\"\n")
+      .append("  \"http://struts.apache.org/dtds/struts-2.0.dtd\">\n")
+      .append("<struts>\n");
+    int actionCount = 0;
+    for (int i = 0; i < PACKAGES; i++) {
+      xml.append("  <package name=\"package").append(i).append("\" namespace=\"/ns").append(i).append("\">\n");
+      for (int j = 0; j < ACTIONS_PER_PACKAGE; j++) {
+        final String name = j % 10 == 0 ? "wild" + j + "_*" : "action" + j;
+        xml.append("    <action name=\"").append(name).append("\" class=\"com.test.Action").append(actionCount++ % ACTION_CLASSES)
+          .append("\"/>\n");
+      }
+      xml.append("    <action name=\"wild0_exact\"/>\n");
+      xml.append("  </package>\n");
+    }
+    xml.append("  <package name=\"default\">\n")
+      .append("    <action name=\"action1\"/>\n")
+      .append("  </package>\n")
+      .append("</struts>\n");
+    final PsiFile strutsXml = myFixture.addFileToProject(STRUTS_XML, xml.toString());
+
+    final StrutsFacet strutsFacet = StrutsFacet.getInstance(myModule);
+    assertNotNull(strutsFacet);
+    final StrutsFacetConfiguration facetConfiguration = strutsFacet.getConfiguration();
+    final StrutsFileSet fileSet = new StrutsFileSet("test", "test", facetConfiguration);
+    fileSet.addFile(strutsXml.getVirtualFile());
+    facetConfiguration.getFileSets().add(fileSet);
+
+    final StrutsModel model = StrutsManager.getInstance(getProject()).getModelByFile((XmlFile)strutsXml);
+    assertNotNull(model);
+    return model;
+  }
+
+  private static List<Action> scanActionsByName(final StrutsModel model, final String path, final String namespace) {
+    final List<Action> result = new ArrayList<>();
+    for (final StrutsPackage strutsPackage : model.getStrutsPackages()) {
+      if (namespace == null || Comparing.equal(namespace, strutsPackage.searchNamespace())) {
+        for (final Action action : strutsPackage.getActions()) {
+          if (action.matchesPath(path)) {
+            result.add(action);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static List<Action> scanActionsByClass(final StrutsModel model, final PsiClass clazz) {
+    final List<Action> result = new ArrayList<>();
+    for (final StrutsPackage strutsPackage : model.getStrutsPackages()) {
+      for (final Action action : strutsPackage.getActions()) {
+        if (Comparing.equal(clazz, action.searchActionClass())) {
+          result.add(action);
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.dom.struts.impl;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matches paths against one Action's path (including support for wildcards and bang notation), wildcard paths are compiled once.
+ */
+public final class ActionPathMatcher {
+
+  private final String actionPath;
+  private final boolean wildcard;
+  @Nullable
+  private final Pattern pattern;
+
+  /**
+   * @param actionPath Path of Action.
+   */
+  public ActionPathMatcher(@NotNull @NonNls final String actionPath) {
+    this.actionPath = actionPath;
+    wildcard = StringUtil.indexOf(actionPath, '*') != -1;
+    pattern = wildcard ? compile(actionPath) : null;
+  }
+
+  @Nullable
+  private static Pattern compile(final String actionPath) {
+    try {
+      return Pattern.compile(StringUtil.replace(actionPath, "*", "[^/]*"));
+    }
+    catch (PatternSyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return {@code true} if the Action's path contains wildcards, otherwise only the same path matches.
+   */
+  public boolean isWildcard() {
+    return wildcard;
+  }
+
+  /**
+   * Does the given path match the Action's path.
+   *
+   * @param checkPath Path to check.
+   * @return true if matched.
+   */
+  public boolean matches(@NotNull @NonNls final String checkPath) {
+    return matchesStripped(stripBang(checkPath));
+  }
+
+  /**
+   * Same as {@link #matches(String)} for a path already stripped by {@link #stripBang(String)}.
+   *
+   * @param strippedCheckPath Path to check.
+   * @return true if matched.
+   */
+  public boolean matchesStripped(@NotNull @NonNls final String strippedCheckPath) {
+    if (!wildcard) {
+      return actionPath.equals(strippedCheckPath);
+    }
+    return pattern != null && pattern.matcher(strippedCheckPath).matches();
+  }
+
+  /**
+   * Strips everything behind "!" (method invocation).
+   *
+   * @param checkPath Path to check.
+   * @return Path without method.
+   */
+  @NotNull
+  public static String stripBang(@NotNull @NonNls final String checkPath) {
+    final int bangIdx = StringUtil.indexOf(checkPath, '!');
+    return bangIdx == -1 ? checkPath : checkPath.substring(0, bangIdx);
+  }
+}
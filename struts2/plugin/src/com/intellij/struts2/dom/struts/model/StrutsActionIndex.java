@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.dom.struts.model;
+
+import com.intellij.struts2.dom.struts.action.Action;
+import com.intellij.struts2.dom.struts.impl.ActionPathMatcher;
+import com.intellij.struts2.dom.struts.strutspackage.StrutsPackage;
+import com.intellij.util.SmartList;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actions of all packages by namespace and name, in the order of {@link StrutsModel#getStrutsPackages()}.
+ * <p/>
+ * Exact names are looked up directly, only wildcard names are matched one by one.
+ */
+class StrutsActionIndex {
+
+  private final NamespaceActions allActions = new NamespaceActions();
+  private final Map<String, NamespaceActions> namespaceActions = new THashMap<>();
+
+  StrutsActionIndex(@NotNull final List<StrutsPackage> strutsPackages) {
+    int order = 0;
+    for (final StrutsPackage strutsPackage : strutsPackages) {
+      final NamespaceActions actions = namespaceActions.computeIfAbsent(strutsPackage.searchNamespace(), s -> new NamespaceActions());
+      for (final Action action : strutsPackage.getActions()) {
+        final String name = action.getName().getRawText();
+        final IndexedAction indexedAction = name != null ? new IndexedAction(action, order, new ActionPathMatcher(name)) : null;
+        allActions.add(action, name, indexedAction);
+        actions.add(action, name, indexedAction);
+        order++;
+      }
+    }
+  }
+
+  /**
+   * @param namespace Namespace to search within, {@code null} for all.
+   */
+  @NotNull
+  List<Action> findActionsByName(@NotNull @NonNls final String name, @Nullable @NonNls final String namespace) {
+    final NamespaceActions actions = namespace == null ? allActions : namespaceActions.get(namespace);
+    return actions == null ? new SmartList<>() : actions.findByName(name);
+  }
+
+  /**
+   * @param namespace Namespace, {@code null} for all.
+   */
+  @NotNull
+  List<Action> getActions(@Nullable @NonNls final String namespace) {
+    final NamespaceActions actions = namespace == null ? allActions : namespaceActions.get(namespace);
+    return actions == null ? Collections.emptyList() : actions.actions;
+  }
+
+  private static class IndexedAction {
+    private final Action action;
+    private final int order;
+    private final ActionPathMatcher matcher;
+
+    private IndexedAction(final Action action, final int order, final ActionPathMatcher matcher) {
+      this.action = action;
+      this.order = order;
+      this.matcher = matcher;
+    }
+  }
+
+  private static class NamespaceActions {
+    private final List<Action> actions = new ArrayList<>();
+    private final Map<String, List<IndexedAction>> exactActions = new THashMap<>();
+    private final List<IndexedAction> wildcardActions = new ArrayList<>();
+
+    private void add(@NotNull final Action action, @Nullable final String name, @Nullable final IndexedAction indexedAction) {
+      actions.add(action);
+      if (indexedAction == null) {
+        return;
+      }
+
+      if (indexedAction.matcher.isWildcard()) {
+        wildcardActions.add(indexedAction);
+      }
+      else {
+        exactActions.computeIfAbsent(name, s -> new SmartList<>()).add(indexedAction);
+      }
+    }
+
+    @NotNull
+    private List<Action> findByName(@NotNull final String name) {
+      final String strippedName = ActionPathMatcher.stripBang(name);
+      final List<IndexedAction> exact = exactActions.get(strippedName);
+      final List<IndexedAction> found = exact == null ? new SmartList<>() : new ArrayList<>(exact);
+      for (final IndexedAction wildcardAction : wildcardActions) {
+        if (wildcardAction.matcher.matchesStripped(strippedName)) {
+          found.add(wildcardAction);
+        }
+      }
+
+      // exact and wildcard matches in declaration order
+      if (exact != null && found.size() > exact.size()) {
+        found.sort((o1, o2) -> Integer.compare(o1.order, o2.order));
+      }
+
+      final List<Action> result = new ArrayList<>(found.size());
+      for (final IndexedAction indexedAction : found) {
+        result.add(indexedAction.action);
+      }
+      return result;
+    }
+  }
+}
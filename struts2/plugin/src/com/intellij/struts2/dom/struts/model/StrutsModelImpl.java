@@ -15,9 +15,11 @@
 
 package com.intellij.struts2.dom.struts.model;
 
-import com.intellij.openapi.util.Comparing;
-import com.intellij.openapi.util.Condition;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.struts2.dom.struts.StrutsRoot;
 import com.intellij.struts2.dom.struts.action.Action;
@@ -25,6 +27,7 @@ import com.intellij.struts2.dom.struts.strutspackage.Interceptor;
 import com.intellij.struts2.dom.struts.strutspackage.InterceptorOrStackBase;
 import com.intellij.struts2.dom.struts.strutspackage.InterceptorStack;
 import com.intellij.struts2.dom.struts.strutspackage.StrutsPackage;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.Function;
 import com.intellij.util.NotNullFunction;
 import com.intellij.util.Processor;
@@ -36,10 +39,7 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author Yann C&eacute;bron
@@ -52,9 +52,22 @@ class StrutsModelImpl extends DomModelImpl<StrutsRoot> implements StrutsModel {
   private static final Function<StrutsRoot, Collection<? extends StrutsPackage>> STRUTS_PACKAGE_COLLECTOR =
     strutsRoot -> strutsRoot.getPackages();
 
+  private final CachedValue<StrutsActionIndex> actionIndex;
+  private final CachedValue<Map<PsiClass, List<Action>>> actionClassIndex;
+
   StrutsModelImpl(@NotNull final DomFileElement<StrutsRoot> strutsRootDomFileElement,
                   @NotNull final Set<XmlFile> xmlFiles) {
     super(strutsRootDomFileElement, xmlFiles);
+
+    final CachedValuesManager cachedValuesManager = CachedValuesManager.getManager(strutsRootDomFileElement.getFile().getProject());
+    // names and namespaces are defined in the model's files only
+    actionIndex = cachedValuesManager.createCachedValue(
+      () -> CachedValueProvider.Result.create(new StrutsActionIndex(getStrutsPackages()), ArrayUtil.toObjectArray(getConfigFiles())),
+      false);
+    // Action classes resolve to Java classes, Spring beans etc.
+    actionClassIndex = cachedValuesManager.createCachedValue(
+      () -> CachedValueProvider.Result.create(buildActionClassIndex(), PsiModificationTracker.MODIFICATION_COUNT),
+      false);
   }
 
   @NotNull
@@ -82,55 +95,36 @@ class StrutsModelImpl extends DomModelImpl<StrutsRoot> implements StrutsModel {
   @NotNull
   public List<Action> findActionsByName(@NotNull @NonNls final String name,
                                         @Nullable @NonNls final String namespace) {
-    return ContainerUtil.findAll(getActionsForNamespace(namespace), action -> action.matchesPath(name));
+    return actionIndex.getValue().findActionsByName(name, namespace);
   }
 
   @NotNull
   public List<Action> findActionsByClass(@NotNull final PsiClass clazz) {
-    return findActionsByClassInner(clazz, false);
-  }
-
-  private List<Action> findActionsByClassInner(final PsiClass clazz,
-                                               final boolean skipOnFirst) {
-    final List<Action> actionResultList = new SmartList<>();
-
-    for (final StrutsPackage strutsPackage : getStrutsPackages()) {
-      for (final Action action : strutsPackage.getActions()) {
-        final PsiClass actionClassValue = action.searchActionClass();
-        if (Comparing.equal(clazz, actionClassValue)) {
-          actionResultList.add(action);
-          if (skipOnFirst) {
-            return actionResultList;
-          }
-        }
-      }
-    }
-
-    return actionResultList;
+    final List<Action> actions = actionClassIndex.getValue().get(clazz);
+    return actions == null ? new SmartList<>() : new SmartList<>(actions);
   }
 
   @Override
   public boolean isActionClass(@NotNull final PsiClass clazz) {
-    return !findActionsByClassInner(clazz, true).isEmpty();
+    return actionClassIndex.getValue().containsKey(clazz);
   }
 
-  public List<Action> getActionsForNamespace(@Nullable @NonNls final String namespace) {
-    final List<Action> actionResultList = new SmartList<>();
-
-    for (final StrutsPackage strutsPackage : getStrutsPackages()) {
-      if (namespace == null ||
-          Comparing.equal(namespace, strutsPackage.searchNamespace())) {
-        actionResultList.addAll(strutsPackage.getActions());
+  private Map<PsiClass, List<Action>> buildActionClassIndex() {
+    final Map<PsiClass, List<Action>> actionsByClass = new HashMap<>();
+    for (final Action action : actionIndex.getValue().getActions(null)) {
+      final PsiClass actionClassValue = action.searchActionClass();
+      if (actionClassValue != null) {
+        actionsByClass.computeIfAbsent(actionClassValue, psiClass -> new SmartList<>()).add(action);
       }
     }
-    return actionResultList;
+    return actionsByClass;
+  }
+
+  public List<Action> getActionsForNamespace(@Nullable @NonNls final String namespace) {
+    return new SmartList<>(actionIndex.getValue().getActions(namespace));
   }
 
   public boolean processActions(final Processor<Action> processor) {
-    for (final StrutsPackage strutsPackage : getStrutsPackages()) {
-      final List<Action> actions = strutsPackage.getActions();
-      if (!ContainerUtil.process(actions, processor)) return false;
-    }
-    return true;
+    return ContainerUtil.process(actionIndex.getValue().getActions(null), processor);
   }
 }